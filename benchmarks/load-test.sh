@@ -0,0 +1,43 @@
+#!/bin/sh
+#
+# Starts the README sample app in its own JVM and runs the load generator against it.
+#
+#   ./load-test.sh -c 16 -d 30s -r 20000 /message
+#
+# Every argument except the last is passed to LoadGenerator; the last one is the path to request.
+# JAVA_OPTS applies to the server, e.g. JAVA_OPTS="-Xmx512m -XX:+UseZGC"; PORT defaults to 18080.
+
+set -e
+
+cd "$(dirname "$0")"
+JAR=target/benchmarks.jar
+PORT=${PORT:-18080}
+
+if [ ! -f "$JAR" ]; then
+  echo "$JAR not found, run 'mvn package' first" >&2
+  exit 1
+fi
+
+if [ $# -eq 0 ]; then
+  set -- /
+fi
+
+for last; do :; done
+OPTIONS=""
+while [ $# -gt 1 ]; do
+  OPTIONS="$OPTIONS $1"
+  shift
+done
+
+# shellcheck disable=SC2086
+java $JAVA_OPTS -cp "$JAR" com.julianjupiter.kitty.http.SampleApp "$PORT" > /dev/null 2>&1 &
+SERVER=$!
+trap 'kill $SERVER 2>/dev/null' EXIT INT TERM
+
+# the generator retries nothing during warm-up, so wait for the port first
+until java -cp "$JAR" com.julianjupiter.kitty.http.LoadGenerator -c 1 -d 1ms -w 0s "http://127.0.0.1:$PORT$last" > /dev/null 2>&1; do
+  sleep 0.2
+done
+
+# shellcheck disable=SC2086
+java -cp "$JAR" com.julianjupiter.kitty.http.LoadGenerator $OPTIONS "http://127.0.0.1:$PORT$last"
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2013-2023 Julian Jupiter.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.julianjupiter.kitty.http;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resolution of the request line and status line constants, done once or more per request.
+ *
+ * @author Julian Jupiter
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConstantResolutionBenchmark {
+    // fields rather than literals so the JIT cannot fold the lookups
+    public String get = "GET";
+    public String post = "post";
+    public int ok = 200;
+    public int notFound = 404;
+    public int serviceUnavailable = 503;
+    public String http11 = "HTTP/1.1";
+
+    @Benchmark
+    public HttpMethod methodGet() {
+        return HttpMethod.of(this.get);
+    }
+
+    @Benchmark
+    public HttpMethod methodLowerCase() {
+        return HttpMethod.of(this.post);
+    }
+
+    @Benchmark
+    public HttpStatus statusOk() {
+        return HttpStatus.of(this.ok);
+    }
+
+    @Benchmark
+    public HttpStatus statusNotFound() {
+        return HttpStatus.of(this.notFound);
+    }
+
+    @Benchmark
+    public HttpStatus statusServiceUnavailable() {
+        return HttpStatus.of(this.serviceUnavailable);
+    }
+
+    @Benchmark
+    public HttpVersion version() {
+        return HttpVersion.of(this.http11);
+    }
+}
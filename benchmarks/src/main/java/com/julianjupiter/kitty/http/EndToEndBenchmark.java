@@ -0,0 +1,110 @@
+/*
+ * Copyright 2013-2023 Julian Jupiter.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.julianjupiter.kitty.http;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One request over loopback against a running server: connect, write, read the response until the server closes
+ * the connection.
+ *
+ * @author Julian Jupiter
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EndToEndBenchmark {
+    private static final byte[] REQUEST = """
+            GET /hello HTTP/1.1\r
+            Host: localhost\r
+            User-Agent: kitty-benchmark\r
+            Accept: */*\r
+            Connection: close\r
+            \r
+            """.getBytes(StandardCharsets.US_ASCII);
+
+    private HttpServer server;
+    private InetSocketAddress address;
+    private final byte[] buffer = new byte[8192];
+
+    @Setup
+    public void setup() throws InterruptedException {
+        this.server = HttpServer.createServer((request, response) -> response.body("Hello, World!"))
+                .hostname(InetAddress.getLoopbackAddress().getHostAddress());
+        this.server.start(0);
+        this.address = new InetSocketAddress(InetAddress.getLoopbackAddress(), this.server.config().port());
+        this.awaitStarted();
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.server.stop();
+    }
+
+    @Benchmark
+    public int request() throws IOException {
+        try (var socket = new Socket()) {
+            socket.setTcpNoDelay(true);
+            socket.connect(this.address);
+            socket.getOutputStream().write(REQUEST);
+            var input = socket.getInputStream();
+            var total = 0;
+            int read;
+            while ((read = input.read(this.buffer)) != -1) {
+                total += read;
+            }
+
+            return total;
+        }
+    }
+
+    private void awaitStarted() throws InterruptedException {
+        var deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (System.nanoTime() < deadline) {
+            try (var socket = new Socket()) {
+                socket.connect(this.address);
+                return;
+            } catch (ConnectException exception) {
+                Thread.sleep(10);
+            } catch (IOException exception) {
+                throw new IllegalStateException(exception);
+            }
+        }
+
+        throw new IllegalStateException("Server did not start on " + this.address);
+    }
+}
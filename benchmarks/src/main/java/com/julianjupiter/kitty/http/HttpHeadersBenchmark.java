@@ -0,0 +1,82 @@
+/*
+ * Copyright 2013-2023 Julian Jupiter.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.julianjupiter.kitty.http;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Header names are normalized on every insert and lookup, so both paths are measured with the mixed casing seen on
+ * the wire.
+ *
+ * @author Julian Jupiter
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HttpHeadersBenchmark {
+    private static final List<HttpHeader> HEADERS = List.of(
+            new HttpHeader("host", "shop.example.com"),
+            new HttpHeader("User-Agent", "Mozilla/5.0"),
+            new HttpHeader("ACCEPT", "text/html"),
+            new HttpHeader("accept-encoding", "gzip"),
+            new HttpHeader("Accept-Language", "en-US"),
+            new HttpHeader("connection", "keep-alive"),
+            new HttpHeader("Cookie", "session=6f1c2a9be3d54f0e8a7b"),
+            new HttpHeader("sec-fetch-dest", "document"),
+            new HttpHeader("Sec-Fetch-Mode", "navigate"),
+            new HttpHeader("x-request-id", "4bf92f3577b34da6a3ce929d0e0e4736"));
+
+    private HttpHeaders headers;
+
+    @Setup
+    public void setup() {
+        this.headers = HttpHeaders.create(HEADERS);
+    }
+
+    @Benchmark
+    public HttpHeaders create() {
+        return HttpHeaders.create(HEADERS);
+    }
+
+    @Benchmark
+    public void lookupPresent(Blackhole blackhole) {
+        blackhole.consume(this.headers.get("content-type"));
+        blackhole.consume(this.headers.get("Host"));
+        blackhole.consume(this.headers.get("ACCEPT-ENCODING"));
+        blackhole.consume(this.headers.get("x-request-id"));
+    }
+
+    @Benchmark
+    public boolean lookupAbsent() {
+        return this.headers.contains("Authorization");
+    }
+}
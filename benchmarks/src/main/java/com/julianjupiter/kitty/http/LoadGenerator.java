@@ -0,0 +1,510 @@
+/*
+ * Copyright 2013-2023 Julian Jupiter.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.julianjupiter.kitty.http;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * HTTP/1.1 load generator over N keep-alive connections.
+ * <p>
+ * Without {@code --rate} every connection sends its next request as soon as the previous response arrived (closed
+ * loop). With {@code --rate} requests are sent on a fixed schedule spread over the connections (open loop) and
+ * latency is measured from the time a request was due, not from the time it could be sent, so a stalled server is
+ * charged for the requests it kept waiting. Closed-loop latency is corrected the same way by back-filling the
+ * requests that would have been sent at the warm-up median interval during a stall.
+ *
+ * <pre>
+ * java -cp benchmarks.jar com.julianjupiter.kitty.http.LoadGenerator --connections 16 --duration 30s --rate 20000 http://localhost:8080/
+ * </pre>
+ *
+ * @author Julian Jupiter
+ */
+public final class LoadGenerator {
+    private static final double[] PERCENTILES = {50, 75, 90, 99, 99.9, 99.99, 99.999, 100};
+    private final Options options;
+    private final byte[] request;
+    private final LogLinearHistogram latency = new LogLinearHistogram();
+    private final LogLinearHistogram serviceTime = new LogLinearHistogram();
+    private final LogLinearHistogram warmupServiceTime = new LogLinearHistogram();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder non2xx = new LongAdder();
+    private final LongAdder connects = new LongAdder();
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAccumulator lastCompletion = new LongAccumulator(Math::max, Long.MIN_VALUE);
+    private volatile long expectedInterval;
+    private long start;
+    private long warmupEnd;
+    private long end;
+
+    LoadGenerator(Options options) {
+        this.options = options;
+        this.request = options.request();
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        Options options;
+        try {
+            options = Options.parse(args);
+        } catch (IllegalArgumentException exception) {
+            System.err.println(exception.getMessage());
+            System.err.println(Options.USAGE);
+            System.exit(2);
+            return;
+        }
+
+        var result = new LoadGenerator(options).run();
+        System.out.println(options.json() ? result.toJson() : result.toText());
+        System.exit(result.requests() > 0 ? 0 : 1);
+    }
+
+    Result run() throws InterruptedException {
+        this.start = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(10);
+        this.warmupEnd = this.start + this.options.warmup().toNanos();
+        this.end = this.warmupEnd + this.options.duration().toNanos();
+
+        var workers = new ArrayList<Thread>(this.options.connections());
+        for (var i = 0; i < this.options.connections(); i++) {
+            var index = i;
+            workers.add(Thread.ofPlatform()
+                    .name("kitty-load-" + i)
+                    .daemon()
+                    .start(() -> this.runConnection(index)));
+        }
+
+        // the closed-loop correction needs a notion of how often a connection would normally send
+        waitUntil(this.warmupEnd);
+        this.expectedInterval = this.warmupServiceTime.snapshot().valueAtPercentile(50);
+
+        for (var worker : workers) {
+            worker.join();
+        }
+
+        var measured = Math.max(this.end, this.lastCompletion.get()) - this.warmupEnd;
+        return new Result(this.options, this.requests.sum(), this.errors.sum(), this.non2xx.sum(), this.connects.sum(),
+                this.bytesRead.sum(), measured, this.latency.snapshot(), this.serviceTime.snapshot());
+    }
+
+    private void runConnection(int index) {
+        var openLoop = this.options.rate() > 0;
+        var interval = openLoop ? this.options.connections() * 1e9 / this.options.rate() : 0;
+        // connections are staggered so the schedule is spread evenly instead of arriving in bursts of N
+        var phase = (long) (interval * index / this.options.connections());
+        Connection connection = null;
+        for (var k = 0L; ; k++) {
+            long intended;
+            if (openLoop) {
+                intended = this.start + phase + (long) (k * interval);
+                if (intended >= this.end) {
+                    break;
+                }
+
+                waitUntil(intended);
+            } else {
+                intended = Math.max(System.nanoTime(), this.start);
+                if (intended >= this.end) {
+                    break;
+                }
+
+                waitUntil(intended);
+            }
+
+            try {
+                if (connection == null) {
+                    connection = new Connection(this.options.address());
+                    this.connects.increment();
+                }
+
+                var sent = System.nanoTime();
+                var status = connection.exchange(this.request);
+                var done = System.nanoTime();
+                this.record(intended, sent, done, status, connection.lastResponseBytes());
+                if (!connection.reusable()) {
+                    connection.close();
+                    connection = null;
+                }
+            } catch (IOException exception) {
+                if (intended >= this.warmupEnd) {
+                    this.errors.increment();
+                }
+                closeQuietly(connection);
+                connection = null;
+            }
+        }
+
+        closeQuietly(connection);
+    }
+
+    private void record(long intended, long sent, long done, int status, long bytes) {
+        if (intended < this.warmupEnd) {
+            this.warmupServiceTime.record(done - sent);
+            return;
+        }
+
+        this.requests.increment();
+        this.bytesRead.add(bytes);
+        this.lastCompletion.accumulate(done);
+        if (status < 200 || status > 299) {
+            this.non2xx.increment();
+        }
+
+        this.serviceTime.record(done - sent);
+        if (this.options.rate() > 0) {
+            this.latency.record(done - intended);
+            return;
+        }
+
+        var value = done - sent;
+        this.latency.record(value);
+        var expected = this.expectedInterval;
+        if (expected > 0) {
+            for (var missing = value - expected; missing >= expected; missing -= expected) {
+                this.latency.record(missing);
+            }
+        }
+    }
+
+    private static void waitUntil(long deadline) {
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > 0) {
+            if (remaining > 100_000) {
+                LockSupport.parkNanos(remaining - 50_000);
+            } else {
+                Thread.onSpinWait();
+            }
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+
+        try {
+            closeable.close();
+        } catch (IOException ignored) {
+            // nothing left to clean up
+        }
+    }
+
+    record Options(URI uri, int connections, Duration duration, Duration warmup, long rate, List<String> headers,
+                   boolean json) {
+        static final String USAGE = """
+                usage: LoadGenerator [options] <url>
+                  -c, --connections <n>    keep-alive connections (default 16)
+                  -d, --duration <time>    measured time, e.g. 30s, 500ms, 2m (default 30s)
+                  -w, --warmup <time>      time before measuring (default 5s)
+                  -r, --rate <n>           requests per second over all connections, open loop (default: closed loop)
+                  -H, --header <h: v>      extra request header, repeatable
+                      --json               print the result as JSON""";
+
+        static Options parse(String[] args) {
+            URI uri = null;
+            var connections = 16;
+            var duration = Duration.ofSeconds(30);
+            var warmup = Duration.ofSeconds(5);
+            var rate = 0L;
+            var headers = new ArrayList<String>();
+            var json = false;
+            for (var i = 0; i < args.length; i++) {
+                var arg = args[i];
+                switch (arg) {
+                    case "-c", "--connections" -> connections = Integer.parseInt(value(args, ++i, arg));
+                    case "-d", "--duration" -> duration = parseDuration(value(args, ++i, arg));
+                    case "-w", "--warmup" -> warmup = parseDuration(value(args, ++i, arg));
+                    case "-r", "--rate" -> rate = Long.parseLong(value(args, ++i, arg));
+                    case "-H", "--header" -> headers.add(value(args, ++i, arg));
+                    case "--json" -> json = true;
+                    default -> {
+                        if (arg.startsWith("-") || uri != null) {
+                            throw new IllegalArgumentException("Unexpected argument: " + arg);
+                        }
+                        uri = URI.create(arg);
+                    }
+                }
+            }
+
+            if (uri == null || !"http".equals(uri.getScheme()) || uri.getHost() == null) {
+                throw new IllegalArgumentException("An http:// URL is required");
+            }
+
+            if (connections < 1 || rate < 0 || duration.isZero() || duration.isNegative() || warmup.isNegative()) {
+                throw new IllegalArgumentException("Connections and duration must be positive, rate and warm-up must not be negative");
+            }
+
+            return new Options(uri, connections, duration, warmup, rate, List.copyOf(headers), json);
+        }
+
+        InetSocketAddress address() {
+            return new InetSocketAddress(this.uri.getHost(), this.uri.getPort() == -1 ? 80 : this.uri.getPort());
+        }
+
+        byte[] request() {
+            var target = this.uri.getRawPath() == null || this.uri.getRawPath().isEmpty() ? "/" : this.uri.getRawPath();
+            if (this.uri.getRawQuery() != null) {
+                target += "?" + this.uri.getRawQuery();
+            }
+
+            var sb = new StringBuilder()
+                    .append("GET ").append(target).append(" HTTP/1.1\r\n")
+                    .append("Host: ").append(this.uri.getRawAuthority()).append("\r\n")
+                    .append("User-Agent: kitty-load\r\n");
+            this.headers.forEach(header -> sb.append(header).append("\r\n"));
+            return sb.append("\r\n").toString().getBytes(StandardCharsets.US_ASCII);
+        }
+
+        private static String value(String[] args, int index, String option) {
+            if (index >= args.length) {
+                throw new IllegalArgumentException("Missing value for " + option);
+            }
+
+            return args[index];
+        }
+
+        private static Duration parseDuration(String value) {
+            var text = value.strip().toLowerCase(Locale.ROOT);
+            if (text.endsWith("ms")) {
+                return Duration.ofMillis(Long.parseLong(text.substring(0, text.length() - 2)));
+            } else if (text.endsWith("s")) {
+                return Duration.ofSeconds(Long.parseLong(text.substring(0, text.length() - 1)));
+            } else if (text.endsWith("m")) {
+                return Duration.ofMinutes(Long.parseLong(text.substring(0, text.length() - 1)));
+            }
+
+            return Duration.ofSeconds(Long.parseLong(text));
+        }
+    }
+
+    record Result(Options options, long requests, long errors, long non2xx, long connects, long bytes, long nanos,
+                  LogLinearHistogram.Snapshot latency, LogLinearHistogram.Snapshot serviceTime) {
+        double throughput() {
+            return this.requests * 1e9 / this.nanos;
+        }
+
+        String toText() {
+            var mode = this.options.rate() > 0
+                    ? "open loop at " + this.options.rate() + " req/s"
+                    : "closed loop";
+            var sb = new StringBuilder()
+                    .append("%s, %d connections, %s measured after %s warm-up against %s%n".formatted(mode,
+                            this.options.connections(), format(this.options.duration()), format(this.options.warmup()),
+                            this.options.uri()))
+                    .append("  requests    %d (%.1f req/s), %d errors, %d non-2xx, %d connects%n".formatted(
+                            this.requests, this.throughput(), this.errors, this.non2xx, this.connects))
+                    .append("  transfer    %.2f MiB (%.2f MiB/s)%n".formatted(this.bytes / 1048576.0,
+                            this.bytes / 1048576.0 * 1e9 / this.nanos))
+                    .append("%n  %-10s %14s %14s%n".formatted("percentile", "latency ms", "service ms"));
+            for (var percentile : PERCENTILES) {
+                sb.append("  %-10s %14.3f %14.3f%n".formatted(percentile, millis(this.latency, percentile),
+                        millis(this.serviceTime, percentile)));
+            }
+
+            return sb.append("%n  latency is corrected for coordinated omission; service time is send to last byte"
+                    .formatted()).toString();
+        }
+
+        String toJson() {
+            var sb = new StringBuilder()
+                    .append("{\"url\":\"").append(this.options.uri()).append('"')
+                    .append(",\"mode\":\"").append(this.options.rate() > 0 ? "open" : "closed").append('"')
+                    .append(",\"rate\":").append(this.options.rate())
+                    .append(",\"connections\":").append(this.options.connections())
+                    .append(",\"durationSeconds\":").append(this.nanos / 1e9)
+                    .append(",\"requests\":").append(this.requests)
+                    .append(",\"throughput\":").append(this.throughput())
+                    .append(",\"errors\":").append(this.errors)
+                    .append(",\"non2xx\":").append(this.non2xx)
+                    .append(",\"connects\":").append(this.connects)
+                    .append(",\"bytes\":").append(this.bytes);
+            percentiles(sb, "latencyMillis", this.latency);
+            percentiles(sb, "serviceTimeMillis", this.serviceTime);
+            return sb.append('}').toString();
+        }
+
+        private static void percentiles(StringBuilder sb, String name, LogLinearHistogram.Snapshot snapshot) {
+            sb.append(",\"").append(name).append("\":{");
+            for (var i = 0; i < PERCENTILES.length; i++) {
+                if (i > 0) {
+                    sb.append(',');
+                }
+                sb.append('"').append(PERCENTILES[i]).append("\":").append(millis(snapshot, PERCENTILES[i]));
+            }
+            sb.append('}');
+        }
+
+        private static double millis(LogLinearHistogram.Snapshot snapshot, double percentile) {
+            return snapshot.valueAtPercentile(percentile) / 1e6;
+        }
+
+        private static String format(Duration duration) {
+            return duration.toMillis() % 1000 == 0 ? duration.toSeconds() + "s" : duration.toMillis() + "ms";
+        }
+    }
+
+    /**
+     * One keep-alive connection; responses are framed by Content-Length, chunked encoding or connection close.
+     */
+    private static final class Connection implements Closeable {
+        private final Socket socket = new Socket();
+        private final InputStream input;
+        private final OutputStream output;
+        private final StringBuilder line = new StringBuilder(128);
+        private boolean reusable;
+        private long lastResponseBytes;
+
+        Connection(InetSocketAddress address) throws IOException {
+            this.socket.setTcpNoDelay(true);
+            this.socket.connect(address);
+            this.input = new BufferedInputStream(this.socket.getInputStream(), 16384);
+            this.output = new BufferedOutputStream(this.socket.getOutputStream(), 4096);
+        }
+
+        int exchange(byte[] request) throws IOException {
+            this.output.write(request);
+            this.output.flush();
+            this.lastResponseBytes = 0;
+
+            var statusLine = this.readLine();
+            if (statusLine.length() < 12 || !statusLine.startsWith("HTTP/1.")) {
+                throw new IOException("Malformed status line: " + statusLine);
+            }
+
+            var status = Integer.parseInt(statusLine.substring(9, 12));
+            var http10 = statusLine.startsWith("HTTP/1.0");
+            var contentLength = -1L;
+            var chunked = false;
+            var close = http10;
+            String header;
+            while (!(header = this.readLine()).isEmpty()) {
+                var separator = header.indexOf(':');
+                if (separator < 0) {
+                    continue;
+                }
+
+                var name = header.substring(0, separator).strip();
+                var value = header.substring(separator + 1).strip();
+                if (name.equalsIgnoreCase("Content-Length")) {
+                    contentLength = Long.parseLong(value);
+                } else if (name.equalsIgnoreCase("Transfer-Encoding")) {
+                    chunked = value.toLowerCase(Locale.ROOT).contains("chunked");
+                } else if (name.equalsIgnoreCase("Connection")) {
+                    var token = value.toLowerCase(Locale.ROOT);
+                    close = token.contains("close") || (http10 && !token.contains("keep-alive"));
+                }
+            }
+
+            if (chunked) {
+                this.readChunked();
+                this.reusable = !close;
+            } else if (contentLength >= 0) {
+                this.skip(contentLength);
+                this.reusable = !close;
+            } else {
+                while (this.input.read() != -1) {
+                    this.lastResponseBytes++;
+                }
+                this.reusable = false;
+            }
+
+            return status;
+        }
+
+        boolean reusable() {
+            return this.reusable;
+        }
+
+        long lastResponseBytes() {
+            return this.lastResponseBytes;
+        }
+
+        private void readChunked() throws IOException {
+            long size;
+            do {
+                var sizeLine = this.readLine();
+                var extension = sizeLine.indexOf(';');
+                size = Long.parseLong((extension < 0 ? sizeLine : sizeLine.substring(0, extension)).strip(), 16);
+                this.skip(size);
+                if (size > 0) {
+                    this.readLine();
+                }
+            } while (size > 0);
+
+            // trailers end with an empty line
+            while (!this.readLine().isEmpty()) {
+                // discard
+            }
+        }
+
+        private void skip(long length) throws IOException {
+            var remaining = length;
+            while (remaining > 0) {
+                var skipped = this.input.skip(remaining);
+                if (skipped <= 0) {
+                    if (this.input.read() == -1) {
+                        throw new EOFException("Connection closed inside a response body");
+                    }
+                    skipped = 1;
+                }
+                remaining -= skipped;
+            }
+
+            this.lastResponseBytes += length;
+        }
+
+        // lines may end with CRLF or a bare LF
+        private String readLine() throws IOException {
+            this.line.setLength(0);
+            int b;
+            while ((b = this.input.read()) != -1) {
+                this.lastResponseBytes++;
+                if (b == '\n') {
+                    var length = this.line.length();
+                    if (length > 0 && this.line.charAt(length - 1) == '\r') {
+                        this.line.setLength(length - 1);
+                    }
+                    return this.line.toString();
+                }
+
+                this.line.append((char) b);
+            }
+
+            throw new EOFException("Connection closed before the response was complete");
+        }
+
+        @Override
+        public void close() throws IOException {
+            this.socket.close();
+        }
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2013-2023 Julian Jupiter.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.julianjupiter.kitty.http;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A handler reading two of six query parameters, through the parameter index and by splitting the decoded query the
+ * way handlers did before.
+ *
+ * @author Julian Jupiter
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueryParametersBenchmark {
+    private static final String QUERY = "q=red+running+shoes&category=sport%2Foutdoor&page=3&size=48&sort=price&inStock=true";
+
+    @Benchmark
+    public void parameters(Blackhole blackhole) {
+        var parameters = UrlEncodedParameters.of(QUERY);
+        blackhole.consume(parameters.get("q"));
+        blackhole.consume(parameters.getInt("page").orElse(1));
+    }
+
+    @Benchmark
+    public void split(Blackhole blackhole) {
+        for (var pair : QUERY.split("&")) {
+            var keyValue = pair.split("=", 2);
+            var name = URLDecoder.decode(keyValue[0], StandardCharsets.UTF_8);
+            var value = URLDecoder.decode(keyValue[1], StandardCharsets.UTF_8);
+            if (name.equals("q")) {
+                blackhole.consume(value);
+            } else if (name.equals("page")) {
+                blackhole.consume(Integer.parseInt(value));
+            }
+        }
+    }
+}
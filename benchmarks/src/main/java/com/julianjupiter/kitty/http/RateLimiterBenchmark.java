@@ -0,0 +1,76 @@
+/*
+ * Copyright 2013-2023 Julian Jupiter.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.julianjupiter.kitty.http;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Rate limit checks from four threads, spread over 10,000 known clients, once with a limit high enough that every
+ * check passes and once with every bucket empty.
+ *
+ * @author Julian Jupiter
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@Fork(1)
+public class RateLimiterBenchmark {
+    private static final int CLIENTS = 10_000;
+    private final InetAddress[] clients = new InetAddress[CLIENTS];
+    private RateLimiter allowing;
+    private RateLimiter limiting;
+
+    @Setup
+    public void setup() throws UnknownHostException {
+        for (var i = 0; i < CLIENTS; i++) {
+            this.clients[i] = InetAddress.getByAddress(new byte[]{10, 0, (byte) (i >>> 8), (byte) i});
+        }
+        this.allowing = new RateLimiter(RateLimiter.MAX_RATE, RateLimiter.MAX_BURST, CLIENTS, new LongAdder());
+        this.limiting = new RateLimiter(1, 1, CLIENTS, new LongAdder());
+        for (var client : this.clients) {
+            this.limiting.tryAcquire(client);
+        }
+    }
+
+    @Benchmark
+    public boolean allowed() {
+        return this.allowing.tryAcquire(this.clients[ThreadLocalRandom.current().nextInt(CLIENTS)]);
+    }
+
+    @Benchmark
+    public boolean limited() {
+        return this.limiting.tryAcquire(this.clients[ThreadLocalRandom.current().nextInt(CLIENTS)]);
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2013-2023 Julian Jupiter.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.julianjupiter.kitty.http;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Builds and serializes a response the way {@code ClientHandler} does; the response is mutated by serialization, so
+ * it is rebuilt on every invocation.
+ *
+ * @author Julian Jupiter
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResponseSerializationBenchmark {
+    private static final String JSON = """
+            {"id":42,"name":"Kitty mug","price":12.5,"tags":["kitchen","cats"],"stock":{"warehouse":"north","count":17}}""";
+
+    @Param({"0", "1024"})
+    public int bodySize;
+
+    @Benchmark
+    public byte[] plainText() {
+        var response = new DefaultHttpResponse(HttpHeadersFactory.create())
+                .body("x".repeat(this.bodySize));
+        return response.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public byte[] jsonWithCookies() {
+        var response = new DefaultHttpResponse(HttpHeadersFactory.create())
+                .status(HttpStatus.CREATED)
+                .header("Content-Type", "application/json")
+                .header("Cache-Control", "no-store")
+                .header("X-Request-Id", "4bf92f3577b34da6a3ce929d0e0e4736")
+                .cookie("session", "6f1c2a9be3d54f0e8a7b")
+                .body(JSON + " ".repeat(this.bodySize));
+        return response.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public byte[] noContent() {
+        var response = new DefaultHttpResponse(HttpHeadersFactory.create())
+                .status(HttpStatus.NO_CONTENT);
+        return response.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
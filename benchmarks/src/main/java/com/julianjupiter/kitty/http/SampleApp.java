@@ -0,0 +1,48 @@
+/*
+ * Copyright 2013-2023 Julian Jupiter.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.julianjupiter.kitty.http;
+
+/**
+ * The handler from the README sample, served on its own so load tests can target it from a separate JVM.
+ *
+ * @author Julian Jupiter
+ */
+public final class SampleApp {
+    private static final System.Logger LOGGER = System.getLogger(SampleApp.class.getName());
+
+    private SampleApp() {
+    }
+
+    public static void main(String[] args) {
+        var port = args.length > 0 ? Integer.parseInt(args[0]) : ServerConfiguration.DEFAULT_PORT;
+        var server = HttpServer.createServer((request, response) -> {
+            var currentPath = request.requestLine().target()
+                    .getPath();
+            return switch (currentPath) {
+                case "/" -> response.body("Welcome home!");
+                case "/message" -> response
+                        .header("Content-Type", "application/json")
+                        .body("""
+                                {
+                                    "message": "Hello, world!"
+                                }
+                                """);
+                default -> response.status(HttpStatus.NOT_FOUND);
+            };
+        });
+        server.start(port, () -> LOGGER.log(System.Logger.Level.INFO, "Sample app is running on port " + port + "."));
+    }
+}
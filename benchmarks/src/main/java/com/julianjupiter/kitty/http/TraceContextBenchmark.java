@@ -0,0 +1,74 @@
+/*
+ * Copyright 2013-2023 Julian Jupiter.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.julianjupiter.kitty.http;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What tracing adds to a request that is not sampled: starting a trace for a request without {@code traceparent} and
+ * continuing one from it. {@code sampledSpan} adds building the span of a sampled request.
+ *
+ * @author Julian Jupiter
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TraceContextBenchmark {
+    private HttpRequest untraced;
+    private HttpRequest traced;
+
+    @Setup
+    public void setup() {
+        this.untraced = request("");
+        this.traced = request("traceparent: 00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-00\r\n");
+    }
+
+    private static HttpRequest request(String headers) {
+        var head = "GET /orders/42 HTTP/1.1\r\nHost: example.com\r\nAccept: */*\r\n" + headers + "\r\n";
+        return HttpRequestFactory.create(new ByteArrayInputStream(head.getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    @Benchmark
+    public DefaultTraceContext started() {
+        return DefaultTraceContext.of(this.untraced, 0);
+    }
+
+    @Benchmark
+    public DefaultTraceContext continued() {
+        return DefaultTraceContext.of(this.traced, 0);
+    }
+
+    @Benchmark
+    public Span sampledSpan() {
+        return DefaultTraceContext.of(this.untraced, Long.MAX_VALUE).span(this.untraced, 200, 1_000_000);
+    }
+}
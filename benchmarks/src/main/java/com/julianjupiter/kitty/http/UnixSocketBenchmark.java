@@ -0,0 +1,223 @@
+/*
+ * Copyright 2013-2023 Julian Jupiter.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.julianjupiter.kitty.http;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Request round trip over loopback TCP and over a Unix domain socket against the same server, both on a kept-alive
+ * connection and with a connection per request.
+ *
+ * @author Julian Jupiter
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UnixSocketBenchmark {
+    private static final byte[] REQUEST = """
+            GET /hello HTTP/1.1\r
+            Host: localhost\r
+            User-Agent: kitty-benchmark\r
+            Accept: */*\r
+            \r
+            """.getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] CLOSING_REQUEST = """
+            GET /hello HTTP/1.1\r
+            Host: localhost\r
+            User-Agent: kitty-benchmark\r
+            Accept: */*\r
+            Connection: close\r
+            \r
+            """.getBytes(StandardCharsets.US_ASCII);
+
+    private HttpServer server;
+    private Path directory;
+    private InetSocketAddress tcpAddress;
+    private UnixDomainSocketAddress unixAddress;
+    private SocketChannel tcp;
+    private SocketChannel unix;
+    private int responseLength;
+    private final ByteBuffer request = ByteBuffer.wrap(REQUEST);
+    private final ByteBuffer closingRequest = ByteBuffer.wrap(CLOSING_REQUEST);
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(8192);
+
+    @Setup
+    public void setup() throws IOException, InterruptedException {
+        this.directory = Files.createTempDirectory("kitty-benchmark");
+        var socketPath = this.directory.resolve("http.sock");
+        this.server = HttpServer.createServer((request, response) -> response.body("Hello, World!"))
+                .hostname(InetAddress.getLoopbackAddress().getHostAddress())
+                .unixSocket(socketPath);
+        this.server.start(0);
+        this.unixAddress = UnixDomainSocketAddress.of(socketPath);
+        this.tcpAddress = new InetSocketAddress(InetAddress.getLoopbackAddress(), this.server.config().port());
+        this.awaitStarted();
+
+        this.tcp = SocketChannel.open(this.tcpAddress);
+        this.tcp.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        this.unix = SocketChannel.open(this.unixAddress);
+        this.responseLength = this.measureResponse(this.unix);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        this.tcp.close();
+        this.unix.close();
+        this.server.stop();
+        Files.deleteIfExists(this.unixAddress.getPath());
+        Files.deleteIfExists(this.directory);
+    }
+
+    @Benchmark
+    public int tcpKeepAlive() throws IOException {
+        return this.exchange(this.tcp);
+    }
+
+    @Benchmark
+    public int unixKeepAlive() throws IOException {
+        return this.exchange(this.unix);
+    }
+
+    @Benchmark
+    public int tcpConnectPerRequest() throws IOException {
+        try (var channel = SocketChannel.open(this.tcpAddress)) {
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            return this.exchangeAndClose(channel);
+        }
+    }
+
+    @Benchmark
+    public int unixConnectPerRequest() throws IOException {
+        try (var channel = SocketChannel.open(this.unixAddress)) {
+            return this.exchangeAndClose(channel);
+        }
+    }
+
+    private int exchange(SocketChannel channel) throws IOException {
+        this.request.clear();
+        while (this.request.hasRemaining()) {
+            channel.write(this.request);
+        }
+
+        var total = 0;
+        while (total < this.responseLength) {
+            this.buffer.clear();
+            var read = channel.read(this.buffer);
+            if (read == -1) {
+                throw new IOException("Connection closed after " + total + " bytes");
+            }
+            total += read;
+        }
+
+        return total;
+    }
+
+    private int exchangeAndClose(SocketChannel channel) throws IOException {
+        this.closingRequest.clear();
+        while (this.closingRequest.hasRemaining()) {
+            channel.write(this.closingRequest);
+        }
+
+        var total = 0;
+        int read;
+        while ((read = channel.read(this.buffer.clear())) != -1) {
+            total += read;
+        }
+
+        return total;
+    }
+
+    /**
+     * The response has no variable parts, so its length is taken once and the kept-alive benchmarks read exactly
+     * that many bytes instead of parsing it.
+     */
+    private int measureResponse(SocketChannel channel) throws IOException {
+        this.request.clear();
+        while (this.request.hasRemaining()) {
+            channel.write(this.request);
+        }
+
+        var response = new StringBuilder();
+        while (true) {
+            this.buffer.clear();
+            if (channel.read(this.buffer) == -1) {
+                throw new IOException("Connection closed before the response was complete");
+            }
+            response.append(StandardCharsets.US_ASCII.decode(this.buffer.flip()));
+            var headerEnd = response.indexOf("\r\n\r\n");
+            var separator = 4;
+            if (headerEnd == -1) {
+                headerEnd = response.indexOf("\n\n");
+                separator = 2;
+            }
+            if (headerEnd == -1) {
+                continue;
+            }
+
+            var head = response.substring(0, headerEnd).toLowerCase();
+            var lengthStart = head.indexOf("content-length:");
+            if (lengthStart == -1) {
+                throw new IOException("Response has no Content-Length");
+            }
+            var lengthEnd = head.indexOf('\n', lengthStart);
+            var length = Integer.parseInt(head.substring(lengthStart + 15, lengthEnd == -1 ? head.length() : lengthEnd).trim());
+            var total = headerEnd + separator + length;
+            if (response.length() >= total) {
+                return total;
+            }
+        }
+    }
+
+    private void awaitStarted() throws IOException, InterruptedException {
+        var deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (System.nanoTime() < deadline) {
+            try {
+                SocketChannel.open(this.unixAddress).close();
+                SocketChannel.open(this.tcpAddress).close();
+                return;
+            } catch (IOException exception) {
+                Thread.sleep(10);
+            }
+        }
+
+        throw new IllegalStateException("Server did not start on " + this.unixAddress);
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2013-2023 Julian Jupiter.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.julianjupiter.kitty.http;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Virtual host lookups from the bytes of a Host header, with as many exact and as many wildcard hosts as
+ * {@code hosts}: an exact name, a subdomain of a wildcard and a name that matches nothing.
+ *
+ * @author Julian Jupiter
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VirtualHostsBenchmark {
+    @Param({"10", "1000"})
+    private int hosts;
+    private VirtualHosts virtualHosts;
+    private final byte[] exact = "Tenant-7.Example.com:8080".getBytes(StandardCharsets.US_ASCII);
+    private final byte[] wildcard = "api.tenant-7.example.org".getBytes(StandardCharsets.US_ASCII);
+    private final byte[] miss = "www.unknown.net".getBytes(StandardCharsets.US_ASCII);
+
+    @Setup
+    public void setup() {
+        var map = new LinkedHashMap<String, HttpHandler>();
+        for (var i = 0; i < this.hosts; i++) {
+            map.put("tenant-" + i + ".example.com", (request, response) -> response);
+            map.put("*.tenant-" + i + ".example.org", (request, response) -> response);
+        }
+        this.virtualHosts = VirtualHosts.of(map);
+    }
+
+    @Benchmark
+    public HttpHandler exact() {
+        return this.virtualHosts.find(this.exact, 0, this.exact.length);
+    }
+
+    @Benchmark
+    public HttpHandler wildcard() {
+        return this.virtualHosts.find(this.wildcard, 0, this.wildcard.length);
+    }
+
+    @Benchmark
+    public HttpHandler miss() {
+        return this.virtualHosts.find(this.miss, 0, this.miss.length);
+    }
+}
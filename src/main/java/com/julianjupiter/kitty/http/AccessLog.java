@@ -0,0 +1,249 @@
+/*
+ * Copyright 2013-2023 Julian Jupiter.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.julianjupiter.kitty.http;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Asynchronous access log. Request threads copy each exchange into a fixed-size binary record of an
+ * {@link AccessLogBuffer} and return; one writer thread formats whatever has accumulated into a direct buffer and
+ * writes it with a single {@link FileChannel} call, rolling the file over once it reaches its size limit.
+ *
+ * @author Julian Jupiter
+ */
+final class AccessLog implements AutoCloseable {
+    // record layout
+    static final int TIMESTAMP = 0;
+    static final int DURATION = 8;
+    static final int BYTES_IN = 16;
+    static final int BYTES_OUT = 24;
+    static final int STATUS = 32;
+    static final int VERSION = 34;
+    static final int ADDRESS_LENGTH = 35;
+    static final int ADDRESS = 36;
+    static final int TRACE_ID_HIGH = 52;
+    static final int TRACE_ID_LOW = 60;
+    static final int METHOD_LENGTH = 68;
+    static final int METHOD = METHOD_LENGTH + 1;
+    static final int MAX_METHOD = 16;
+    static final int TARGET_LENGTH = METHOD + MAX_METHOD;
+    static final int TARGET = TARGET_LENGTH + 2;
+    static final int MAX_TARGET = AccessLogBuffer.RECORD_SIZE - TARGET;
+
+    private static final System.Logger LOGGER = System.getLogger(AccessLog.class.getName());
+    private static final int BATCH_SIZE = 256 * 1024;
+    private static final long IDLE_PARK = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long FULL_PARK = TimeUnit.MICROSECONDS.toNanos(100);
+    private final Path path;
+    private final AccessLogFormat format;
+    private final AccessLogBuffer buffer;
+    private final AccessLogOverflow overflow;
+    private final long maxFileSize;
+    private final int maxFiles;
+    private final LongAdder dropped;
+    private final ByteBuffer batch;
+    private final Thread writer;
+    private volatile boolean running = true;
+    private FileChannel channel;
+    private long size;
+
+    AccessLog(KittyServerConfiguration configuration, LongAdder dropped) throws IOException {
+        this.path = configuration.accessLog().toAbsolutePath();
+        this.format = AccessLogFormat.compile(configuration.accessLogPattern());
+        this.buffer = new AccessLogBuffer(configuration.accessLogBufferSize());
+        this.overflow = configuration.accessLogOverflow();
+        this.maxFileSize = configuration.accessLogMaxFileSize();
+        this.maxFiles = configuration.accessLogMaxFiles();
+        this.dropped = dropped;
+        this.batch = ByteBuffer.allocateDirect(Math.max(BATCH_SIZE, this.format.maxLength() * 2));
+        this.open();
+        this.writer = Thread.ofPlatform()
+                .name(configuration.name() + "-access-log")
+                .daemon()
+                .start(this::drain);
+    }
+
+    /**
+     * Records one exchange. {@code request} is {@code null} when it was rejected before its request line was read.
+     */
+    void log(byte[] address, HttpRequest request, int status, long durationNanos, long bytesIn, long bytesOut) {
+        if (!this.running) {
+            return;
+        }
+
+        var position = this.claim();
+        if (position < 0) {
+            return;
+        }
+
+        var records = this.buffer.records();
+        var offset = this.buffer.offset(position);
+        records.putLong(offset + TIMESTAMP, System.currentTimeMillis())
+                .putLong(offset + DURATION, durationNanos)
+                .putLong(offset + BYTES_IN, bytesIn)
+                .putLong(offset + BYTES_OUT, bytesOut)
+                .putShort(offset + STATUS, (short) status);
+        var addressLength = address == null ? 0 : address.length;
+        records.put(offset + ADDRESS_LENGTH, (byte) addressLength);
+        if (addressLength > 0) {
+            records.put(offset + ADDRESS, address);
+        }
+
+        // an all-zero trace ID is invalid, so it stands for none
+        var trace = request instanceof DefaultHttpRequest defaultRequest ? defaultRequest.openedTrace() : null;
+        records.putLong(offset + TRACE_ID_HIGH, trace == null ? 0 : trace.traceIdHigh())
+                .putLong(offset + TRACE_ID_LOW, trace == null ? 0 : trace.traceIdLow());
+        if (request == null) {
+            records.put(offset + VERSION, (byte) -1)
+                    .put(offset + METHOD_LENGTH, (byte) 0)
+                    .putShort(offset + TARGET_LENGTH, (short) 0);
+        } else {
+            var requestLine = request.requestLine();
+            records.put(offset + VERSION, (byte) requestLine.version().ordinal())
+                    .put(offset + METHOD_LENGTH, (byte) ascii(requestLine.method().value(), records, offset + METHOD, MAX_METHOD))
+                    .putShort(offset + TARGET_LENGTH, (short) ascii(requestLine.target().toString(), records, offset + TARGET, MAX_TARGET));
+        }
+
+        this.buffer.publish(position);
+    }
+
+    private long claim() {
+        var position = this.buffer.claim();
+        while (position < 0) {
+            if (this.overflow == AccessLogOverflow.DROP || !this.running) {
+                this.dropped.increment();
+                return -1;
+            }
+
+            LockSupport.parkNanos(FULL_PARK);
+            position = this.buffer.claim();
+        }
+
+        return position;
+    }
+
+    // non-ASCII characters never reach a raw request target; anything else is replaced rather than encoded
+    private static int ascii(String value, ByteBuffer records, int index, int maxLength) {
+        var length = Math.min(value.length(), maxLength);
+        for (var i = 0; i < length; i++) {
+            var c = value.charAt(i);
+            records.put(index + i, c < 0x80 ? (byte) c : (byte) '?');
+        }
+
+        return length;
+    }
+
+    private void drain() {
+        var records = this.buffer.records();
+        while (true) {
+            var running = this.running;
+            int offset;
+            while ((offset = this.buffer.peek()) != -1) {
+                if (this.batch.remaining() < this.format.maxLength()) {
+                    this.flush();
+                }
+                this.format.format(records, offset, this.batch);
+                this.buffer.release();
+            }
+
+            this.flush();
+            if (!running) {
+                break;
+            }
+            LockSupport.parkNanos(IDLE_PARK);
+        }
+
+        try {
+            this.channel.close();
+        } catch (IOException exception) {
+            LOGGER.log(System.Logger.Level.WARNING, exception.getMessage());
+        }
+    }
+
+    private void flush() {
+        var batch = this.batch.flip();
+        try {
+            if (batch.hasRemaining()) {
+                if (this.size > 0 && this.size + batch.remaining() > this.maxFileSize) {
+                    this.rotate();
+                }
+
+                while (batch.hasRemaining()) {
+                    this.size += this.channel.write(batch);
+                }
+            }
+        } catch (IOException exception) {
+            LOGGER.log(System.Logger.Level.WARNING, "Access log write failed: " + exception.getMessage());
+        } finally {
+            batch.clear();
+        }
+    }
+
+    // access.log becomes access.log.1, access.log.1 becomes access.log.2 and so on; the oldest is deleted
+    private void rotate() throws IOException {
+        this.channel.close();
+        try {
+            Files.deleteIfExists(this.rotated(this.maxFiles));
+            for (var i = this.maxFiles - 1; i > 0; i--) {
+                var source = this.rotated(i);
+                if (Files.exists(source)) {
+                    Files.move(source, this.rotated(i + 1), StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+            Files.move(this.path, this.rotated(1), StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            // keeps appending to the current file if it could not be moved
+            this.open();
+        }
+    }
+
+    private Path rotated(int index) {
+        return this.path.resolveSibling(this.path.getFileName() + "." + index);
+    }
+
+    private void open() throws IOException {
+        var parent = this.path.getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+
+        this.channel = FileChannel.open(this.path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        this.size = this.channel.size();
+    }
+
+    /**
+     * Stops accepting records, writes what is buffered and closes the file.
+     */
+    @Override
+    public void close() {
+        this.running = false;
+        LockSupport.unpark(this.writer);
+        try {
+            this.writer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2013-2023 Julian Jupiter.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.julianjupiter.kitty.http;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded multi-producer, single-consumer ring of fixed-size binary records. Each slot carries a sequence number:
+ * a producer claims a slot by advancing the shared tail with CAS, fills it in place and publishes it by moving the
+ * sequence on; the consumer frees it by moving the sequence one lap ahead. No locks are taken and nothing is
+ * allocated once the ring exists.
+ *
+ * @author Julian Jupiter
+ */
+final class AccessLogBuffer {
+    static final int RECORD_SIZE = 272;
+    private static final VarHandle SEQUENCES = MethodHandles.arrayElementVarHandle(long[].class);
+    private final ByteBuffer records;
+    private final long[] sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    // only touched by the consumer
+    private long head;
+
+    AccessLogBuffer(int capacity) {
+        capacity = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.records = ByteBuffer.allocateDirect(capacity * RECORD_SIZE);
+        this.sequences = new long[capacity];
+        this.mask = capacity - 1;
+        for (var i = 0; i < capacity; i++) {
+            this.sequences[i] = i;
+        }
+    }
+
+    ByteBuffer records() {
+        return this.records;
+    }
+
+    /**
+     * Claims the next slot, or returns {@code -1} if the ring is full. The slot must be filled at
+     * {@link #offset(long)} and then {@link #publish(long) published}.
+     */
+    long claim() {
+        var position = this.tail.get();
+        while (true) {
+            var sequence = (long) SEQUENCES.getAcquire(this.sequences, (int) position & this.mask);
+            var difference = sequence - position;
+            if (difference == 0) {
+                if (this.tail.weakCompareAndSetVolatile(position, position + 1)) {
+                    return position;
+                }
+                position = this.tail.get();
+            } else if (difference < 0) {
+                return -1;
+            } else {
+                position = this.tail.get();
+            }
+        }
+    }
+
+    int offset(long position) {
+        return ((int) position & this.mask) * RECORD_SIZE;
+    }
+
+    void publish(long position) {
+        SEQUENCES.setRelease(this.sequences, (int) position & this.mask, position + 1);
+    }
+
+    /**
+     * Returns the offset of the oldest published record, or {@code -1} if there is none. Consumer only.
+     */
+    int peek() {
+        var head = this.head;
+        var sequence = (long) SEQUENCES.getAcquire(this.sequences, (int) head & this.mask);
+        return sequence == head + 1 ? this.offset(head) : -1;
+    }
+
+    /**
+     * Frees the record returned by {@link #peek()}. Consumer only.
+     */
+    void release() {
+        var head = this.head;
+        SEQUENCES.setRelease(this.sequences, (int) head & this.mask, head + this.sequences.length);
+        this.head = head + 1;
+    }
+}
@@ -0,0 +1,303 @@
+/*
+ * Copyright 2013-2023 Julian Jupiter.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.julianjupiter.kitty.http;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Access log line pattern, compiled once. Directives follow Apache's {@code LogFormat}:
+ * <pre>
+ * %h remote address      %t time received        %r request line
+ * %m method              %U path                 %q query string, with its ?
+ * %H protocol            %s status               %b response bytes, - for 0
+ * %B response bytes      %I request bytes        %D duration in microseconds
+ * %T duration in seconds %L trace ID, - if none  %% a literal %
+ * </pre>
+ * Only the writer thread formats, so the scratch state is not shared.
+ *
+ * @author Julian Jupiter
+ */
+final class AccessLogFormat {
+    private static final DateTimeFormatter TIME = DateTimeFormatter.ofPattern("'['dd/MMM/yyyy:HH:mm:ss Z']'", Locale.US)
+            .withZone(ZoneId.systemDefault());
+    private static final byte[] DASH = {'-'};
+    private static final byte[] HEX_DIGITS = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    private static final HttpVersion[] VERSIONS = HttpVersion.values();
+    private final Object[] tokens;
+    private final int maxLength;
+    private final byte[] digits = new byte[20];
+    private long second = Long.MIN_VALUE;
+    private byte[] time;
+
+    private AccessLogFormat(Object[] tokens, int maxLength) {
+        this.tokens = tokens;
+        this.maxLength = maxLength;
+    }
+
+    static AccessLogFormat compile(String pattern) {
+        var tokens = new ArrayList<>();
+        var literal = new StringBuilder();
+        var maxLength = 1;
+        for (var i = 0; i < pattern.length(); i++) {
+            var c = pattern.charAt(i);
+            if (c != '%') {
+                literal.append(c);
+                continue;
+            }
+
+            if (i + 1 == pattern.length()) {
+                throw new IllegalArgumentException("Access log pattern ends with %");
+            }
+
+            var directive = pattern.charAt(++i);
+            if (directive == '%') {
+                literal.append('%');
+                continue;
+            }
+
+            var field = Field.of(directive);
+            maxLength += addLiteral(tokens, literal) + field.maxLength;
+            tokens.add(field);
+        }
+        maxLength += addLiteral(tokens, literal);
+
+        return new AccessLogFormat(tokens.toArray(), maxLength);
+    }
+
+    private static int addLiteral(List<Object> tokens, StringBuilder literal) {
+        if (literal.isEmpty()) {
+            return 0;
+        }
+
+        var bytes = literal.toString().getBytes(StandardCharsets.UTF_8);
+        tokens.add(bytes);
+        literal.setLength(0);
+        return bytes.length;
+    }
+
+    /**
+     * Upper bound of one formatted line, including its line feed.
+     */
+    int maxLength() {
+        return this.maxLength;
+    }
+
+    void format(ByteBuffer records, int offset, ByteBuffer out) {
+        for (var token : this.tokens) {
+            if (token instanceof byte[] literal) {
+                out.put(literal);
+                continue;
+            }
+
+            switch ((Field) token) {
+                case REMOTE_HOST -> this.remoteHost(records, offset, out);
+                case TIME -> out.put(this.time(records.getLong(offset + AccessLog.TIMESTAMP)));
+                case REQUEST_LINE -> {
+                    if (records.get(offset + AccessLog.METHOD_LENGTH) == 0) {
+                        out.put(DASH);
+                    } else {
+                        method(records, offset, out);
+                        out.put((byte) ' ');
+                        target(records, offset, out, false);
+                        out.put((byte) ' ');
+                        protocol(records, offset, out);
+                    }
+                }
+                case METHOD -> method(records, offset, out);
+                case PATH -> target(records, offset, out, true);
+                case QUERY -> query(records, offset, out);
+                case PROTOCOL -> protocol(records, offset, out);
+                case STATUS -> this.number(records.getShort(offset + AccessLog.STATUS), out);
+                case BYTES_CLF -> {
+                    var bytes = records.getLong(offset + AccessLog.BYTES_OUT);
+                    if (bytes == 0) {
+                        out.put(DASH);
+                    } else {
+                        this.number(bytes, out);
+                    }
+                }
+                case BYTES -> this.number(records.getLong(offset + AccessLog.BYTES_OUT), out);
+                case BYTES_RECEIVED -> this.number(records.getLong(offset + AccessLog.BYTES_IN), out);
+                case MICROS -> this.number(records.getLong(offset + AccessLog.DURATION) / 1_000, out);
+                case SECONDS -> this.number(records.getLong(offset + AccessLog.DURATION) / 1_000_000_000, out);
+                case TRACE_ID -> traceId(records, offset, out);
+            }
+        }
+        out.put((byte) '\n');
+    }
+
+    private void remoteHost(ByteBuffer records, int offset, ByteBuffer out) {
+        var length = records.get(offset + AccessLog.ADDRESS_LENGTH);
+        if (length == 4) {
+            for (var i = 0; i < 4; i++) {
+                if (i > 0) {
+                    out.put((byte) '.');
+                }
+                this.number(records.get(offset + AccessLog.ADDRESS + i) & 0xff, out);
+            }
+        } else if (length == 16) {
+            var address = new byte[16];
+            records.get(offset + AccessLog.ADDRESS, address);
+            try {
+                out.put(InetAddress.getByAddress(address).getHostAddress().getBytes(StandardCharsets.US_ASCII));
+            } catch (UnknownHostException exception) {
+                out.put(DASH);
+            }
+        } else {
+            out.put(DASH);
+        }
+    }
+
+    // the formatted time only changes once a second
+    private byte[] time(long timestamp) {
+        var second = Math.floorDiv(timestamp, 1000);
+        if (second != this.second) {
+            this.time = TIME.format(Instant.ofEpochSecond(second)).getBytes(StandardCharsets.US_ASCII);
+            this.second = second;
+        }
+
+        return this.time;
+    }
+
+    private static void method(ByteBuffer records, int offset, ByteBuffer out) {
+        var length = records.get(offset + AccessLog.METHOD_LENGTH);
+        if (length == 0) {
+            out.put(DASH);
+        } else {
+            copy(records, offset + AccessLog.METHOD, length, out);
+        }
+    }
+
+    private static void target(ByteBuffer records, int offset, ByteBuffer out, boolean pathOnly) {
+        var length = records.getShort(offset + AccessLog.TARGET_LENGTH);
+        if (length == 0) {
+            out.put(DASH);
+            return;
+        }
+
+        if (pathOnly) {
+            for (var i = 0; i < length; i++) {
+                if (records.get(offset + AccessLog.TARGET + i) == '?') {
+                    length = (short) i;
+                    break;
+                }
+            }
+        }
+        copy(records, offset + AccessLog.TARGET, length, out);
+    }
+
+    private static void query(ByteBuffer records, int offset, ByteBuffer out) {
+        var length = records.getShort(offset + AccessLog.TARGET_LENGTH);
+        for (var i = 0; i < length; i++) {
+            if (records.get(offset + AccessLog.TARGET + i) == '?') {
+                copy(records, offset + AccessLog.TARGET + i, length - i, out);
+                return;
+            }
+        }
+    }
+
+    private static void copy(ByteBuffer records, int index, int length, ByteBuffer out) {
+        out.put(out.position(), records, index, length).position(out.position() + length);
+    }
+
+    private static void protocol(ByteBuffer records, int offset, ByteBuffer out) {
+        var version = records.get(offset + AccessLog.VERSION);
+        if (version < 0) {
+            out.put(DASH);
+        } else {
+            var value = VERSIONS[version].value;
+            for (var i = 0; i < value.length(); i++) {
+                out.put((byte) value.charAt(i));
+            }
+        }
+    }
+
+    private static void traceId(ByteBuffer records, int offset, ByteBuffer out) {
+        var high = records.getLong(offset + AccessLog.TRACE_ID_HIGH);
+        var low = records.getLong(offset + AccessLog.TRACE_ID_LOW);
+        if (high == 0 && low == 0) {
+            out.put(DASH);
+        } else {
+            hex(high, out);
+            hex(low, out);
+        }
+    }
+
+    private static void hex(long value, ByteBuffer out) {
+        for (var shift = 60; shift >= 0; shift -= 4) {
+            out.put(HEX_DIGITS[(int) (value >>> shift) & 0xf]);
+        }
+    }
+
+    private void number(long value, ByteBuffer out) {
+        if (value < 0) {
+            out.put((byte) '-');
+            value = -value;
+        }
+
+        var digits = this.digits;
+        var i = digits.length;
+        do {
+            digits[--i] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        out.put(digits, i, digits.length - i);
+    }
+
+    private enum Field {
+        REMOTE_HOST('h', 39),
+        TIME('t', 32),
+        REQUEST_LINE('r', AccessLog.MAX_METHOD + AccessLog.MAX_TARGET + 12),
+        METHOD('m', AccessLog.MAX_METHOD),
+        PATH('U', AccessLog.MAX_TARGET),
+        QUERY('q', AccessLog.MAX_TARGET),
+        PROTOCOL('H', 8),
+        STATUS('s', 6),
+        BYTES_CLF('b', 20),
+        BYTES('B', 20),
+        BYTES_RECEIVED('I', 20),
+        MICROS('D', 20),
+        SECONDS('T', 20),
+        TRACE_ID('L', 32);
+
+        private final char directive;
+        private final int maxLength;
+
+        Field(char directive, int maxLength) {
+            this.directive = directive;
+            this.maxLength = maxLength;
+        }
+
+        static Field of(char directive) {
+            for (var field : values()) {
+                if (field.directive == directive) {
+                    return field;
+                }
+            }
+
+            throw new IllegalArgumentException("Unknown access log directive %" + directive);
+        }
+    }
+}
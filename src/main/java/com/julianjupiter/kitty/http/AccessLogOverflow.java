@@ -0,0 +1,32 @@
+/*
+ * Copyright 2013-2023 Julian Jupiter.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.julianjupiter.kitty.http;
+
+/**
+ * What a request thread does when the access log buffer is full.
+ *
+ * @author Julian Jupiter
+ */
+public enum AccessLogOverflow {
+    /**
+     * Discard the record and count it in {@code kitty_http_access_log_dropped_total}.
+     */
+    DROP,
+    /**
+     * Wait until the writer has freed a slot.
+     */
+    BLOCK
+}
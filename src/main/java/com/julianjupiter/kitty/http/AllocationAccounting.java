@@ -0,0 +1,136 @@
+/*
+ * Copyright 2013-2023 Julian Jupiter.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.julianjupiter.kitty.http;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Bytes allocated by the exchange a connection is on, per phase, read from the executing thread's allocation counter
+ * before and after each phase. One instance lives as long as its connection. The JDK keeps no counter for virtual
+ * threads, so a phase run on one reads as unmeasured ({@code -1}) and is left out; run connections on platform
+ * threads (an executor service) to measure every phase, or a lane executor to measure the handler phase alone.
+ * <pre>
+ * parse     reading and parsing the request head
+ * handler   the handler, on whichever thread runs it
+ * serialize turning the response into text
+ * </pre>
+ *
+ * @author Julian Jupiter
+ */
+final class AllocationAccounting {
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    private long parse;
+    private long handler;
+    private long serialize;
+    private long mark;
+
+    /**
+     * Turns the JVM's allocation counters on, returning {@code false} if it has none.
+     */
+    static boolean enable() {
+        if (!THREADS.isThreadAllocatedMemorySupported()) {
+            return false;
+        }
+        if (!THREADS.isThreadAllocatedMemoryEnabled()) {
+            THREADS.setThreadAllocatedMemoryEnabled(true);
+        }
+
+        return true;
+    }
+
+    private static long allocated() {
+        return THREADS.getCurrentThreadAllocatedBytes();
+    }
+
+    void parseStarted() {
+        this.parse = -1;
+        this.handler = -1;
+        // proxied and streamed responses are not serialized by the server
+        this.serialize = 0;
+        this.mark = allocated();
+    }
+
+    void parsed() {
+        this.parse = since(this.mark);
+    }
+
+    /**
+     * Returns the mark {@link #handlerEnded(long)} measures from, kept by the caller as the handler may run on
+     * another thread.
+     */
+    long handlerStarted() {
+        return allocated();
+    }
+
+    void handlerEnded(long mark) {
+        this.handler = since(mark);
+    }
+
+    void serializeStarted() {
+        this.mark = allocated();
+    }
+
+    void serialized() {
+        this.serialize = since(this.mark);
+    }
+
+    private static long since(long mark) {
+        var now = allocated();
+        return mark < 0 || now < 0 ? -1 : now - mark;
+    }
+
+    /**
+     * Whether any phase of the exchange was measured, which none is when it ran on virtual threads only.
+     */
+    boolean isMeasured() {
+        return this.parse >= 0 || this.handler >= 0;
+    }
+
+    long parse() {
+        return this.parse;
+    }
+
+    long handler() {
+        return this.handler;
+    }
+
+    long serialize() {
+        return this.serialize;
+    }
+
+    /**
+     * Returns the debug header line, with its line feed; unmeasured phases are left out.
+     */
+    String header(String name) {
+        var header = new StringBuilder(96).append(name).append(": ");
+        var start = header.length();
+        phase(header, start, "parse", this.parse);
+        phase(header, start, "handler", this.handler);
+        phase(header, start, "serialize", this.serialize);
+        return header.append('\n').toString();
+    }
+
+    private static void phase(StringBuilder header, int start, String name, long bytes) {
+        if (bytes < 0) {
+            return;
+        }
+        if (header.length() > start) {
+            header.append(", ");
+        }
+        header.append(name).append('=').append(bytes);
+    }
+}
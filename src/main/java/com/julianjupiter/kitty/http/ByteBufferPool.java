@@ -0,0 +1,92 @@
+/*
+ * Copyright 2013-2023 Julian Jupiter.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.julianjupiter.kitty.http;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * @author Julian Jupiter
+ */
+final class ByteBufferPool {
+    private static final int MIN_SHIFT = 10;
+    private static final int MAX_SHIFT = 16;
+    private static final int SLOTS = 64;
+    // one run of SLOTS entries per size class
+    private final AtomicReferenceArray<ByteBuffer> slots = new AtomicReferenceArray<>((MAX_SHIFT - MIN_SHIFT + 1) * SLOTS);
+
+    ByteBuffer acquire(int capacity) {
+        var sizeClass = sizeClass(capacity);
+        if (sizeClass < 0) {
+            return ByteBuffer.allocate(capacity);
+        }
+
+        var base = sizeClass * SLOTS;
+        var start = ThreadLocalRandom.current().nextInt(SLOTS);
+        for (var i = 0; i < SLOTS; i++) {
+            var index = base + ((start + i) & (SLOTS - 1));
+            var buffer = this.slots.get(index);
+            if (buffer != null && this.slots.compareAndSet(index, buffer, null)) {
+                return buffer.clear();
+            }
+        }
+
+        return ByteBuffer.allocate(1 << (sizeClass + MIN_SHIFT));
+    }
+
+    ByteBuffer grow(ByteBuffer buffer, int capacity) {
+        if (buffer.capacity() >= capacity) {
+            return buffer;
+        }
+
+        var grown = this.acquire(Math.max(capacity, buffer.capacity() << 1));
+        grown.put(0, buffer, 0, buffer.position()).position(buffer.position());
+        this.release(buffer);
+        return grown;
+    }
+
+    void release(ByteBuffer buffer) {
+        if (buffer == null) {
+            return;
+        }
+
+        var capacity = buffer.capacity();
+        var sizeClass = sizeClass(capacity);
+        // only exact size classes are pooled, anything else is left to the GC
+        if (sizeClass < 0 || capacity != 1 << (sizeClass + MIN_SHIFT)) {
+            return;
+        }
+
+        var base = sizeClass * SLOTS;
+        var start = ThreadLocalRandom.current().nextInt(SLOTS);
+        for (var i = 0; i < SLOTS; i++) {
+            var index = base + ((start + i) & (SLOTS - 1));
+            if (this.slots.get(index) == null && this.slots.compareAndSet(index, null, buffer)) {
+                return;
+            }
+        }
+    }
+
+    private static int sizeClass(int capacity) {
+        if (capacity > 1 << MAX_SHIFT) {
+            return -1;
+        }
+
+        var shift = Math.max(MIN_SHIFT, 32 - Integer.numberOfLeadingZeros(Math.max(capacity, 1) - 1));
+        return shift - MIN_SHIFT;
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2013-2023 Julian Jupiter.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.julianjupiter.kitty.http;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Decodes a chunked request body, rejecting it with 413 as soon as the decoded size passes {@code maxSize}. Trailers
+ * are read under the header size limit and dropped. Closing it leaves the connection open.
+ *
+ * @author Julian Jupiter
+ */
+final class ChunkedInputStream extends InputStream {
+    private static final int MAX_CHUNK_SIZE_LINE = 1024;
+    private final InputStream input;
+    private final long maxSize;
+    private final int maxTrailerSize;
+    private final ByteArrayOutputStream line = new ByteArrayOutputStream(16);
+    private final byte[] single = new byte[1];
+    private long remaining;
+    private long total;
+    private boolean started;
+    private boolean done;
+
+    ChunkedInputStream(InputStream input, long maxSize, int maxTrailerSize) {
+        this.input = input;
+        this.maxSize = maxSize;
+        this.maxTrailerSize = maxTrailerSize;
+    }
+
+    @Override
+    public int read() throws IOException {
+        return this.read(this.single, 0, 1) == -1 ? -1 : this.single[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        if (this.remaining == 0 && !this.nextChunk()) {
+            return -1;
+        }
+
+        if (length == 0) {
+            return 0;
+        }
+
+        var read = this.input.read(buffer, offset, (int) Math.min(length, this.remaining));
+        if (read == -1) {
+            throw new EOFException("Connection closed inside the request body");
+        }
+
+        this.remaining -= read;
+        return read;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    private boolean nextChunk() throws IOException {
+        if (this.done) {
+            return false;
+        }
+
+        if (this.started) {
+            // CRLF closing the previous chunk
+            this.readLine(MAX_CHUNK_SIZE_LINE, HttpStatus.BAD_REQUEST);
+        }
+        this.started = true;
+
+        var sizeLine = this.readLine(MAX_CHUNK_SIZE_LINE, HttpStatus.BAD_REQUEST);
+        var extension = sizeLine.indexOf(';');
+        var digits = (extension < 0 ? sizeLine : sizeLine.substring(0, extension)).strip();
+        if (digits.isEmpty()) {
+            throw new RequestRejectedException(HttpStatus.BAD_REQUEST, "Invalid chunk size");
+        }
+
+        // ASCII hex digits only, no sign
+        var size = 0L;
+        for (var i = 0; i < digits.length(); i++) {
+            var c = digits.charAt(i);
+            var digit = c >= '0' && c <= '9' ? c - '0' : (c | 0x20) >= 'a' && (c | 0x20) <= 'f' ? (c | 0x20) - 'a' + 10 : -1;
+            if (digit < 0) {
+                throw new RequestRejectedException(HttpStatus.BAD_REQUEST, "Invalid chunk size");
+            }
+            if (size > (this.maxSize - this.total) >> 4) {
+                throw new RequestRejectedException(HttpStatus.CONTENT_TOO_LARGE, "Request body exceeds " + this.maxSize + " bytes");
+            }
+            size = size << 4 | digit;
+        }
+
+        if (size > this.maxSize - this.total) {
+            throw new RequestRejectedException(HttpStatus.CONTENT_TOO_LARGE, "Request body exceeds " + this.maxSize + " bytes");
+        }
+
+        if (size == 0) {
+            var trailerSize = 0;
+            String trailer;
+            while (!(trailer = this.readLine(this.maxTrailerSize - trailerSize, HttpStatus.REQUEST_HEADER_FIELDS_TOO_LARGE)).isBlank()) {
+                trailerSize += trailer.length();
+            }
+            this.done = true;
+            return false;
+        }
+
+        this.total += size;
+        this.remaining = size;
+        return true;
+    }
+
+    private String readLine(int limit, HttpStatus rejection) throws IOException {
+        var value = HttpRequestFactory.readLine(this.input, this.line, limit, rejection);
+        if (value == null) {
+            throw new EOFException("Connection closed inside the request body");
+        }
+
+        return value;
+    }
+}
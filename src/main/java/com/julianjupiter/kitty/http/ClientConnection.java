@@ -0,0 +1,60 @@
+/*
+ * Copyright 2013-2023 Julian Jupiter.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.julianjupiter.kitty.http;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.channels.SocketChannel;
+
+/**
+ * An accepted connection, over TCP or a Unix domain socket, as seen by the code serving it.
+ *
+ * @author Julian Jupiter
+ */
+interface ClientConnection extends Closeable {
+    static ClientConnection of(Socket socket) {
+        return new TcpClientConnection(socket);
+    }
+
+    static ClientConnection of(SocketChannel channel) {
+        return new UnixClientConnection(channel);
+    }
+
+    InputStream inputStream() throws IOException;
+
+    OutputStream outputStream() throws IOException;
+
+    void shutdownInput() throws IOException;
+
+    /**
+     * Returns the peer's IP address, or {@code null} for a Unix domain socket.
+     */
+    InetAddress remoteAddress();
+
+    /**
+     * Describes the peer for logs and events.
+     */
+    String remoteName();
+
+    /**
+     * Returns the local TCP port, or {@code 0} for a Unix domain socket.
+     */
+    int localPort();
+}
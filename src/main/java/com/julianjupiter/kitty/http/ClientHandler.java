@@ -1,38 +1,836 @@
 package com.julianjupiter.kitty.http;
 
-import java.io.BufferedReader;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.PrintWriter;
-import java.net.Socket;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
 
 /**
  * @author Julian Jupiter
  */
 class ClientHandler implements Runnable {
     private final System.Logger logger = System.getLogger(ClientHandler.class.getName());
-    private final Socket clientSocket;
-    private final HttpHandler handler;
+    private final ClientConnection clientSocket;
+    private static final KittyLane[] NO_LANES = new KittyLane[0];
+    private final ServerContext context;
+    private final ListenerContext listener;
+    private final HttpMetrics metrics;
+    private final ConnectionAcceptEvent acceptEvent;
+    private final TimingWheel.Timeout timeout;
+    private final MemoryBudget.Lease memory;
+    private final AccessLog accessLog;
+    private final byte[] remoteAddress;
+    private final RateLimiter rateLimiter;
+    private final Runnable addressLimit;
+    private final ConcurrencyLimiter concurrencyLimiter;
+    private final KittyLane[] lanes;
+    private final VirtualHosts virtualHosts;
+    private final Tracer tracer;
+    private final ServerTiming timing;
+    private final SlowRequestDetector slowRequestDetector;
+    private final TimingWheel.Timeout slowTimeout;
+    private final AllocationAccounting allocations;
+    private final PinningMonitor pinningMonitor;
+    private final String allocationHeader;
+    private volatile HttpRequest handling;
+    private volatile Thread handlingThread;
+    private volatile long handlingSince;
+    private final TimingWheel.Timeout deadlineTimeout;
+    private final ReentrantLock scopeLock = new ReentrantLock();
+    private volatile Phase phase;
+    private volatile Phase expired;
+    private DefaultHttpRequest request;
+    private long deadline;
+    private boolean bounded;
+    private volatile DefaultRequestScope scope;
+    private boolean watching;
+    private boolean admitted;
+    private long admittedAt;
 
-    ClientHandler(Socket clientSocket, HttpHandler handler) {
+    ClientHandler(ClientConnection clientSocket, ServerContext context, ListenerContext listener, ConnectionAcceptEvent acceptEvent) {
         this.clientSocket = clientSocket;
-        this.handler = handler;
+        this.context = context;
+        this.listener = listener;
+        this.metrics = context.metrics();
+        this.acceptEvent = acceptEvent;
+        this.timeout = context.timingWheel().newTimeout(this::expire);
+        this.deadlineTimeout = context.timingWheel().newTimeout(this::deadlinePassed);
+        // a reservation waits no longer than a body read may, so connections holding memory cannot stall each other for good
+        var memoryWait = context.configuration().bodyReadTimeout().isPositive()
+                ? context.configuration().bodyReadTimeout()
+                : ServerConfiguration.DEFAULT_BODY_READ_TIMEOUT;
+        this.memory = listener.memoryBudget().lease(memoryWait.toNanos());
+        this.accessLog = context.accessLog();
+        var address = clientSocket.remoteAddress();
+        this.remoteAddress = this.accessLog == null || address == null ? null : address.getAddress();
+        // admission control, lanes and virtual hosts belong to the main listener
+        this.rateLimiter = listener.primary() ? context.rateLimiter() : null;
+        this.concurrencyLimiter = listener.primary() ? context.concurrencyLimiter() : null;
+        this.lanes = listener.primary() ? context.lanes() : NO_LANES;
+        this.virtualHosts = listener.primary() ? context.virtualHosts() : null;
+        this.tracer = context.tracer();
+        this.timing = context.configuration().serverTiming() ? new ServerTiming(System.nanoTime()) : null;
+        this.slowRequestDetector = context.slowRequestDetector();
+        this.slowTimeout = this.slowRequestDetector == null ? null : context.timingWheel().newTimeout(this::slow);
+        this.allocations = context.unmeasuredAllocations() == null ? null : new AllocationAccounting();
+        this.allocationHeader = this.allocations == null ? null : context.configuration().allocationHeader();
+        this.pinningMonitor = context.pinningMonitor();
+        var configuration = context.configuration();
+        // keyed by address, a client is limited as soon as its request line is in
+        this.addressLimit = this.rateLimiter != null && address != null
+                && configuration.rateLimitHeader() == null && configuration.rateLimitCookie() == null
+                ? () -> this.limit(address)
+                : null;
     }
 
     @Override
     public void run() {
+        var configuration = this.context.configuration();
+        this.metrics.connectionOpened();
+        this.listener.opened();
+        if (this.timing != null) {
+            this.timing.connected(System.nanoTime());
+        }
+        this.acceptEvent.end();
+        if (this.acceptEvent.shouldCommit()) {
+            this.acceptEvent.remoteAddress = this.clientSocket.remoteName();
+            this.acceptEvent.localPort = this.clientSocket.localPort();
+            this.acceptEvent.commit();
+        }
+
         try (clientSocket;
-             var reader = new BufferedReader(new InputStreamReader(clientSocket.getInputStream()));
-             var writer = new PrintWriter(clientSocket.getOutputStream(), true)
+             var input = new CountingInputStream(new BufferedInputStream(clientSocket.inputStream(), configuration.bufferCapacity()));
+             var output = new BufferedOutputStream(clientSocket.outputStream(), configuration.bufferCapacity())
         ) {
-            var response = this.handler.handle(
-                    HttpRequestFactory.create(reader),
-                    new DefaultHttpResponse(HttpHeadersFactory.create())
-            );
-            writer.write(response.toString());
+            DefaultRequestScope.Owner owner = scope -> this.started(scope, input);
+            Supplier<DefaultRequestScope> scopes = () -> new DefaultRequestScope(this.listener.executorService(), owner, this.deadline, this.bounded);
+            var keepAlive = true;
+            while (keepAlive) {
+                if (input.count() > 0) {
+                    this.arm(Phase.KEEP_ALIVE_IDLE, configuration.keepAliveTimeout());
+                    if (!input.await()) {
+                        break;
+                    }
+                }
+
+                this.arm(Phase.HEADER_READ, configuration.headerReadTimeout());
+                var start = System.nanoTime();
+                if (this.timing != null) {
+                    this.timing.started(start);
+                }
+                var offset = input.count();
+                if (this.allocations != null) {
+                    this.allocations.parseStarted();
+                }
+                var parseEvent = new RequestParseEvent();
+                parseEvent.begin();
+                DefaultHttpRequest request;
+                try {
+                    request = this.readRequest(input);
+                } catch (RequestRejectedException exception) {
+                    this.timeout.cancel();
+                    this.reject(exception.status(), start, input.count() - offset, output);
+                    break;
+                } catch (IOException exception) {
+                    // a request cut short by the timeout does not parse
+                    if (this.expired == null) {
+                        throw exception;
+                    }
+                    request = null;
+                } catch (RuntimeException exception) {
+                    if (this.expired == null) {
+                        // the client still gets an answer for a head the parser could not make sense of
+                        this.timeout.cancel();
+                        this.reject(HttpStatus.BAD_REQUEST, start, input.count() - offset, output);
+                        break;
+                    }
+                    request = null;
+                }
+                this.timeout.cancel();
+                if (this.expired != null) {
+                    this.reject(HttpStatus.REQUEST_TIMEOUT, start, input.count() - offset, output);
+                    break;
+                }
+
+                if (request == null) {
+                    break;
+                }
+
+                parseEvent.end();
+                if (this.timing != null) {
+                    this.timing.parsed(System.nanoTime());
+                }
+                if (this.allocations != null) {
+                    this.allocations.parsed();
+                }
+                if (parseEvent.shouldCommit()) {
+                    parseEvent.method = request.requestLine().method().value();
+                    parseEvent.path = request.requestLine().target().getPath();
+                    parseEvent.bytesRead = input.count() - offset;
+                    parseEvent.commit();
+                }
+
+                this.request = request;
+                if (this.tracer != null) {
+                    this.tracer.start(request);
+                }
+                this.bound(request, start);
+                if (this.bounded && this.deadline - System.nanoTime() <= 0) {
+                    // nothing left of the client's budget, the handler is not worth calling
+                    this.reject(HttpStatus.SERVICE_UNAVAILABLE, start, input.count() - offset, output);
+                    break;
+                }
+                request.scopes(scopes);
+                if (this.concurrencyLimiter != null && !this.isAdminRequest(request)) {
+                    if (!this.concurrencyLimiter.tryAcquire()) {
+                        // shed at once rather than queue into timeouts
+                        this.reject(HttpStatus.SERVICE_UNAVAILABLE, start, input.count() - offset, output);
+                        break;
+                    }
+                    this.admitted = true;
+                    this.admittedAt = System.nanoTime();
+                }
+
+                try {
+                    HttpResponse response;
+                    try {
+                        try {
+                            response = this.isAdminRequest(request)
+                                    ? this.adminResponse(request)
+                                    : this.handle(request.virtualHost() != null ? request.virtualHost() : this.listener.handler(), request);
+                        } finally {
+                            this.close(request);
+                        }
+                        // whatever the handler left unread is skipped so the next request can be parsed
+                        if (!(response.body() instanceof ProxyHttpBody)) {
+                            request.skipBody();
+                        }
+                    } catch (RequestRejectedException exception) {
+                        this.timeout.cancel();
+                        this.reject(exception.status(), start, input.count() - offset, output);
+                        break;
+                    } catch (RuntimeException exception) {
+                        // including the CancellationException of a subtask cut short by the deadline
+                        if (this.expired == null && this.interruption(request) == null) {
+                            throw exception;
+                        }
+                        response = null;
+                    }
+                    if (this.expired != null) {
+                        this.timeout.cancel();
+                        this.reject(HttpStatus.REQUEST_TIMEOUT, start, input.count() - offset, output);
+                        break;
+                    }
+
+                    var interruption = this.interruption(request);
+                    if (interruption == DefaultRequestScope.Cancellation.DISCONNECTED) {
+                        this.logger.log(System.Logger.Level.DEBUG, "Client disconnected before the response");
+                        break;
+                    }
+                    if (interruption == DefaultRequestScope.Cancellation.DEADLINE) {
+                        this.released(true);
+                        this.reject(HttpStatus.GATEWAY_TIMEOUT, start, input.count() - offset, output);
+                        break;
+                    }
+
+                    if (this.tracer != null) {
+                        this.tracer.identify(request, response);
+                    }
+                    switch (response.body()) {
+                        case WebSocketHttpBody webSocketBody -> {
+                            keepAlive = false;
+                            this.released(true);
+                            this.upgrade(request, webSocketBody.listener(), start, input.count() - offset, input, output);
+                        }
+                        case ProxyHttpBody proxyBody -> {
+                            try {
+                                var exchange = proxyBody.proxy().forward(request, this.clientSocket.remoteAddress(), this.timed(output));
+                                keepAlive = exchange.clientReusable() && isPersistent(request);
+                                this.released(true);
+                                this.record(request, exchange.status(), start, input.count() - offset, exchange.written());
+                                this.memory.release();
+                            } catch (RequestRejectedException exception) {
+                                keepAlive = false;
+                                this.timeout.cancel();
+                                this.reject(exception.status(), start, input.count() - offset, output);
+                            }
+                        }
+                        case EventStreamHttpBody eventStreamBody -> {
+                            keepAlive = false;
+                            this.released(true);
+                            var head = this.write(request, response.statusLine().status(), EventStreamConnection.head(response), output);
+                            this.record(request, response.statusLine().status().value(), start, input.count() - offset, head);
+                            this.memory.release();
+                            new EventStreamConnection(this.clientSocket, request, input, output, this.context)
+                                    .run(eventStreamBody.onOpen());
+                        }
+                        default -> {
+                            keepAlive = isPersistent(request) && !hasToken(response.headers().stream()
+                                    .filter(header -> header.name().equalsIgnoreCase("Connection"))
+                                    .findFirst(), "close");
+                            if (!keepAlive) {
+                                response.header("Connection", "close");
+                            } else if (request.requestLine().version() == HttpVersion.HTTP_1_0) {
+                                response.header("Connection", "keep-alive");
+                            }
+                            var written = this.write(request, response, output);
+                            this.released(true);
+                            this.record(request, response.statusLine().status().value(), start, input.count() - offset, written);
+                            this.memory.release();
+                        }
+                    }
+                } catch (RequestRejectedException exception) {
+                    // the response could not be reserved, so none of it was written
+                    this.timeout.cancel();
+                    this.reject(exception.status(), start, input.count() - offset, output);
+                    break;
+                } finally {
+                    this.released(false);
+                    // spooled multipart parts live as long as the exchange
+                    if (request.readBody() instanceof MultipartHttpBody multipart) {
+                        multipart.delete();
+                    }
+                }
+            }
+        } catch (IOException exception) {
+            var expired = this.expired;
+            if (expired != null) {
+                this.logger.log(System.Logger.Level.DEBUG, "Connection timed out in phase " + expired);
+            } else {
+                this.logger.log(System.Logger.Level.ERROR, exception.getMessage());
+            }
+        } finally {
+            this.timeout.cancel();
+            this.memory.release();
+            this.metrics.connectionClosed();
+            this.listener.closed();
+        }
+    }
+
+    // the earlier of the configured deadline and the client's, counted from the first byte of the request
+    private void bound(HttpRequest request, long start) {
+        var configuration = this.context.configuration();
+        var timeout = configuration.requestDeadline().isPositive()
+                ? configuration.requestDeadline().toNanos()
+                : Long.MAX_VALUE;
+        var header = configuration.requestDeadlineHeader();
+        if (header != null) {
+            var value = request.header(header);
+            if (value.isPresent()) {
+                try {
+                    var millis = Math.max(0, Long.parseLong(value.get().value().strip()));
+                    timeout = Math.min(timeout, TimeUnit.MILLISECONDS.toNanos(millis));
+                } catch (NumberFormatException exception) {
+                    this.logger.log(System.Logger.Level.DEBUG, "Ignoring " + header + ": " + value.get().value());
+                }
+            }
+        }
+
+        this.bounded = timeout != Long.MAX_VALUE;
+        this.deadline = start + timeout;
+    }
+
+    // runs on the first fork, on whichever thread forked
+    private void started(DefaultRequestScope scope, CountingInputStream input) {
+        var watch = false;
+        this.scopeLock.lock();
+        try {
+            // the handler may already have returned
+            if (scope.isCancelled()) {
+                return;
+            }
+
+            this.scope = scope;
+            if (scope.isBounded()) {
+                this.deadlineTimeout.schedule(Math.max(0, scope.deadlineNanos() - System.nanoTime()));
+            }
+            // an unread body would be mistaken for the next request, so only an idle connection is watched
+            if (!this.watching && !this.request.isBodyPending()) {
+                this.watching = true;
+                watch = true;
+                input.share();
+            }
+        } finally {
+            this.scopeLock.unlock();
+        }
+
+        if (watch) {
+            Thread.ofVirtual().start(() -> this.watch(input));
+        }
+    }
+
+    // at most one per connection; it lives on across requests until the client sends or goes away
+    private void watch(CountingInputStream input) {
+        boolean open;
+        try {
+            open = input.await();
+        } catch (IOException exception) {
+            open = false;
+        }
+
+        DefaultRequestScope scope;
+        this.scopeLock.lock();
+        try {
+            this.watching = false;
+            scope = this.scope;
+        } finally {
+            this.scopeLock.unlock();
+        }
+
+        if (!open && scope != null) {
+            scope.cancel(DefaultRequestScope.Cancellation.DISCONNECTED);
+        }
+    }
+
+    // runs on the timing wheel, under the slot lock that close() waits for when it cancels this timeout
+    private void deadlinePassed() {
+        var scope = this.scope;
+        if (scope != null) {
+            scope.cancel(DefaultRequestScope.Cancellation.DEADLINE);
+        }
+    }
+
+    // the response is decided, so whatever the handler forked is of no use any more
+    private void close(DefaultHttpRequest request) {
+        var scope = request.openedScope();
+        if (scope == null) {
+            return;
+        }
+
+        scope.cancel(DefaultRequestScope.Cancellation.COMMITTED);
+        this.scopeLock.lock();
+        try {
+            this.deadlineTimeout.cancel();
+            this.scope = null;
+        } finally {
+            this.scopeLock.unlock();
+        }
+    }
+
+    private DefaultRequestScope.Cancellation interruption(DefaultHttpRequest request) {
+        var scope = request.openedScope();
+        var cancellation = scope == null ? null : scope.cancellation();
+        if (cancellation == DefaultRequestScope.Cancellation.DISCONNECTED) {
+            return cancellation;
+        }
+
+        return cancellation == DefaultRequestScope.Cancellation.DEADLINE
+                || this.bounded && this.deadline - System.nanoTime() <= 0
+                ? DefaultRequestScope.Cancellation.DEADLINE
+                : null;
+    }
+
+    // a WebSocket or event stream is only sampled up to the upgrade, it would otherwise hold its slot for hours
+    private void released(boolean sample) {
+        if (!this.admitted) {
+            return;
+        }
+
+        this.admitted = false;
+        if (sample) {
+            this.concurrencyLimiter.release(this.admittedAt, System.nanoTime());
+        } else {
+            this.concurrencyLimiter.release();
+        }
+    }
+
+    private void arm(Phase phase, Duration duration) {
+        this.timeout.cancel();
+        this.phase = phase;
+        if (duration.isPositive()) {
+            this.timeout.schedule(duration.toNanos());
+        }
+    }
+
+    // runs on the timing wheel, so it only shuts the socket down and leaves any answer to the connection thread
+    private void expire() {
+        var phase = this.phase;
+        this.expired = phase;
+        try {
+            if (phase == Phase.WRITE) {
+                this.clientSocket.close();
+            } else {
+                this.clientSocket.shutdownInput();
+            }
         } catch (IOException exception) {
-            this.logger.log(System.Logger.Level.ERROR, exception.getMessage());
+            this.logger.log(System.Logger.Level.DEBUG, exception.getMessage());
+        }
+    }
+
+    private DefaultHttpRequest readRequest(CountingInputStream input) throws IOException {
+        var limits = this.context.requestLimits();
+        var request = HttpRequestFactory.readHead(input, limits, this.addressLimit, this.virtualHosts);
+        if (request != null && this.rateLimiter != null && this.addressLimit == null) {
+            this.limit(this.rateLimitKey(request));
+        }
+        var body = request == null ? null : HttpRequestFactory.bodyStream(request, input, limits);
+        if (body != null) {
+            request.pendingBody(new RequestBody(request, body));
+        }
+
+        return request;
+    }
+
+    private void limit(Object key) {
+        if (key != null && !this.rateLimiter.tryAcquire(key)) {
+            throw RateLimiter.REJECTION;
+        }
+    }
+
+    // the configured header, else the cookie, else the address; clients without any of them are not limited
+    private Object rateLimitKey(HttpRequest request) {
+        var configuration = this.context.configuration();
+        var header = configuration.rateLimitHeader() == null
+                ? Optional.<HttpHeader>empty()
+                : request.header(configuration.rateLimitHeader());
+        if (header.isPresent()) {
+            return header.get().value();
+        }
+
+        var cookie = configuration.rateLimitCookie() == null
+                ? Optional.<HttpCookie>empty()
+                : request.cookie(configuration.rateLimitCookie());
+        return cookie.isPresent() ? cookie.get().value() : this.clientSocket.remoteAddress();
+    }
+
+    // the rest of the request is unread, so the connection cannot be reused
+    private void reject(HttpStatus status, long start, long bytesIn, OutputStream output) throws IOException {
+        var bytes = this.rejection(status);
+        this.arm(Phase.WRITE, this.context.configuration().writeTimeout());
+        output.write(bytes);
+        output.flush();
+        this.timeout.cancel();
+        var duration = System.nanoTime() - start;
+        this.metrics.record("", status.value(), duration, bytesIn, bytes.length);
+        if (this.accessLog != null) {
+            this.accessLog.log(this.remoteAddress, null, status.value(), duration, bytesIn, bytes.length);
+        }
+    }
+
+    // the rejections sent under load are serialized once
+    private byte[] rejection(HttpStatus status) {
+        if (status == HttpStatus.TOO_MANY_REQUESTS && this.rateLimiter != null) {
+            return this.rateLimiter.response();
+        }
+        if (status == HttpStatus.SERVICE_UNAVAILABLE && this.concurrencyLimiter != null) {
+            return this.concurrencyLimiter.response();
+        }
+
+        return new DefaultHttpResponse(HttpHeadersFactory.create())
+                .status(status)
+                .header("Connection", "close")
+                .toString()
+                .getBytes(StandardCharsets.UTF_8);
+    }
+
+    private void upgrade(HttpRequest request, WebSocketListener listener, long start, long bytesIn, CountingInputStream input, OutputStream output) throws IOException {
+        var rejection = WebSocketHandshake.check(request);
+        if (rejection.isPresent()) {
+            var response = new DefaultHttpResponse(HttpHeadersFactory.create())
+                    .status(rejection.get())
+                    .header("Connection", "close");
+            if (rejection.get() == HttpStatus.UPGRADE_REQUIRED) {
+                response.header("Sec-WebSocket-Version", WebSocketHandshake.VERSION);
+            }
+            var written = this.write(request, response, output);
+            this.record(request, rejection.get().value(), start, bytesIn, written);
+            return;
+        }
+
+        var handshake = WebSocketHandshake.negotiate(request, this.context.configuration().webSocketCompression());
+        var head = this.write(request, HttpStatus.SWITCHING_PROTOCOLS, handshake.response(), output);
+        this.record(request, HttpStatus.SWITCHING_PROTOCOLS.value(), start, bytesIn, head);
+        this.memory.release();
+        new WebSocketConnection(this.clientSocket, request, input, output, listener, handshake,
+                this.listener.executorService(), this.context).run();
+    }
+
+    // HTTP/1.1 connections persist unless closed, HTTP/1.0 ones only when the client asks for it
+    private static boolean isPersistent(HttpRequest request) {
+        var connection = request.header("Connection");
+        return request.requestLine().version() == HttpVersion.HTTP_1_0
+                ? hasToken(connection, "keep-alive") && !hasToken(connection, "close")
+                : !hasToken(connection, "close");
+    }
+
+    private static boolean hasToken(Optional<HttpHeader> connection, String token) {
+        return connection
+                .map(header -> header.values().stream()
+                        .flatMap(value -> Arrays.stream(value.split(",")))
+                        .anyMatch(value -> value.strip().equalsIgnoreCase(token)))
+                .orElse(false);
+    }
+
+    // arms the write timeout around every write of a response streamed by someone else
+    private OutputStream timed(OutputStream output) {
+        return new FilterOutputStream(output) {
+            @Override
+            public void write(byte[] bytes, int offset, int length) throws IOException {
+                ClientHandler.this.arm(Phase.WRITE, ClientHandler.this.context.configuration().writeTimeout());
+                try {
+                    this.out.write(bytes, offset, length);
+                } finally {
+                    ClientHandler.this.timeout.cancel();
+                }
+            }
+
+            @Override
+            public void flush() throws IOException {
+                ClientHandler.this.arm(Phase.WRITE, ClientHandler.this.context.configuration().writeTimeout());
+                try {
+                    this.out.flush();
+                } finally {
+                    ClientHandler.this.timeout.cancel();
+                }
+            }
+        };
+    }
+
+    // classified once the head is in, before the body is touched
+    private HttpResponse handle(HttpHandler handler, HttpRequest request) {
+        for (var lane : this.lanes) {
+            if (lane.matches(request)) {
+                return lane.handle(() -> this.invoke(handler, request));
+            }
+        }
+
+        return this.invoke(handler, request);
+    }
+
+    private HttpResponse invoke(HttpHandler handler, HttpRequest request) {
+        var handlerEvent = new RequestHandlerEvent();
+        handlerEvent.begin();
+        var initial = new DefaultHttpResponse(HttpHeadersFactory.create());
+        if (this.timing != null) {
+            initial.timing(this.timing);
+            this.timing.handlerStarted(System.nanoTime());
+        }
+        var allocationMark = this.allocations == null ? 0 : this.allocations.handlerStarted();
+        // a lane may run the handler on its own executor, so the thread is taken here
+        var thread = Thread.currentThread();
+        if (this.pinningMonitor != null) {
+            this.pinningMonitor.handling(thread, request.requestLine().target().getPath());
+        }
+        HttpResponse response;
+        try {
+            if (this.slowRequestDetector == null) {
+                response = handler.handle(request, initial);
+            } else {
+                this.handlingThread = thread;
+                this.handlingSince = System.nanoTime();
+                this.handling = request;
+                this.slowTimeout.schedule(this.slowRequestDetector.thresholdNanos());
+                try {
+                    response = handler.handle(request, initial);
+                } finally {
+                    this.slowTimeout.cancel();
+                    this.handling = null;
+                }
+            }
+        } finally {
+            if (this.pinningMonitor != null) {
+                this.pinningMonitor.handled(thread);
+            }
+        }
+        if (this.timing != null) {
+            this.timing.handlerEnded(System.nanoTime());
+        }
+        if (this.allocations != null) {
+            this.allocations.handlerEnded(allocationMark);
+        }
+        handlerEvent.end();
+        if (handlerEvent.shouldCommit()) {
+            handlerEvent.method = request.requestLine().method().value();
+            handlerEvent.path = request.requestLine().target().getPath();
+            handlerEvent.status = response.statusLine().status().value();
+            handlerEvent.commit();
+        }
+
+        return response;
+    }
+
+    private int write(HttpRequest request, HttpResponse response, OutputStream output) throws IOException {
+        var writeEvent = new ResponseWriteEvent();
+        writeEvent.begin();
+        if (this.allocations != null) {
+            this.allocations.serializeStarted();
+        }
+        var text = response.toString();
+        if (this.allocations != null) {
+            this.allocations.serialized();
+        }
+        if (this.timing != null || this.allocationHeader != null) {
+            // these headers can only be written once serialization is over, so they go in right after the status line
+            var statusLineEnd = text.indexOf('\n') + 1;
+            var timing = this.timing == null ? "" : this.timing.header(System.nanoTime());
+            var allocated = this.allocationHeader == null ? "" : this.allocations.header(this.allocationHeader);
+            text = text.substring(0, statusLineEnd) + timing + allocated + text.substring(statusLineEnd);
+        }
+        var bytes = text.getBytes(StandardCharsets.UTF_8);
+        this.memory.acquire(bytes.length);
+        this.arm(Phase.WRITE, this.context.configuration().writeTimeout());
+        output.write(bytes);
+        output.flush();
+        this.timeout.cancel();
+        this.commit(writeEvent, request, response.statusLine().status(), bytes.length);
+        return bytes.length;
+    }
+
+    private int write(HttpRequest request, HttpStatus status, byte[] head, OutputStream output) throws IOException {
+        var writeEvent = new ResponseWriteEvent();
+        writeEvent.begin();
+        this.arm(Phase.WRITE, this.context.configuration().writeTimeout());
+        output.write(head);
+        output.flush();
+        this.timeout.cancel();
+        this.commit(writeEvent, request, status, head.length);
+        return head.length;
+    }
+
+    private void commit(ResponseWriteEvent writeEvent, HttpRequest request, HttpStatus status, int bytesWritten) {
+        writeEvent.end();
+        if (writeEvent.shouldCommit()) {
+            writeEvent.method = request.requestLine().method().value();
+            writeEvent.path = request.requestLine().target().getPath();
+            writeEvent.status = status.value();
+            writeEvent.bytesWritten = bytesWritten;
+            writeEvent.commit();
+        }
+    }
+
+    private void record(HttpRequest request, int status, long start, long bytesIn, long bytesOut) {
+        var duration = System.nanoTime() - start;
+        var route = request.requestLine().target().getPath();
+        this.metrics.record(route == null ? "" : route, status, duration, bytesIn, bytesOut);
+        if (this.accessLog != null) {
+            this.accessLog.log(this.remoteAddress, request, status, duration, bytesIn, bytesOut);
+        }
+        if (this.tracer != null) {
+            this.tracer.end(request, status, duration);
+        }
+        if (this.allocations != null) {
+            if (!this.allocations.isMeasured()) {
+                this.context.unmeasuredAllocations().increment();
+            } else {
+                this.metrics.recordAllocation(route == null ? "" : route, status, this.allocations.parse(),
+                        this.allocations.handler(), this.allocations.serialize());
+            }
+        }
+    }
+
+    // answered before the handler and never limited
+    private boolean isAdminRequest(HttpRequest request) {
+        var path = request.requestLine().target().getPath();
+        return path != null && (path.equals(this.listener.metricsPath())
+                || this.slowRequestDetector != null && path.equals(this.listener.slowRequestsPath())
+                || this.pinningMonitor != null && path.equals(this.listener.pinningPath()));
+    }
+
+    private HttpResponse adminResponse(HttpRequest request) {
+        var path = request.requestLine().target().getPath();
+        if (this.pinningMonitor != null && path.equals(this.listener.pinningPath())) {
+            return new DefaultHttpResponse(HttpHeadersFactory.create())
+                    .body(this.pinningMonitor.report());
+        }
+        if (!path.equals(this.listener.metricsPath())) {
+            return new DefaultHttpResponse(HttpHeadersFactory.create())
+                    .body(this.slowRequestDetector.reports());
+        }
+
+        return new DefaultHttpResponse(HttpHeadersFactory.create())
+                .header("Content-Type", PrometheusWriter.CONTENT_TYPE)
+                .body(this.metrics.scrape());
+    }
+
+    // runs on the timing wheel under its slot lock, so the stack is taken on the next turn of the scheduler
+    private void slow() {
+        var request = this.handling;
+        if (request == null) {
+            return;
         }
+
+        var thread = this.handlingThread;
+        var since = this.handlingSince;
+        this.context.scheduler().execute(() -> {
+            if (this.handling == request) {
+                this.slowRequestDetector.detected(thread, request, since, () -> this.handling == request);
+            }
+        });
     }
 
+    // read on the connection thread, inside the handler, so it shares the connection's timeout
+    private final class RequestBody implements PendingBody {
+        private final DefaultHttpRequest request;
+        private final InputStream body;
+
+        private RequestBody(DefaultHttpRequest request, InputStream body) {
+            this.request = request;
+            this.body = body;
+        }
+
+        @Override
+        public HttpBody read() {
+            var limits = ClientHandler.this.context.requestLimits();
+            ClientHandler.this.arm(Phase.BODY_READ, ClientHandler.this.context.configuration().bodyReadTimeout());
+            try {
+                HttpRequestFactory.readBody(this.request, this.body, limits, ClientHandler.this.memory);
+                return this.request.readBody();
+            } catch (IOException exception) {
+                throw new UncheckedIOException(exception);
+            } finally {
+                ClientHandler.this.timeout.cancel();
+            }
+        }
+
+        @Override
+        public InputStream stream() {
+            ClientHandler.this.arm(Phase.BODY_READ, ClientHandler.this.context.configuration().bodyReadTimeout());
+            return new FilterInputStream(this.body) {
+                @Override
+                public int read() throws IOException {
+                    return this.ended(super.read());
+                }
+
+                @Override
+                public int read(byte[] buffer, int offset, int length) throws IOException {
+                    return this.ended(super.read(buffer, offset, length));
+                }
+
+                private int ended(int read) {
+                    if (read == -1) {
+                        ClientHandler.this.timeout.cancel();
+                    }
+
+                    return read;
+                }
+            };
+        }
+
+        @Override
+        public void skip() {
+            ClientHandler.this.arm(Phase.BODY_READ, ClientHandler.this.context.configuration().bodyReadTimeout());
+            try {
+                this.body.transferTo(OutputStream.nullOutputStream());
+            } catch (IOException exception) {
+                throw new UncheckedIOException(exception);
+            } finally {
+                ClientHandler.this.timeout.cancel();
+            }
+        }
+    }
+
+    private enum Phase {
+        HEADER_READ, BODY_READ, KEEP_ALIVE_IDLE, WRITE
+    }
 }
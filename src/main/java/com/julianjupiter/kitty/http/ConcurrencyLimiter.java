@@ -0,0 +1,175 @@
+/*
+ * Copyright 2013-2023 Julian Jupiter.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.julianjupiter.kitty.http;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Concurrency limit that follows the latency of the requests it admits, after the gradient algorithm: a long-term
+ * average RTT stands for the latency without queueing, and once per window the limit is scaled by how far the
+ * window's average RTT has drifted from it, then given {@code sqrt(limit)} of headroom so it can probe upwards.
+ * <p>
+ * A window closes after {@value #WINDOW_SAMPLES} samples and at least {@value #WINDOW_MILLIS} ms. The limit is not
+ * raised in a window that never used half of it, so a quiet period does not leave it far above what was ever tested.
+ *
+ * @author Julian Jupiter
+ */
+final class ConcurrencyLimiter {
+    static final int WINDOW_SAMPLES = 20;
+    static final long WINDOW_MILLIS = 100;
+    private static final long WINDOW_NANOS = TimeUnit.MILLISECONDS.toNanos(WINDOW_MILLIS);
+    // RTT growth tolerated before the limit comes down
+    private static final double TOLERANCE = 1.5;
+    // windows in the long-term average
+    private static final double LONG_WINDOWS = 300;
+    private static final double SMOOTHING = 0.2;
+    private final int minLimit;
+    private final int maxLimit;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder shed;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final byte[] response;
+    private volatile int limit;
+    private volatile double shortRtt;
+    private volatile double longRtt;
+    private double estimate;
+    private long windowStart;
+    private long windowSum;
+    private int windowCount;
+    private int windowMaxInFlight;
+
+    ConcurrencyLimiter(int minLimit, int maxLimit, int initialLimit, LongAdder shed) {
+        if (minLimit > maxLimit) {
+            throw new IllegalArgumentException("Concurrency limit min must not be greater than max");
+        }
+
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.estimate = Math.clamp(initialLimit, minLimit, maxLimit);
+        this.limit = (int) this.estimate;
+        this.shed = shed;
+        this.response = new DefaultHttpResponse(HttpHeadersFactory.create())
+                .status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header("Connection", "close")
+                .toString()
+                .getBytes(StandardCharsets.UTF_8);
+    }
+
+    static ConcurrencyLimiter of(ServerConfiguration configuration, LongAdder shed) {
+        return new ConcurrencyLimiter(configuration.concurrencyLimitMin(), configuration.concurrencyLimitMax(),
+                configuration.concurrencyLimitInitial(), shed);
+    }
+
+    /**
+     * Admits a request unless as many as the limit are in flight; never waits.
+     */
+    boolean tryAcquire() {
+        while (true) {
+            var current = this.inFlight.get();
+            if (current >= this.limit) {
+                this.shed.increment();
+                return false;
+            }
+
+            if (this.inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Ends an admitted request that took from {@code start} to {@code end}, both {@link System#nanoTime()} values.
+     */
+    void release(long start, long end) {
+        var inFlight = this.inFlight.getAndDecrement();
+        this.lock.lock();
+        try {
+            if (this.windowCount == 0) {
+                this.windowStart = end;
+            }
+            this.windowSum += end - start;
+            this.windowCount++;
+            this.windowMaxInFlight = Math.max(this.windowMaxInFlight, inFlight);
+            if (this.windowCount >= WINDOW_SAMPLES && end - this.windowStart >= WINDOW_NANOS) {
+                this.update((double) this.windowSum / this.windowCount);
+                this.windowStart = end;
+                this.windowSum = 0;
+                this.windowCount = 0;
+                this.windowMaxInFlight = 0;
+            }
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Ends an admitted request whose latency says nothing about load, such as one that failed.
+     */
+    void release() {
+        this.inFlight.decrementAndGet();
+    }
+
+    private void update(double rtt) {
+        var longRtt = this.longRtt == 0 ? rtt : this.longRtt + (rtt - this.longRtt) / LONG_WINDOWS;
+        // load has dropped well below what the average remembers, so let the average catch up faster
+        if (longRtt / rtt > 2) {
+            longRtt *= 0.95;
+        }
+        this.longRtt = longRtt;
+        this.shortRtt = rtt;
+        var gradient = Math.clamp(TOLERANCE * longRtt / rtt, 0.5, 1.0);
+        var target = this.estimate * gradient + Math.sqrt(this.estimate);
+        if (target > this.estimate && this.windowMaxInFlight < this.estimate / 2) {
+            return;
+        }
+
+        this.estimate = Math.clamp(this.estimate * (1 - SMOOTHING) + target * SMOOTHING, this.minLimit, this.maxLimit);
+        this.limit = (int) this.estimate;
+    }
+
+    /**
+     * The preallocated {@code 503 Service Unavailable} response for shed requests.
+     */
+    byte[] response() {
+        return this.response;
+    }
+
+    int limit() {
+        return this.limit;
+    }
+
+    int inFlight() {
+        return this.inFlight.get();
+    }
+
+    /**
+     * Average RTT of the last window, in nanoseconds.
+     */
+    double shortRtt() {
+        return this.shortRtt;
+    }
+
+    /**
+     * Long-term average RTT, in nanoseconds.
+     */
+    double longRtt() {
+        return this.longRtt;
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2013-2023 Julian Jupiter.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.julianjupiter.kitty.http;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * @author Julian Jupiter
+ */
+@Name("kitty.http.ConnectionAccept")
+@Label("Connection Accept")
+@Description("Time from accepting a connection until a thread starts serving it")
+@Category({"Kitty HTTP", "Connection"})
+@StackTrace(false)
+@Threshold("5 ms")
+final class ConnectionAcceptEvent extends Event {
+    @Label("Remote Address")
+    String remoteAddress;
+
+    @Label("Local Port")
+    int localPort;
+}
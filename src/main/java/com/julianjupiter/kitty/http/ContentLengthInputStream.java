@@ -0,0 +1,78 @@
+/*
+ * Copyright 2013-2023 Julian Jupiter.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.julianjupiter.kitty.http;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Request body of exactly {@code length} bytes. Closing it leaves the connection open.
+ *
+ * @author Julian Jupiter
+ */
+final class ContentLengthInputStream extends InputStream {
+    private final InputStream input;
+    private long remaining;
+
+    ContentLengthInputStream(InputStream input, long length) {
+        this.input = input;
+        this.remaining = length;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (this.remaining == 0) {
+            return -1;
+        }
+
+        var b = this.input.read();
+        if (b == -1) {
+            throw new EOFException("Connection closed inside the request body");
+        }
+
+        this.remaining--;
+        return b;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        if (this.remaining == 0) {
+            return -1;
+        }
+
+        if (length == 0) {
+            return 0;
+        }
+
+        var read = this.input.read(buffer, offset, (int) Math.min(length, this.remaining));
+        if (read == -1) {
+            throw new EOFException("Connection closed inside the request body");
+        }
+
+        this.remaining -= read;
+        return read;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return (int) Math.min(this.input.available(), this.remaining);
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2013-2023 Julian Jupiter.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.julianjupiter.kitty.http;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * @author Julian Jupiter
+ */
+final class CountingInputStream extends FilterInputStream {
+    private final ReentrantLock lock = new ReentrantLock();
+    private long count;
+    private volatile boolean shared;
+
+    CountingInputStream(InputStream input) {
+        super(input);
+    }
+
+    long count() {
+        return this.count;
+    }
+
+    /**
+     * Blocks until a byte is available without consuming it; {@code false} at end of stream. The wrapped stream must
+     * support mark.
+     */
+    boolean await() throws IOException {
+        if (this.shared) {
+            this.lock.lock();
+            try {
+                return this.peek();
+            } finally {
+                this.lock.unlock();
+            }
+        }
+
+        return this.peek();
+    }
+
+    /**
+     * From now on every read takes a lock, so a second thread can {@link #await()} while the connection thread is
+     * busy elsewhere and the connection thread's next read waits for it instead of racing its mark and reset.
+     */
+    void share() {
+        this.shared = true;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (this.shared) {
+            this.lock.lock();
+            try {
+                return this.counted(super.read());
+            } finally {
+                this.lock.unlock();
+            }
+        }
+
+        return this.counted(super.read());
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        if (this.shared) {
+            this.lock.lock();
+            try {
+                return this.counted(buffer, offset, length);
+            } finally {
+                this.lock.unlock();
+            }
+        }
+
+        return this.counted(buffer, offset, length);
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        if (this.shared) {
+            this.lock.lock();
+            try {
+                return this.counted(n);
+            } finally {
+                this.lock.unlock();
+            }
+        }
+
+        return this.counted(n);
+    }
+
+    private boolean peek() throws IOException {
+        this.in.mark(1);
+        var b = this.in.read();
+        this.in.reset();
+        return b != -1;
+    }
+
+    private int counted(int b) {
+        if (b != -1) {
+            this.count++;
+        }
+
+        return b;
+    }
+
+    private int counted(byte[] buffer, int offset, int length) throws IOException {
+        var read = super.read(buffer, offset, length);
+        if (read > 0) {
+            this.count += read;
+        }
+
+        return read;
+    }
+
+    private long counted(long n) throws IOException {
+        var skipped = super.skip(n);
+        this.count += skipped;
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+}
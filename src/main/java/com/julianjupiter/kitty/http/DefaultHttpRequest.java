@@ -15,8 +15,10 @@
  */
 package com.julianjupiter.kitty.http;
 
+import java.io.InputStream;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Supplier;
 
 /**
  * @author Julian Jupiter
@@ -24,6 +26,14 @@ import java.util.Optional;
 class DefaultHttpRequest extends DefaultHttpMessage<HttpRequest> implements HttpRequest {
     private final HttpRequestLine requestLine;
     private final List<HttpCookie> cookies;
+    private UrlEncodedParameters queryParameters;
+    private UrlEncodedParameters formParameters;
+    private PendingBody pendingBody;
+    private Supplier<DefaultRequestScope> scopes;
+    private DefaultRequestScope scope;
+    private HttpHandler virtualHost;
+    private DefaultTraceContext trace;
+    private String head;
 
     DefaultHttpRequest(HttpRequestLine requestLine, List<HttpHeader> headers, List<HttpCookie> cookies, HttpBody body) {
         super(headers, body);
@@ -41,6 +51,11 @@ class DefaultHttpRequest extends DefaultHttpMessage<HttpRequest> implements Http
         return super.headers.get();
     }
 
+    @Override
+    public Optional<HttpHeader> header(String name) {
+        return super.headers.get(name);
+    }
+
     @Override
     public List<HttpCookie> cookies() {
         return this.cookies;
@@ -53,11 +68,173 @@ class DefaultHttpRequest extends DefaultHttpMessage<HttpRequest> implements Http
                 .findFirst();
     }
 
+    @Override
+    public HttpParameters queryParameters() {
+        if (this.queryParameters == null) {
+            this.queryParameters = UrlEncodedParameters.of(this.requestLine.target().getRawQuery());
+        }
+
+        return this.queryParameters;
+    }
+
+    @Override
+    public Optional<String> queryParameter(String name) {
+        return this.queryParameters().get(name);
+    }
+
+    @Override
+    public HttpParameters formParameters() {
+        if (this.formParameters == null) {
+            this.formParameters = this.isForm() && this.body() instanceof DefaultHttpBody(var value)
+                    ? UrlEncodedParameters.of(value)
+                    : UrlEncodedParameters.EMPTY;
+        }
+
+        return this.formParameters;
+    }
+
+    @Override
+    public Optional<String> formParameter(String name) {
+        return this.formParameters().get(name);
+    }
+
+    @Override
+    public List<Part> parts() {
+        return this.body() instanceof MultipartHttpBody multipart
+                ? List.copyOf(multipart.parts())
+                : List.of();
+    }
+
+    @Override
+    public Optional<Part> part(String name) {
+        return this.body() instanceof MultipartHttpBody multipart
+                ? multipart.parts().stream().filter(part -> part.name().equals(name)).map(Part.class::cast).findFirst()
+                : Optional.empty();
+    }
+
+    /**
+     * Without tracing on the server, the context is read from the request's headers when first asked for and never
+     * sampled.
+     */
+    @Override
+    public synchronized TraceContext trace() {
+        if (this.trace == null) {
+            this.trace = DefaultTraceContext.of(this, 0);
+        }
+
+        return this.trace;
+    }
+
+    @Override
+    public synchronized RequestScope scope() {
+        if (this.scope == null) {
+            this.scope = this.scopes == null
+                    ? new DefaultRequestScope(Thread.ofVirtual()::start, null, 0, false)
+                    : this.scopes.get();
+        }
+
+        return this.scope;
+    }
+
     @Override
     public HttpBody body() {
+        var pendingBody = this.pendingBody;
+        if (pendingBody != null) {
+            this.pendingBody = null;
+            super.body = pendingBody.read();
+        }
+
+        return super.body;
+    }
+
+    void pendingBody(PendingBody pendingBody) {
+        this.pendingBody = pendingBody;
+    }
+
+    /**
+     * Hands the unread body over as a stream, or returns {@code null} if it has been read already or there is none.
+     */
+    InputStream bodyStream() {
+        var pendingBody = this.pendingBody;
+        if (pendingBody == null) {
+            return null;
+        }
+
+        this.pendingBody = null;
+        return pendingBody.stream();
+    }
+
+    void skipBody() {
+        var pendingBody = this.pendingBody;
+        if (pendingBody != null) {
+            this.pendingBody = null;
+            pendingBody.skip();
+        }
+    }
+
+    boolean isBodyPending() {
+        return this.pendingBody != null;
+    }
+
+    synchronized void trace(DefaultTraceContext trace) {
+        this.trace = trace;
+    }
+
+    /**
+     * Returns the trace context if the server or a handler created one, without creating it.
+     */
+    synchronized DefaultTraceContext openedTrace() {
+        return this.trace;
+    }
+
+    void head(String head) {
+        this.head = head;
+    }
+
+    /**
+     * Returns the head as it was received, a line each for the request line and every header, or {@code null} if
+     * the request was not read from a connection.
+     */
+    String head() {
+        return this.head;
+    }
+
+    void virtualHost(HttpHandler virtualHost) {
+        this.virtualHost = virtualHost;
+    }
+
+    /**
+     * Returns the handler of the virtual host the request is for, {@code null} if it is for none.
+     */
+    HttpHandler virtualHost() {
+        return this.virtualHost;
+    }
+
+    void scopes(Supplier<DefaultRequestScope> scopes) {
+        this.scopes = scopes;
+    }
+
+    /**
+     * Returns the scope if a handler asked for one, without creating it.
+     */
+    synchronized DefaultRequestScope openedScope() {
+        return this.scope;
+    }
+
+    /**
+     * Returns the body as far as it has been read, without reading it.
+     */
+    HttpBody readBody() {
         return super.body;
     }
 
+    private boolean isForm() {
+        return super.headers.get("Content-Type")
+                .map(HttpHeader::value)
+                .filter(contentType -> contentType.regionMatches(true, 0, "application/x-www-form-urlencoded", 0, 33))
+                .isPresent();
+    }
+
     @Override
     public String toString() {
         if (this.body instanceof DefaultHttpBody) {
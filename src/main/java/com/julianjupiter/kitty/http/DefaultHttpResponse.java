@@ -16,8 +16,11 @@
 package com.julianjupiter.kitty.http;
 
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.List;
+import java.util.Objects;
 import java.util.Set;
+import java.util.function.Consumer;
 
 /**
  * @author Julian Jupiter
@@ -29,6 +32,7 @@ class DefaultHttpResponse extends DefaultHttpMessage<HttpResponse> implements Ht
     private HttpStatusLine statusLine = new HttpStatusLine(DEFAULT_HTTP_VERSION, DEFAULT_HTTP_STATUS);
     private final HttpSetCookies cookies = HttpSetCookies.create();
     private boolean next;
+    private ServerTiming timing;
 
     public DefaultHttpResponse(List<HttpHeader> headers) {
         super(headers);
@@ -108,6 +112,45 @@ class DefaultHttpResponse extends DefaultHttpMessage<HttpResponse> implements Ht
         return this;
     }
 
+    @Override
+    public HttpResponse webSocket(WebSocketListener listener) {
+        super.body(new WebSocketHttpBody(Objects.requireNonNull(listener)));
+        return this;
+    }
+
+    @Override
+    public HttpResponse eventStream(Consumer<EventSink> onOpen) {
+        super.body(new EventStreamHttpBody(Objects.requireNonNull(onOpen)));
+        return this;
+    }
+
+    @Override
+    public HttpResponse serverTiming(String name, Duration duration) {
+        if (this.timing != null) {
+            this.timing.add(token(name), duration.toNanos());
+        }
+
+        return this;
+    }
+
+    private static String token(String name) {
+        for (var i = 0; i < name.length(); i++) {
+            var c = name.charAt(i);
+            if (c <= ' ' || c >= 0x7f || c == ',' || c == ';' || c == '=' || c == '"') {
+                throw new IllegalArgumentException("Invalid Server-Timing metric name: " + name);
+            }
+        }
+        if (name.isEmpty()) {
+            throw new IllegalArgumentException("Server-Timing metric name is empty");
+        }
+
+        return name;
+    }
+
+    void timing(ServerTiming timing) {
+        this.timing = timing;
+    }
+
     @Override
     public void next() {
         this.next = true;
@@ -143,6 +186,7 @@ class DefaultHttpResponse extends DefaultHttpMessage<HttpResponse> implements Ht
                 yield """
                         %s
                         %s
+
                         """.formatted(this.statusLine, this.headers);
             }
             default -> throw new IllegalArgumentException("Invalid HTTP body");
@@ -0,0 +1,199 @@
+/*
+ * Copyright 2013-2023 Julian Jupiter.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.julianjupiter.kitty.http;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Created the first time a handler asks for it, and only starts watching the deadline and the connection when the
+ * first subtask is forked, so requests that never fork pay for neither.
+ *
+ * @author Julian Jupiter
+ */
+final class DefaultRequestScope implements RequestScope {
+    private final Executor executor;
+    private final Owner owner;
+    private final long deadline;
+    private final boolean bounded;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = this.lock.newCondition();
+    private final List<Subtask<?>> running = new ArrayList<>();
+    private boolean started;
+    private volatile Cancellation cancellation;
+
+    /**
+     * @param deadline a {@link System#nanoTime()} value, ignored unless {@code bounded}
+     */
+    DefaultRequestScope(Executor executor, Owner owner, long deadline, boolean bounded) {
+        this.executor = executor;
+        this.owner = owner;
+        this.deadline = deadline;
+        this.bounded = bounded;
+    }
+
+    @Override
+    public Optional<Instant> deadline() {
+        return this.bounded
+                ? Optional.of(Instant.now().plusNanos(this.deadline - System.nanoTime()))
+                : Optional.empty();
+    }
+
+    @Override
+    public Optional<Duration> remaining() {
+        return this.bounded
+                ? Optional.of(Duration.ofNanos(Math.max(0, this.deadline - System.nanoTime())))
+                : Optional.empty();
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return this.cancellation != null;
+    }
+
+    Cancellation cancellation() {
+        return this.cancellation;
+    }
+
+    long deadlineNanos() {
+        return this.deadline;
+    }
+
+    boolean isBounded() {
+        return this.bounded;
+    }
+
+    @Override
+    public <T> Future<T> fork(Callable<? extends T> task) {
+        var subtask = new Subtask<T>(task);
+        boolean first;
+        this.lock.lock();
+        try {
+            if (this.cancellation != null) {
+                subtask.cancel(false);
+                return subtask;
+            }
+
+            this.running.add(subtask);
+            first = !this.started;
+            this.started = true;
+        } finally {
+            this.lock.unlock();
+        }
+
+        // outside the lock: the owner may cancel this scope right away
+        if (first && this.owner != null) {
+            this.owner.started(this);
+        }
+        this.executor.execute(subtask);
+        return subtask;
+    }
+
+    @Override
+    public void join() throws InterruptedException {
+        var expired = false;
+        this.lock.lock();
+        try {
+            while (!this.running.isEmpty() && this.cancellation == null) {
+                if (!this.bounded) {
+                    this.changed.await();
+                    continue;
+                }
+
+                var remaining = this.deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    expired = true;
+                    break;
+                }
+                this.changed.awaitNanos(remaining);
+            }
+        } finally {
+            this.lock.unlock();
+        }
+
+        // the timer may be a tick late, the caller is not
+        if (expired) {
+            this.cancel(Cancellation.DEADLINE);
+        }
+        var cancellation = this.cancellation;
+        if (cancellation != null) {
+            throw new CancellationException("Request scope cancelled: " + cancellation.name().toLowerCase());
+        }
+    }
+
+    /**
+     * Interrupts the running subtasks; only the first cancellation counts.
+     */
+    void cancel(Cancellation cancellation) {
+        List<Subtask<?>> running;
+        this.lock.lock();
+        try {
+            if (this.cancellation != null) {
+                return;
+            }
+
+            this.cancellation = cancellation;
+            running = List.copyOf(this.running);
+            this.changed.signalAll();
+        } finally {
+            this.lock.unlock();
+        }
+
+        for (var subtask : running) {
+            subtask.cancel(true);
+        }
+    }
+
+    enum Cancellation {
+        DEADLINE, DISCONNECTED, COMMITTED
+    }
+
+    /**
+     * Told once, on the first fork, so it can start cancelling the scope.
+     */
+    interface Owner {
+        void started(DefaultRequestScope scope);
+    }
+
+    private final class Subtask<T> extends FutureTask<T> {
+        @SuppressWarnings("unchecked")
+        private Subtask(Callable<? extends T> task) {
+            super((Callable<T>) task);
+        }
+
+        @Override
+        protected void done() {
+            var lock = DefaultRequestScope.this.lock;
+            lock.lock();
+            try {
+                DefaultRequestScope.this.running.remove(this);
+                DefaultRequestScope.this.changed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
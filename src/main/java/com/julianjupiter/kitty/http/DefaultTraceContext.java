@@ -0,0 +1,167 @@
+/*
+ * Copyright 2013-2023 Julian Jupiter.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.julianjupiter.kitty.http;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * IDs are kept as longs and only turned into hex when asked for, so an unsampled request costs a header lookup and
+ * two or three random numbers. Parsing follows the W3C Trace Context rules: a {@code traceparent} of an unknown
+ * version is read as far as version 00 defines it, an invalid one starts a new trace and drops {@code tracestate}.
+ *
+ * @author Julian Jupiter
+ */
+final class DefaultTraceContext implements TraceContext {
+    private static final HexFormat HEX = HexFormat.of();
+    private static final int TRACEPARENT_LENGTH = 55;
+    private static final int MAX_TRACE_STATE = 512;
+    private final long traceIdHigh;
+    private final long traceIdLow;
+    private final long spanId;
+    private final long parentSpanId;
+    private final boolean sampled;
+    private final String traceState;
+
+    private DefaultTraceContext(long traceIdHigh, long traceIdLow, long spanId, long parentSpanId, boolean sampled,
+                                String traceState) {
+        this.traceIdHigh = traceIdHigh;
+        this.traceIdLow = traceIdLow;
+        this.spanId = spanId;
+        this.parentSpanId = parentSpanId;
+        this.sampled = sampled;
+        this.traceState = traceState;
+    }
+
+    /**
+     * Continues the request's trace, or starts one sampled if the low half of its random trace ID is under
+     * {@code sampleThreshold}; a caller's sampling decision is kept as it is.
+     */
+    static DefaultTraceContext of(HttpRequest request, long sampleThreshold) {
+        var random = ThreadLocalRandom.current();
+        var traceparent = request.header("traceparent").map(HttpHeader::value).orElse(null);
+        if (traceparent != null && isValid(traceparent)) {
+            var traceIdHigh = HexFormat.fromHexDigitsToLong(traceparent, 3, 19);
+            var traceIdLow = HexFormat.fromHexDigitsToLong(traceparent, 19, 35);
+            var parentSpanId = HexFormat.fromHexDigitsToLong(traceparent, 36, 52);
+            if ((traceIdHigh != 0 || traceIdLow != 0) && parentSpanId != 0) {
+                var flags = HexFormat.fromHexDigits(traceparent, 53, 55);
+                var traceState = request.header("tracestate")
+                        .map(HttpHeader::value)
+                        .filter(value -> !value.isBlank() && value.length() <= MAX_TRACE_STATE)
+                        .orElse(null);
+                return new DefaultTraceContext(traceIdHigh, traceIdLow, nonZero(random), parentSpanId,
+                        (flags & 1) != 0, traceState);
+            }
+        }
+
+        var traceIdLow = nonZero(random);
+        return new DefaultTraceContext(random.nextLong(), traceIdLow, nonZero(random), 0,
+                (traceIdLow & Long.MAX_VALUE) < sampleThreshold, null);
+    }
+
+    /**
+     * Maps a sample rate from 0 to 1 to the threshold {@link #of(HttpRequest, long)} compares trace IDs with.
+     */
+    static long sampleThreshold(double rate) {
+        return rate >= 1 ? Long.MAX_VALUE : (long) (rate * Long.MAX_VALUE);
+    }
+
+    private static boolean isValid(String traceparent) {
+        var length = traceparent.length();
+        if (length < TRACEPARENT_LENGTH || traceparent.charAt(2) != '-' || traceparent.charAt(35) != '-'
+                || traceparent.charAt(52) != '-' || !isHex(traceparent, 0, 2) || !isHex(traceparent, 3, 35)
+                || !isHex(traceparent, 36, 52) || !isHex(traceparent, 53, 55)) {
+            return false;
+        }
+
+        if (traceparent.startsWith("00")) {
+            return length == TRACEPARENT_LENGTH;
+        }
+
+        // later versions may only append fields
+        return !traceparent.startsWith("ff") && (length == TRACEPARENT_LENGTH || traceparent.charAt(TRACEPARENT_LENGTH) == '-');
+    }
+
+    private static boolean isHex(String value, int from, int to) {
+        for (var i = from; i < to; i++) {
+            var c = value.charAt(i);
+            if (!(c >= '0' && c <= '9' || c >= 'a' && c <= 'f')) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static long nonZero(ThreadLocalRandom random) {
+        long value;
+        do {
+            value = random.nextLong();
+        } while (value == 0);
+
+        return value;
+    }
+
+    @Override
+    public String traceId() {
+        return HEX.toHexDigits(this.traceIdHigh) + HEX.toHexDigits(this.traceIdLow);
+    }
+
+    @Override
+    public String spanId() {
+        return HEX.toHexDigits(this.spanId);
+    }
+
+    @Override
+    public Optional<String> parentSpanId() {
+        return this.parentSpanId == 0 ? Optional.empty() : Optional.of(HEX.toHexDigits(this.parentSpanId));
+    }
+
+    @Override
+    public Optional<String> traceState() {
+        return Optional.ofNullable(this.traceState);
+    }
+
+    @Override
+    public boolean isSampled() {
+        return this.sampled;
+    }
+
+    @Override
+    public String traceparent() {
+        return "00-" + this.traceId() + "-" + this.spanId() + (this.sampled ? "-01" : "-00");
+    }
+
+    long traceIdHigh() {
+        return this.traceIdHigh;
+    }
+
+    long traceIdLow() {
+        return this.traceIdLow;
+    }
+
+    Span span(HttpRequest request, int status, long durationNanos) {
+        var requestLine = request.requestLine();
+        var path = requestLine.target().getPath();
+        return new Span(this.traceId(), this.spanId(), this.parentSpanId().orElse(null), this.traceState,
+                requestLine.method().value(), path == null ? "" : path, status,
+                Instant.now().minusNanos(durationNanos), Duration.ofNanos(durationNanos));
+    }
+}
@@ -0,0 +1,254 @@
+/*
+ * Copyright 2013-2023 Julian Jupiter.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.julianjupiter.kitty.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Events are appended to a pending buffer and written by the connection thread. The first event after
+ * an idle period opens a short window in which later events join the same write. Closing the sink writes what is
+ * pending before the connection is closed, unless the client has gone.
+ *
+ * @author Julian Jupiter
+ */
+final class EventStreamConnection implements EventSink, KeepAliveSweeper.Participant {
+    private static final byte[] HEARTBEAT = ":\n\n".getBytes(StandardCharsets.UTF_8);
+    private static final int MAX_PENDING_BYTES = 4 * 1024 * 1024;
+    private final System.Logger logger = System.getLogger(EventStreamConnection.class.getName());
+    private final ClientConnection socket;
+    private final HttpRequest request;
+    private final InputStream input;
+    private final OutputStream output;
+    private final KeepAliveSweeper heartbeat;
+    private final long flushIntervalNanos;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition eventsPending = this.lock.newCondition();
+    private final List<Runnable> closeCallbacks = new CopyOnWriteArrayList<>();
+    private final AtomicBoolean closed = new AtomicBoolean();
+    private volatile boolean closing;
+    private byte[] pending = new byte[1024];
+    private byte[] writing = new byte[1024];
+    private int pendingLength;
+    private volatile long lastWrite = System.nanoTime();
+
+    EventStreamConnection(ClientConnection socket, HttpRequest request, InputStream input, OutputStream output, ServerContext context) {
+        this.socket = socket;
+        this.request = request;
+        this.input = input;
+        this.output = output;
+        this.heartbeat = context.eventStreamHeartbeat();
+        this.flushIntervalNanos = context.configuration().eventStreamFlushInterval().toNanos();
+    }
+
+    void run(Consumer<EventSink> onOpen) {
+        try {
+            this.heartbeat.register(this);
+            // the client never sends anything on an event stream, so a read only returns once it is gone
+            Thread.ofVirtual().start(this::awaitDisconnect);
+            onOpen.accept(this);
+            this.writeEvents();
+        } catch (IOException exception) {
+            this.logger.log(System.Logger.Level.DEBUG, exception.getMessage());
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        } finally {
+            this.terminate();
+        }
+    }
+
+    @Override
+    public HttpRequest request() {
+        return this.request;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return !this.closed.get() && !this.closing;
+    }
+
+    @Override
+    public void send(ServerSentEvent event) {
+        this.append(event.encode());
+    }
+
+    @Override
+    public void onClose(Runnable callback) {
+        this.closeCallbacks.add(callback);
+        if (this.closed.get() && this.closeCallbacks.remove(callback)) {
+            callback.run();
+        }
+    }
+
+    // the connection thread writes what is pending, then terminates
+    @Override
+    public void close() {
+        this.lock.lock();
+        try {
+            this.closing = true;
+            this.eventsPending.signalAll();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    private void terminate() {
+        if (!this.closed.compareAndSet(false, true)) {
+            return;
+        }
+
+        this.lock.lock();
+        try {
+            this.eventsPending.signalAll();
+        } finally {
+            this.lock.unlock();
+        }
+
+        this.heartbeat.unregister(this);
+        try {
+            this.socket.close();
+        } catch (IOException exception) {
+            this.logger.log(System.Logger.Level.DEBUG, exception.getMessage());
+        }
+
+        for (var callback : this.closeCallbacks) {
+            if (this.closeCallbacks.remove(callback)) {
+                try {
+                    callback.run();
+                } catch (RuntimeException exception) {
+                    this.logger.log(System.Logger.Level.ERROR, exception.getMessage());
+                }
+            }
+        }
+    }
+
+    @Override
+    public void keepAlive(long now, long intervalNanos) {
+        if (now - this.lastWrite >= intervalNanos) {
+            this.append(HEARTBEAT);
+        }
+    }
+
+    private void append(byte[] event) {
+        var overflow = false;
+        this.lock.lock();
+        try {
+            if (this.closed.get() || this.closing) {
+                return;
+            }
+
+            var length = this.pendingLength + event.length;
+            if (length > MAX_PENDING_BYTES) {
+                overflow = true;
+            } else {
+                if (length > this.pending.length) {
+                    this.pending = Arrays.copyOf(this.pending, Math.max(length, this.pending.length << 1));
+                }
+
+                System.arraycopy(event, 0, this.pending, this.pendingLength, event.length);
+                this.pendingLength = length;
+                if (length == event.length) {
+                    this.eventsPending.signal();
+                }
+            }
+        } finally {
+            this.lock.unlock();
+        }
+
+        if (overflow) {
+            // a client that cannot keep up is dropped instead of buffering events without bound
+            this.terminate();
+        }
+    }
+
+    private void writeEvents() throws IOException, InterruptedException {
+        while (true) {
+            int length;
+            this.lock.lock();
+            try {
+                while (!this.closed.get() && !this.closing && this.pendingLength == 0) {
+                    this.eventsPending.await();
+                }
+
+                var window = this.flushIntervalNanos;
+                while (!this.closed.get() && !this.closing && window > 0) {
+                    window = this.eventsPending.awaitNanos(window);
+                }
+
+                // nothing is left to write once closing, the client is gone once closed
+                if (this.closed.get() || this.pendingLength == 0) {
+                    return;
+                }
+
+                var batch = this.pending;
+                this.pending = this.writing;
+                this.writing = batch;
+                length = this.pendingLength;
+                this.pendingLength = 0;
+            } finally {
+                this.lock.unlock();
+            }
+
+            this.output.write(this.writing, 0, length);
+            this.output.flush();
+            this.lastWrite = System.nanoTime();
+        }
+    }
+
+    private void awaitDisconnect() {
+        try {
+            while (this.input.read() != -1) {
+                // nothing is expected from the client, discard it
+            }
+        } catch (IOException exception) {
+            this.logger.log(System.Logger.Level.DEBUG, exception.getMessage());
+        } finally {
+            this.terminate();
+        }
+    }
+
+    static byte[] head(HttpResponse response) {
+        var head = new StringBuilder(256)
+                .append(response.statusLine()).append("\r\n");
+        var hasContentType = false;
+        for (var header : response.headers()) {
+            hasContentType |= header.name().equalsIgnoreCase("Content-Type");
+            head.append(header).append("\r\n");
+        }
+
+        if (!hasContentType) {
+            head.append("Content-Type: text/event-stream\r\n");
+        }
+
+        for (var cookie : response.cookies()) {
+            head.append("Set-Cookie: ").append(cookie).append("\r\n");
+        }
+
+        return head.append("Cache-Control: no-cache\r\n")
+                .append("\r\n")
+                .toString()
+                .getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2013-2023 Julian Jupiter.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.julianjupiter.kitty.http;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Writes spans as JSON lines. Request threads only offer to a bounded queue; a daemon thread writes whatever has
+ * accumulated and flushes once the queue is empty.
+ *
+ * @author Julian Jupiter
+ */
+final class FileSpanExporter implements SpanExporter {
+    private static final System.Logger LOGGER = System.getLogger(FileSpanExporter.class.getName());
+    private static final int QUEUE_SIZE = 8192;
+    private final BlockingQueue<Span> queue = new ArrayBlockingQueue<>(QUEUE_SIZE);
+    private final LongAdder dropped = new LongAdder();
+    private final Writer writer;
+    private final Thread thread;
+    private volatile boolean running = true;
+
+    FileSpanExporter(Path path) {
+        try {
+            this.writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+        this.thread = Thread.ofPlatform()
+                .name("kitty-http-span-exporter")
+                .daemon()
+                .start(this::drain);
+    }
+
+    @Override
+    public void export(Span span) {
+        if (!this.running || !this.queue.offer(span)) {
+            this.dropped.increment();
+        }
+    }
+
+    long dropped() {
+        return this.dropped.sum();
+    }
+
+    private void drain() {
+        var batch = new ArrayList<Span>();
+        var line = new StringBuilder(512);
+        try (this.writer) {
+            while (this.running || !this.queue.isEmpty()) {
+                var span = this.queue.poll(100, TimeUnit.MILLISECONDS);
+                if (span == null) {
+                    continue;
+                }
+
+                batch.add(span);
+                this.queue.drainTo(batch);
+                for (var each : batch) {
+                    line.setLength(0);
+                    this.writer.append(json(each, line));
+                }
+                batch.clear();
+                if (this.queue.isEmpty()) {
+                    this.writer.flush();
+                }
+            }
+        } catch (IOException exception) {
+            LOGGER.log(System.Logger.Level.ERROR, "Span export stopped: " + exception.getMessage());
+            this.running = false;
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static StringBuilder json(Span span, StringBuilder out) {
+        out.append("{\"traceId\":\"").append(span.traceId())
+                .append("\",\"spanId\":\"").append(span.spanId()).append('"');
+        if (span.parentSpanId() != null) {
+            out.append(",\"parentSpanId\":\"").append(span.parentSpanId()).append('"');
+        }
+        if (span.traceState() != null) {
+            string(out.append(",\"traceState\":"), span.traceState());
+        }
+        string(out.append(",\"method\":"), span.method());
+        string(out.append(",\"path\":"), span.path());
+        return out.append(",\"status\":").append(span.status())
+                .append(",\"start\":\"").append(span.start())
+                .append("\",\"durationMicros\":").append(span.duration().toNanos() / 1_000)
+                .append("}\n");
+    }
+
+    private static void string(StringBuilder out, String value) {
+        out.append('"');
+        for (var i = 0; i < value.length(); i++) {
+            var c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.append('\\').append(c);
+            } else if (c < 0x20) {
+                out.append(String.format("\\u%04x", (int) c));
+            } else {
+                out.append(c);
+            }
+        }
+        out.append('"');
+    }
+
+    /**
+     * Writes what is queued and closes the file.
+     */
+    @Override
+    public void close() {
+        this.running = false;
+        try {
+            this.thread.join();
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -15,7 +15,7 @@
  */
 package com.julianjupiter.kitty.http;
 
-import java.util.ArrayList;
+import java.nio.charset.StandardCharsets;
 
 /**
  * @author Julian Jupiter
@@ -24,27 +24,11 @@ final class HttpBodyFactory {
     private HttpBodyFactory() {
     }
 
-    public static HttpBody create(String request) {
-        var lines = request.lines().toArray(String[]::new);
-        var length = lines.length;
-        var bodyStarted = false;
-        var list = new ArrayList<String>();
-        for (var i = 1; i < length; i++) {
-            var line = lines[i];
-            if (!bodyStarted) {
-                if (line.isBlank()) {
-                    bodyStarted = true;
-                }
-                continue;
-            }
-
-            list.add(line);
-        }
-
-        if (list.isEmpty()) {
+    public static HttpBody create(byte[] body) {
+        if (body.length == 0) {
             return new NoContentHttpBody();
         }
 
-        return new DefaultHttpBody(String.join("\n", list));
+        return new DefaultHttpBody(new String(body, StandardCharsets.UTF_8));
     }
 }
@@ -34,7 +34,7 @@ class HttpHeaders {
 
     private HttpHeaders(List<HttpHeader> headers) {
         if (headers != null) {
-            headers.forEach(httpHeader -> this.headers.put(httpHeader.name(), httpHeader));
+            headers.forEach(httpHeader -> this.headers.put(normalize(httpHeader.name()), httpHeader));
         }
     }
 
@@ -124,7 +124,7 @@ class HttpHeaders {
         for (var i = 0; i < parts.length; i++) {
             char[] chars = parts[i].toCharArray();
             for (char c : chars) {
-                if (c < 'a' || c > 'z') {
+                if ((c < 'a' || c > 'z') && (c < '0' || c > '9')) {
                     throw new IllegalArgumentException("Illegal character in HTTP header name");
                 }
             }
@@ -17,6 +17,7 @@ package com.julianjupiter.kitty.http;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
@@ -37,10 +38,11 @@ final class HttpHeadersFactory {
                 .skip(1)
                 .takeWhile(Predicate.not(String::isBlank))
                 .map(line -> {
-                    var headerSegments = line.split(":");
-                    var name = headerSegments[0];
-                    var values = Arrays.stream(headerSegments[1].split(";"))
-                            .collect(Collectors.toSet());
+                    var separator = line.indexOf(':');
+                    var name = line.substring(0, separator).strip();
+                    var values = Arrays.stream(line.substring(separator + 1).split(";"))
+                            .map(String::strip)
+                            .collect(Collectors.toCollection(LinkedHashSet::new));
                     return new HttpHeader(name, values);
                 })
                 .toList();
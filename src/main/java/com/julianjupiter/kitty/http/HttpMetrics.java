@@ -0,0 +1,210 @@
+/*
+ * Copyright 2013-2023 Julian Jupiter.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.julianjupiter.kitty.http;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Server-wide metrics. Recording a request touches only striped counters and a lock-free histogram;
+ * the per-route series are created once and then looked up without allocation.
+ *
+ * @author Julian Jupiter
+ */
+final class HttpMetrics {
+    static final String OTHER_ROUTE = "other";
+    static final String NOT_FOUND_ROUTE = "not_found";
+    private static final int MAX_ROUTES = 512;
+    private static final int MAX_STATUS = 600;
+    private static final double NANOS_PER_SECOND = 1e9;
+    private static final String[] ALLOCATION_PHASES = {"parse", "handler", "serialize"};
+    private final Map<String, RouteMetrics> routes = new ConcurrentHashMap<>();
+    private final LongAdder activeConnections = new LongAdder();
+    private final LongAdder connections = new LongAdder();
+    private final List<Collector> collectors = new CopyOnWriteArrayList<>();
+
+    void connectionOpened() {
+        this.connections.increment();
+        this.activeConnections.increment();
+    }
+
+    void connectionClosed() {
+        this.activeConnections.decrement();
+    }
+
+    void record(String route, int status, long durationNanos, long bytesIn, long bytesOut) {
+        this.route(route, status).status(status).record(durationNanos, bytesIn, bytesOut);
+    }
+
+    /**
+     * Records the bytes an exchange allocated in each phase, leaving out unmeasured ({@code -1}) phases.
+     */
+    void recordAllocation(String route, int status, long parse, long handler, long serialize) {
+        var allocated = this.route(route, status).allocated();
+        if (parse >= 0) {
+            allocated[0].record(parse);
+        }
+        if (handler >= 0) {
+            allocated[1].record(handler);
+        }
+        if (serialize >= 0) {
+            allocated[2].record(serialize);
+        }
+    }
+
+    private RouteMetrics route(String route, int status) {
+        if (status == HttpStatus.NOT_FOUND.value()) {
+            // unmatched paths are unbounded, keep them out of the route label
+            route = NOT_FOUND_ROUTE;
+        }
+
+        var routeMetrics = this.routes.get(route);
+        if (routeMetrics == null) {
+            routeMetrics = this.routes.size() < MAX_ROUTES
+                    ? this.routes.computeIfAbsent(route, key -> new RouteMetrics())
+                    : this.routes.computeIfAbsent(OTHER_ROUTE, key -> new RouteMetrics());
+        }
+
+        return routeMetrics;
+    }
+
+    LongAdder counter(String name, String help) {
+        var counter = new LongAdder();
+        this.collector(writer -> writer.family(name, help, "counter").sample(name, counter.sum()));
+        return counter;
+    }
+
+    void gauge(String name, String help, LongSupplier value) {
+        this.collector(writer -> writer.family(name, help, "gauge").sample(name, value.getAsLong()));
+    }
+
+    void collector(Collector collector) {
+        this.collectors.add(collector);
+    }
+
+    String scrape() {
+        var writer = new PrometheusWriter();
+        writer.family("kitty_http_connections_active", "Open client connections.", "gauge")
+                .sample("kitty_http_connections_active", this.activeConnections.sum());
+        writer.family("kitty_http_connections_total", "Accepted client connections.", "counter")
+                .sample("kitty_http_connections_total", this.connections.sum());
+
+        writer.family("kitty_http_requests_total", "Requests served.", "counter");
+        this.forEachStatus((route, status, metrics) -> writer.sample("kitty_http_requests_total",
+                metrics.requests.sum(), "route", route, "status", status));
+        writer.family("kitty_http_request_duration_seconds", "Time from reading the request to writing the response.", "summary");
+        this.forEachStatus((route, status, metrics) -> writer.summary("kitty_http_request_duration_seconds",
+                metrics.latency, NANOS_PER_SECOND, "route", route, "status", status));
+        writer.family("kitty_http_request_bytes_total", "Bytes received in requests.", "counter");
+        this.forEachStatus((route, status, metrics) -> writer.sample("kitty_http_request_bytes_total",
+                metrics.bytesIn.sum(), "route", route, "status", status));
+        writer.family("kitty_http_response_bytes_total", "Bytes sent in responses.", "counter");
+        this.forEachStatus((route, status, metrics) -> writer.sample("kitty_http_response_bytes_total",
+                metrics.bytesOut.sum(), "route", route, "status", status));
+
+        if (this.routes.values().stream().anyMatch(routeMetrics -> routeMetrics.allocated.get() != null)) {
+            writer.family("kitty_http_request_allocated_bytes", "Bytes allocated per request, by phase.", "summary");
+            this.routes.forEach((route, routeMetrics) -> {
+                var allocated = routeMetrics.allocated.get();
+                if (allocated != null) {
+                    for (var phase = 0; phase < ALLOCATION_PHASES.length; phase++) {
+                        writer.summary("kitty_http_request_allocated_bytes", allocated[phase], 1,
+                                "route", route, "phase", ALLOCATION_PHASES[phase]);
+                    }
+                }
+            });
+        }
+
+        for (var collector : this.collectors) {
+            collector.collect(writer);
+        }
+
+        return writer.toString();
+    }
+
+    private void forEachStatus(StatusVisitor visitor) {
+        this.routes.forEach((route, routeMetrics) -> {
+            for (var status = 0; status < MAX_STATUS; status++) {
+                var metrics = routeMetrics.statuses.get(status);
+                if (metrics != null) {
+                    visitor.visit(route, String.valueOf(status), metrics);
+                }
+            }
+        });
+    }
+
+    @FunctionalInterface
+    interface Collector {
+        void collect(PrometheusWriter writer);
+    }
+
+    @FunctionalInterface
+    private interface StatusVisitor {
+        void visit(String route, String status, StatusMetrics metrics);
+    }
+
+    private static final class RouteMetrics {
+        private final AtomicReferenceArray<StatusMetrics> statuses = new AtomicReferenceArray<>(MAX_STATUS);
+        // one histogram per phase, only once allocations are recorded for the route
+        private final AtomicReference<LogLinearHistogram[]> allocated = new AtomicReference<>();
+
+        LogLinearHistogram[] allocated() {
+            var allocated = this.allocated.get();
+            if (allocated == null) {
+                allocated = new LogLinearHistogram[ALLOCATION_PHASES.length];
+                for (var i = 0; i < allocated.length; i++) {
+                    allocated[i] = new LogLinearHistogram();
+                }
+                if (!this.allocated.compareAndSet(null, allocated)) {
+                    allocated = this.allocated.get();
+                }
+            }
+
+            return allocated;
+        }
+
+        StatusMetrics status(int status) {
+            var index = status >= 0 && status < MAX_STATUS ? status : 0;
+            var metrics = this.statuses.get(index);
+            if (metrics == null) {
+                this.statuses.compareAndSet(index, null, new StatusMetrics());
+                metrics = this.statuses.get(index);
+            }
+
+            return metrics;
+        }
+    }
+
+    private static final class StatusMetrics {
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder bytesIn = new LongAdder();
+        private final LongAdder bytesOut = new LongAdder();
+        private final LogLinearHistogram latency = new LogLinearHistogram();
+
+        void record(long durationNanos, long bytesIn, long bytesOut) {
+            this.requests.increment();
+            this.bytesIn.add(bytesIn);
+            this.bytesOut.add(bytesOut);
+            this.latency.record(durationNanos);
+        }
+    }
+}
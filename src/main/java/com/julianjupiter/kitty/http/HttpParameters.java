@@ -0,0 +1,49 @@
+/*
+ * Copyright 2013-2023 Julian Jupiter.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.julianjupiter.kitty.http;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.OptionalLong;
+import java.util.Set;
+
+/**
+ * Query string or {@code application/x-www-form-urlencoded} parameters in the order they were sent. Names and values
+ * are percent-decoded as UTF-8 when they are read. Typed getters return empty when the parameter is absent and throw
+ * {@link NumberFormatException} or {@link IllegalArgumentException} when its first value is malformed.
+ *
+ * @author Julian Jupiter
+ */
+public interface HttpParameters {
+    int size();
+
+    boolean isEmpty();
+
+    boolean contains(String name);
+
+    Set<String> names();
+
+    Optional<String> get(String name);
+
+    List<String> getAll(String name);
+
+    OptionalInt getInt(String name);
+
+    OptionalLong getLong(String name);
+
+    Optional<Boolean> getBoolean(String name);
+}
@@ -24,7 +24,25 @@ import java.util.Optional;
 public non-sealed interface HttpRequest extends HttpMessage {
     HttpRequestLine requestLine();
 
+    Optional<HttpHeader> header(String name);
+
     List<HttpCookie> cookies();
 
     Optional<HttpCookie> cookie(String name);
+
+    HttpParameters queryParameters();
+
+    Optional<String> queryParameter(String name);
+
+    HttpParameters formParameters();
+
+    Optional<String> formParameter(String name);
+
+    List<Part> parts();
+
+    Optional<Part> part(String name);
+
+    RequestScope scope();
+
+    TraceContext trace();
 }
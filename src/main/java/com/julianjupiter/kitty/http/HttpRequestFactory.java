@@ -15,37 +15,277 @@
  */
 package com.julianjupiter.kitty.http;
 
-import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * @author Julian Jupiter
  */
 final class HttpRequestFactory {
+    private static final int BODY_CHUNK = 8192;
+
     private HttpRequestFactory() {
     }
 
-    public static HttpRequest create(BufferedReader reader) {
+    public static HttpRequest create(InputStream input) {
         try {
-            var sb = new StringBuilder();
-            String line;
-            while ((line = reader.readLine()) != null) {
-                if (line.isBlank()) {
-                    break;
-                }
+            var request = readHead(input, RequestLimits.DEFAULT);
+            var body = request == null ? null : bodyStream(request, input, RequestLimits.DEFAULT);
+            if (body != null) {
+                readBody(request, body, RequestLimits.DEFAULT, new MemoryBudget(Long.MAX_VALUE).lease(Long.MAX_VALUE));
+            }
+
+            return request;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Reads one request head from a connection, or returns {@code null} if the peer closed it before sending one.
+     * Limits are checked as bytes arrive, so a request is rejected before more than the limit is buffered.
+     */
+    static DefaultHttpRequest readHead(InputStream input, RequestLimits limits) throws IOException {
+        return readHead(input, limits, null);
+    }
 
-                sb.append(line).append("\n");
+    /**
+     * Same as {@link #readHead(InputStream, RequestLimits)}, running {@code afterRequestLine}, which may reject the
+     * request, before any header is read.
+     */
+    static DefaultHttpRequest readHead(InputStream input, RequestLimits limits, Runnable afterRequestLine) throws IOException {
+        return readHead(input, limits, afterRequestLine, null);
+    }
+
+    /**
+     * Same as {@link #readHead(InputStream, RequestLimits, Runnable)}, also looking up the handler of the virtual host
+     * named by the Host header in the raw bytes of its line, so the name is never decoded or copied. The handler is
+     * only called once the whole head has been read and parsed, which body framing needs anyway.
+     */
+    static DefaultHttpRequest readHead(InputStream input, RequestLimits limits, Runnable afterRequestLine,
+                                       VirtualHosts virtualHosts) throws IOException {
+        var sb = new StringBuilder();
+        var buffer = new LineBuffer();
+        HttpHandler virtualHost = null;
+        var hostSeen = virtualHosts == null;
+        var line = readLine(input, buffer, limits.requestLineLength(), HttpStatus.URI_TOO_LONG);
+        if (line == null) {
+            return null;
+        }
+
+        if (afterRequestLine != null) {
+            afterRequestLine.run();
+        }
+
+        sb.append(line).append("\n");
+        var headerSize = 0;
+        var headerCount = 0;
+        while ((line = readLine(input, buffer, limits.headerSize() - headerSize, HttpStatus.REQUEST_HEADER_FIELDS_TOO_LARGE)) != null
+                && !line.isBlank()) {
+            headerSize += buffer.size();
+            if (++headerCount > limits.headerCount()) {
+                throw new RequestRejectedException(HttpStatus.REQUEST_HEADER_FIELDS_TOO_LARGE, "Too many request headers");
+            }
+
+            if (!hostSeen && buffer.isHost()) {
+                hostSeen = true;
+                virtualHost = buffer.virtualHost(virtualHosts);
             }
 
-            var request = sb.toString();
+            sb.append(line).append("\n");
+        }
+
+        var request = sb.toString();
+        DefaultHttpRequest httpRequest;
+        try {
             var httpRequestLine = HttpRequestLineFactory.create(request);
+            if (httpRequestLine.version() != HttpVersion.HTTP_1_1 && httpRequestLine.version() != HttpVersion.HTTP_1_0) {
+                throw new RequestRejectedException(HttpStatus.BAD_REQUEST, "Unsupported HTTP version");
+            }
             var httpHeaders = HttpHeadersFactory.create(request);
+            checkFraming(httpHeaders);
             var httpCookies = HttpCookiesFactory.create(httpHeaders);
-            var httpBody = HttpBodyFactory.create(request);
+            httpRequest = new DefaultHttpRequest(httpRequestLine, httpHeaders, httpCookies, new NoContentHttpBody());
+        } catch (IllegalArgumentException | IndexOutOfBoundsException exception) {
+            throw new RequestRejectedException(HttpStatus.BAD_REQUEST, "Malformed request head");
+        }
+        httpRequest.head(request);
+        httpRequest.virtualHost(virtualHost);
+        return httpRequest;
+    }
 
-            return new DefaultHttpRequest(httpRequestLine, httpHeaders, httpCookies, httpBody);
-        } catch (IOException e) {
-            throw new RuntimeException(e);
+    /**
+     * Frames the body announced by Content-Length or chunked Transfer-Encoding without reading any of it, or returns
+     * {@code null} if there is none. Unsupported framing and a declared length over the limit are rejected here, so
+     * a request can be refused before its body is touched.
+     */
+    static InputStream bodyStream(HttpRequest request, InputStream input, RequestLimits limits) {
+        var maxSize = MultipartParser.boundary(request) == null ? limits.bodySize() : limits.multipartSize();
+        return bodyStream(request, input, maxSize, limits);
+    }
+
+    /**
+     * Reads a body framed by {@link #bodyStream(HttpRequest, InputStream, RequestLimits)}. Bytes kept in memory are
+     * reserved on {@code lease} before they are read; {@code multipart/form-data} is parsed as it streams in, so
+     * large parts never reach the heap.
+     */
+    static void readBody(DefaultHttpRequest request, InputStream body, RequestLimits limits, MemoryBudget.Lease lease) throws IOException {
+        var boundary = MultipartParser.boundary(request);
+        if (boundary != null) {
+            var parts = MultipartParser.parse(body, boundary, limits, lease);
+            // the epilogue after the closing delimiter is ignored
+            body.transferTo(OutputStream.nullOutputStream());
+            request.body(new MultipartHttpBody(parts));
+            return;
+        }
+
+        if (request.header("Transfer-Encoding").isEmpty()) {
+            // reserved whole before reading, so a connection never waits for memory holding part of its body
+            var contentLength = contentLength(request);
+            if (contentLength > Integer.MAX_VALUE - 8) {
+                throw new RequestRejectedException(HttpStatus.CONTENT_TOO_LARGE, "Request body too large to buffer");
+            }
+            lease.acquire(contentLength);
+            var content = new byte[(int) contentLength];
+            var length = body.readNBytes(content, 0, content.length);
+            if (length < content.length) {
+                throw new EOFException("Request body ended after " + length + " of " + content.length + " bytes");
+            }
+            request.body(HttpBodyFactory.create(content));
+            return;
+        }
+
+        // each chunk is reserved before it is allocated, and the body put together from them before it is copied
+        var chunks = new ArrayList<byte[]>();
+        var length = 0;
+        int read;
+        do {
+            lease.acquire(BODY_CHUNK);
+            var chunk = new byte[BODY_CHUNK];
+            chunks.add(chunk);
+            read = body.readNBytes(chunk, 0, BODY_CHUNK);
+            length += read;
+        } while (read == BODY_CHUNK);
+
+        lease.acquire(length);
+        var content = new byte[length];
+        for (var i = 0; i < chunks.size(); i++) {
+            var offset = i * BODY_CHUNK;
+            System.arraycopy(chunks.get(i), 0, content, offset, Math.min(BODY_CHUNK, length - offset));
+        }
+        lease.release((long) chunks.size() * BODY_CHUNK);
+        request.body(HttpBodyFactory.create(content));
+    }
+
+    // ambiguous framing is refused outright, a proxy in front or behind could read the body differently
+    private static InputStream bodyStream(HttpRequest request, InputStream input, long maxSize, RequestLimits limits) {
+        var transferEncoding = request.header("Transfer-Encoding");
+        if (transferEncoding.isPresent()) {
+            if (request.header("Content-Length").isPresent()
+                    || request.requestLine().version() == HttpVersion.HTTP_1_0) {
+                throw new RequestRejectedException(HttpStatus.BAD_REQUEST, "Ambiguous request body framing");
+            }
+            if (!transferEncoding.get().value().strip().equalsIgnoreCase("chunked")) {
+                throw new RequestRejectedException(HttpStatus.NOT_IMPLEMENTED, "Unsupported transfer encoding");
+            }
+
+            return new ChunkedInputStream(input, maxSize, limits.headerSize());
+        }
+
+        var contentLength = contentLength(request);
+        if (contentLength > maxSize) {
+            throw new RequestRejectedException(HttpStatus.CONTENT_TOO_LARGE, "Request body exceeds " + maxSize + " bytes");
+        }
+
+        return contentLength > 0 ? new ContentLengthInputStream(input, contentLength) : null;
+    }
+
+    // headers are keyed by name once in the request, so repeated framing headers are caught while they are a list
+    private static void checkFraming(List<HttpHeader> headers) {
+        String contentLength = null;
+        var transferEncodings = 0;
+        for (var header : headers) {
+            if (header.name().equalsIgnoreCase("Content-Length")) {
+                var value = header.value().strip();
+                if (contentLength != null && !contentLength.equals(value)) {
+                    throw new RequestRejectedException(HttpStatus.BAD_REQUEST, "Conflicting Content-Length");
+                }
+                contentLength = value;
+            } else if (header.name().equalsIgnoreCase("Transfer-Encoding") && ++transferEncodings > 1) {
+                throw new RequestRejectedException(HttpStatus.BAD_REQUEST, "Repeated Transfer-Encoding");
+            }
+        }
+    }
+
+    static long contentLength(HttpRequest request) {
+        var header = request.header("Content-Length");
+        if (header.isEmpty()) {
+            return 0;
+        }
+
+        var value = header.get().value().strip();
+        // digits only, parseLong would also take a sign
+        for (var i = 0; i < value.length(); i++) {
+            if (value.charAt(i) < '0' || value.charAt(i) > '9') {
+                throw new RequestRejectedException(HttpStatus.BAD_REQUEST, "Invalid Content-Length");
+            }
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException exception) {
+            throw new RequestRejectedException(HttpStatus.BAD_REQUEST, "Invalid Content-Length");
+        }
+    }
+
+    // reads byte by byte so nothing past the request head is consumed from the connection
+    static String readLine(InputStream input, ByteArrayOutputStream buffer, int limit, HttpStatus rejection) throws IOException {
+        buffer.reset();
+        int b;
+        while ((b = input.read()) != -1) {
+            if (b == '\n') {
+                return buffer.toString(StandardCharsets.UTF_8);
+            }
+
+            if (b != '\r') {
+                if (buffer.size() >= limit) {
+                    throw new RequestRejectedException(rejection, rejection.reasonPhrase());
+                }
+                buffer.write(b);
+            }
+        }
+
+        return buffer.size() == 0 ? null : buffer.toString(StandardCharsets.UTF_8);
+    }
+
+    // exposes the bytes of the line just read, so a header can be looked at before it is decoded
+    private static final class LineBuffer extends ByteArrayOutputStream {
+        LineBuffer() {
+            super(128);
+        }
+
+        boolean isHost() {
+            return this.count > 5
+                    && (this.buf[0] | 0x20) == 'h' && (this.buf[1] | 0x20) == 'o' && (this.buf[2] | 0x20) == 's'
+                    && (this.buf[3] | 0x20) == 't' && this.buf[4] == ':';
+        }
+
+        HttpHandler virtualHost(VirtualHosts virtualHosts) {
+            var from = 5;
+            var to = this.count;
+            while (from < to && (this.buf[from] == ' ' || this.buf[from] == '\t')) {
+                from++;
+            }
+            while (to > from && (this.buf[to - 1] == ' ' || this.buf[to - 1] == '\t')) {
+                to--;
+            }
+
+            return from == to ? null : virtualHosts.find(this.buf, from, to);
         }
     }
 }
@@ -30,6 +30,9 @@ final class HttpRequestLineFactory {
                 .findFirst()
                 .orElse("GET / HTTP/1.1")
                 .split(" ");
+        if (requestLineSegments.length != 3) {
+            throw new IllegalArgumentException("Malformed request line");
+        }
 
         return new HttpRequestLine(
                 HttpMethod.of(requestLineSegments[0]),
@@ -15,7 +15,9 @@
  */
 package com.julianjupiter.kitty.http;
 
+import java.time.Duration;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * @author Julian Jupiter
@@ -43,5 +45,14 @@ public non-sealed interface HttpResponse extends HttpMessage {
 
     HttpResponse body(String body);
 
+    HttpResponse webSocket(WebSocketListener listener);
+
+    HttpResponse eventStream(Consumer<EventSink> onOpen);
+
+    /**
+     * Adds a phase to the {@code Server-Timing} header, or does nothing if the server does not send one.
+     */
+    HttpResponse serverTiming(String name, Duration duration);
+
     void next();
 }
@@ -15,6 +15,8 @@
  */
 package com.julianjupiter.kitty.http;
 
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.concurrent.ExecutorService;
 
 /**
@@ -34,4 +36,112 @@ public interface HttpServer extends Starter {
     HttpServer executorService(ExecutorService executorService);
 
     HttpServer hostname(String hostname);
+
+    HttpServer memoryBudget(long memoryBudget);
+
+    HttpServer webSocketMaxMessageSize(int maxMessageSize);
+
+    HttpServer webSocketPingInterval(Duration pingInterval);
+
+    HttpServer webSocketCompression(boolean compression);
+
+    HttpServer eventStreamFlushInterval(Duration flushInterval);
+
+    HttpServer eventStreamHeartbeatInterval(Duration heartbeatInterval);
+
+    HttpServer metricsPath(String path);
+
+    HttpServer headerReadTimeout(Duration headerReadTimeout);
+
+    HttpServer bodyReadTimeout(Duration bodyReadTimeout);
+
+    HttpServer keepAliveTimeout(Duration keepAliveTimeout);
+
+    HttpServer writeTimeout(Duration writeTimeout);
+
+    HttpServer maxRequestLineLength(int maxRequestLineLength);
+
+    HttpServer maxHeaderSize(int maxHeaderSize);
+
+    HttpServer maxHeaderCount(int maxHeaderCount);
+
+    HttpServer maxBodySize(int maxBodySize);
+
+    HttpServer multipartMemoryThreshold(int multipartMemoryThreshold);
+
+    HttpServer multipartMaxPartSize(long multipartMaxPartSize);
+
+    HttpServer multipartMaxSize(long multipartMaxSize);
+
+    HttpServer accessLog(Path accessLog);
+
+    HttpServer accessLogPattern(String accessLogPattern);
+
+    HttpServer accessLogBufferSize(int accessLogBufferSize);
+
+    HttpServer accessLogOverflow(AccessLogOverflow accessLogOverflow);
+
+    HttpServer accessLogMaxFileSize(long accessLogMaxFileSize);
+
+    HttpServer accessLogMaxFiles(int accessLogMaxFiles);
+
+    HttpServer unixSocket(Path unixSocket);
+
+    HttpServer unixSocketPermissions(String unixSocketPermissions);
+
+    HttpServer tcpListener(boolean tcpListener);
+
+    HttpServer requestDeadline(Duration requestDeadline);
+
+    HttpServer requestDeadlineHeader(String requestDeadlineHeader);
+
+    HttpServer rateLimit(int rateLimit);
+
+    HttpServer rateLimitBurst(int rateLimitBurst);
+
+    HttpServer rateLimitMaxClients(int rateLimitMaxClients);
+
+    HttpServer rateLimitHeader(String rateLimitHeader);
+
+    HttpServer rateLimitCookie(String rateLimitCookie);
+
+    HttpServer adaptiveConcurrency(boolean adaptiveConcurrency);
+
+    HttpServer concurrencyLimitMin(int concurrencyLimitMin);
+
+    HttpServer concurrencyLimitMax(int concurrencyLimitMax);
+
+    HttpServer concurrencyLimitInitial(int concurrencyLimitInitial);
+
+    HttpServer lane(Lane lane);
+
+    HttpServer maxConnections(int maxConnections);
+
+    HttpServer listener(Listener listener);
+
+    HttpServer virtualHost(String host, HttpHandler handler);
+
+    HttpServer tracing(boolean tracing);
+
+    HttpServer traceSampleRate(double traceSampleRate);
+
+    HttpServer spanExporter(SpanExporter spanExporter);
+
+    HttpServer requestIdHeader(String requestIdHeader);
+
+    HttpServer serverTiming(boolean serverTiming);
+
+    HttpServer slowRequestThreshold(Duration slowRequestThreshold);
+
+    HttpServer slowRequestReportsPerMinute(int slowRequestReportsPerMinute);
+
+    HttpServer slowRequestsPath(String slowRequestsPath);
+
+    HttpServer allocationAccounting(boolean allocationAccounting);
+
+    HttpServer allocationHeader(String allocationHeader);
+
+    HttpServer pinningThreshold(Duration pinningThreshold);
+
+    HttpServer pinningPath(String pinningPath);
 }
@@ -22,6 +22,7 @@ import java.util.Optional;
  * @author Julian Jupiter
  */
 public enum HttpVersion {
+    HTTP_1_0("HTTP/1.0"),
     HTTP_1_1("HTTP/1.1"),
     HTTP_2("HTTP/2"),
     HTTP_3("HTTP/3");
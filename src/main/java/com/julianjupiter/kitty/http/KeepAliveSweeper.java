@@ -0,0 +1,66 @@
+/*
+ * Copyright 2013-2023 Julian Jupiter.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.julianjupiter.kitty.http;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * One periodic sweep over every long-lived connection instead of a timer per connection.
+ *
+ * @author Julian Jupiter
+ */
+final class KeepAliveSweeper {
+    private final ScheduledExecutorService scheduler;
+    private final long intervalNanos;
+    private final Set<Participant> connections = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean started = new AtomicBoolean();
+
+    KeepAliveSweeper(ScheduledExecutorService scheduler, Duration interval) {
+        this.scheduler = scheduler;
+        this.intervalNanos = interval.toNanos();
+    }
+
+    void register(Participant connection) {
+        this.connections.add(connection);
+        if (this.intervalNanos > 0 && this.started.compareAndSet(false, true)) {
+            this.scheduler.scheduleAtFixedRate(this::sweep, this.intervalNanos, this.intervalNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    void unregister(Participant connection) {
+        this.connections.remove(connection);
+    }
+
+    int size() {
+        return this.connections.size();
+    }
+
+    private void sweep() {
+        var now = System.nanoTime();
+        for (var connection : this.connections) {
+            connection.keepAlive(now, this.intervalNanos);
+        }
+    }
+
+    interface Participant {
+        void keepAlive(long now, long intervalNanos);
+    }
+}
@@ -19,7 +19,13 @@ import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
 
 /**
@@ -29,6 +35,9 @@ final class KittyHttpServer implements HttpServer, Runnable {
     private final System.Logger logger = System.getLogger(KittyHttpServer.class.getName());
     private final KittyServerConfiguration serverConfiguration;
     private Thread worker;
+    private volatile ServerSocket serverSocket;
+    private volatile UnixSocketListener unixListener;
+    private final List<ServerSocket> listenerSockets = new CopyOnWriteArrayList<>();
     private volatile boolean running = false;
 
     static {
@@ -56,6 +65,330 @@ final class KittyHttpServer implements HttpServer, Runnable {
         return this;
     }
 
+    @Override
+    public HttpServer memoryBudget(long memoryBudget) {
+        this.serverConfiguration.memoryBudget(memoryBudget);
+        return this;
+    }
+
+    @Override
+    public HttpServer webSocketMaxMessageSize(int maxMessageSize) {
+        this.serverConfiguration.webSocketMaxMessageSize(maxMessageSize);
+        return this;
+    }
+
+    @Override
+    public HttpServer webSocketPingInterval(Duration pingInterval) {
+        this.serverConfiguration.webSocketPingInterval(pingInterval);
+        return this;
+    }
+
+    @Override
+    public HttpServer webSocketCompression(boolean compression) {
+        this.serverConfiguration.webSocketCompression(compression);
+        return this;
+    }
+
+    @Override
+    public HttpServer eventStreamFlushInterval(Duration flushInterval) {
+        this.serverConfiguration.eventStreamFlushInterval(flushInterval);
+        return this;
+    }
+
+    @Override
+    public HttpServer eventStreamHeartbeatInterval(Duration heartbeatInterval) {
+        this.serverConfiguration.eventStreamHeartbeatInterval(heartbeatInterval);
+        return this;
+    }
+
+    @Override
+    public HttpServer metricsPath(String path) {
+        this.serverConfiguration.metricsPath(path);
+        return this;
+    }
+
+    @Override
+    public HttpServer headerReadTimeout(Duration headerReadTimeout) {
+        this.serverConfiguration.headerReadTimeout(headerReadTimeout);
+        return this;
+    }
+
+    @Override
+    public HttpServer bodyReadTimeout(Duration bodyReadTimeout) {
+        this.serverConfiguration.bodyReadTimeout(bodyReadTimeout);
+        return this;
+    }
+
+    @Override
+    public HttpServer keepAliveTimeout(Duration keepAliveTimeout) {
+        this.serverConfiguration.keepAliveTimeout(keepAliveTimeout);
+        return this;
+    }
+
+    @Override
+    public HttpServer writeTimeout(Duration writeTimeout) {
+        this.serverConfiguration.writeTimeout(writeTimeout);
+        return this;
+    }
+
+    @Override
+    public HttpServer maxRequestLineLength(int maxRequestLineLength) {
+        this.serverConfiguration.maxRequestLineLength(maxRequestLineLength);
+        return this;
+    }
+
+    @Override
+    public HttpServer maxHeaderSize(int maxHeaderSize) {
+        this.serverConfiguration.maxHeaderSize(maxHeaderSize);
+        return this;
+    }
+
+    @Override
+    public HttpServer maxHeaderCount(int maxHeaderCount) {
+        this.serverConfiguration.maxHeaderCount(maxHeaderCount);
+        return this;
+    }
+
+    @Override
+    public HttpServer maxBodySize(int maxBodySize) {
+        this.serverConfiguration.maxBodySize(maxBodySize);
+        return this;
+    }
+
+    @Override
+    public HttpServer multipartMemoryThreshold(int multipartMemoryThreshold) {
+        this.serverConfiguration.multipartMemoryThreshold(multipartMemoryThreshold);
+        return this;
+    }
+
+    @Override
+    public HttpServer multipartMaxPartSize(long multipartMaxPartSize) {
+        this.serverConfiguration.multipartMaxPartSize(multipartMaxPartSize);
+        return this;
+    }
+
+    @Override
+    public HttpServer multipartMaxSize(long multipartMaxSize) {
+        this.serverConfiguration.multipartMaxSize(multipartMaxSize);
+        return this;
+    }
+
+    @Override
+    public HttpServer accessLog(Path accessLog) {
+        this.serverConfiguration.accessLog(accessLog);
+        return this;
+    }
+
+    @Override
+    public HttpServer accessLogPattern(String accessLogPattern) {
+        this.serverConfiguration.accessLogPattern(accessLogPattern);
+        return this;
+    }
+
+    @Override
+    public HttpServer accessLogBufferSize(int accessLogBufferSize) {
+        this.serverConfiguration.accessLogBufferSize(accessLogBufferSize);
+        return this;
+    }
+
+    @Override
+    public HttpServer accessLogOverflow(AccessLogOverflow accessLogOverflow) {
+        this.serverConfiguration.accessLogOverflow(accessLogOverflow);
+        return this;
+    }
+
+    @Override
+    public HttpServer accessLogMaxFileSize(long accessLogMaxFileSize) {
+        this.serverConfiguration.accessLogMaxFileSize(accessLogMaxFileSize);
+        return this;
+    }
+
+    @Override
+    public HttpServer accessLogMaxFiles(int accessLogMaxFiles) {
+        this.serverConfiguration.accessLogMaxFiles(accessLogMaxFiles);
+        return this;
+    }
+
+    @Override
+    public HttpServer unixSocket(Path unixSocket) {
+        this.serverConfiguration.unixSocket(unixSocket);
+        return this;
+    }
+
+    @Override
+    public HttpServer unixSocketPermissions(String unixSocketPermissions) {
+        this.serverConfiguration.unixSocketPermissions(unixSocketPermissions);
+        return this;
+    }
+
+    @Override
+    public HttpServer tcpListener(boolean tcpListener) {
+        this.serverConfiguration.tcpListener(tcpListener);
+        return this;
+    }
+
+    @Override
+    public HttpServer requestDeadline(Duration requestDeadline) {
+        this.serverConfiguration.requestDeadline(requestDeadline);
+        return this;
+    }
+
+    @Override
+    public HttpServer requestDeadlineHeader(String requestDeadlineHeader) {
+        this.serverConfiguration.requestDeadlineHeader(requestDeadlineHeader);
+        return this;
+    }
+
+    @Override
+    public HttpServer rateLimit(int rateLimit) {
+        this.serverConfiguration.rateLimit(rateLimit);
+        return this;
+    }
+
+    @Override
+    public HttpServer rateLimitBurst(int rateLimitBurst) {
+        this.serverConfiguration.rateLimitBurst(rateLimitBurst);
+        return this;
+    }
+
+    @Override
+    public HttpServer rateLimitMaxClients(int rateLimitMaxClients) {
+        this.serverConfiguration.rateLimitMaxClients(rateLimitMaxClients);
+        return this;
+    }
+
+    @Override
+    public HttpServer rateLimitHeader(String rateLimitHeader) {
+        this.serverConfiguration.rateLimitHeader(rateLimitHeader);
+        return this;
+    }
+
+    @Override
+    public HttpServer rateLimitCookie(String rateLimitCookie) {
+        this.serverConfiguration.rateLimitCookie(rateLimitCookie);
+        return this;
+    }
+
+    @Override
+    public HttpServer adaptiveConcurrency(boolean adaptiveConcurrency) {
+        this.serverConfiguration.adaptiveConcurrency(adaptiveConcurrency);
+        return this;
+    }
+
+    @Override
+    public HttpServer concurrencyLimitMin(int concurrencyLimitMin) {
+        this.serverConfiguration.concurrencyLimitMin(concurrencyLimitMin);
+        return this;
+    }
+
+    @Override
+    public HttpServer concurrencyLimitMax(int concurrencyLimitMax) {
+        this.serverConfiguration.concurrencyLimitMax(concurrencyLimitMax);
+        return this;
+    }
+
+    @Override
+    public HttpServer concurrencyLimitInitial(int concurrencyLimitInitial) {
+        this.serverConfiguration.concurrencyLimitInitial(concurrencyLimitInitial);
+        return this;
+    }
+
+    @Override
+    public HttpServer lane(Lane lane) {
+        this.serverConfiguration.lane(lane);
+        return this;
+    }
+
+    @Override
+    public HttpServer maxConnections(int maxConnections) {
+        this.serverConfiguration.maxConnections(maxConnections);
+        return this;
+    }
+
+    @Override
+    public HttpServer listener(Listener listener) {
+        this.serverConfiguration.listener(listener);
+        return this;
+    }
+
+    @Override
+    public HttpServer virtualHost(String host, HttpHandler handler) {
+        this.serverConfiguration.virtualHost(host, handler);
+        return this;
+    }
+
+    @Override
+    public HttpServer tracing(boolean tracing) {
+        this.serverConfiguration.tracing(tracing);
+        return this;
+    }
+
+    @Override
+    public HttpServer traceSampleRate(double traceSampleRate) {
+        this.serverConfiguration.traceSampleRate(traceSampleRate);
+        return this;
+    }
+
+    @Override
+    public HttpServer spanExporter(SpanExporter spanExporter) {
+        this.serverConfiguration.spanExporter(spanExporter);
+        return this;
+    }
+
+    @Override
+    public HttpServer requestIdHeader(String requestIdHeader) {
+        this.serverConfiguration.requestIdHeader(requestIdHeader);
+        return this;
+    }
+
+    @Override
+    public HttpServer serverTiming(boolean serverTiming) {
+        this.serverConfiguration.serverTiming(serverTiming);
+        return this;
+    }
+
+    @Override
+    public HttpServer slowRequestThreshold(Duration slowRequestThreshold) {
+        this.serverConfiguration.slowRequestThreshold(slowRequestThreshold);
+        return this;
+    }
+
+    @Override
+    public HttpServer slowRequestReportsPerMinute(int slowRequestReportsPerMinute) {
+        this.serverConfiguration.slowRequestReportsPerMinute(slowRequestReportsPerMinute);
+        return this;
+    }
+
+    @Override
+    public HttpServer slowRequestsPath(String slowRequestsPath) {
+        this.serverConfiguration.slowRequestsPath(slowRequestsPath);
+        return this;
+    }
+
+    @Override
+    public HttpServer allocationAccounting(boolean allocationAccounting) {
+        this.serverConfiguration.allocationAccounting(allocationAccounting);
+        return this;
+    }
+
+    @Override
+    public HttpServer allocationHeader(String allocationHeader) {
+        this.serverConfiguration.allocationHeader(allocationHeader);
+        return this;
+    }
+
+    @Override
+    public HttpServer pinningThreshold(Duration pinningThreshold) {
+        this.serverConfiguration.pinningThreshold(pinningThreshold);
+        return this;
+    }
+
+    @Override
+    public HttpServer pinningPath(String pinningPath) {
+        this.serverConfiguration.pinningPath(pinningPath);
+        return this;
+    }
+
     @Override
     public void start() {
         this.startServer();
@@ -82,31 +415,225 @@ final class KittyHttpServer implements HttpServer, Runnable {
         this.startServer();
     }
 
+    @Override
+    public void stop() {
+        this.running = false;
+        var serverSocket = this.serverSocket;
+        if (serverSocket != null) {
+            try {
+                serverSocket.close();
+            } catch (IOException exception) {
+                this.logger.log(System.Logger.Level.WARNING, exception.getMessage());
+            }
+        }
+
+        var unixListener = this.unixListener;
+        if (unixListener != null) {
+            try {
+                unixListener.close();
+            } catch (IOException exception) {
+                this.logger.log(System.Logger.Level.WARNING, exception.getMessage());
+            }
+        }
+
+        this.closeListenerSockets();
+    }
+
     @Override
     public void run() {
         this.running = true;
+        var unixSocket = this.serverConfiguration.unixSocket();
+        if (!this.serverConfiguration.tcpListener() && unixSocket == null) {
+            this.logger.log(System.Logger.Level.ERROR, "Neither a TCP listener nor a Unix domain socket is configured.");
+            return;
+        }
 
+        Thread unixAcceptor = null;
+        var listenerAcceptors = new ArrayList<Thread>();
+        try (var context = new ServerContext(this.serverConfiguration)) {
+            var listeners = context.listeners();
+            var main = listeners[0];
+            // every port is bound before any is served, so a taken admin port stops the server at once
+            for (var i = 1; i < listeners.length; i++) {
+                var listener = listeners[i];
+                var serverSocket = this.bindListener((KittyListener) this.serverConfiguration.listeners().get(i - 1));
+                listenerAcceptors.add(Thread.ofPlatform()
+                        .name(this.serverConfiguration.name() + "-" + listener.name() + "-acceptor")
+                        .start(() -> this.acceptListener(serverSocket, listener, context)));
+            }
+
+            if (unixSocket != null) {
+                var unixListener = UnixSocketListener.bind(unixSocket, this.serverConfiguration.unixSocketPermissions());
+                this.unixListener = unixListener;
+                this.logger.log(System.Logger.Level.INFO, "HTTP server started on " + unixListener.path() + ".");
+                if (this.serverConfiguration.tcpListener()) {
+                    unixAcceptor = Thread.ofPlatform()
+                            .name(this.serverConfiguration.name() + "-unix-acceptor")
+                            .start(() -> this.acceptUnix(unixListener, main, context));
+                } else {
+                    this.acceptUnix(unixListener, main, context);
+                }
+            }
+
+            if (this.serverConfiguration.tcpListener()) {
+                this.acceptTcp(main, context);
+            }
+        } catch (IOException exception) {
+            if (this.running) {
+                this.logger.log(System.Logger.Level.ERROR, exception.getMessage());
+            }
+        } finally {
+            this.running = false;
+            this.closeUnixListener(unixAcceptor);
+            this.closeListeners(listenerAcceptors);
+        }
+
+        this.logger.log(System.Logger.Level.INFO, "HTTP server stopped.");
+    }
+
+    private void acceptTcp(ListenerContext listener, ServerContext context) throws IOException {
         try (var serverSocket = new ServerSocket()) {
+            this.serverSocket = serverSocket;
             serverSocket.bind(this.inetSocketAddress());
             int port = serverSocket.getLocalPort();
             this.logger.log(System.Logger.Level.INFO, "HTTP server started on port " + port + ".");
+            this.accept(serverSocket, listener, context);
+        } catch (IOException exception) {
+            // closing the server socket is how stop() interrupts accept()
+            if (this.running) {
+                throw exception;
+            }
+        }
+    }
+
+    private void acceptListener(ServerSocket serverSocket, ListenerContext listener, ServerContext context) {
+        try (serverSocket) {
+            this.accept(serverSocket, listener, context);
+        } catch (IOException exception) {
+            if (this.running) {
+                this.logger.log(System.Logger.Level.ERROR, exception.getMessage());
+            }
+        }
+    }
+
+    private void accept(ServerSocket serverSocket, ListenerContext listener, ServerContext context) throws IOException {
+        while (this.running) {
+            if (!listener.reserve()) {
+                continue;
+            }
+
+            Socket clientSocket;
+            try {
+                clientSocket = serverSocket.accept();
+            } catch (IOException exception) {
+                listener.unreserve();
+                throw exception;
+            }
+            var acceptEvent = new ConnectionAcceptEvent();
+            acceptEvent.begin();
+            this.handleClient(ClientConnection.of(clientSocket), listener, context, acceptEvent);
+        }
+    }
+
+    private void acceptUnix(UnixSocketListener unixListener, ListenerContext listener, ServerContext context) {
+        try {
             while (this.running) {
-                var clientSocket = serverSocket.accept();
-                this.handleClient(clientSocket);
+                if (!listener.reserve()) {
+                    continue;
+                }
+
+                SocketChannel channel;
+                try {
+                    channel = unixListener.accept();
+                } catch (IOException exception) {
+                    listener.unreserve();
+                    throw exception;
+                }
+                var acceptEvent = new ConnectionAcceptEvent();
+                acceptEvent.begin();
+                this.handleClient(ClientConnection.of(channel), listener, context, acceptEvent);
+            }
+        } catch (IOException exception) {
+            if (this.running) {
+                this.logger.log(System.Logger.Level.ERROR, exception.getMessage());
+            }
+        }
+    }
+
+    private ServerSocket bindListener(KittyListener listener) throws IOException {
+        var serverSocket = new ServerSocket();
+        this.listenerSockets.add(serverSocket);
+        var hostname = listener.hostname();
+        serverSocket.bind(hostname != null && !hostname.isBlank()
+                ? new InetSocketAddress(hostname, listener.port())
+                : new InetSocketAddress(listener.port()));
+        this.logger.log(System.Logger.Level.INFO, "HTTP listener " + listener.name() + " started on port "
+                + serverSocket.getLocalPort() + ".");
+        return serverSocket;
+    }
+
+    private void closeListenerSockets() {
+        for (var serverSocket : this.listenerSockets) {
+            try {
+                serverSocket.close();
+            } catch (IOException exception) {
+                this.logger.log(System.Logger.Level.WARNING, exception.getMessage());
+            }
+        }
+    }
+
+    private void closeListeners(List<Thread> acceptors) {
+        this.closeListenerSockets();
+        this.listenerSockets.clear();
+        try {
+            for (var acceptor : acceptors) {
+                acceptor.join();
+            }
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // deletes the socket file, also when the server stops because the TCP listener failed
+    private void closeUnixListener(Thread unixAcceptor) {
+        var unixListener = this.unixListener;
+        if (unixListener == null) {
+            return;
+        }
+
+        try {
+            unixListener.close();
+            if (unixAcceptor != null) {
+                unixAcceptor.join();
             }
         } catch (IOException exception) {
-            this.logger.log(System.Logger.Level.ERROR, exception.getMessage());
+            this.logger.log(System.Logger.Level.WARNING, exception.getMessage());
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
         }
     }
 
-    private void handleClient(Socket clientSocket) {
-        try (var executorService = this.serverConfiguration.executorService()) {
-            var clientHandler = new ClientHandler(clientSocket, this.serverConfiguration.handler());
+    private void handleClient(ClientConnection clientSocket, ListenerContext listener, ServerContext context,
+                              ConnectionAcceptEvent acceptEvent) {
+        // the executor is shared by every connection of the listener, so it must outlive this call
+        var executorService = listener.executorService();
+        try {
+            var clientHandler = new ClientHandler(clientSocket, context, listener, acceptEvent);
             if (executorService != null) {
                 executorService.execute(clientHandler);
             } else {
                 Thread.ofVirtual().start(clientHandler);
             }
+        } catch (RuntimeException exception) {
+            // a saturated executor or a failing handler costs only this connection, the acceptor keeps going
+            listener.unreserve();
+            try {
+                clientSocket.close();
+            } catch (IOException closeException) {
+                exception.addSuppressed(closeException);
+            }
+            this.logger.log(System.Logger.Level.ERROR, "Connection to " + listener.name() + " dropped: "
+                    + exception.getMessage(), exception);
         }
     }
 
@@ -0,0 +1,217 @@
+/*
+ * Copyright 2013-2023 Julian Jupiter.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.julianjupiter.kitty.http;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Slots are permits of a fair semaphore, so queued requests are let in in arrival order; a slot is only held while
+ * the handler runs, the response is written on the connection's thread as usual.
+ *
+ * @author Julian Jupiter
+ */
+final class KittyLane implements Lane {
+    static final int DEFAULT_MAX_CONCURRENCY = 64;
+    static final int DEFAULT_MAX_QUEUE = 256;
+    static final Duration DEFAULT_QUEUE_TIMEOUT = Duration.ofSeconds(10);
+    // thrown for every request a lane turns away, so it is built once
+    private static final RequestRejectedException REJECTION = new RequestRejectedException(HttpStatus.SERVICE_UNAVAILABLE,
+            "Lane is full");
+    private final String name;
+    private final List<Predicate<HttpRequest>> rules = new ArrayList<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final LongAdder rejected = new LongAdder();
+    private final LogLinearHistogram queueTime = new LogLinearHistogram();
+    private final LogLinearHistogram duration = new LogLinearHistogram();
+    private int maxConcurrency = DEFAULT_MAX_CONCURRENCY;
+    private Semaphore slots = new Semaphore(DEFAULT_MAX_CONCURRENCY, true);
+    private int maxQueue = DEFAULT_MAX_QUEUE;
+    private long queueTimeoutNanos = DEFAULT_QUEUE_TIMEOUT.toNanos();
+    private ExecutorService executor;
+
+    KittyLane(String name) {
+        this.name = Objects.requireNonNull(name);
+    }
+
+    @Override
+    public String name() {
+        return this.name;
+    }
+
+    @Override
+    public Lane route(String path) {
+        var prefix = path.endsWith("/") ? path : path + "/";
+        return this.matching(request -> {
+            var requestPath = request.requestLine().target().getPath();
+            return requestPath != null && (requestPath.equals(path) || requestPath.startsWith(prefix));
+        });
+    }
+
+    @Override
+    public Lane method(HttpMethod method) {
+        Objects.requireNonNull(method);
+        return this.matching(request -> method.equals(request.requestLine().method()));
+    }
+
+    @Override
+    public Lane header(String name, String value) {
+        Objects.requireNonNull(name);
+        return this.matching(request -> request.header(name)
+                .map(header -> value == null || header.value().strip().equalsIgnoreCase(value))
+                .orElse(false));
+    }
+
+    @Override
+    public Lane matching(Predicate<HttpRequest> predicate) {
+        this.rules.add(Objects.requireNonNull(predicate));
+        return this;
+    }
+
+    @Override
+    public Lane maxConcurrency(int maxConcurrency) {
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("Lane max concurrency must be positive");
+        }
+
+        this.maxConcurrency = maxConcurrency;
+        this.slots = new Semaphore(maxConcurrency, true);
+        return this;
+    }
+
+    @Override
+    public Lane maxQueue(int maxQueue) {
+        if (maxQueue < 0) {
+            throw new IllegalArgumentException("Lane max queue must not be negative");
+        }
+
+        this.maxQueue = maxQueue;
+        return this;
+    }
+
+    @Override
+    public Lane queueTimeout(Duration queueTimeout) {
+        this.queueTimeoutNanos = queueTimeout.isZero() ? Long.MAX_VALUE : queueTimeout.toNanos();
+        return this;
+    }
+
+    @Override
+    public Lane executor(ExecutorService executor) {
+        this.executor = executor;
+        return this;
+    }
+
+    boolean matches(HttpRequest request) {
+        for (var rule : this.rules) {
+            if (rule.test(request)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Waits for a slot, runs {@code handler} in it, on the lane's executor if it has one, and gives the slot back.
+     * Throws {@link RequestRejectedException} if the queue is full or the wait times out.
+     */
+    HttpResponse handle(Supplier<HttpResponse> handler) {
+        this.enter();
+        var start = System.nanoTime();
+        try {
+            return this.executor == null ? handler.get() : this.call(handler);
+        } finally {
+            this.duration.record(System.nanoTime() - start);
+            this.slots.release();
+        }
+    }
+
+    private void enter() {
+        var start = System.nanoTime();
+        try {
+            // the timed variant, unlike tryAcquire(), does not jump the queue
+            if (!this.slots.tryAcquire(0, TimeUnit.NANOSECONDS)) {
+                if (this.queued.incrementAndGet() > this.maxQueue) {
+                    this.queued.decrementAndGet();
+                    this.rejected.increment();
+                    throw REJECTION;
+                }
+                try {
+                    if (!this.slots.tryAcquire(this.queueTimeoutNanos, TimeUnit.NANOSECONDS)) {
+                        this.rejected.increment();
+                        throw REJECTION;
+                    }
+                } finally {
+                    this.queued.decrementAndGet();
+                }
+            }
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            this.rejected.increment();
+            throw REJECTION;
+        }
+
+        this.queueTime.record(System.nanoTime() - start);
+    }
+
+    private HttpResponse call(Supplier<HttpResponse> handler) {
+        try {
+            return this.executor.submit(handler::get).get();
+        } catch (ExecutionException exception) {
+            if (exception.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (exception.getCause() instanceof Error error) {
+                throw error;
+            }
+
+            throw new HttpServerException(exception.getCause().getMessage());
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new HttpServerException("Interrupted while waiting for lane " + this.name);
+        }
+    }
+
+    int inFlight() {
+        return this.maxConcurrency - this.slots.availablePermits();
+    }
+
+    int queued() {
+        return this.queued.get();
+    }
+
+    long rejected() {
+        return this.rejected.sum();
+    }
+
+    LogLinearHistogram queueTime() {
+        return this.queueTime;
+    }
+
+    LogLinearHistogram duration() {
+        return this.duration;
+    }
+}
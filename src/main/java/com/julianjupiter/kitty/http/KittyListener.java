@@ -0,0 +1,141 @@
+/*
+ * Copyright 2013-2023 Julian Jupiter.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.julianjupiter.kitty.http;
+
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * @author Julian Jupiter
+ */
+final class KittyListener implements Listener {
+    static final long DEFAULT_MEMORY_BUDGET = 16L * 1024 * 1024;
+    private final String name;
+    private final int port;
+    private final HttpHandler handler;
+    private String hostname;
+    private ExecutorService executorService = ServerConfiguration.DEFAULT_EXECUTOR_SERVICE;
+    private int maxConnections;
+    private long memoryBudget = DEFAULT_MEMORY_BUDGET;
+    private String metricsPath;
+    private String slowRequestsPath;
+    private String pinningPath;
+
+    KittyListener(String name, int port, HttpHandler handler) {
+        if (port < 0 || port > 65535) {
+            throw new IllegalArgumentException("Port out of range: " + port);
+        }
+
+        this.name = Objects.requireNonNull(name);
+        this.port = port;
+        this.handler = Objects.requireNonNull(handler);
+    }
+
+    @Override
+    public String name() {
+        return this.name;
+    }
+
+    @Override
+    public int port() {
+        return this.port;
+    }
+
+    @Override
+    public Listener hostname(String hostname) {
+        this.hostname = hostname;
+        return this;
+    }
+
+    @Override
+    public Listener executorService(ExecutorService executorService) {
+        if (executorService != null) {
+            this.executorService = executorService;
+        }
+
+        return this;
+    }
+
+    @Override
+    public Listener maxConnections(int maxConnections) {
+        if (maxConnections < 0) {
+            throw new IllegalArgumentException("Max connections must not be negative");
+        }
+
+        this.maxConnections = maxConnections;
+        return this;
+    }
+
+    @Override
+    public Listener memoryBudget(long memoryBudget) {
+        if (memoryBudget < 1) {
+            throw new IllegalArgumentException("Memory budget must be positive");
+        }
+
+        this.memoryBudget = memoryBudget;
+        return this;
+    }
+
+    @Override
+    public Listener metricsPath(String metricsPath) {
+        this.metricsPath = metricsPath;
+        return this;
+    }
+
+    @Override
+    public Listener slowRequestsPath(String slowRequestsPath) {
+        this.slowRequestsPath = slowRequestsPath;
+        return this;
+    }
+
+    @Override
+    public Listener pinningPath(String pinningPath) {
+        this.pinningPath = pinningPath;
+        return this;
+    }
+
+    HttpHandler handler() {
+        return this.handler;
+    }
+
+    String hostname() {
+        return this.hostname;
+    }
+
+    ExecutorService executorService() {
+        return this.executorService;
+    }
+
+    int maxConnections() {
+        return this.maxConnections;
+    }
+
+    long memoryBudget() {
+        return this.memoryBudget;
+    }
+
+    String metricsPath() {
+        return this.metricsPath;
+    }
+
+    String slowRequestsPath() {
+        return this.slowRequestsPath;
+    }
+
+    String pinningPath() {
+        return this.pinningPath;
+    }
+}
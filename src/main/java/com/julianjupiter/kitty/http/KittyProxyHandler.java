@@ -0,0 +1,697 @@
+/*
+ * Copyright 2013-2023 Julian Jupiter.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.julianjupiter.kitty.http;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The handler only marks the response; the exchange itself runs on the connection thread once the handler returns,
+ * with the unread request body and the raw client output, so nothing is materialized on the way through.
+ *
+ * @author Julian Jupiter
+ */
+final class KittyProxyHandler implements ProxyHandler {
+    private static final System.Logger LOGGER = System.getLogger(KittyProxyHandler.class.getName());
+    private static final Set<String> HOP_BY_HOP = Set.of("connection", "keep-alive", "proxy-connection",
+            "proxy-authenticate", "proxy-authorization", "te", "trailer", "transfer-encoding", "upgrade");
+    // replaced by the proxy rather than forwarded
+    private static final Set<String> REWRITTEN = Set.of("host", "content-length", "expect",
+            "x-forwarded-for", "x-forwarded-host", "x-forwarded-proto");
+    private static final byte[] CRLF = {'\r', '\n'};
+    private static final byte[] LAST_CHUNK = "0\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+    private static final int BUFFER_SIZE = 8192;
+    private static final int MAX_ATTEMPTS = 3;
+    private final Upstream[] upstreams;
+    private final AtomicBoolean started = new AtomicBoolean();
+    private volatile boolean closed;
+    private Duration connectTimeout = Duration.ofSeconds(5);
+    private Duration readTimeout = Duration.ofSeconds(60);
+    private Duration idleTimeout = Duration.ofSeconds(15);
+    private int maxIdleConnections = 32;
+    private int failureThreshold = 3;
+    private Duration downtime = Duration.ofSeconds(10);
+    private String healthCheckPath;
+    private Duration healthCheckInterval;
+    private boolean preserveHost;
+
+    KittyProxyHandler(List<URI> upstreams) {
+        if (upstreams.isEmpty()) {
+            throw new IllegalArgumentException("At least one upstream is required");
+        }
+
+        this.upstreams = upstreams.stream()
+                .map(Upstream::new)
+                .toArray(Upstream[]::new);
+    }
+
+    @Override
+    public HttpResponse handle(HttpRequest request, HttpResponse response) {
+        if (this.healthCheckPath != null && this.started.compareAndSet(false, true)) {
+            Thread.ofVirtual().name("kitty-proxy-health-check").start(this::checkHealth);
+        }
+
+        return ((DefaultHttpResponse) response).body(new ProxyHttpBody(this));
+    }
+
+    @Override
+    public ProxyHandler connectTimeout(Duration connectTimeout) {
+        this.connectTimeout = Objects.requireNonNull(connectTimeout);
+        return this;
+    }
+
+    @Override
+    public ProxyHandler readTimeout(Duration readTimeout) {
+        this.readTimeout = Objects.requireNonNull(readTimeout);
+        return this;
+    }
+
+    @Override
+    public ProxyHandler idleTimeout(Duration idleTimeout) {
+        this.idleTimeout = Objects.requireNonNull(idleTimeout);
+        return this;
+    }
+
+    @Override
+    public ProxyHandler maxIdleConnections(int maxIdleConnections) {
+        if (maxIdleConnections < 0) {
+            throw new IllegalArgumentException("Maximum idle connections must not be negative");
+        }
+
+        this.maxIdleConnections = maxIdleConnections;
+        return this;
+    }
+
+    @Override
+    public ProxyHandler failureThreshold(int failureThreshold) {
+        if (failureThreshold < 1) {
+            throw new IllegalArgumentException("Failure threshold must be positive");
+        }
+
+        this.failureThreshold = failureThreshold;
+        return this;
+    }
+
+    @Override
+    public ProxyHandler downtime(Duration downtime) {
+        this.downtime = Objects.requireNonNull(downtime);
+        return this;
+    }
+
+    @Override
+    public ProxyHandler healthCheck(String path, Duration interval) {
+        if (!interval.isPositive()) {
+            throw new IllegalArgumentException("Health check interval must be positive");
+        }
+
+        this.healthCheckPath = Objects.requireNonNull(path);
+        this.healthCheckInterval = interval;
+        return this;
+    }
+
+    @Override
+    public ProxyHandler preserveHost(boolean preserveHost) {
+        this.preserveHost = preserveHost;
+        return this;
+    }
+
+    @Override
+    public void close() {
+        this.closed = true;
+        for (var upstream : this.upstreams) {
+            upstream.close();
+        }
+    }
+
+    /**
+     * Forwards one exchange and writes the upstream's response, or a 502, 503 or 504 of its own, to {@code output}.
+     * Client I/O errors are thrown; upstream errors are answered. A response cut off by the upstream leaves the
+     * client connection unusable, which the result reports.
+     */
+    Exchange forward(DefaultHttpRequest request, InetAddress client, OutputStream output) throws IOException {
+        var body = request.bodyStream();
+        byte[] bufferedBody = null;
+        if (body == null) {
+            bufferedBody = switch (request.readBody()) {
+                case DefaultHttpBody defaultBody -> defaultBody.value().getBytes(StandardCharsets.UTF_8);
+                case NoContentHttpBody noContentBody -> null;
+                default -> throw new IllegalStateException("A request body parsed as " + request.readBody().getClass().getSimpleName() + " cannot be forwarded");
+            };
+        }
+
+        var chunked = body != null && request.header("Transfer-Encoding").isPresent();
+        var contentLength = body == null
+                ? bufferedBody == null ? -1 : bufferedBody.length
+                : chunked ? -1 : HttpRequestFactory.contentLength(request);
+        var buffer = new byte[BUFFER_SIZE];
+        var attempted = false;
+        Upstream previous = null;
+        Upstream stale = null;
+        for (var attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+            var upstream = stale != null ? stale : this.choose(previous);
+            if (upstream == null) {
+                break;
+            }
+
+            attempted = true;
+            previous = upstream;
+            upstream.begin();
+            UpstreamConnection connection = null;
+            var sent = false;
+            try {
+                connection = upstream.acquire(this.millis(this.connectTimeout), this.millis(this.readTimeout), this.idleTimeout.toNanos(), stale != null);
+                var upstreamOutput = connection.output();
+                upstreamOutput.write(this.requestHead(request, upstream, client, chunked, contentLength));
+                if (bufferedBody != null) {
+                    upstreamOutput.write(bufferedBody);
+                } else if (body != null) {
+                    copyBody(body, upstreamOutput, chunked, buffer);
+                }
+                upstreamOutput.flush();
+                sent = true;
+
+                var head = readResponseHead(connection.input(), request);
+                var exchange = this.respond(request, head, connection, output, buffer);
+                upstream.succeeded();
+                upstream.release(connection, exchange.upstreamReusable(), this.maxIdleConnections);
+                return exchange;
+            } catch (ClientException exception) {
+                if (connection != null) {
+                    connection.close();
+                }
+                throw exception.unwrap();
+            } catch (ResponseException exception) {
+                // the response head already went out, only closing tells the client it is incomplete
+                connection.close();
+                upstream.failed(this.failureThreshold, this.downtime.toNanos());
+                LOGGER.log(System.Logger.Level.WARNING, "Upstream " + upstream + " failed inside a response: " + exception.getCause().getMessage());
+                return new Exchange(exception.status, exception.written, false, false);
+            } catch (IOException | RequestRejectedException exception) {
+                var reused = connection != null && connection.reused();
+                stale = null;
+                if (connection == null) {
+                    // the pooled connections of an upstream that refuses new ones are as good as dead
+                    upstream.close();
+                } else {
+                    connection.close();
+                }
+
+                var timedOut = exception instanceof SocketTimeoutException;
+                if (!reused || timedOut) {
+                    upstream.failed(this.failureThreshold, this.downtime.toNanos());
+                    LOGGER.log(System.Logger.Level.WARNING, "Upstream " + upstream + " failed: " + exception.getMessage());
+                }
+
+                // not connected, nothing was sent, or a request that is safe to repeat hit a keep-alive connection
+                // the upstream had closed, which is retried once on a new connection to the same upstream
+                var retry = !timedOut && (connection == null
+                        || body == null && (!sent || reused && isIdempotent(request.requestLine().method())));
+                if (!retry) {
+                    return error(timedOut ? HttpStatus.GATEWAY_TIMEOUT : HttpStatus.BAD_GATEWAY, output, body != null && !drain(body, buffer));
+                }
+
+                if (reused) {
+                    stale = upstream;
+                }
+            } finally {
+                upstream.end();
+            }
+        }
+
+        return error(attempted ? HttpStatus.BAD_GATEWAY : HttpStatus.SERVICE_UNAVAILABLE, output, body != null && !drain(body, buffer));
+    }
+
+    private Upstream choose(Upstream excluded) {
+        var now = System.nanoTime();
+        var upstreams = this.upstreams;
+        if (upstreams.length == 1) {
+            return upstreams[0] != excluded && upstreams[0].available(now) ? upstreams[0] : null;
+        }
+
+        // power of two choices: the less busy of two random upstreams
+        var random = ThreadLocalRandom.current();
+        var first = random.nextInt(upstreams.length);
+        var second = random.nextInt(upstreams.length - 1);
+        if (second >= first) {
+            second++;
+        }
+
+        var a = upstreams[first];
+        var b = upstreams[second];
+        var aUsable = a != excluded && a.available(now);
+        var bUsable = b != excluded && b.available(now);
+        if (aUsable && bUsable) {
+            return a.inFlight() <= b.inFlight() ? a : b;
+        }
+
+        if (aUsable || bUsable) {
+            return aUsable ? a : b;
+        }
+
+        for (var i = 0; i < upstreams.length; i++) {
+            var upstream = upstreams[(first + i) % upstreams.length];
+            if (upstream != excluded && upstream.available(now)) {
+                return upstream;
+            }
+        }
+
+        return null;
+    }
+
+    private byte[] requestHead(HttpRequest request, Upstream upstream, InetAddress client, boolean chunked, long contentLength) {
+        var requestLine = request.requestLine();
+        var head = new StringBuilder(512)
+                .append(requestLine.method().value()).append(' ')
+                .append(upstream.pathPrefix()).append(requestLine.target()).append(" HTTP/1.1\r\n");
+        var headers = rawHeaders(request);
+        var host = first(headers, "Host");
+        head.append("Host: ").append(this.preserveHost && host != null ? host : upstream.authority()).append("\r\n");
+
+        var listed = listedInConnection(headers);
+        // with tracing on, the upstream's span is a child of this server's
+        var trace = request instanceof DefaultHttpRequest defaultRequest ? defaultRequest.openedTrace() : null;
+        String forwardedFor = null;
+        for (var header : headers) {
+            var name = header.name().toLowerCase(Locale.ROOT);
+            if (name.equals("x-forwarded-for")) {
+                forwardedFor = forwardedFor == null ? header.value() : forwardedFor + ", " + header.value();
+            }
+            if (!HOP_BY_HOP.contains(name) && !REWRITTEN.contains(name) && !listed.contains(name)
+                    && !(trace != null && name.equals("traceparent"))) {
+                head.append(header.name()).append(": ").append(header.value()).append("\r\n");
+            }
+        }
+        if (trace != null) {
+            head.append("traceparent: ").append(trace.traceparent()).append("\r\n");
+        }
+
+        // a peer on a Unix domain socket has no address to add
+        if (client != null) {
+            forwardedFor = forwardedFor == null ? client.getHostAddress() : forwardedFor + ", " + client.getHostAddress();
+        }
+        if (forwardedFor != null) {
+            head.append("X-Forwarded-For: ").append(forwardedFor).append("\r\n");
+        }
+        head.append("X-Forwarded-Proto: http\r\n");
+        if (host != null) {
+            head.append("X-Forwarded-Host: ").append(host).append("\r\n");
+        }
+
+        if (chunked) {
+            head.append("Transfer-Encoding: chunked\r\n");
+        } else if (contentLength >= 0) {
+            head.append("Content-Length: ").append(contentLength).append("\r\n");
+        }
+
+        return head.append("\r\n").toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    // reads from the client and writes to the upstream, so failures are attributed to the right side
+    private static void copyBody(InputStream body, OutputStream upstream, boolean chunked, byte[] buffer) throws IOException {
+        while (true) {
+            int read;
+            try {
+                read = body.read(buffer);
+            } catch (IOException | RequestRejectedException exception) {
+                throw new ClientException(exception);
+            }
+
+            if (read == -1) {
+                break;
+            }
+
+            if (chunked) {
+                upstream.write(Integer.toHexString(read).getBytes(StandardCharsets.US_ASCII));
+                upstream.write(CRLF);
+                upstream.write(buffer, 0, read);
+                upstream.write(CRLF);
+            } else {
+                upstream.write(buffer, 0, read);
+            }
+        }
+
+        if (chunked) {
+            upstream.write(LAST_CHUNK);
+        }
+    }
+
+    // the server's own line reader and header parser, skipping interim 1xx responses
+    private static ResponseHead readResponseHead(InputStream input, HttpRequest request) throws IOException {
+        var line = new ByteArrayOutputStream(128);
+        while (true) {
+            var statusLine = HttpRequestFactory.readLine(input, line, RequestLimits.DEFAULT.requestLineLength(), HttpStatus.BAD_GATEWAY);
+            if (statusLine == null) {
+                throw new IOException("Upstream closed the connection without a response");
+            }
+
+            if (statusLine.length() < 12 || !statusLine.startsWith("HTTP/1.")) {
+                throw new IOException("Invalid upstream status line: " + statusLine);
+            }
+
+            int status;
+            try {
+                status = Integer.parseInt(statusLine, 9, 12, 10);
+            } catch (NumberFormatException exception) {
+                throw new IOException("Invalid upstream status line: " + statusLine);
+            }
+
+            var text = new StringBuilder(512).append(statusLine).append('\n');
+            var headerSize = 0;
+            String header;
+            while ((header = HttpRequestFactory.readLine(input, line, RequestLimits.DEFAULT.headerSize() - headerSize, HttpStatus.BAD_GATEWAY)) != null
+                    && !header.isEmpty()) {
+                headerSize += header.length();
+                text.append(header).append('\n');
+            }
+
+            if (status >= 100 && status < 200 && status != 101) {
+                continue;
+            }
+
+            var headers = rawHeaders(text.toString());
+            var http10 = statusLine.startsWith("HTTP/1.0");
+            return new ResponseHead(status, "HTTP/1.1" + statusLine.substring(8), headers, http10,
+                    request.requestLine().method() == HttpMethod.HEAD);
+        }
+    }
+
+    private Exchange respond(HttpRequest request, ResponseHead head, UpstreamConnection connection, OutputStream output, byte[] buffer) throws IOException {
+        var headers = head.headers();
+        var contentLength = -1L;
+        var transferEncoded = false;
+        var chunked = false;
+        for (var header : headers) {
+            if (header.name().equalsIgnoreCase("Content-Length")) {
+                long length;
+                try {
+                    length = Long.parseLong(header.value());
+                } catch (NumberFormatException exception) {
+                    throw new IOException("Invalid upstream Content-Length");
+                }
+                if (contentLength >= 0 && length != contentLength) {
+                    throw new IOException("Conflicting upstream Content-Length");
+                }
+                contentLength = length;
+            } else if (header.name().equalsIgnoreCase("Transfer-Encoding")) {
+                transferEncoded = true;
+                chunked = header.value().toLowerCase(Locale.ROOT).endsWith("chunked");
+            }
+        }
+
+        // Transfer-Encoding overrides Content-Length (RFC 9112 section 6.3); both at once may be an attempt at
+        // response splitting, so the length is not forwarded and the upstream connection is not reused
+        var framedTwice = transferEncoded && contentLength >= 0;
+        if (transferEncoded) {
+            contentLength = -1;
+        }
+
+        var status = head.status();
+        var bodiless = head.headRequest() || status == 204 || status == 304;
+        var untilClose = !bodiless && !chunked && contentLength < 0;
+        // some servers send a body with HEAD anyway, which would corrupt the next exchange on the connection
+        var listed = listedInConnection(headers);
+        var upstreamReusable = !untilClose && !framedTwice && !head.http10() && !head.headRequest() && !listed.contains("close");
+
+        var text = new StringBuilder(512).append(head.statusLine()).append("\r\n");
+        for (var header : headers) {
+            var name = header.name().toLowerCase(Locale.ROOT);
+            if (!HOP_BY_HOP.contains(name) && !listed.contains(name) && !(framedTwice && name.equals("content-length"))) {
+                text.append(header.name()).append(": ").append(header.value()).append("\r\n");
+            }
+        }
+
+        // a chunked or close-delimited upstream body is re-chunked, so the client connection stays reusable,
+        // except for an HTTP/1.0 client, which cannot read chunks and is closed instead
+        var http10Client = request.requestLine().version() == HttpVersion.HTTP_1_0;
+        var rechunk = !bodiless && contentLength < 0 && !http10Client;
+        if (rechunk) {
+            text.append("Transfer-Encoding: chunked\r\n");
+        }
+        if (http10Client || listedInConnection(rawHeaders(request)).contains("close")) {
+            text.append("Connection: close\r\n");
+        }
+        var headBytes = text.append("\r\n").toString().getBytes(StandardCharsets.UTF_8);
+        try {
+            output.write(headBytes);
+        } catch (IOException exception) {
+            throw new ClientException(exception);
+        }
+
+        long written = headBytes.length;
+        if (!bodiless) {
+            var input = connection.input();
+            InputStream body = chunked
+                    ? new ChunkedInputStream(input, Long.MAX_VALUE, RequestLimits.DEFAULT.headerSize())
+                    : contentLength >= 0 ? new ContentLengthInputStream(input, contentLength) : input;
+            written += copyResponse(status, body, input, output, rechunk, buffer, written);
+        }
+
+        try {
+            output.flush();
+        } catch (IOException exception) {
+            throw new ClientException(exception);
+        }
+
+        return new Exchange(status, written, upstreamReusable, !http10Client);
+    }
+
+    // flushes whenever the upstream has nothing more buffered, so streamed responses are not held back
+    private static long copyResponse(int status, InputStream body, InputStream upstream, OutputStream output, boolean chunked, byte[] buffer, long headLength) throws IOException {
+        long written = 0;
+        while (true) {
+            int read;
+            try {
+                read = body.read(buffer);
+            } catch (IOException | RequestRejectedException exception) {
+                throw new ResponseException(status, headLength + written, exception);
+            }
+
+            if (read == -1) {
+                break;
+            }
+
+            try {
+                if (chunked) {
+                    var size = Integer.toHexString(read).getBytes(StandardCharsets.US_ASCII);
+                    output.write(size);
+                    output.write(CRLF);
+                    output.write(buffer, 0, read);
+                    output.write(CRLF);
+                    written += size.length + read + 4;
+                } else {
+                    output.write(buffer, 0, read);
+                    written += read;
+                }
+
+                if (upstream.available() == 0) {
+                    output.flush();
+                }
+            } catch (IOException exception) {
+                throw new ClientException(exception);
+            }
+        }
+
+        if (chunked) {
+            try {
+                output.write(LAST_CHUNK);
+            } catch (IOException exception) {
+                throw new ClientException(exception);
+            }
+            written += LAST_CHUNK.length;
+        }
+
+        return written;
+    }
+
+    private static boolean isIdempotent(HttpMethod method) {
+        return method == HttpMethod.GET || method == HttpMethod.HEAD || method == HttpMethod.OPTIONS
+                || method == HttpMethod.PUT || method == HttpMethod.DELETE || method == HttpMethod.TRACE;
+    }
+
+    private static Set<String> listedInConnection(List<RawHeader> headers) {
+        var listed = new HashSet<String>();
+        for (var header : headers) {
+            if (header.name().equalsIgnoreCase("Connection")) {
+                for (var token : header.value().split(",")) {
+                    listed.add(token.strip().toLowerCase(Locale.ROOT));
+                }
+            }
+        }
+
+        return listed;
+    }
+
+    // forwarded as received, the parsed headers split values on ';' and keep only the last of repeated names
+    private static List<RawHeader> rawHeaders(HttpRequest request) {
+        if (request instanceof DefaultHttpRequest defaultRequest && defaultRequest.head() != null) {
+            return rawHeaders(defaultRequest.head());
+        }
+
+        return request.headers().stream()
+                .map(header -> new RawHeader(header.name(), header.value()))
+                .toList();
+    }
+
+    // the lines after the first of a head read by HttpRequestFactory.readLine
+    private static List<RawHeader> rawHeaders(String head) {
+        var headers = new ArrayList<RawHeader>();
+        var start = head.indexOf('\n') + 1;
+        while (start < head.length()) {
+            var end = head.indexOf('\n', start);
+            if (end < 0) {
+                end = head.length();
+            }
+            var separator = head.indexOf(':', start);
+            if (separator > start && separator < end) {
+                headers.add(new RawHeader(head.substring(start, separator).strip(), head.substring(separator + 1, end).strip()));
+            }
+            start = end + 1;
+        }
+
+        return headers;
+    }
+
+    private static String first(List<RawHeader> headers, String name) {
+        for (var header : headers) {
+            if (header.name().equalsIgnoreCase(name)) {
+                return header.value();
+            }
+        }
+
+        return null;
+    }
+
+    // the unread rest of a request body is drained when it is small, otherwise the client connection is closed
+    private static boolean drain(InputStream body, byte[] buffer) {
+        try {
+            var drained = 0L;
+            int read;
+            while ((read = body.read(buffer)) != -1) {
+                drained += read;
+                if (drained > 64 * 1024) {
+                    return false;
+                }
+            }
+
+            return true;
+        } catch (IOException | RequestRejectedException exception) {
+            return false;
+        }
+    }
+
+    private static Exchange error(HttpStatus status, OutputStream output, boolean close) throws IOException {
+        var head = ("HTTP/1.1 " + status + "\r\nContent-Length: 0\r\n" + (close ? "Connection: close\r\n" : "") + "\r\n")
+                .getBytes(StandardCharsets.US_ASCII);
+        output.write(head);
+        output.flush();
+        return new Exchange(status.value(), head.length, false, !close);
+    }
+
+    private int millis(Duration duration) {
+        return (int) Math.min(Integer.MAX_VALUE, duration.toMillis());
+    }
+
+    private void checkHealth() {
+        var line = new ByteArrayOutputStream(128);
+        while (!this.closed) {
+            try {
+                Thread.sleep(this.healthCheckInterval);
+            } catch (InterruptedException exception) {
+                return;
+            }
+
+            for (var upstream : this.upstreams) {
+                if (this.closed) {
+                    return;
+                }
+
+                try (var socket = new Socket()) {
+                    socket.connect(new InetSocketAddress(upstream.host(), upstream.port()), this.millis(this.connectTimeout));
+                    socket.setSoTimeout(this.millis(this.readTimeout));
+                    socket.getOutputStream().write(("GET " + upstream.pathPrefix() + this.healthCheckPath + " HTTP/1.1\r\nHost: "
+                            + upstream.authority() + "\r\nConnection: close\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+                    var statusLine = HttpRequestFactory.readLine(socket.getInputStream(), line, RequestLimits.DEFAULT.requestLineLength(), HttpStatus.BAD_GATEWAY);
+                    var status = statusLine == null || statusLine.length() < 12 ? 0 : Integer.parseInt(statusLine, 9, 12, 10);
+                    if (status >= 200 && status < 400) {
+                        upstream.succeeded();
+                    } else {
+                        upstream.failed(this.failureThreshold, this.healthCheckInterval.toNanos());
+                    }
+                } catch (IOException | RuntimeException exception) {
+                    upstream.failed(this.failureThreshold, this.healthCheckInterval.toNanos());
+                }
+            }
+        }
+    }
+
+    /**
+     * Outcome of one proxied exchange: the status sent, the bytes written to the client, and whether each connection
+     * can be used again.
+     */
+    record Exchange(int status, long written, boolean upstreamReusable, boolean clientReusable) {
+    }
+
+    private record RawHeader(String name, String value) {
+    }
+
+    private record ResponseHead(int status, String statusLine, List<RawHeader> headers, boolean http10, boolean headRequest) {
+    }
+
+    private static final class ClientException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        private ClientException(Exception cause) {
+            super(cause);
+        }
+
+        IOException unwrap() {
+            if (this.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+
+            return (IOException) this.getCause();
+        }
+    }
+
+    private static final class ResponseException extends IOException {
+        private static final long serialVersionUID = 1L;
+        private final int status;
+        private final long written;
+
+        private ResponseException(int status, long written, Exception cause) {
+            super(cause);
+            this.status = status;
+            this.written = written;
+        }
+    }
+}
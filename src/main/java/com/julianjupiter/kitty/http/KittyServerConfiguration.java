@@ -15,6 +15,14 @@
  */
 package com.julianjupiter.kitty.http;
 
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.concurrent.ExecutorService;
 
 /**
@@ -25,8 +33,62 @@ class KittyServerConfiguration implements ServerConfiguration {
     private String hostname;
     private int port = DEFAULT_PORT;
     private final HttpHandler handler;
+    private final List<Lane> lanes = new ArrayList<>();
+    private final List<Listener> listeners = new ArrayList<>();
+    private final Map<String, HttpHandler> virtualHosts = new LinkedHashMap<>();
     private ExecutorService executorService = DEFAULT_EXECUTOR_SERVICE;
     private int bufferCapacity = DEFAULT_BUFFER_CAPACITY;
+    private long memoryBudget = DEFAULT_MEMORY_BUDGET;
+    private int webSocketMaxMessageSize = DEFAULT_WEB_SOCKET_MAX_MESSAGE_SIZE;
+    private Duration webSocketPingInterval = DEFAULT_WEB_SOCKET_PING_INTERVAL;
+    private boolean webSocketCompression = true;
+    private Duration eventStreamFlushInterval = DEFAULT_EVENT_STREAM_FLUSH_INTERVAL;
+    private Duration eventStreamHeartbeatInterval = DEFAULT_EVENT_STREAM_HEARTBEAT_INTERVAL;
+    private String metricsPath;
+    private Duration headerReadTimeout = DEFAULT_HEADER_READ_TIMEOUT;
+    private Duration bodyReadTimeout = DEFAULT_BODY_READ_TIMEOUT;
+    private Duration keepAliveTimeout = DEFAULT_KEEP_ALIVE_TIMEOUT;
+    private Duration writeTimeout = DEFAULT_WRITE_TIMEOUT;
+    private int maxRequestLineLength = DEFAULT_MAX_REQUEST_LINE_LENGTH;
+    private int maxHeaderSize = DEFAULT_MAX_HEADER_SIZE;
+    private int maxHeaderCount = DEFAULT_MAX_HEADER_COUNT;
+    private int maxBodySize = DEFAULT_MAX_BODY_SIZE;
+    private int multipartMemoryThreshold = DEFAULT_MULTIPART_MEMORY_THRESHOLD;
+    private long multipartMaxPartSize = DEFAULT_MULTIPART_MAX_PART_SIZE;
+    private long multipartMaxSize = DEFAULT_MULTIPART_MAX_SIZE;
+    private Path accessLog;
+    private String accessLogPattern = DEFAULT_ACCESS_LOG_PATTERN;
+    private int accessLogBufferSize = DEFAULT_ACCESS_LOG_BUFFER_SIZE;
+    private AccessLogOverflow accessLogOverflow = DEFAULT_ACCESS_LOG_OVERFLOW;
+    private long accessLogMaxFileSize = DEFAULT_ACCESS_LOG_MAX_FILE_SIZE;
+    private int accessLogMaxFiles = DEFAULT_ACCESS_LOG_MAX_FILES;
+    private Path unixSocket;
+    private String unixSocketPermissions = DEFAULT_UNIX_SOCKET_PERMISSIONS;
+    private boolean tcpListener = true;
+    private Duration requestDeadline = DEFAULT_REQUEST_DEADLINE;
+    private String requestDeadlineHeader;
+    private int rateLimit;
+    private int rateLimitBurst;
+    private int rateLimitMaxClients = DEFAULT_RATE_LIMIT_MAX_CLIENTS;
+    private String rateLimitHeader;
+    private String rateLimitCookie;
+    private boolean adaptiveConcurrency;
+    private int concurrencyLimitMin = DEFAULT_CONCURRENCY_LIMIT_MIN;
+    private int concurrencyLimitMax = DEFAULT_CONCURRENCY_LIMIT_MAX;
+    private int concurrencyLimitInitial = DEFAULT_CONCURRENCY_LIMIT_INITIAL;
+    private int maxConnections = DEFAULT_MAX_CONNECTIONS;
+    private boolean tracing;
+    private double traceSampleRate = DEFAULT_TRACE_SAMPLE_RATE;
+    private SpanExporter spanExporter;
+    private String requestIdHeader;
+    private boolean serverTiming;
+    private Duration slowRequestThreshold = DEFAULT_SLOW_REQUEST_THRESHOLD;
+    private int slowRequestReportsPerMinute = DEFAULT_SLOW_REQUEST_REPORTS_PER_MINUTE;
+    private String slowRequestsPath;
+    private boolean allocationAccounting;
+    private String allocationHeader;
+    private Duration pinningThreshold = DEFAULT_PINNING_THRESHOLD;
+    private String pinningPath;
 
     public KittyServerConfiguration(HttpHandler handler, String name) {
         this.handler = handler;
@@ -84,4 +146,621 @@ class KittyServerConfiguration implements ServerConfiguration {
         this.bufferCapacity = bufferCapacity;
         return this;
     }
+
+    public long memoryBudget() {
+        return memoryBudget;
+    }
+
+    public KittyServerConfiguration memoryBudget(long memoryBudget) {
+        if (memoryBudget < 1) {
+            throw new IllegalArgumentException("Memory budget must be positive");
+        }
+
+        this.memoryBudget = memoryBudget;
+        return this;
+    }
+
+    public int webSocketMaxMessageSize() {
+        return webSocketMaxMessageSize;
+    }
+
+    public KittyServerConfiguration webSocketMaxMessageSize(int webSocketMaxMessageSize) {
+        if (webSocketMaxMessageSize < 1) {
+            throw new IllegalArgumentException("WebSocket maximum message size must be positive");
+        }
+
+        this.webSocketMaxMessageSize = webSocketMaxMessageSize;
+        return this;
+    }
+
+    public Duration webSocketPingInterval() {
+        return webSocketPingInterval;
+    }
+
+    public KittyServerConfiguration webSocketPingInterval(Duration webSocketPingInterval) {
+        if (webSocketPingInterval != null) {
+            this.webSocketPingInterval = webSocketPingInterval;
+        }
+
+        return this;
+    }
+
+    public boolean webSocketCompression() {
+        return webSocketCompression;
+    }
+
+    public KittyServerConfiguration webSocketCompression(boolean webSocketCompression) {
+        this.webSocketCompression = webSocketCompression;
+        return this;
+    }
+
+    public Duration eventStreamFlushInterval() {
+        return eventStreamFlushInterval;
+    }
+
+    public KittyServerConfiguration eventStreamFlushInterval(Duration eventStreamFlushInterval) {
+        if (eventStreamFlushInterval != null) {
+            this.eventStreamFlushInterval = eventStreamFlushInterval;
+        }
+
+        return this;
+    }
+
+    public Duration eventStreamHeartbeatInterval() {
+        return eventStreamHeartbeatInterval;
+    }
+
+    public KittyServerConfiguration eventStreamHeartbeatInterval(Duration eventStreamHeartbeatInterval) {
+        if (eventStreamHeartbeatInterval != null) {
+            this.eventStreamHeartbeatInterval = eventStreamHeartbeatInterval;
+        }
+
+        return this;
+    }
+
+    public String metricsPath() {
+        return metricsPath;
+    }
+
+    public KittyServerConfiguration metricsPath(String metricsPath) {
+        if (metricsPath != null && !metricsPath.startsWith("/")) {
+            throw new IllegalArgumentException("Metrics path must start with '/'");
+        }
+
+        this.metricsPath = metricsPath;
+        return this;
+    }
+
+    public Duration headerReadTimeout() {
+        return headerReadTimeout;
+    }
+
+    public KittyServerConfiguration headerReadTimeout(Duration headerReadTimeout) {
+        if (headerReadTimeout != null) {
+            this.headerReadTimeout = headerReadTimeout;
+        }
+
+        return this;
+    }
+
+    public Duration bodyReadTimeout() {
+        return bodyReadTimeout;
+    }
+
+    public KittyServerConfiguration bodyReadTimeout(Duration bodyReadTimeout) {
+        if (bodyReadTimeout != null) {
+            this.bodyReadTimeout = bodyReadTimeout;
+        }
+
+        return this;
+    }
+
+    public Duration keepAliveTimeout() {
+        return keepAliveTimeout;
+    }
+
+    public KittyServerConfiguration keepAliveTimeout(Duration keepAliveTimeout) {
+        if (keepAliveTimeout != null) {
+            this.keepAliveTimeout = keepAliveTimeout;
+        }
+
+        return this;
+    }
+
+    public Duration writeTimeout() {
+        return writeTimeout;
+    }
+
+    public KittyServerConfiguration writeTimeout(Duration writeTimeout) {
+        if (writeTimeout != null) {
+            this.writeTimeout = writeTimeout;
+        }
+
+        return this;
+    }
+
+    public int maxRequestLineLength() {
+        return maxRequestLineLength;
+    }
+
+    public KittyServerConfiguration maxRequestLineLength(int maxRequestLineLength) {
+        if (maxRequestLineLength < 1) {
+            throw new IllegalArgumentException("Maximum request line length must be positive");
+        }
+
+        this.maxRequestLineLength = maxRequestLineLength;
+        return this;
+    }
+
+    public int maxHeaderSize() {
+        return maxHeaderSize;
+    }
+
+    public KittyServerConfiguration maxHeaderSize(int maxHeaderSize) {
+        if (maxHeaderSize < 1) {
+            throw new IllegalArgumentException("Maximum header size must be positive");
+        }
+
+        this.maxHeaderSize = maxHeaderSize;
+        return this;
+    }
+
+    public int maxHeaderCount() {
+        return maxHeaderCount;
+    }
+
+    public KittyServerConfiguration maxHeaderCount(int maxHeaderCount) {
+        if (maxHeaderCount < 1) {
+            throw new IllegalArgumentException("Maximum header count must be positive");
+        }
+
+        this.maxHeaderCount = maxHeaderCount;
+        return this;
+    }
+
+    public int maxBodySize() {
+        return maxBodySize;
+    }
+
+    public KittyServerConfiguration maxBodySize(int maxBodySize) {
+        if (maxBodySize < 1) {
+            throw new IllegalArgumentException("Maximum body size must be positive");
+        }
+
+        this.maxBodySize = maxBodySize;
+        return this;
+    }
+
+    public int multipartMemoryThreshold() {
+        return multipartMemoryThreshold;
+    }
+
+    public KittyServerConfiguration multipartMemoryThreshold(int multipartMemoryThreshold) {
+        if (multipartMemoryThreshold < 1) {
+            throw new IllegalArgumentException("Multipart memory threshold must be positive");
+        }
+
+        this.multipartMemoryThreshold = multipartMemoryThreshold;
+        return this;
+    }
+
+    public long multipartMaxPartSize() {
+        return multipartMaxPartSize;
+    }
+
+    public KittyServerConfiguration multipartMaxPartSize(long multipartMaxPartSize) {
+        if (multipartMaxPartSize < 1) {
+            throw new IllegalArgumentException("Multipart maximum part size must be positive");
+        }
+
+        this.multipartMaxPartSize = multipartMaxPartSize;
+        return this;
+    }
+
+    public long multipartMaxSize() {
+        return multipartMaxSize;
+    }
+
+    public KittyServerConfiguration multipartMaxSize(long multipartMaxSize) {
+        if (multipartMaxSize < 1) {
+            throw new IllegalArgumentException("Multipart maximum size must be positive");
+        }
+
+        this.multipartMaxSize = multipartMaxSize;
+        return this;
+    }
+
+    public Path accessLog() {
+        return accessLog;
+    }
+
+    public KittyServerConfiguration accessLog(Path accessLog) {
+        this.accessLog = accessLog;
+        return this;
+    }
+
+    public String accessLogPattern() {
+        return accessLogPattern;
+    }
+
+    public KittyServerConfiguration accessLogPattern(String accessLogPattern) {
+        if (accessLogPattern != null) {
+            // fails on an unknown directive here rather than when the server starts
+            AccessLogFormat.compile(accessLogPattern);
+            this.accessLogPattern = accessLogPattern;
+        }
+
+        return this;
+    }
+
+    public int accessLogBufferSize() {
+        return accessLogBufferSize;
+    }
+
+    public KittyServerConfiguration accessLogBufferSize(int accessLogBufferSize) {
+        if (accessLogBufferSize < 1) {
+            throw new IllegalArgumentException("Access log buffer size must be positive");
+        }
+
+        this.accessLogBufferSize = accessLogBufferSize;
+        return this;
+    }
+
+    public AccessLogOverflow accessLogOverflow() {
+        return accessLogOverflow;
+    }
+
+    public KittyServerConfiguration accessLogOverflow(AccessLogOverflow accessLogOverflow) {
+        if (accessLogOverflow != null) {
+            this.accessLogOverflow = accessLogOverflow;
+        }
+
+        return this;
+    }
+
+    public long accessLogMaxFileSize() {
+        return accessLogMaxFileSize;
+    }
+
+    public KittyServerConfiguration accessLogMaxFileSize(long accessLogMaxFileSize) {
+        if (accessLogMaxFileSize < 1) {
+            throw new IllegalArgumentException("Access log maximum file size must be positive");
+        }
+
+        this.accessLogMaxFileSize = accessLogMaxFileSize;
+        return this;
+    }
+
+    public int accessLogMaxFiles() {
+        return accessLogMaxFiles;
+    }
+
+    public KittyServerConfiguration accessLogMaxFiles(int accessLogMaxFiles) {
+        if (accessLogMaxFiles < 1) {
+            throw new IllegalArgumentException("Access log maximum files must be positive");
+        }
+
+        this.accessLogMaxFiles = accessLogMaxFiles;
+        return this;
+    }
+
+    public Path unixSocket() {
+        return unixSocket;
+    }
+
+    public KittyServerConfiguration unixSocket(Path unixSocket) {
+        this.unixSocket = unixSocket;
+        return this;
+    }
+
+    public String unixSocketPermissions() {
+        return unixSocketPermissions;
+    }
+
+    public KittyServerConfiguration unixSocketPermissions(String unixSocketPermissions) {
+        if (unixSocketPermissions != null) {
+            // fails on anything but the rwxrwxrwx form here rather than when the server starts
+            PosixFilePermissions.fromString(unixSocketPermissions);
+            this.unixSocketPermissions = unixSocketPermissions;
+        }
+
+        return this;
+    }
+
+    public boolean tcpListener() {
+        return tcpListener;
+    }
+
+    public KittyServerConfiguration tcpListener(boolean tcpListener) {
+        this.tcpListener = tcpListener;
+        return this;
+    }
+
+    public Duration requestDeadline() {
+        return requestDeadline;
+    }
+
+    public KittyServerConfiguration requestDeadline(Duration requestDeadline) {
+        if (requestDeadline != null) {
+            this.requestDeadline = requestDeadline;
+        }
+
+        return this;
+    }
+
+    public String requestDeadlineHeader() {
+        return requestDeadlineHeader;
+    }
+
+    public KittyServerConfiguration requestDeadlineHeader(String requestDeadlineHeader) {
+        this.requestDeadlineHeader = requestDeadlineHeader;
+        return this;
+    }
+
+    public int rateLimit() {
+        return rateLimit;
+    }
+
+    public KittyServerConfiguration rateLimit(int rateLimit) {
+        if (rateLimit < 0 || rateLimit > RateLimiter.MAX_RATE) {
+            throw new IllegalArgumentException("Rate limit must be between 0 and " + RateLimiter.MAX_RATE);
+        }
+
+        this.rateLimit = rateLimit;
+        return this;
+    }
+
+    public int rateLimitBurst() {
+        return rateLimitBurst;
+    }
+
+    public KittyServerConfiguration rateLimitBurst(int rateLimitBurst) {
+        if (rateLimitBurst < 0 || rateLimitBurst > RateLimiter.MAX_BURST) {
+            throw new IllegalArgumentException("Rate limit burst must be between 0 and " + RateLimiter.MAX_BURST);
+        }
+
+        this.rateLimitBurst = rateLimitBurst;
+        return this;
+    }
+
+    public int rateLimitMaxClients() {
+        return rateLimitMaxClients;
+    }
+
+    public KittyServerConfiguration rateLimitMaxClients(int rateLimitMaxClients) {
+        if (rateLimitMaxClients < 1) {
+            throw new IllegalArgumentException("Rate limit max clients must be positive");
+        }
+
+        this.rateLimitMaxClients = rateLimitMaxClients;
+        return this;
+    }
+
+    public String rateLimitHeader() {
+        return rateLimitHeader;
+    }
+
+    public KittyServerConfiguration rateLimitHeader(String rateLimitHeader) {
+        this.rateLimitHeader = rateLimitHeader;
+        return this;
+    }
+
+    public String rateLimitCookie() {
+        return rateLimitCookie;
+    }
+
+    public KittyServerConfiguration rateLimitCookie(String rateLimitCookie) {
+        this.rateLimitCookie = rateLimitCookie;
+        return this;
+    }
+
+    public boolean adaptiveConcurrency() {
+        return adaptiveConcurrency;
+    }
+
+    public KittyServerConfiguration adaptiveConcurrency(boolean adaptiveConcurrency) {
+        this.adaptiveConcurrency = adaptiveConcurrency;
+        return this;
+    }
+
+    public int concurrencyLimitMin() {
+        return concurrencyLimitMin;
+    }
+
+    public KittyServerConfiguration concurrencyLimitMin(int concurrencyLimitMin) {
+        if (concurrencyLimitMin < 1) {
+            throw new IllegalArgumentException("Concurrency limit min must be positive");
+        }
+
+        this.concurrencyLimitMin = concurrencyLimitMin;
+        return this;
+    }
+
+    public int concurrencyLimitMax() {
+        return concurrencyLimitMax;
+    }
+
+    public KittyServerConfiguration concurrencyLimitMax(int concurrencyLimitMax) {
+        if (concurrencyLimitMax < 1) {
+            throw new IllegalArgumentException("Concurrency limit max must be positive");
+        }
+
+        this.concurrencyLimitMax = concurrencyLimitMax;
+        return this;
+    }
+
+    public int concurrencyLimitInitial() {
+        return concurrencyLimitInitial;
+    }
+
+    public KittyServerConfiguration concurrencyLimitInitial(int concurrencyLimitInitial) {
+        if (concurrencyLimitInitial < 1) {
+            throw new IllegalArgumentException("Initial concurrency limit must be positive");
+        }
+
+        this.concurrencyLimitInitial = concurrencyLimitInitial;
+        return this;
+    }
+
+    public List<Lane> lanes() {
+        return List.copyOf(lanes);
+    }
+
+    public KittyServerConfiguration lane(Lane lane) {
+        this.lanes.add(Objects.requireNonNull(lane));
+        return this;
+    }
+
+    public int maxConnections() {
+        return maxConnections;
+    }
+
+    public KittyServerConfiguration maxConnections(int maxConnections) {
+        if (maxConnections < 0) {
+            throw new IllegalArgumentException("Max connections must not be negative");
+        }
+
+        this.maxConnections = maxConnections;
+        return this;
+    }
+
+    public List<Listener> listeners() {
+        return List.copyOf(listeners);
+    }
+
+    public KittyServerConfiguration listener(Listener listener) {
+        this.listeners.add(Objects.requireNonNull(listener));
+        return this;
+    }
+
+    public Map<String, HttpHandler> virtualHosts() {
+        return Map.copyOf(virtualHosts);
+    }
+
+    public KittyServerConfiguration virtualHost(String host, HttpHandler handler) {
+        this.virtualHosts.put(VirtualHosts.normalize(host), Objects.requireNonNull(handler));
+        return this;
+    }
+
+    public boolean tracing() {
+        return tracing;
+    }
+
+    public KittyServerConfiguration tracing(boolean tracing) {
+        this.tracing = tracing;
+        return this;
+    }
+
+    public double traceSampleRate() {
+        return traceSampleRate;
+    }
+
+    public KittyServerConfiguration traceSampleRate(double traceSampleRate) {
+        if (!(traceSampleRate >= 0 && traceSampleRate <= 1)) {
+            throw new IllegalArgumentException("Trace sample rate must be between 0 and 1");
+        }
+
+        this.traceSampleRate = traceSampleRate;
+        return this;
+    }
+
+    public SpanExporter spanExporter() {
+        return spanExporter;
+    }
+
+    public KittyServerConfiguration spanExporter(SpanExporter spanExporter) {
+        this.spanExporter = spanExporter;
+        return this;
+    }
+
+    public String requestIdHeader() {
+        return requestIdHeader;
+    }
+
+    public KittyServerConfiguration requestIdHeader(String requestIdHeader) {
+        this.requestIdHeader = requestIdHeader;
+        return this;
+    }
+
+    public boolean serverTiming() {
+        return serverTiming;
+    }
+
+    public KittyServerConfiguration serverTiming(boolean serverTiming) {
+        this.serverTiming = serverTiming;
+        return this;
+    }
+
+    public Duration slowRequestThreshold() {
+        return slowRequestThreshold;
+    }
+
+    public KittyServerConfiguration slowRequestThreshold(Duration slowRequestThreshold) {
+        if (slowRequestThreshold != null) {
+            this.slowRequestThreshold = slowRequestThreshold;
+        }
+
+        return this;
+    }
+
+    public int slowRequestReportsPerMinute() {
+        return slowRequestReportsPerMinute;
+    }
+
+    public KittyServerConfiguration slowRequestReportsPerMinute(int slowRequestReportsPerMinute) {
+        if (slowRequestReportsPerMinute < 1) {
+            throw new IllegalArgumentException("Slow request reports per minute must be positive");
+        }
+
+        this.slowRequestReportsPerMinute = slowRequestReportsPerMinute;
+        return this;
+    }
+
+    public String slowRequestsPath() {
+        return slowRequestsPath;
+    }
+
+    public KittyServerConfiguration slowRequestsPath(String slowRequestsPath) {
+        this.slowRequestsPath = slowRequestsPath;
+        return this;
+    }
+
+    public boolean allocationAccounting() {
+        return allocationAccounting;
+    }
+
+    public KittyServerConfiguration allocationAccounting(boolean allocationAccounting) {
+        this.allocationAccounting = allocationAccounting;
+        return this;
+    }
+
+    public String allocationHeader() {
+        return allocationHeader;
+    }
+
+    public KittyServerConfiguration allocationHeader(String allocationHeader) {
+        this.allocationHeader = allocationHeader;
+        return this;
+    }
+
+    public Duration pinningThreshold() {
+        return pinningThreshold;
+    }
+
+    public KittyServerConfiguration pinningThreshold(Duration pinningThreshold) {
+        if (pinningThreshold != null) {
+            this.pinningThreshold = pinningThreshold;
+        }
+
+        return this;
+    }
+
+    public String pinningPath() {
+        return pinningPath;
+    }
+
+    public KittyServerConfiguration pinningPath(String pinningPath) {
+        this.pinningPath = pinningPath;
+        return this;
+    }
 }
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2013-2023 Julian Jupiter.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.julianjupiter.kitty.http;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Predicate;
+
+/**
+ * A class of requests handled apart from the others, with its own concurrency limit, queue and, optionally,
+ * executor, so that a burst in one lane cannot hold up another. A request goes to the first lane, in the order they
+ * were added to the server, with a rule that matches it; the rules of one lane are alternatives. Requests that match
+ * no lane are handled as before, without a limit.
+ *
+ * <pre>{@code
+ * HttpServer.createServer(handler)
+ *         .lane(Lane.create("export").route("/export").maxConcurrency(4).maxQueue(16))
+ *         .lane(Lane.create("checkout").route("/checkout").header("X-Priority", "high").maxConcurrency(256));
+ * }</pre>
+ *
+ * @author Julian Jupiter
+ */
+public sealed interface Lane permits KittyLane {
+    static Lane create(String name) {
+        return new KittyLane(name);
+    }
+
+    String name();
+
+    /**
+     * Matches {@code path} and everything below it.
+     */
+    Lane route(String path);
+
+    Lane method(HttpMethod method);
+
+    /**
+     * Matches a request carrying the header with this value, compared ignoring case, or with any value if
+     * {@code value} is {@code null}.
+     */
+    Lane header(String name, String value);
+
+    Lane matching(Predicate<HttpRequest> predicate);
+
+    Lane maxConcurrency(int maxConcurrency);
+
+    /**
+     * Requests that may wait for a free slot; one more is answered with {@code 503 Service Unavailable}.
+     */
+    Lane maxQueue(int maxQueue);
+
+    /**
+     * Longest wait for a free slot before {@code 503 Service Unavailable}; {@link Duration#ZERO} waits as long as it
+     * takes.
+     */
+    Lane queueTimeout(Duration queueTimeout);
+
+    /**
+     * Runs the lane's handlers on {@code executor} instead of the connection's thread.
+     */
+    Lane executor(ExecutorService executor);
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2013-2023 Julian Jupiter.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.julianjupiter.kitty.http;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Another port served by the same server, with its own handler, executor, connection limit and memory budget. The
+ * scheduler, timeouts, buffer pool, metrics and access log are shared with the main listener; rate limiting, the
+ * adaptive concurrency limit, lanes and virtual hosts only apply to the main listener. Connections over a listener's
+ * limit are left waiting in its accept backlog, so a saturated main port cannot hold up an admin port.
+ *
+ * <pre>{@code
+ * HttpServer.createServer(handler)
+ *         .maxConnections(10_000)
+ *         .listener(Listener.create("admin", 9090, adminHandler)
+ *                 .hostname("127.0.0.1")
+ *                 .maxConnections(16)
+ *                 .metricsPath("/metrics"))
+ *         .start(8080);
+ * }</pre>
+ *
+ * @author Julian Jupiter
+ */
+public sealed interface Listener permits KittyListener {
+    static Listener create(String name, int port, HttpHandler handler) {
+        return new KittyListener(name, port, handler);
+    }
+
+    String name();
+
+    int port();
+
+    /**
+     * Binds to this address only, all addresses by default.
+     */
+    Listener hostname(String hostname);
+
+    /**
+     * Runs the listener's connections on {@code executorService}, a virtual thread each by default.
+     */
+    Listener executorService(ExecutorService executorService);
+
+    /**
+     * Connections served at once, {@code 0} (the default) for no limit.
+     */
+    Listener maxConnections(int maxConnections);
+
+    /**
+     * Bytes of request bodies and responses the listener's connections may hold at once.
+     */
+    Listener memoryBudget(long memoryBudget);
+
+    Listener metricsPath(String metricsPath);
+
+    /**
+     * Serves the latest slow request reports, if the server detects slow requests.
+     */
+    Listener slowRequestsPath(String slowRequestsPath);
+
+    /**
+     * Serves the top pinned virtual thread stacks, if the server monitors pinning.
+     */
+    Listener pinningPath(String pinningPath);
+}
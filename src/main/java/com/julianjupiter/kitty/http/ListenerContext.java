@@ -0,0 +1,151 @@
+/*
+ * Copyright 2013-2023 Julian Jupiter.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.julianjupiter.kitty.http;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * What the connections of one listener do not share with the others. A connection slot is reserved before
+ * {@code accept()}, so connections over the limit wait in the kernel's backlog rather than in the server.
+ *
+ * @author Julian Jupiter
+ */
+final class ListenerContext {
+    // how long an acceptor waits for a free slot before checking that the server is still running
+    private static final long RESERVE_WAIT_MILLIS = 100;
+    private final String name;
+    private final HttpHandler handler;
+    private final String metricsPath;
+    private final String slowRequestsPath;
+    private final String pinningPath;
+    private final ExecutorService executorService;
+    private final MemoryBudget memoryBudget;
+    private final Semaphore slots;
+    private final AtomicInteger connections = new AtomicInteger();
+    private final boolean primary;
+
+    private ListenerContext(String name, HttpHandler handler, String metricsPath, String slowRequestsPath,
+                            String pinningPath, ExecutorService executorService, MemoryBudget memoryBudget, int maxConnections,
+                            boolean primary) {
+        this.name = name;
+        this.handler = handler;
+        this.metricsPath = metricsPath;
+        this.slowRequestsPath = slowRequestsPath;
+        this.pinningPath = pinningPath;
+        this.executorService = executorService;
+        this.memoryBudget = memoryBudget;
+        this.slots = maxConnections > 0 ? new Semaphore(maxConnections) : null;
+        this.primary = primary;
+    }
+
+    static ListenerContext primary(KittyServerConfiguration configuration, MemoryBudget memoryBudget) {
+        return new ListenerContext("main", configuration.handler(), configuration.metricsPath(),
+                configuration.slowRequestsPath(), configuration.pinningPath(), configuration.executorService(), memoryBudget,
+                configuration.maxConnections(), true);
+    }
+
+    static ListenerContext of(KittyListener listener) {
+        return new ListenerContext(listener.name(), listener.handler(), listener.metricsPath(),
+                listener.slowRequestsPath(), listener.pinningPath(), listener.executorService(), new MemoryBudget(listener.memoryBudget()),
+                listener.maxConnections(), false);
+    }
+
+    /**
+     * Returns {@code false} if no slot freed up for a while, so the caller can check whether to go on.
+     */
+    boolean reserve() throws InterruptedIOException {
+        if (this.slots == null) {
+            return true;
+        }
+
+        try {
+            return this.slots.tryAcquire(RESERVE_WAIT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+    }
+
+    /**
+     * Gives back a slot reserved for a connection that was never accepted or never handed to a handler.
+     */
+    void unreserve() {
+        if (this.slots != null) {
+            this.slots.release();
+        }
+    }
+
+    void opened() {
+        this.connections.incrementAndGet();
+    }
+
+    void closed() {
+        this.connections.decrementAndGet();
+        this.unreserve();
+    }
+
+    String name() {
+        return this.name;
+    }
+
+    HttpHandler handler() {
+        return this.handler;
+    }
+
+    /**
+     * Returns {@code null} when the listener serves no metrics.
+     */
+    String metricsPath() {
+        return this.metricsPath;
+    }
+
+    /**
+     * Returns {@code null} when the listener serves no slow request reports.
+     */
+    String slowRequestsPath() {
+        return this.slowRequestsPath;
+    }
+
+    /**
+     * Returns {@code null} when the listener serves no pinning report.
+     */
+    String pinningPath() {
+        return this.pinningPath;
+    }
+
+    ExecutorService executorService() {
+        return this.executorService;
+    }
+
+    MemoryBudget memoryBudget() {
+        return this.memoryBudget;
+    }
+
+    int connections() {
+        return this.connections.get();
+    }
+
+    /**
+     * Whether this is the server's own port, the only one rate limiting, the concurrency limit and lanes apply to.
+     */
+    boolean primary() {
+        return this.primary;
+    }
+}
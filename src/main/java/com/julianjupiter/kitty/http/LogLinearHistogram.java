@@ -0,0 +1,111 @@
+/*
+ * Copyright 2013-2023 Julian Jupiter.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.julianjupiter.kitty.http;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free histogram in the style of HdrHistogram: every power of two is split into 32 linear
+ * sub-buckets, which keeps the relative error of any recorded value around 3%. Values are unit-less,
+ * callers pick the unit.
+ *
+ * @author Julian Jupiter
+ */
+final class LogLinearHistogram {
+    private static final int SUB_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int MAX_EXPONENT = 40;
+    private static final long MAX_VALUE = (1L << (MAX_EXPONENT + 1)) - 1;
+    private static final int BUCKETS = (MAX_EXPONENT - SUB_BITS) * SUB_BUCKETS + 2 * SUB_BUCKETS;
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    void record(long value) {
+        value = Math.max(0, Math.min(value, MAX_VALUE));
+        this.counts.incrementAndGet(index(value));
+        this.count.increment();
+        this.sum.add(value);
+        var currentMax = this.max.get();
+        while (value > currentMax && !this.max.compareAndSet(currentMax, value)) {
+            currentMax = this.max.get();
+        }
+    }
+
+    long count() {
+        return this.count.sum();
+    }
+
+    long sum() {
+        return this.sum.sum();
+    }
+
+    long max() {
+        return this.max.get();
+    }
+
+    Snapshot snapshot() {
+        var copy = new long[BUCKETS];
+        var total = 0L;
+        for (var i = 0; i < BUCKETS; i++) {
+            copy[i] = this.counts.get(i);
+            total += copy[i];
+        }
+
+        return new Snapshot(copy, total, this.max.get());
+    }
+
+    static int index(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+
+        var shift = (63 - Long.numberOfLeadingZeros(value)) - SUB_BITS;
+        return shift * SUB_BUCKETS + (int) (value >>> shift);
+    }
+
+    static long highestEquivalentValue(int index) {
+        if (index < 2 * SUB_BUCKETS) {
+            return index;
+        }
+
+        var shift = index / SUB_BUCKETS - 1;
+        var mantissa = index - shift * SUB_BUCKETS;
+        return ((long) (mantissa + 1) << shift) - 1;
+    }
+
+    record Snapshot(long[] counts, long total, long max) {
+        long valueAtPercentile(double percentile) {
+            if (this.total == 0) {
+                return 0;
+            }
+
+            var rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * this.total));
+            var seen = 0L;
+            for (var i = 0; i < this.counts.length; i++) {
+                seen += this.counts[i];
+                if (seen >= rank) {
+                    return Math.min(highestEquivalentValue(i), this.max);
+                }
+            }
+
+            return this.max;
+        }
+    }
+}
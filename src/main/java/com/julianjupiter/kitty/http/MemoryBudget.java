@@ -0,0 +1,161 @@
+/*
+ * Copyright 2013-2023 Julian Jupiter.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.julianjupiter.kitty.http;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Server-wide budget for buffered request and response bytes. A connection that cannot reserve what it is about to
+ * read stops reading until others release, which leaves the bytes in the socket buffers and lets TCP flow control
+ * push back on the client.
+ * <p>
+ * A single exchange needing more than the whole budget is admitted once no other holds any, so it is delayed
+ * rather than refused. A connection may wait while holding part of what its exchange needs, so waits are bounded:
+ * one that times out gives back everything its lease holds and fails the exchange with
+ * {@link HttpStatus#SERVICE_UNAVAILABLE}, which frees the others.
+ *
+ * @author Julian Jupiter
+ */
+final class MemoryBudget {
+    private final long capacity;
+    private final AtomicLong reserved = new AtomicLong();
+    private final LongAdder throttledNanos = new LongAdder();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = this.lock.newCondition();
+    private volatile int waiters;
+
+    MemoryBudget(long capacity) {
+        this.capacity = capacity;
+    }
+
+    long reserved() {
+        return this.reserved.get();
+    }
+
+    long throttledNanos() {
+        return this.throttledNanos.sum();
+    }
+
+    /**
+     * A lease whose reservations wait at most {@code timeoutNanos} for memory.
+     */
+    Lease lease(long timeoutNanos) {
+        return new Lease(timeoutNanos);
+    }
+
+    private boolean acquire(long bytes, long held, long timeoutNanos) throws InterruptedIOException {
+        if (this.tryAcquire(bytes, held)) {
+            return true;
+        }
+
+        var start = System.nanoTime();
+        this.lock.lock();
+        try {
+            this.waiters++;
+            var remaining = timeoutNanos;
+            while (!this.tryAcquire(bytes, held)) {
+                if (remaining <= 0) {
+                    return false;
+                }
+                remaining = this.released.awaitNanos(remaining);
+            }
+
+            return true;
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for memory budget");
+        } finally {
+            this.waiters--;
+            this.lock.unlock();
+            this.throttledNanos.add(System.nanoTime() - start);
+        }
+    }
+
+    // what the caller holds itself does not keep it waiting, others may never release for it
+    private boolean tryAcquire(long bytes, long held) {
+        while (true) {
+            var current = this.reserved.get();
+            if (current > held && current + bytes > this.capacity) {
+                return false;
+            }
+
+            if (this.reserved.compareAndSet(current, current + bytes)) {
+                return true;
+            }
+        }
+    }
+
+    // waiters is written under the lock before a waiter re-checks, so a release either is seen by that check or sees the waiter
+    private void release(long bytes) {
+        this.reserved.addAndGet(-bytes);
+        if (this.waiters > 0) {
+            this.lock.lock();
+            try {
+                this.released.signalAll();
+            } finally {
+                this.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * What one connection holds; reused across its requests and released after each response.
+     */
+    final class Lease {
+        private final long timeoutNanos;
+        private long bytes;
+
+        private Lease(long timeoutNanos) {
+            this.timeoutNanos = timeoutNanos;
+        }
+
+        void acquire(long bytes) throws InterruptedIOException {
+            if (bytes <= 0) {
+                return;
+            }
+
+            if (!MemoryBudget.this.acquire(bytes, this.bytes, this.timeoutNanos)) {
+                this.release();
+                throw new RequestRejectedException(HttpStatus.SERVICE_UNAVAILABLE, "No memory budget left for "
+                        + bytes + " bytes after " + TimeUnit.NANOSECONDS.toMillis(this.timeoutNanos) + " ms");
+            }
+            this.bytes += bytes;
+        }
+
+        /**
+         * Gives back part of what was reserved, the unused rest of a reservation made before a read.
+         */
+        void release(long bytes) {
+            var released = Math.min(bytes, this.bytes);
+            if (released > 0) {
+                MemoryBudget.this.release(released);
+                this.bytes -= released;
+            }
+        }
+
+        void release() {
+            if (this.bytes > 0) {
+                MemoryBudget.this.release(this.bytes);
+                this.bytes = 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2013-2023 Julian Jupiter.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.julianjupiter.kitty.http;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * @author Julian Jupiter
+ */
+final class MemorySpanCollector implements SpanCollector {
+    private final ArrayDeque<Span> spans;
+    private final int capacity;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    MemorySpanCollector(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Span collector capacity must be positive");
+        }
+
+        this.capacity = capacity;
+        this.spans = new ArrayDeque<>(Math.min(capacity, 1024));
+    }
+
+    @Override
+    public void export(Span span) {
+        this.lock.lock();
+        try {
+            if (this.spans.size() == this.capacity) {
+                this.spans.removeFirst();
+            }
+            this.spans.addLast(span);
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    @Override
+    public List<Span> spans() {
+        this.lock.lock();
+        try {
+            return List.copyOf(this.spans);
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        this.lock.lock();
+        try {
+            this.spans.clear();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+}
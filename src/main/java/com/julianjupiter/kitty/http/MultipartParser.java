@@ -0,0 +1,371 @@
+/*
+ * Copyright 2013-2023 Julian Jupiter.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.julianjupiter.kitty.http;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Streaming {@code multipart/form-data} parser. The body passes through one fixed buffer where the delimiter is
+ * located with Boyer-Moore-Horspool; part content before a possible match is handed on immediately, to memory while
+ * the part is under the threshold and to a temporary file through a {@link FileChannel} after that. Heap use is
+ * bounded by the buffer plus the in-memory threshold per part, whatever the upload size.
+ *
+ * @author Julian Jupiter
+ */
+final class MultipartParser {
+    private static final int BUFFER_SIZE = 8192;
+    private final InputStream input;
+    private final RequestLimits limits;
+    private final MemoryBudget.Lease lease;
+    private final byte[] delimiter;
+    private final int[] shift = new int[256];
+    private final byte[] buffer;
+    private final List<MultipartPart> parts = new ArrayList<>();
+    private int position;
+    private int limit;
+    private boolean eof;
+    private long total;
+    private Sink current;
+
+    private MultipartParser(InputStream input, String boundary, RequestLimits limits, MemoryBudget.Lease lease) {
+        this.input = input;
+        this.limits = limits;
+        this.lease = lease;
+        this.delimiter = ("\r\n--" + boundary).getBytes(StandardCharsets.ISO_8859_1);
+        this.buffer = new byte[Math.max(BUFFER_SIZE, this.delimiter.length * 2)];
+        var last = this.delimiter.length - 1;
+        Arrays.fill(this.shift, this.delimiter.length);
+        for (var i = 0; i < last; i++) {
+            this.shift[this.delimiter[i] & 0xFF] = last - i;
+        }
+
+        // the first delimiter has no CRLF in front of it; starting with one lets it match like the others
+        this.buffer[0] = '\r';
+        this.buffer[1] = '\n';
+        this.limit = 2;
+    }
+
+    static List<MultipartPart> parse(InputStream input, String boundary, RequestLimits limits, MemoryBudget.Lease lease) throws IOException {
+        var parser = new MultipartParser(input, boundary, limits, lease);
+        try {
+            return parser.parse();
+        } catch (IOException | RuntimeException exception) {
+            parser.parts.forEach(MultipartPart::delete);
+            if (parser.current != null) {
+                parser.current.delete();
+            }
+            throw exception;
+        }
+    }
+
+    static String boundary(HttpRequest request) {
+        var contentType = request.header("Content-Type");
+        if (contentType.isEmpty()) {
+            return null;
+        }
+
+        var values = contentType.get().values();
+        if (values.stream().noneMatch(value -> value.strip().equalsIgnoreCase("multipart/form-data"))) {
+            return null;
+        }
+
+        var boundary = values.stream()
+                .map(String::strip)
+                .filter(value -> value.regionMatches(true, 0, "boundary=", 0, 9))
+                .map(value -> unquote(value.substring(9)))
+                .findFirst()
+                .orElseThrow(() -> new RequestRejectedException(HttpStatus.BAD_REQUEST, "Multipart boundary is missing"));
+        if (boundary.isEmpty() || boundary.length() > 70) {
+            throw new RequestRejectedException(HttpStatus.BAD_REQUEST, "Invalid multipart boundary");
+        }
+
+        return boundary;
+    }
+
+    private List<MultipartPart> parse() throws IOException {
+        this.readUntilDelimiter(null);
+        while (!this.closeDelimiter()) {
+            var headers = this.readHeaders();
+            var disposition = headers.stream()
+                    .filter(header -> header.name().equalsIgnoreCase("Content-Disposition"))
+                    .map(HttpHeader::value)
+                    .findFirst()
+                    .orElseThrow(() -> new RequestRejectedException(HttpStatus.BAD_REQUEST, "Part without Content-Disposition"));
+            var name = parameter(disposition, "name");
+            if (name == null) {
+                throw new RequestRejectedException(HttpStatus.BAD_REQUEST, "Part without a name");
+            }
+
+            var contentType = headers.stream()
+                    .filter(header -> header.name().equalsIgnoreCase("Content-Type"))
+                    .map(HttpHeader::value)
+                    .findFirst()
+                    .orElse("text/plain");
+
+            this.current = new Sink();
+            this.readUntilDelimiter(this.current);
+            this.parts.add(this.current.finish(name, parameter(disposition, "filename"), contentType, headers));
+            this.current = null;
+        }
+
+        return this.parts;
+    }
+
+    private void readUntilDelimiter(Sink sink) throws IOException {
+        while (true) {
+            var index = this.indexOf(this.position, this.limit);
+            if (index >= 0) {
+                if (sink != null) {
+                    sink.write(this.buffer, this.position, index - this.position);
+                }
+                this.position = index + this.delimiter.length;
+                return;
+            }
+
+            if (this.eof) {
+                throw new RequestRejectedException(HttpStatus.BAD_REQUEST, "Multipart body ends without a closing boundary");
+            }
+
+            // everything but a tail that could be the start of the delimiter is part content
+            var safe = Math.max(this.position, this.limit - this.delimiter.length + 1);
+            if (sink != null) {
+                sink.write(this.buffer, this.position, safe - this.position);
+            }
+            this.position = safe;
+            this.fill();
+        }
+    }
+
+    private int indexOf(int from, int to) {
+        var last = this.delimiter.length - 1;
+        var i = from;
+        while (i + last < to) {
+            var j = last;
+            while (this.buffer[i + j] == this.delimiter[j]) {
+                if (j == 0) {
+                    return i;
+                }
+                j--;
+            }
+            i += this.shift[this.buffer[i + last] & 0xFF];
+        }
+
+        return -1;
+    }
+
+    // after a delimiter: "--" closes the body, otherwise optional padding and CRLF open the next part
+    private boolean closeDelimiter() throws IOException {
+        var first = this.next();
+        if (first == '-' && this.next() == '-') {
+            return true;
+        }
+
+        var b = first;
+        while (b == ' ' || b == '\t') {
+            b = this.next();
+        }
+
+        if (b != '\r' || this.next() != '\n') {
+            throw new RequestRejectedException(HttpStatus.BAD_REQUEST, "Malformed multipart delimiter");
+        }
+
+        return false;
+    }
+
+    private List<HttpHeader> readHeaders() throws IOException {
+        var headers = new ArrayList<HttpHeader>();
+        var line = new ByteArrayOutputStream(64);
+        var size = 0;
+        while (true) {
+            line.reset();
+            int b;
+            while ((b = this.next()) != '\n') {
+                if (b == -1) {
+                    throw new RequestRejectedException(HttpStatus.BAD_REQUEST, "Multipart body ends inside part headers");
+                }
+
+                if (b != '\r') {
+                    if (++size > this.limits.headerSize()) {
+                        throw new RequestRejectedException(HttpStatus.REQUEST_HEADER_FIELDS_TOO_LARGE, "Part headers too large");
+                    }
+                    line.write(b);
+                }
+            }
+
+            if (line.size() == 0) {
+                return headers;
+            }
+
+            if (headers.size() == this.limits.headerCount()) {
+                throw new RequestRejectedException(HttpStatus.REQUEST_HEADER_FIELDS_TOO_LARGE, "Too many part headers");
+            }
+
+            var text = line.toString(StandardCharsets.UTF_8);
+            var separator = text.indexOf(':');
+            if (separator > 0) {
+                headers.add(new HttpHeader(text.substring(0, separator).strip(), text.substring(separator + 1).strip()));
+            }
+        }
+    }
+
+    private int next() throws IOException {
+        if (this.position == this.limit) {
+            this.fill();
+            if (this.position == this.limit) {
+                return -1;
+            }
+        }
+
+        return this.buffer[this.position++] & 0xFF;
+    }
+
+    private void fill() throws IOException {
+        var remaining = this.limit - this.position;
+        System.arraycopy(this.buffer, this.position, this.buffer, 0, remaining);
+        this.position = 0;
+        this.limit = remaining;
+        var read = this.input.read(this.buffer, this.limit, this.buffer.length - this.limit);
+        if (read == -1) {
+            this.eof = true;
+        } else {
+            this.limit += read;
+        }
+    }
+
+    // Content-Disposition parameters, e.g. form-data; name="file"; filename="a;b.txt"
+    static String parameter(String header, String key) {
+        var i = header.indexOf(';');
+        while (i >= 0 && i < header.length()) {
+            i++;
+            while (i < header.length() && header.charAt(i) == ' ') {
+                i++;
+            }
+
+            var equals = header.indexOf('=', i);
+            if (equals < 0) {
+                return null;
+            }
+
+            var name = header.substring(i, equals).strip();
+            var start = equals + 1;
+            String value;
+            int end;
+            if (start < header.length() && header.charAt(start) == '"') {
+                var sb = new StringBuilder();
+                end = start + 1;
+                while (end < header.length() && header.charAt(end) != '"') {
+                    var c = header.charAt(end);
+                    if (c == '\\' && end + 1 < header.length()) {
+                        c = header.charAt(++end);
+                    }
+                    sb.append(c);
+                    end++;
+                }
+                value = sb.toString();
+                end = header.indexOf(';', end);
+            } else {
+                end = header.indexOf(';', start);
+                value = header.substring(start, end < 0 ? header.length() : end).strip();
+            }
+
+            if (name.toLowerCase(Locale.ROOT).equals(key)) {
+                return value;
+            }
+            i = end;
+        }
+
+        return null;
+    }
+
+    private static String unquote(String value) {
+        return value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")
+                ? value.substring(1, value.length() - 1)
+                : value;
+    }
+
+    private final class Sink {
+        private ByteArrayOutputStream memory = new ByteArrayOutputStream();
+        private Path file;
+        private FileChannel channel;
+        private long size;
+
+        void write(byte[] bytes, int offset, int length) throws IOException {
+            if (length == 0) {
+                return;
+            }
+
+            this.size += length;
+            total += length;
+            if (this.size > limits.multipartPartSize() || total > limits.multipartSize()) {
+                throw new RequestRejectedException(HttpStatus.CONTENT_TOO_LARGE, "Multipart part or body too large");
+            }
+
+            if (this.channel == null && this.size > limits.multipartMemoryThreshold()) {
+                this.file = Files.createTempFile("kitty-", ".part");
+                this.channel = FileChannel.open(this.file, StandardOpenOption.WRITE);
+                this.writeFully(ByteBuffer.wrap(this.memory.toByteArray()));
+                this.memory = null;
+            }
+
+            if (this.channel != null) {
+                this.writeFully(ByteBuffer.wrap(bytes, offset, length));
+            } else {
+                lease.acquire(length);
+                this.memory.write(bytes, offset, length);
+            }
+        }
+
+        MultipartPart finish(String name, String filename, String contentType, List<HttpHeader> headers) throws IOException {
+            if (this.channel == null) {
+                return new MultipartPart(name, filename, contentType, List.copyOf(headers), this.memory.toByteArray());
+            }
+
+            this.channel.close();
+            return new MultipartPart(name, filename, contentType, List.copyOf(headers), this.size, this.file);
+        }
+
+        void delete() {
+            try {
+                if (this.channel != null) {
+                    this.channel.close();
+                }
+                if (this.file != null) {
+                    Files.deleteIfExists(this.file);
+                }
+            } catch (IOException ignored) {
+                // the temporary directory is cleaned by the platform eventually
+            }
+        }
+
+        private void writeFully(ByteBuffer source) throws IOException {
+            while (source.hasRemaining()) {
+                this.channel.write(source);
+            }
+        }
+    }
+}
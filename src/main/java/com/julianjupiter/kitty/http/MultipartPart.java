@@ -0,0 +1,136 @@
+/*
+ * Copyright 2013-2023 Julian Jupiter.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.julianjupiter.kitty.http;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * @author Julian Jupiter
+ */
+final class MultipartPart implements Part {
+    private final String name;
+    private final String filename;
+    private final String contentType;
+    private final List<HttpHeader> headers;
+    private final long size;
+    private final byte[] content;
+    private Path file;
+
+    MultipartPart(String name, String filename, String contentType, List<HttpHeader> headers, byte[] content) {
+        this(name, filename, contentType, headers, content.length, content, null);
+    }
+
+    MultipartPart(String name, String filename, String contentType, List<HttpHeader> headers, long size, Path file) {
+        this(name, filename, contentType, headers, size, null, file);
+    }
+
+    private MultipartPart(String name, String filename, String contentType, List<HttpHeader> headers, long size, byte[] content, Path file) {
+        this.name = name;
+        this.filename = filename;
+        this.contentType = contentType;
+        this.headers = headers;
+        this.size = size;
+        this.content = content;
+        this.file = file;
+    }
+
+    @Override
+    public String name() {
+        return this.name;
+    }
+
+    @Override
+    public Optional<String> filename() {
+        return Optional.ofNullable(this.filename);
+    }
+
+    @Override
+    public String contentType() {
+        return this.contentType;
+    }
+
+    @Override
+    public List<HttpHeader> headers() {
+        return this.headers;
+    }
+
+    @Override
+    public long size() {
+        return this.size;
+    }
+
+    @Override
+    public InputStream inputStream() throws IOException {
+        return this.content != null ? new ByteArrayInputStream(this.content) : Files.newInputStream(this.file());
+    }
+
+    @Override
+    public byte[] bytes() throws IOException {
+        return this.content != null ? this.content.clone() : Files.readAllBytes(this.file());
+    }
+
+    @Override
+    public String text() throws IOException {
+        return this.content != null ? new String(this.content, StandardCharsets.UTF_8) : Files.readString(this.file());
+    }
+
+    @Override
+    public void transferTo(Path target) throws IOException {
+        if (this.content != null) {
+            Files.write(target, this.content);
+            return;
+        }
+
+        Files.move(this.file(), target, StandardCopyOption.REPLACE_EXISTING);
+        this.file = null;
+    }
+
+    boolean inMemory() {
+        return this.content != null;
+    }
+
+    void delete() {
+        if (this.file != null) {
+            try {
+                Files.deleteIfExists(this.file);
+            } catch (IOException ignored) {
+                // the temporary directory is cleaned by the platform eventually
+            }
+            this.file = null;
+        }
+    }
+
+    private Path file() throws IOException {
+        if (this.file == null) {
+            throw new IOException("Part " + this.name + " has been moved or deleted");
+        }
+
+        return this.file;
+    }
+
+    @Override
+    public String toString() {
+        return "Part[name=" + this.name + ", filename=" + this.filename + ", contentType=" + this.contentType + ", size=" + this.size + "]";
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2013-2023 Julian Jupiter.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.julianjupiter.kitty.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * One part of a {@code multipart/form-data} request. Small parts are held in memory, larger ones in a temporary file
+ * that is deleted once the response has been written unless it was moved with {@link #transferTo(Path)}.
+ *
+ * @author Julian Jupiter
+ */
+public interface Part {
+    String name();
+
+    Optional<String> filename();
+
+    String contentType();
+
+    List<HttpHeader> headers();
+
+    long size();
+
+    InputStream inputStream() throws IOException;
+
+    byte[] bytes() throws IOException;
+
+    String text() throws IOException;
+
+    void transferTo(Path target) throws IOException;
+}
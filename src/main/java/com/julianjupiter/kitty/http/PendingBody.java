@@ -0,0 +1,42 @@
+/*
+ * Copyright 2013-2023 Julian Jupiter.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.julianjupiter.kitty.http;
+
+import java.io.InputStream;
+
+/**
+ * A request body still in the connection. It is read when a handler first asks for it, streamed by a handler that
+ * forwards it, or skipped once the handler is done, whichever comes first; any of them consumes it.
+ *
+ * @author Julian Jupiter
+ */
+interface PendingBody {
+    /**
+     * Reads the whole body, throwing {@link RequestRejectedException} or {@link java.io.UncheckedIOException} if it
+     * cannot.
+     */
+    HttpBody read();
+
+    /**
+     * Returns the decoded body to be read to the end by the caller.
+     */
+    InputStream stream();
+
+    /**
+     * Reads and drops the body so the connection can take the next request.
+     */
+    void skip();
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2013-2023 Julian Jupiter.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.julianjupiter.kitty.http;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * permessage-deflate (RFC 7692). The server never takes over its compression context, so every
+ * compressed frame is self-contained and can be shared between connections.
+ *
+ * @author Julian Jupiter
+ */
+final class PerMessageDeflate {
+    static final String EXTENSION = "permessage-deflate";
+    private static final int COMPRESSION_THRESHOLD = 256;
+    private static final int MAX_POOLED_DEFLATERS = 32;
+    private static final byte[] TAIL = {0x00, 0x00, (byte) 0xFF, (byte) 0xFF};
+    private static final ConcurrentLinkedQueue<Deflater> DEFLATERS = new ConcurrentLinkedQueue<>();
+
+    private final Inflater inflater = new Inflater(true);
+    private final byte[] probe = new byte[1];
+    private final boolean clientNoContextTakeover;
+
+    PerMessageDeflate(boolean clientNoContextTakeover) {
+        this.clientNoContextTakeover = clientNoContextTakeover;
+    }
+
+    static byte[] compress(byte[] payload) {
+        if (payload.length < COMPRESSION_THRESHOLD) {
+            return null;
+        }
+
+        var deflater = DEFLATERS.poll();
+        if (deflater == null) {
+            deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        }
+
+        try {
+            deflater.setInput(payload);
+            var output = new byte[payload.length + 16];
+            var length = 0;
+            while (true) {
+                length += deflater.deflate(output, length, output.length - length, Deflater.SYNC_FLUSH);
+                if (length < output.length) {
+                    break;
+                }
+
+                output = Arrays.copyOf(output, output.length << 1);
+            }
+
+            // a sync flush always ends with the empty stored block that the receiver appends back
+            length -= TAIL.length;
+            return length < payload.length ? Arrays.copyOf(output, length) : null;
+        } finally {
+            deflater.reset();
+            if (DEFLATERS.size() < MAX_POOLED_DEFLATERS) {
+                DEFLATERS.offer(deflater);
+            } else {
+                deflater.end();
+            }
+        }
+    }
+
+    ByteBuffer decompress(ByteBuffer message, ByteBufferPool pool, int maxSize) throws DataFormatException {
+        message = pool.grow(message, message.position() + TAIL.length);
+        message.put(TAIL);
+        this.inflater.setInput(message.array(), message.arrayOffset(), message.position());
+
+        var output = pool.acquire(Math.min(maxSize, message.position() << 2));
+        output.limit(Math.min(output.capacity(), maxSize));
+        try {
+            // zlib may still hold output after taking all the input, so it is drained until it has nothing left
+            while (!this.inflater.finished()) {
+                if (!output.hasRemaining()) {
+                    if (output.limit() >= maxSize) {
+                        // a message of exactly maxSize bytes fits, one more byte does not
+                        if (this.inflater.inflate(this.probe) > 0) {
+                            throw new MessageTooBigException();
+                        }
+                        break;
+                    }
+
+                    output = pool.grow(output, Math.min(maxSize, output.capacity() << 1));
+                    output.limit(Math.min(output.capacity(), maxSize));
+                }
+
+                var length = this.inflater.inflate(output.array(), output.arrayOffset() + output.position(), output.remaining());
+                output.position(output.position() + length);
+                if (length == 0 && this.inflater.needsInput()) {
+                    break;
+                }
+            }
+        } catch (DataFormatException | RuntimeException exception) {
+            pool.release(output);
+            throw exception;
+        } finally {
+            pool.release(message);
+            if (this.clientNoContextTakeover) {
+                this.inflater.reset();
+            }
+        }
+
+        return output;
+    }
+
+    void end() {
+        this.inflater.end();
+    }
+
+    static final class MessageTooBigException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        MessageTooBigException() {
+            super("Decompressed WebSocket message is too big", null, false, false);
+        }
+    }
+}
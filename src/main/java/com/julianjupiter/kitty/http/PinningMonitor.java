@@ -0,0 +1,273 @@
+/*
+ * Copyright 2013-2023 Julian Jupiter.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.julianjupiter.kitty.http;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingStream;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Streams the JVM's {@code jdk.VirtualThreadPinned} and {@code jdk.VirtualThreadSubmitFailed} events in-process and
+ * adds pinned time up by route and stack. Connections tell the monitor when their virtual thread starts and stops
+ * handling a route. Events reach the stream's thread about a second after they happen, when a keep-alive thread may
+ * be on another route, so each thread keeps its last few handlings long enough to hold a pin and an event is charged
+ * to the one its start time falls in. A thread's handlings are dropped on a flush once it has been idle for a while.
+ *
+ * @author Julian Jupiter
+ */
+final class PinningMonitor implements AutoCloseable {
+    private static final System.Logger LOGGER = System.getLogger(PinningMonitor.class.getName());
+    private static final long IDLE_NANOS = TimeUnit.SECONDS.toNanos(10);
+    private static final int STACK_DEPTH = 16;
+    private static final int MAX_SITES = 256;
+    private static final int REPORTED_SITES = 20;
+    private static final int HANDLINGS = 16;
+    private final RecordingStream stream;
+    private final long thresholdNanos;
+    private final LongAdder pinned = new LongAdder();
+    private final LongAdder pinnedNanos = new LongAdder();
+    private final LongAdder submitFailed = new LongAdder();
+    private final ConcurrentHashMap<Long, Handling> threads = new ConcurrentHashMap<>();
+    private final HashMap<Site, Pins> sites = new HashMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    // pinned events whose site did not fit, only touched under the lock
+    private long unlisted;
+
+    private PinningMonitor(RecordingStream stream, Duration threshold) {
+        this.stream = stream;
+        this.thresholdNanos = threshold.toNanos();
+        stream.enable("jdk.VirtualThreadPinned").withThreshold(threshold).withStackTrace();
+        stream.enable("jdk.VirtualThreadSubmitFailed");
+        stream.setMaxAge(Duration.ofMinutes(1));
+        stream.onEvent("jdk.VirtualThreadPinned", this::pinned);
+        stream.onEvent("jdk.VirtualThreadSubmitFailed", event -> this.submitFailed.increment());
+        stream.onFlush(this::evict);
+    }
+
+    /**
+     * Starts monitoring, or returns {@code null} if this JVM cannot record flight recorder events.
+     */
+    static PinningMonitor start(Duration threshold) {
+        RecordingStream stream;
+        try {
+            stream = new RecordingStream();
+        } catch (IllegalStateException | SecurityException exception) {
+            LOGGER.log(System.Logger.Level.WARNING, "Flight recorder is not available, pinning is not monitored.", exception);
+            return null;
+        }
+
+        var monitor = new PinningMonitor(stream, threshold);
+        stream.startAsync();
+        return monitor;
+    }
+
+    /**
+     * Called on the thread about to run a handler for {@code route}.
+     */
+    void handling(Thread thread, String route) {
+        if (!thread.isVirtual()) {
+            return;
+        }
+
+        // marked active under the map's lock, so a flush cannot evict it in between
+        var handling = this.threads.compute(thread.threadId(), (id, current) -> {
+            var marked = current == null ? new Handling() : current;
+            marked.active = true;
+            return marked;
+        });
+        handling.since = System.nanoTime();
+        handling.intervals.set(handling.next, new Interval(route, epochNanos(Instant.now()), Long.MAX_VALUE));
+    }
+
+    void handled(Thread thread) {
+        var handling = thread.isVirtual() ? this.threads.get(thread.threadId()) : null;
+        if (handling == null) {
+            return;
+        }
+
+        var now = System.nanoTime();
+        var interval = handling.intervals.get(handling.next);
+        // a handling shorter than the threshold cannot hold a pin, so it does not take a slot
+        if (interval != null && now - handling.since >= this.thresholdNanos) {
+            handling.intervals.set(handling.next,
+                    new Interval(interval.route(), interval.start(), interval.start() + now - handling.since));
+            handling.next = (handling.next + 1) % HANDLINGS;
+        } else {
+            handling.intervals.set(handling.next, null);
+        }
+        handling.idleSince = now;
+        handling.active = false;
+    }
+
+    private static long epochNanos(Instant instant) {
+        return instant.getEpochSecond() * 1_000_000_000L + instant.getNano();
+    }
+
+    private String route(RecordedEvent event) {
+        var thread = event.getThread();
+        var handling = thread == null ? null : this.threads.get(thread.getJavaThreadId());
+        if (handling == null) {
+            return null;
+        }
+
+        var start = epochNanos(event.getStartTime());
+        for (var i = 0; i < HANDLINGS; i++) {
+            var interval = handling.intervals.get(i);
+            if (interval != null && interval.start() <= start && start <= interval.end()) {
+                return interval.route();
+            }
+        }
+
+        return null;
+    }
+
+    private void pinned(RecordedEvent event) {
+        var duration = event.getDuration().toNanos();
+        this.pinned.increment();
+        this.pinnedNanos.add(duration);
+        var site = new Site(this.route(event), stack(event.getStackTrace()));
+        this.lock.lock();
+        try {
+            var pins = this.sites.get(site);
+            if (pins == null) {
+                if (this.sites.size() == MAX_SITES) {
+                    this.unlisted++;
+                    return;
+                }
+                pins = new Pins();
+                this.sites.put(site, pins);
+            }
+            pins.count++;
+            pins.nanos += duration;
+            pins.maxNanos = Math.max(pins.maxNanos, duration);
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    // the frames of VirtualThread itself are the same for every pin
+    private static String stack(RecordedStackTrace stackTrace) {
+        if (stackTrace == null) {
+            return "";
+        }
+
+        var stack = new StringBuilder();
+        var depth = 0;
+        for (var frame : stackTrace.getFrames()) {
+            var method = frame.getMethod();
+            var type = method.getType().getName();
+            if (depth == 0 && type.equals("java.lang.VirtualThread")) {
+                continue;
+            }
+            if (depth++ == STACK_DEPTH) {
+                stack.append("\n\t...");
+                break;
+            }
+            stack.append("\n\tat ").append(type).append('.').append(method.getName());
+            if (frame.getLineNumber() > 0) {
+                stack.append(" line ").append(frame.getLineNumber());
+            }
+        }
+
+        return stack.toString();
+    }
+
+    private void evict() {
+        var now = System.nanoTime();
+        // rechecked under the map's lock, a thread may have started handling again since it was seen idle
+        for (var id : this.threads.keySet()) {
+            this.threads.computeIfPresent(id, (key, handling) ->
+                    !handling.active && now - handling.idleSince > IDLE_NANOS ? null : handling);
+        }
+    }
+
+    void collect(PrometheusWriter writer) {
+        writer.family("kitty_http_virtual_thread_pinned_total", "Virtual threads pinned to their carrier past the pinning threshold.", "counter")
+                .sample("kitty_http_virtual_thread_pinned_total", this.pinned.sum())
+                .family("kitty_http_virtual_thread_pinned_seconds_total", "Time virtual threads spent pinned to their carrier.", "counter")
+                .sample("kitty_http_virtual_thread_pinned_seconds_total", this.pinnedNanos.sum() / 1e9)
+                .family("kitty_http_virtual_thread_submit_failed_total", "Virtual threads that could not be scheduled on a carrier.", "counter")
+                .sample("kitty_http_virtual_thread_submit_failed_total", this.submitFailed.sum());
+    }
+
+    /**
+     * The sites that kept carriers pinned the longest, with their route and stack.
+     */
+    String report() {
+        var text = new StringBuilder()
+                .append("Pinned ").append(this.pinned.sum()).append(" times for ")
+                .append(TimeUnit.NANOSECONDS.toMillis(this.pinnedNanos.sum())).append(" ms, ")
+                .append(this.submitFailed.sum()).append(" failed submits\n");
+        this.lock.lock();
+        try {
+            var sites = new ArrayList<>(this.sites.entrySet());
+            sites.sort(Comparator.comparingLong(site -> -site.getValue().nanos));
+            for (var i = 0; i < Math.min(REPORTED_SITES, sites.size()); i++) {
+                var site = sites.get(i).getKey();
+                var pins = sites.get(i).getValue();
+                text.append('\n').append(site.route() == null ? "(no request)" : site.route())
+                        .append(": ").append(pins.count).append(" times for ")
+                        .append(TimeUnit.NANOSECONDS.toMillis(pins.nanos)).append(" ms, at most ")
+                        .append(TimeUnit.NANOSECONDS.toMillis(pins.maxNanos)).append(" ms")
+                        .append(site.stack()).append('\n');
+            }
+            if (this.unlisted > 0) {
+                text.append('\n').append(this.unlisted).append(" more from sites past the first ").append(MAX_SITES).append('\n');
+            }
+        } finally {
+            this.lock.unlock();
+        }
+
+        return text.toString();
+    }
+
+    @Override
+    public void close() {
+        this.stream.close();
+    }
+
+    private record Site(String route, String stack) {
+    }
+
+    private static final class Pins {
+        private long count;
+        private long nanos;
+        private long maxNanos;
+    }
+
+    private record Interval(String route, long start, long end) {
+    }
+
+    // written only by its thread, read on the stream's thread
+    private static final class Handling {
+        private final AtomicReferenceArray<Interval> intervals = new AtomicReferenceArray<>(HANDLINGS);
+        private int next;
+        private long since;
+        private volatile boolean active;
+        private volatile long idleSince;
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2013-2023 Julian Jupiter.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.julianjupiter.kitty.http;
+
+/**
+ * Prometheus text exposition format, version 0.0.4.
+ *
+ * @author Julian Jupiter
+ */
+final class PrometheusWriter {
+    static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+    private final StringBuilder output = new StringBuilder(4096);
+
+    PrometheusWriter family(String name, String help, String type) {
+        this.output.append("# HELP ").append(name).append(' ').append(help).append('\n')
+                .append("# TYPE ").append(name).append(' ').append(type).append('\n');
+        return this;
+    }
+
+    PrometheusWriter sample(String name, long value, String... labels) {
+        this.name(name, labels, null).append(' ').append(value).append('\n');
+        return this;
+    }
+
+    PrometheusWriter sample(String name, double value, String... labels) {
+        this.name(name, labels, null).append(' ').append(value).append('\n');
+        return this;
+    }
+
+    /**
+     * Writes quantiles, sum and count of a histogram; {@code unit} is the number of recorded units in
+     * the base unit of the metric, e.g. 1e9 for nanoseconds recorded into a seconds summary.
+     */
+    PrometheusWriter summary(String name, LogLinearHistogram histogram, double unit, String... labels) {
+        var snapshot = histogram.snapshot();
+        for (var quantile : QUANTILES) {
+            this.name(name, labels, quantile).append(' ')
+                    .append(snapshot.valueAtPercentile(quantile * 100) / unit).append('\n');
+        }
+
+        this.name(name + "_sum", labels, null).append(' ').append(histogram.sum() / unit).append('\n');
+        this.name(name + "_count", labels, null).append(' ').append(histogram.count()).append('\n');
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return this.output.toString();
+    }
+
+    private StringBuilder name(String name, String[] labels, Double quantile) {
+        this.output.append(name);
+        if (labels.length == 0 && quantile == null) {
+            return this.output;
+        }
+
+        this.output.append('{');
+        for (var i = 0; i + 1 < labels.length; i += 2) {
+            if (i > 0) {
+                this.output.append(',');
+            }
+            this.output.append(labels[i]).append("=\"");
+            escape(labels[i + 1], this.output);
+            this.output.append('"');
+        }
+
+        if (quantile != null) {
+            if (labels.length > 0) {
+                this.output.append(',');
+            }
+            this.output.append("quantile=\"").append(quantile).append('"');
+        }
+
+        return this.output.append('}');
+    }
+
+    private static void escape(String value, StringBuilder output) {
+        for (var i = 0; i < value.length(); i++) {
+            var c = value.charAt(i);
+            switch (c) {
+                case '\\' -> output.append("\\\\");
+                case '"' -> output.append("\\\"");
+                case '\n' -> output.append("\\n");
+                default -> output.append(c);
+            }
+        }
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2013-2023 Julian Jupiter.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.julianjupiter.kitty.http;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Forwards requests to a set of HTTP/1.1 upstreams over pooled keep-alive connections. Bodies are streamed in both
+ * directions, hop-by-hop headers are dropped and {@code X-Forwarded-*} headers are added. Each request goes to the
+ * less busy of two randomly picked healthy upstreams; an upstream that fails {@link #failureThreshold(int)}
+ * times in a row is left out for {@link #downtime(Duration)}, or until an active health check passes.
+ *
+ * @author Julian Jupiter
+ */
+public interface ProxyHandler extends HttpHandler, AutoCloseable {
+    static ProxyHandler create(URI... upstreams) {
+        return create(List.of(upstreams));
+    }
+
+    static ProxyHandler create(List<URI> upstreams) {
+        return new KittyProxyHandler(upstreams);
+    }
+
+    ProxyHandler connectTimeout(Duration connectTimeout);
+
+    ProxyHandler readTimeout(Duration readTimeout);
+
+    ProxyHandler idleTimeout(Duration idleTimeout);
+
+    ProxyHandler maxIdleConnections(int maxIdleConnections);
+
+    ProxyHandler failureThreshold(int failureThreshold);
+
+    ProxyHandler downtime(Duration downtime);
+
+    ProxyHandler healthCheck(String path, Duration interval);
+
+    ProxyHandler preserveHost(boolean preserveHost);
+
+    /**
+     * Stops health checks and closes idle upstream connections.
+     */
+    @Override
+    void close();
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright 2013-2023 Julian Jupiter.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.julianjupiter.kitty.http;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Token bucket per client. A bucket is one {@code long}, the time it was last refilled in the high 44 bits and the
+ * tokens left in the low 20, so taking a token is a single compare-and-set. Buckets live in 64 stripes, each a map
+ * in access order under its own lock that is only held for the lookup; a full stripe drops its least recently seen
+ * client, and {@link #sweep()} drops clients whose bucket has filled up again, which is the same as never having seen
+ * them.
+ * <p>
+ * Refills are counted in whole tokens and the refill time only moves by the tokens added, so no fraction of a token is
+ * lost however often a client asks.
+ *
+ * @author Julian Jupiter
+ */
+final class RateLimiter {
+    static final int MAX_BURST = (1 << 20) - 1;
+    static final int MAX_RATE = 1_000_000;
+    // thrown for every limited request, so it is built once
+    static final RequestRejectedException REJECTION = new RequestRejectedException(HttpStatus.TOO_MANY_REQUESTS,
+            HttpStatus.TOO_MANY_REQUESTS.reasonPhrase());
+    private static final int TOKEN_BITS = 20;
+    private static final long TOKEN_MASK = MAX_BURST;
+    private static final long TIME_MASK = (1L << (Long.SIZE - TOKEN_BITS)) - 1;
+    private static final int STRIPE_BITS = 6;
+    private final long origin = System.nanoTime();
+    private final long period;
+    private final long burst;
+    private final Stripe[] stripes = new Stripe[1 << STRIPE_BITS];
+    private final byte[] response;
+    private final LongAdder limited;
+
+    /**
+     * @param rate  tokens added per second, at most {@link #MAX_RATE}
+     * @param burst bucket size, at most {@link #MAX_BURST}
+     */
+    RateLimiter(int rate, int burst, int maxClients, LongAdder limited) {
+        this.period = TimeUnit.SECONDS.toMicros(1) / rate;
+        this.burst = burst;
+        this.limited = limited;
+        var capacity = Math.max(1, (maxClients + this.stripes.length - 1) / this.stripes.length);
+        for (var i = 0; i < this.stripes.length; i++) {
+            this.stripes[i] = new Stripe(capacity);
+        }
+        var retryAfter = Math.max(1, (this.period + TimeUnit.SECONDS.toMicros(1) - 1) / TimeUnit.SECONDS.toMicros(1));
+        this.response = new DefaultHttpResponse(HttpHeadersFactory.create())
+                .status(HttpStatus.TOO_MANY_REQUESTS)
+                .header("Retry-After", String.valueOf(retryAfter))
+                .header("Connection", "close")
+                .toString()
+                .getBytes(StandardCharsets.UTF_8);
+    }
+
+    static RateLimiter of(ServerConfiguration configuration, LongAdder limited) {
+        var rate = configuration.rateLimit();
+        var burst = configuration.rateLimitBurst() == 0 ? Math.min(rate, MAX_BURST) : configuration.rateLimitBurst();
+        return new RateLimiter(rate, burst, configuration.rateLimitMaxClients(), limited);
+    }
+
+    /**
+     * Takes a token from the bucket of {@code key}, returning {@code false} if there is none left.
+     */
+    boolean tryAcquire(Object key) {
+        var now = this.now();
+        var stripe = this.stripes[stripe(key)];
+        AtomicLong bucket;
+        stripe.lock.lock();
+        try {
+            bucket = stripe.get(key);
+            if (bucket == null) {
+                // a client seen for the first time starts with a full bucket
+                stripe.put(key, new AtomicLong(now << TOKEN_BITS | (this.burst - 1)));
+                return true;
+            }
+        } finally {
+            stripe.lock.unlock();
+        }
+
+        while (true) {
+            var state = bucket.get();
+            var time = state >>> TOKEN_BITS;
+            var tokens = state & TOKEN_MASK;
+            var elapsed = this.elapsed(time, now);
+            var added = elapsed / this.period;
+            if (added >= this.burst - tokens) {
+                tokens = this.burst;
+                time = elapsed == 0 ? time : now;
+            } else {
+                tokens += added;
+                time = (time + added * this.period) & TIME_MASK;
+            }
+            if (tokens == 0) {
+                this.limited.increment();
+                return false;
+            }
+
+            if (bucket.compareAndSet(state, time << TOKEN_BITS | (tokens - 1))) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * The preallocated {@code 429 Too Many Requests} response.
+     */
+    byte[] response() {
+        return this.response;
+    }
+
+    int size() {
+        var size = 0;
+        for (var stripe : this.stripes) {
+            stripe.lock.lock();
+            try {
+                size += stripe.size();
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+
+        return size;
+    }
+
+    /**
+     * Forgets every client whose bucket is full again.
+     */
+    void sweep() {
+        var now = this.now();
+        for (var stripe : this.stripes) {
+            stripe.lock.lock();
+            try {
+                stripe.values().removeIf(bucket -> {
+                    var state = bucket.get();
+                    var missing = this.burst - (state & TOKEN_MASK);
+                    return this.elapsed(state >>> TOKEN_BITS, now) >= missing * this.period;
+                });
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+    }
+
+    // microseconds since the limiter was created, wrapping after 2^44 (about 200 days)
+    private long now() {
+        return TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - this.origin) & TIME_MASK;
+    }
+
+    // a bucket refilled by a thread that read the clock after this one looks like it is in the future
+    private long elapsed(long time, long now) {
+        var elapsed = (now - time) & TIME_MASK;
+        return elapsed > TIME_MASK >>> 1 ? 0 : elapsed;
+    }
+
+    // the high bits, because each stripe's map indexes its own table with the low ones
+    private static int stripe(Object key) {
+        return (key.hashCode() * 0x9E3779B9) >>> (Integer.SIZE - STRIPE_BITS);
+    }
+
+    private static final class Stripe extends LinkedHashMap<Object, AtomicLong> {
+        private static final long serialVersionUID = 1L;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final int capacity;
+
+        private Stripe(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Object, AtomicLong> eldest) {
+            return this.size() > this.capacity;
+        }
+    }
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2013-2023 Julian Jupiter.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.julianjupiter.kitty.http;
+
+/**
+ * Bounds on what is buffered for a single request, in bytes except for {@code headerCount}. Multipart bodies have
+ * their own, larger bounds because parts above {@code multipartMemoryThreshold} go to disk.
+ *
+ * @author Julian Jupiter
+ */
+record RequestLimits(int requestLineLength, int headerSize, int headerCount, int bodySize,
+                     int multipartMemoryThreshold, long multipartPartSize, long multipartSize) {
+    static final RequestLimits DEFAULT = new RequestLimits(ServerConfiguration.DEFAULT_MAX_REQUEST_LINE_LENGTH,
+            ServerConfiguration.DEFAULT_MAX_HEADER_SIZE, ServerConfiguration.DEFAULT_MAX_HEADER_COUNT,
+            ServerConfiguration.DEFAULT_MAX_BODY_SIZE, ServerConfiguration.DEFAULT_MULTIPART_MEMORY_THRESHOLD,
+            ServerConfiguration.DEFAULT_MULTIPART_MAX_PART_SIZE, ServerConfiguration.DEFAULT_MULTIPART_MAX_SIZE);
+
+    static RequestLimits of(ServerConfiguration configuration) {
+        return new RequestLimits(configuration.maxRequestLineLength(), configuration.maxHeaderSize(),
+                configuration.maxHeaderCount(), configuration.maxBodySize(), configuration.multipartMemoryThreshold(),
+                configuration.multipartMaxPartSize(), configuration.multipartMaxSize());
+    }
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2013-2023 Julian Jupiter.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.julianjupiter.kitty.http;
+
+/**
+ * Thrown while reading a request that must be answered with {@code status} before it reaches the handler. The
+ * connection is closed afterwards because the rest of the request is left unread.
+ *
+ * @author Julian Jupiter
+ */
+final class RequestRejectedException extends HttpServerException {
+    private static final long serialVersionUID = 1L;
+    private final HttpStatus status;
+
+    RequestRejectedException(HttpStatus status, String message) {
+        super(message);
+        this.status = status;
+    }
+
+    HttpStatus status() {
+        return this.status;
+    }
+}
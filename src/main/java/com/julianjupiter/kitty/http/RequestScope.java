@@ -0,0 +1,55 @@
+/*
+ * Copyright 2013-2023 Julian Jupiter.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.julianjupiter.kitty.http;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+
+/**
+ * Work forked on behalf of one request. Subtasks run on the server's executor and are cancelled, by interrupting
+ * them, when the request deadline passes, when the client disconnects or when the handler returns, whichever comes
+ * first. {@link #join()} waits for them within the deadline.
+ *
+ * @author Julian Jupiter
+ */
+public interface RequestScope {
+    /**
+     * The earlier of the configured request deadline and the one sent by the client, if any.
+     */
+    Optional<Instant> deadline();
+
+    /**
+     * Time left before the deadline, {@link Duration#ZERO} once it has passed; meant to be passed on to downstream
+     * calls.
+     */
+    Optional<Duration> remaining();
+
+    boolean isCancelled();
+
+    /**
+     * Starts a subtask, or returns an already cancelled future once the scope is cancelled.
+     */
+    <T> Future<T> fork(Callable<? extends T> task);
+
+    /**
+     * Waits until every forked subtask has completed, throwing {@link java.util.concurrent.CancellationException}
+     * if the scope is cancelled first.
+     */
+    void join() throws InterruptedException;
+}
@@ -15,6 +15,10 @@
  */
 package com.julianjupiter.kitty.http;
 
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
@@ -23,7 +27,39 @@ import java.util.concurrent.Executors;
  */
 public interface ServerConfiguration {
     int DEFAULT_BUFFER_CAPACITY = 1024;
+    long DEFAULT_MEMORY_BUDGET = Runtime.getRuntime().maxMemory() / 4;
     int DEFAULT_PORT = 8080;
+    int DEFAULT_WEB_SOCKET_MAX_MESSAGE_SIZE = 1024 * 1024;
+    Duration DEFAULT_WEB_SOCKET_PING_INTERVAL = Duration.ofSeconds(30);
+    Duration DEFAULT_EVENT_STREAM_FLUSH_INTERVAL = Duration.ofMillis(10);
+    Duration DEFAULT_EVENT_STREAM_HEARTBEAT_INTERVAL = Duration.ofSeconds(15);
+    Duration DEFAULT_HEADER_READ_TIMEOUT = Duration.ofSeconds(10);
+    Duration DEFAULT_BODY_READ_TIMEOUT = Duration.ofSeconds(30);
+    Duration DEFAULT_KEEP_ALIVE_TIMEOUT = Duration.ofSeconds(30);
+    Duration DEFAULT_WRITE_TIMEOUT = Duration.ofSeconds(30);
+    int DEFAULT_MAX_REQUEST_LINE_LENGTH = 8192;
+    int DEFAULT_MAX_HEADER_SIZE = 16 * 1024;
+    int DEFAULT_MAX_HEADER_COUNT = 100;
+    int DEFAULT_MAX_BODY_SIZE = 10 * 1024 * 1024;
+    int DEFAULT_MULTIPART_MEMORY_THRESHOLD = 16 * 1024;
+    long DEFAULT_MULTIPART_MAX_PART_SIZE = 256L * 1024 * 1024;
+    long DEFAULT_MULTIPART_MAX_SIZE = 1024L * 1024 * 1024;
+    String DEFAULT_ACCESS_LOG_PATTERN = "%h - - %t \"%r\" %s %b";
+    int DEFAULT_ACCESS_LOG_BUFFER_SIZE = 8192;
+    AccessLogOverflow DEFAULT_ACCESS_LOG_OVERFLOW = AccessLogOverflow.DROP;
+    long DEFAULT_ACCESS_LOG_MAX_FILE_SIZE = 100L * 1024 * 1024;
+    int DEFAULT_ACCESS_LOG_MAX_FILES = 10;
+    String DEFAULT_UNIX_SOCKET_PERMISSIONS = "rw-rw----";
+    Duration DEFAULT_REQUEST_DEADLINE = Duration.ZERO;
+    int DEFAULT_RATE_LIMIT_MAX_CLIENTS = 65536;
+    int DEFAULT_CONCURRENCY_LIMIT_MIN = 8;
+    int DEFAULT_CONCURRENCY_LIMIT_MAX = 1000;
+    int DEFAULT_CONCURRENCY_LIMIT_INITIAL = 20;
+    int DEFAULT_MAX_CONNECTIONS = 0;
+    double DEFAULT_TRACE_SAMPLE_RATE = 0.01;
+    Duration DEFAULT_SLOW_REQUEST_THRESHOLD = Duration.ZERO;
+    int DEFAULT_SLOW_REQUEST_REPORTS_PER_MINUTE = 10;
+    Duration DEFAULT_PINNING_THRESHOLD = Duration.ZERO;
     ExecutorService DEFAULT_EXECUTOR_SERVICE = Executors.newVirtualThreadPerTaskExecutor();
 
     String name();
@@ -39,4 +75,112 @@ public interface ServerConfiguration {
     ExecutorService executorService();
 
     int bufferCapacity();
+
+    long memoryBudget();
+
+    int webSocketMaxMessageSize();
+
+    Duration webSocketPingInterval();
+
+    boolean webSocketCompression();
+
+    Duration eventStreamFlushInterval();
+
+    Duration eventStreamHeartbeatInterval();
+
+    String metricsPath();
+
+    Duration headerReadTimeout();
+
+    Duration bodyReadTimeout();
+
+    Duration keepAliveTimeout();
+
+    Duration writeTimeout();
+
+    int maxRequestLineLength();
+
+    int maxHeaderSize();
+
+    int maxHeaderCount();
+
+    int maxBodySize();
+
+    int multipartMemoryThreshold();
+
+    long multipartMaxPartSize();
+
+    long multipartMaxSize();
+
+    Path accessLog();
+
+    String accessLogPattern();
+
+    int accessLogBufferSize();
+
+    AccessLogOverflow accessLogOverflow();
+
+    long accessLogMaxFileSize();
+
+    int accessLogMaxFiles();
+
+    Path unixSocket();
+
+    String unixSocketPermissions();
+
+    boolean tcpListener();
+
+    Duration requestDeadline();
+
+    String requestDeadlineHeader();
+
+    int rateLimit();
+
+    int rateLimitBurst();
+
+    int rateLimitMaxClients();
+
+    String rateLimitHeader();
+
+    String rateLimitCookie();
+
+    boolean adaptiveConcurrency();
+
+    int concurrencyLimitMin();
+
+    int concurrencyLimitMax();
+
+    int concurrencyLimitInitial();
+
+    List<Lane> lanes();
+
+    int maxConnections();
+
+    List<Listener> listeners();
+
+    Map<String, HttpHandler> virtualHosts();
+
+    boolean tracing();
+
+    double traceSampleRate();
+
+    SpanExporter spanExporter();
+
+    String requestIdHeader();
+
+    boolean serverTiming();
+
+    Duration slowRequestThreshold();
+
+    int slowRequestReportsPerMinute();
+
+    String slowRequestsPath();
+
+    boolean allocationAccounting();
+
+    String allocationHeader();
+
+    Duration pinningThreshold();
+
+    String pinningPath();
 }
@@ -0,0 +1,290 @@
+/*
+ * Copyright 2013-2023 Julian Jupiter.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.julianjupiter.kitty.http;
+
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @author Julian Jupiter
+ */
+final class ServerContext implements AutoCloseable {
+    // 100 ms resolution, one revolution every 51.2 s; longer timeouts stay in their slot for extra revolutions
+    private static final long TIMING_WHEEL_TICK = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final int TIMING_WHEEL_SLOTS = 512;
+    private final KittyServerConfiguration configuration;
+    private final ScheduledExecutorService scheduler;
+    private final ByteBufferPool bufferPool;
+    private final KeepAliveSweeper webSocketKeepAlive;
+    private final KeepAliveSweeper eventStreamHeartbeat;
+    private final HttpMetrics metrics;
+    private final TimingWheel timingWheel;
+    private final RequestLimits requestLimits;
+    private final MemoryBudget memoryBudget;
+    private final AccessLog accessLog;
+    private final RateLimiter rateLimiter;
+    private final ConcurrencyLimiter concurrencyLimiter;
+    private final KittyLane[] lanes;
+    private final ListenerContext[] listeners;
+    private final VirtualHosts virtualHosts;
+    private final Tracer tracer;
+    private final SlowRequestDetector slowRequestDetector;
+    private final LongAdder unmeasuredAllocations;
+    private final PinningMonitor pinningMonitor;
+
+    ServerContext(KittyServerConfiguration configuration) throws IOException {
+        this.configuration = configuration;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform()
+                .name(configuration.name() + "-scheduler")
+                .daemon()
+                .factory());
+        this.bufferPool = new ByteBufferPool();
+        this.webSocketKeepAlive = new KeepAliveSweeper(this.scheduler, configuration.webSocketPingInterval());
+        this.eventStreamHeartbeat = new KeepAliveSweeper(this.scheduler, configuration.eventStreamHeartbeatInterval());
+        this.timingWheel = new TimingWheel(this.scheduler, TIMING_WHEEL_TICK, TIMING_WHEEL_SLOTS);
+        this.requestLimits = RequestLimits.of(configuration);
+        this.memoryBudget = new MemoryBudget(configuration.memoryBudget());
+        this.metrics = new HttpMetrics();
+        this.metrics.gauge("kitty_http_websocket_connections", "Open WebSocket connections.", this.webSocketKeepAlive::size);
+        this.metrics.gauge("kitty_http_event_stream_connections", "Open Server-Sent Events connections.", this.eventStreamHeartbeat::size);
+        this.metrics.gauge("kitty_http_memory_reserved_bytes", "Request and response bytes reserved against the memory budget.", this.memoryBudget::reserved);
+        this.metrics.collector(writer -> writer
+                .family("kitty_http_memory_throttled_seconds_total", "Time connections waited for memory budget before reading or writing.", "counter")
+                .sample("kitty_http_memory_throttled_seconds_total", this.memoryBudget.throttledNanos() / 1e9));
+        this.accessLog = configuration.accessLog() == null
+                ? null
+                : new AccessLog(configuration, this.metrics.counter("kitty_http_access_log_dropped_total",
+                "Access log records dropped because the buffer was full."));
+        if (configuration.rateLimit() > 0) {
+            this.rateLimiter = RateLimiter.of(configuration, this.metrics.counter("kitty_http_rate_limited_total",
+                    "Requests answered with 429 Too Many Requests by the rate limiter."));
+            this.metrics.gauge("kitty_http_rate_limit_clients", "Clients with a partly used rate limit bucket.", this.rateLimiter::size);
+            this.scheduler.scheduleWithFixedDelay(this.rateLimiter::sweep, 1, 1, TimeUnit.SECONDS);
+        } else {
+            this.rateLimiter = null;
+        }
+        if (configuration.adaptiveConcurrency()) {
+            this.concurrencyLimiter = ConcurrencyLimiter.of(configuration, this.metrics.counter(
+                    "kitty_http_concurrency_shed_total", "Requests answered with 503 Service Unavailable over the concurrency limit."));
+            this.metrics.gauge("kitty_http_concurrency_limit", "Requests the adaptive limiter lets in at once.", this.concurrencyLimiter::limit);
+            this.metrics.gauge("kitty_http_concurrency_in_flight", "Requests admitted by the adaptive limiter and not yet answered.", this.concurrencyLimiter::inFlight);
+            this.metrics.collector(writer -> writer
+                    .family("kitty_http_concurrency_rtt_seconds", "Request latency seen by the adaptive limiter, over the last window and in the long run.", "gauge")
+                    .sample("kitty_http_concurrency_rtt_seconds", this.concurrencyLimiter.shortRtt() / 1e9, "window", "short")
+                    .sample("kitty_http_concurrency_rtt_seconds", this.concurrencyLimiter.longRtt() / 1e9, "window", "long"));
+        } else {
+            this.concurrencyLimiter = null;
+        }
+        this.lanes = configuration.lanes().stream().map(KittyLane.class::cast).toArray(KittyLane[]::new);
+        if (this.lanes.length > 0) {
+            this.metrics.collector(this::collectLanes);
+        }
+        this.listeners = new ListenerContext[configuration.listeners().size() + 1];
+        this.listeners[0] = ListenerContext.primary(configuration, this.memoryBudget);
+        for (var i = 1; i < this.listeners.length; i++) {
+            this.listeners[i] = ListenerContext.of((KittyListener) configuration.listeners().get(i - 1));
+        }
+        this.metrics.collector(this::collectListeners);
+        this.virtualHosts = VirtualHosts.of(configuration.virtualHosts());
+        if (configuration.tracing()) {
+            this.tracer = Tracer.of(configuration, this.metrics.counter("kitty_http_spans_exported_total",
+                    "Spans of sampled requests handed to the span exporter."));
+            if (configuration.spanExporter() instanceof FileSpanExporter fileExporter) {
+                this.metrics.collector(writer -> writer
+                        .family("kitty_http_spans_dropped_total", "Spans dropped because the exporter's queue was full.", "counter")
+                        .sample("kitty_http_spans_dropped_total", fileExporter.dropped()));
+            }
+        } else {
+            this.tracer = null;
+        }
+        var allocationAccounting = configuration.allocationAccounting() && AllocationAccounting.enable();
+        if (configuration.allocationAccounting() && !allocationAccounting) {
+            System.getLogger(ServerContext.class.getName()).log(System.Logger.Level.WARNING,
+                    "This JVM does not count allocated bytes per thread, allocation accounting is off.");
+        }
+        this.unmeasuredAllocations = allocationAccounting
+                ? this.metrics.counter("kitty_http_request_allocation_unmeasured_total",
+                "Requests whose allocations could not be measured because they ran on virtual threads only.")
+                : null;
+        this.slowRequestDetector = configuration.slowRequestThreshold().isPositive()
+                ? SlowRequestDetector.of(configuration, this.metrics.counter("kitty_http_slow_requests_total",
+                "Handlers that ran past the slow request threshold."))
+                : null;
+        this.pinningMonitor = configuration.pinningThreshold().isPositive()
+                ? PinningMonitor.start(configuration.pinningThreshold())
+                : null;
+        if (this.pinningMonitor != null) {
+            this.metrics.collector(this.pinningMonitor::collect);
+        }
+    }
+
+    private void collectListeners(PrometheusWriter writer) {
+        writer.family("kitty_http_listener_connections", "Open connections per listener.", "gauge");
+        for (var listener : this.listeners) {
+            writer.sample("kitty_http_listener_connections", listener.connections(), "listener", listener.name());
+        }
+        writer.family("kitty_http_listener_memory_reserved_bytes", "Bytes reserved against the memory budget of each listener.", "gauge");
+        for (var listener : this.listeners) {
+            writer.sample("kitty_http_listener_memory_reserved_bytes", listener.memoryBudget().reserved(), "listener", listener.name());
+        }
+    }
+
+    private void collectLanes(PrometheusWriter writer) {
+        writer.family("kitty_http_lane_queue_seconds", "Time requests waited for a slot in their lane.", "summary");
+        for (var lane : this.lanes) {
+            writer.summary("kitty_http_lane_queue_seconds", lane.queueTime(), 1e9, "lane", lane.name());
+        }
+        writer.family("kitty_http_lane_duration_seconds", "Time handlers held a slot in their lane.", "summary");
+        for (var lane : this.lanes) {
+            writer.summary("kitty_http_lane_duration_seconds", lane.duration(), 1e9, "lane", lane.name());
+        }
+        writer.family("kitty_http_lane_in_flight", "Requests holding a slot in their lane.", "gauge");
+        for (var lane : this.lanes) {
+            writer.sample("kitty_http_lane_in_flight", lane.inFlight(), "lane", lane.name());
+        }
+        writer.family("kitty_http_lane_queued", "Requests waiting for a slot in their lane.", "gauge");
+        for (var lane : this.lanes) {
+            writer.sample("kitty_http_lane_queued", lane.queued(), "lane", lane.name());
+        }
+        writer.family("kitty_http_lane_rejected_total", "Requests answered with 503 Service Unavailable because their lane was full.", "counter");
+        for (var lane : this.lanes) {
+            writer.sample("kitty_http_lane_rejected_total", lane.rejected(), "lane", lane.name());
+        }
+    }
+
+    KittyServerConfiguration configuration() {
+        return this.configuration;
+    }
+
+    ScheduledExecutorService scheduler() {
+        return this.scheduler;
+    }
+
+    ByteBufferPool bufferPool() {
+        return this.bufferPool;
+    }
+
+    KeepAliveSweeper webSocketKeepAlive() {
+        return this.webSocketKeepAlive;
+    }
+
+    KeepAliveSweeper eventStreamHeartbeat() {
+        return this.eventStreamHeartbeat;
+    }
+
+    TimingWheel timingWheel() {
+        return this.timingWheel;
+    }
+
+    RequestLimits requestLimits() {
+        return this.requestLimits;
+    }
+
+    MemoryBudget memoryBudget() {
+        return this.memoryBudget;
+    }
+
+    /**
+     * Returns {@code null} when no access log is configured.
+     */
+    AccessLog accessLog() {
+        return this.accessLog;
+    }
+
+    /**
+     * Returns {@code null} when rate limiting is off.
+     */
+    RateLimiter rateLimiter() {
+        return this.rateLimiter;
+    }
+
+    /**
+     * Returns {@code null} when adaptive concurrency limiting is off.
+     */
+    ConcurrencyLimiter concurrencyLimiter() {
+        return this.concurrencyLimiter;
+    }
+
+    /**
+     * Lanes in the order requests are matched against them.
+     */
+    KittyLane[] lanes() {
+        return this.lanes;
+    }
+
+    /**
+     * The main listener first, then the others in the order they were added to the server.
+     */
+    ListenerContext[] listeners() {
+        return this.listeners;
+    }
+
+    /**
+     * Returns {@code null} when there are no virtual hosts.
+     */
+    VirtualHosts virtualHosts() {
+        return this.virtualHosts;
+    }
+
+    /**
+     * Returns {@code null} when tracing is off.
+     */
+    Tracer tracer() {
+        return this.tracer;
+    }
+
+    /**
+     * Returns {@code null} when slow requests are not detected.
+     */
+    SlowRequestDetector slowRequestDetector() {
+        return this.slowRequestDetector;
+    }
+
+    /**
+     * Counts requests allocation accounting could not measure, or returns {@code null} when it is off.
+     */
+    LongAdder unmeasuredAllocations() {
+        return this.unmeasuredAllocations;
+    }
+
+    /**
+     * Returns {@code null} when pinning is not monitored.
+     */
+    PinningMonitor pinningMonitor() {
+        return this.pinningMonitor;
+    }
+
+    HttpMetrics metrics() {
+        return this.metrics;
+    }
+
+    @Override
+    public void close() {
+        this.scheduler.shutdownNow();
+        if (this.accessLog != null) {
+            this.accessLog.close();
+        }
+        if (this.tracer != null) {
+            this.tracer.close();
+        }
+        if (this.pinningMonitor != null) {
+            this.pinningMonitor.close();
+        }
+    }
+}
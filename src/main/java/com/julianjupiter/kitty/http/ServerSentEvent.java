@@ -0,0 +1,76 @@
+/*
+ * Copyright 2013-2023 Julian Jupiter.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.julianjupiter.kitty.http;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * @author Julian Jupiter
+ */
+public record ServerSentEvent(String id, String event, String data, Duration retry) {
+    public ServerSentEvent {
+        Objects.requireNonNull(data);
+        checkField(id);
+        checkField(event);
+    }
+
+    public static ServerSentEvent of(String data) {
+        return new ServerSentEvent(null, null, data, null);
+    }
+
+    public static ServerSentEvent of(String event, String data) {
+        return new ServerSentEvent(null, event, data, null);
+    }
+
+    public ServerSentEvent id(String id) {
+        return new ServerSentEvent(id, this.event, this.data, this.retry);
+    }
+
+    public ServerSentEvent retry(Duration retry) {
+        return new ServerSentEvent(this.id, this.event, this.data, retry);
+    }
+
+    byte[] encode() {
+        var sb = new StringBuilder(this.data.length() + 16);
+        if (this.id != null) {
+            sb.append("id: ").append(this.id).append('\n');
+        }
+
+        if (this.event != null) {
+            sb.append("event: ").append(this.event).append('\n');
+        }
+
+        if (this.retry != null) {
+            sb.append("retry: ").append(this.retry.toMillis()).append('\n');
+        }
+
+        // every line of the payload needs its own field, otherwise the client ends the event early
+        this.data.lines().forEach(line -> sb.append("data: ").append(line).append('\n'));
+        if (this.data.isEmpty()) {
+            sb.append("data: \n");
+        }
+
+        return sb.append('\n').toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void checkField(String value) {
+        if (value != null && (value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0)) {
+            throw new IllegalArgumentException("Illegal line break in event field");
+        }
+    }
+}
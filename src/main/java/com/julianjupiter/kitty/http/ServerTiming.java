@@ -0,0 +1,119 @@
+/*
+ * Copyright 2013-2023 Julian Jupiter.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.julianjupiter.kitty.http;
+
+import java.util.Arrays;
+
+/**
+ * Phase timestamps of the exchange a connection is on, turned into a {@code Server-Timing} header once the response
+ * has been serialized. One instance lives as long as its connection and is reset between requests, and none exists
+ * when the feature is off.
+ * <pre>
+ * accept    accepted to the connection's thread starting, first request only
+ * parse     first byte of the request to its head parsed
+ * queue     head parsed to the handler called, including admission and lanes
+ * handler   the handler
+ * serialize handler returned to the response serialized
+ * </pre>
+ *
+ * @author Julian Jupiter
+ */
+final class ServerTiming {
+    static final String HEADER = "Server-Timing";
+    private long accepted;
+    private long connected;
+    private long started;
+    private long parsed;
+    private long handlerStarted;
+    private long handlerEnded;
+    private String[] names = new String[4];
+    private long[] durations = new long[4];
+    private int custom;
+
+    ServerTiming(long accepted) {
+        this.accepted = accepted;
+    }
+
+    void connected(long connected) {
+        this.connected = connected;
+    }
+
+    void started(long started) {
+        this.started = started;
+        this.parsed = 0;
+        this.handlerStarted = 0;
+        this.handlerEnded = 0;
+        Arrays.fill(this.names, 0, this.custom, null);
+        this.custom = 0;
+    }
+
+    void parsed(long parsed) {
+        this.parsed = parsed;
+    }
+
+    void handlerStarted(long handlerStarted) {
+        this.handlerStarted = handlerStarted;
+    }
+
+    void handlerEnded(long handlerEnded) {
+        this.handlerEnded = handlerEnded;
+    }
+
+    void add(String name, long durationNanos) {
+        if (this.custom == this.names.length) {
+            this.names = Arrays.copyOf(this.names, this.custom * 2);
+            this.durations = Arrays.copyOf(this.durations, this.custom * 2);
+        }
+        this.names[this.custom] = name;
+        this.durations[this.custom++] = durationNanos;
+    }
+
+    /**
+     * Returns the header line, with its line feed, for a response serialized at {@code serialized}.
+     */
+    String header(long serialized) {
+        var header = new StringBuilder(160).append(HEADER).append(": ");
+        if (this.accepted != 0) {
+            metric(header, "accept", this.connected - this.accepted);
+            this.accepted = 0;
+        }
+        metric(header, "parse", this.parsed - this.started);
+        if (this.handlerStarted != 0) {
+            metric(header, "queue", this.handlerStarted - this.parsed);
+            metric(header, "handler", this.handlerEnded - this.handlerStarted);
+            metric(header, "serialize", serialized - this.handlerEnded);
+        }
+        for (var i = 0; i < this.custom; i++) {
+            metric(header, this.names[i], this.durations[i]);
+        }
+
+        return header.append('\n').toString();
+    }
+
+    // milliseconds with three decimals, written without going through a double
+    private static void metric(StringBuilder header, String name, long nanos) {
+        if (header.length() > HEADER.length() + 2) {
+            header.append(", ");
+        }
+        var micros = Math.max(nanos, 0) / 1_000;
+        var fraction = micros % 1_000;
+        header.append(name).append(";dur=").append(micros / 1_000).append('.');
+        if (fraction < 100) {
+            header.append(fraction < 10 ? "00" : "0");
+        }
+        header.append(fraction);
+    }
+}
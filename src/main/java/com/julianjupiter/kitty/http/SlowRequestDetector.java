@@ -0,0 +1,122 @@
+/*
+ * Copyright 2013-2023 Julian Jupiter.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.julianjupiter.kitty.http;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Reports handlers that run longer than a threshold, with the stack of the thread running them. A connection arms a
+ * timing wheel timeout when it calls its handler and cancels it when the handler returns, so a fast request costs an
+ * insert into and a removal from a wheel slot; the wheel's tick is the scan. Captures run on the scheduler thread,
+ * at most {@code reportsPerMinute} a minute, and are logged and kept for the slow requests endpoint.
+ *
+ * @author Julian Jupiter
+ */
+final class SlowRequestDetector {
+    private static final System.Logger LOGGER = System.getLogger(SlowRequestDetector.class.getName());
+    private static final long MINUTE = TimeUnit.MINUTES.toNanos(1);
+    private static final int KEPT_REPORTS = 32;
+    private final long thresholdNanos;
+    private final int reportsPerMinute;
+    private final LongAdder detected;
+    private final ArrayDeque<String> reports = new ArrayDeque<>(KEPT_REPORTS);
+    private final ReentrantLock lock = new ReentrantLock();
+    // only touched by the scheduler thread
+    private long windowStart;
+    private int windowReports;
+
+    SlowRequestDetector(long thresholdNanos, int reportsPerMinute, LongAdder detected) {
+        this.thresholdNanos = thresholdNanos;
+        this.reportsPerMinute = reportsPerMinute;
+        this.detected = detected;
+        this.windowStart = System.nanoTime() - MINUTE;
+    }
+
+    static SlowRequestDetector of(KittyServerConfiguration configuration, LongAdder detected) {
+        return new SlowRequestDetector(configuration.slowRequestThreshold().toNanos(),
+                configuration.slowRequestReportsPerMinute(), detected);
+    }
+
+    long thresholdNanos() {
+        return this.thresholdNanos;
+    }
+
+    /**
+     * Called on the scheduler thread for a handler still running on {@code thread} past the threshold;
+     * {@code running} tells whether it still is, so a stack taken after it returned is thrown away.
+     */
+    void detected(Thread thread, HttpRequest request, long startedAt, BooleanSupplier running) {
+        this.detected.increment();
+        var now = System.nanoTime();
+        if (now - this.windowStart >= MINUTE) {
+            this.windowStart = now;
+            this.windowReports = 0;
+        }
+        if (this.windowReports >= this.reportsPerMinute) {
+            return;
+        }
+
+        var stack = thread.getStackTrace();
+        if (!running.getAsBoolean()) {
+            return;
+        }
+
+        this.windowReports++;
+        var requestLine = request.requestLine();
+        var report = new StringBuilder(1024)
+                .append("Slow request: ").append(requestLine.method().value()).append(' ')
+                .append(requestLine.target().getRawPath())
+                .append(" running for ").append(TimeUnit.NANOSECONDS.toMillis(now - startedAt)).append(" ms on ")
+                .append(thread);
+        for (var element : stack) {
+            report.append("\n\tat ").append(element);
+        }
+        var text = report.toString();
+        LOGGER.log(System.Logger.Level.WARNING, text);
+
+        this.lock.lock();
+        try {
+            if (this.reports.size() == KEPT_REPORTS) {
+                this.reports.removeFirst();
+            }
+            this.reports.addLast(text);
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * The latest reports, newest first, separated by blank lines.
+     */
+    String reports() {
+        this.lock.lock();
+        try {
+            var text = new StringBuilder();
+            var iterator = this.reports.descendingIterator();
+            while (iterator.hasNext()) {
+                text.append(iterator.next()).append("\n\n");
+            }
+
+            return text.toString();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+}
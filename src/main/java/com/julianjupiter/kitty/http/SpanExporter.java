@@ -0,0 +1,48 @@
+/*
+ * Copyright 2013-2023 Julian Jupiter.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.julianjupiter.kitty.http;
+
+import java.nio.file.Path;
+
+/**
+ * Receives the spans of sampled requests, on the request's thread once its response has been written, so an
+ * implementation should hand them off rather than do I/O. The server closes its exporter when it stops.
+ *
+ * @author Julian Jupiter
+ */
+@FunctionalInterface
+public interface SpanExporter extends AutoCloseable {
+    /**
+     * Appends spans to {@code path} as JSON lines, from a background thread; spans that arrive while its queue is
+     * full are dropped.
+     */
+    static SpanExporter file(Path path) {
+        return new FileSpanExporter(path);
+    }
+
+    /**
+     * Keeps the last {@code capacity} spans in memory.
+     */
+    static SpanCollector collector(int capacity) {
+        return new MemorySpanCollector(capacity);
+    }
+
+    void export(Span span);
+
+    @Override
+    default void close() {
+    }
+}
@@ -26,4 +26,6 @@ interface Starter {
     void start(Runnable runnable);
 
     void start(int port, Runnable runnable);
+
+    void stop();
 }
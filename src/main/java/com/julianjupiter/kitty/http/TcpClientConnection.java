@@ -0,0 +1,68 @@
+/*
+ * Copyright 2013-2023 Julian Jupiter.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.julianjupiter.kitty.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+
+/**
+ * @author Julian Jupiter
+ */
+final class TcpClientConnection implements ClientConnection {
+    private final Socket socket;
+
+    TcpClientConnection(Socket socket) {
+        this.socket = socket;
+    }
+
+    @Override
+    public InputStream inputStream() throws IOException {
+        return this.socket.getInputStream();
+    }
+
+    @Override
+    public OutputStream outputStream() throws IOException {
+        return this.socket.getOutputStream();
+    }
+
+    @Override
+    public void shutdownInput() throws IOException {
+        this.socket.shutdownInput();
+    }
+
+    @Override
+    public InetAddress remoteAddress() {
+        return this.socket.getInetAddress();
+    }
+
+    @Override
+    public String remoteName() {
+        return String.valueOf(this.socket.getRemoteSocketAddress());
+    }
+
+    @Override
+    public int localPort() {
+        return this.socket.getLocalPort();
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.socket.close();
+    }
+}
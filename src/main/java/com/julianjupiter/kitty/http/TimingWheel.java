@@ -0,0 +1,173 @@
+/*
+ * Copyright 2013-2023 Julian Jupiter.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.julianjupiter.kitty.http;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Hashed timing wheel: a timeout lives in the slot of its deadline tick, so scheduling and cancelling are O(1) and a
+ * tick only visits one slot. Each connection owns one {@link Timeout} and re-arms it for every phase, so no timer
+ * object is allocated per request.
+ *
+ * @author Julian Jupiter
+ */
+final class TimingWheel {
+    private static final System.Logger LOGGER = System.getLogger(TimingWheel.class.getName());
+    private final ScheduledExecutorService scheduler;
+    private final long tickNanos;
+    private final Slot[] slots;
+    private final int mask;
+    private final long origin = System.nanoTime();
+    private final AtomicBoolean started = new AtomicBoolean();
+    private volatile long tick;
+
+    TimingWheel(ScheduledExecutorService scheduler, long tickNanos, int slots) {
+        if (Integer.bitCount(slots) != 1) {
+            throw new IllegalArgumentException("Timing wheel slots must be a power of two");
+        }
+
+        this.scheduler = scheduler;
+        this.tickNanos = tickNanos;
+        this.slots = new Slot[slots];
+        this.mask = slots - 1;
+        for (var i = 0; i < slots; i++) {
+            this.slots[i] = new Slot();
+        }
+    }
+
+    Timeout newTimeout(Runnable task) {
+        if (this.started.compareAndSet(false, true)) {
+            this.scheduler.scheduleAtFixedRate(this::advance, this.tickNanos, this.tickNanos, TimeUnit.NANOSECONDS);
+        }
+
+        return new Timeout(task);
+    }
+
+    private void advance() {
+        var target = (System.nanoTime() - this.origin) / this.tickNanos;
+        var current = this.tick;
+        while (current <= target) {
+            this.slots[(int) (current & this.mask)].expire(current);
+            current++;
+        }
+
+        this.tick = current;
+    }
+
+    /**
+     * A reusable timer. The task runs on the scheduler thread and must not block.
+     */
+    final class Timeout {
+        private final Runnable task;
+        private volatile Slot slot;
+        private Timeout previous;
+        private Timeout next;
+        private long deadline;
+
+        private Timeout(Runnable task) {
+            this.task = task;
+        }
+
+        void schedule(long delayNanos) {
+            this.cancel();
+            var deadline = (System.nanoTime() - origin + delayNanos + tickNanos - 1) / tickNanos;
+            // a deadline in a tick that has already been visited would wait a whole revolution
+            deadline = Math.max(deadline, tick + 1);
+            slots[(int) (deadline & mask)].add(this, deadline);
+        }
+
+        void cancel() {
+            var slot = this.slot;
+            if (slot != null) {
+                slot.remove(this);
+            }
+        }
+    }
+
+    private static final class Slot {
+        private final ReentrantLock lock = new ReentrantLock();
+        private Timeout head;
+
+        void add(Timeout timeout, long deadline) {
+            this.lock.lock();
+            try {
+                timeout.deadline = deadline;
+                timeout.previous = null;
+                timeout.next = this.head;
+                if (this.head != null) {
+                    this.head.previous = timeout;
+                }
+                this.head = timeout;
+                timeout.slot = this;
+            } finally {
+                this.lock.unlock();
+            }
+        }
+
+        void remove(Timeout timeout) {
+            this.lock.lock();
+            try {
+                // the wheel may have expired it, or it may have moved, since the caller read its slot
+                if (timeout.slot == this) {
+                    this.unlink(timeout);
+                }
+            } finally {
+                this.lock.unlock();
+            }
+        }
+
+        // tasks run under the slot lock so that a concurrent cancel either wins or waits for the task to finish
+        void expire(long tick) {
+            this.lock.lock();
+            try {
+                var timeout = this.head;
+                while (timeout != null) {
+                    var next = timeout.next;
+                    if (timeout.deadline <= tick) {
+                        this.unlink(timeout);
+                        try {
+                            timeout.task.run();
+                        } catch (RuntimeException exception) {
+                            LOGGER.log(System.Logger.Level.WARNING, "Timeout task failed: " + exception.getMessage());
+                        }
+                    }
+                    timeout = next;
+                }
+            } finally {
+                this.lock.unlock();
+            }
+        }
+
+        private void unlink(Timeout timeout) {
+            if (timeout.previous != null) {
+                timeout.previous.next = timeout.next;
+            } else {
+                this.head = timeout.next;
+            }
+
+            if (timeout.next != null) {
+                timeout.next.previous = timeout.previous;
+            }
+
+            timeout.previous = null;
+            timeout.next = null;
+            timeout.slot = null;
+        }
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2013-2023 Julian Jupiter.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.julianjupiter.kitty.http;
+
+import java.util.Optional;
+
+/**
+ * W3C Trace Context of a request: continued from its {@code traceparent} and {@code tracestate} headers, or started
+ * here when it has none. The server's own span is a child of the caller's; {@link #traceparent()} is the header to
+ * send on calls made while handling the request. The trace ID doubles as the request ID.
+ *
+ * @author Julian Jupiter
+ */
+public sealed interface TraceContext permits DefaultTraceContext {
+    /**
+     * 32 lowercase hex digits.
+     */
+    String traceId();
+
+    /**
+     * 16 lowercase hex digits identifying this server's span.
+     */
+    String spanId();
+
+    Optional<String> parentSpanId();
+
+    Optional<String> traceState();
+
+    boolean isSampled();
+
+    String traceparent();
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2013-2023 Julian Jupiter.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.julianjupiter.kitty.http;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Attaches a trace context to every request and exports the span of the sampled ones; the sampling decision is made
+ * once, when the request head is in, so an unsampled request never builds a span.
+ *
+ * @author Julian Jupiter
+ */
+final class Tracer implements AutoCloseable {
+    private final long sampleThreshold;
+    private final SpanExporter exporter;
+    private final String requestIdHeader;
+    private final LongAdder exported;
+
+    private Tracer(long sampleThreshold, SpanExporter exporter, String requestIdHeader, LongAdder exported) {
+        this.sampleThreshold = sampleThreshold;
+        this.exporter = exporter;
+        this.requestIdHeader = requestIdHeader;
+        this.exported = exported;
+    }
+
+    static Tracer of(KittyServerConfiguration configuration, LongAdder exported) {
+        return new Tracer(DefaultTraceContext.sampleThreshold(configuration.traceSampleRate()),
+                configuration.spanExporter(), configuration.requestIdHeader(), exported);
+    }
+
+    void start(DefaultHttpRequest request) {
+        request.trace(DefaultTraceContext.of(request, this.sampleThreshold));
+    }
+
+    /**
+     * Tells the client the request ID, when a header is configured for it.
+     */
+    void identify(DefaultHttpRequest request, HttpResponse response) {
+        var trace = request.openedTrace();
+        if (this.requestIdHeader != null && trace != null) {
+            response.header(this.requestIdHeader, trace.traceId());
+        }
+    }
+
+    void end(HttpRequest request, int status, long durationNanos) {
+        if (this.exporter == null || !(request instanceof DefaultHttpRequest defaultRequest)) {
+            return;
+        }
+
+        var trace = defaultRequest.openedTrace();
+        if (trace != null && trace.isSampled()) {
+            this.exporter.export(trace.span(request, status, durationNanos));
+            this.exported.increment();
+        }
+    }
+
+    @Override
+    public void close() {
+        if (this.exporter != null) {
+            this.exporter.close();
+        }
+    }
+}
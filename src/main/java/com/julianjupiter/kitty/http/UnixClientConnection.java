@@ -0,0 +1,76 @@
+/*
+ * Copyright 2013-2023 Julian Jupiter.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.julianjupiter.kitty.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+
+/**
+ * A blocking {@link SocketChannel} accepted on a Unix domain socket. Its streams read and write the channel
+ * directly, so a thread blocked reading does not hold up another one writing.
+ *
+ * @author Julian Jupiter
+ */
+final class UnixClientConnection implements ClientConnection {
+    private final SocketChannel channel;
+
+    UnixClientConnection(SocketChannel channel) {
+        this.channel = channel;
+    }
+
+    @Override
+    public InputStream inputStream() {
+        return Channels.newInputStream(this.channel);
+    }
+
+    @Override
+    public OutputStream outputStream() {
+        return Channels.newOutputStream(this.channel);
+    }
+
+    @Override
+    public void shutdownInput() throws IOException {
+        this.channel.shutdownInput();
+    }
+
+    @Override
+    public InetAddress remoteAddress() {
+        return null;
+    }
+
+    @Override
+    public String remoteName() {
+        try {
+            return "unix:" + this.channel.getLocalAddress();
+        } catch (IOException exception) {
+            return "unix";
+        }
+    }
+
+    @Override
+    public int localPort() {
+        return 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.channel.close();
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2013-2023 Julian Jupiter.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.julianjupiter.kitty.http;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.BindException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+
+/**
+ * Listens on a Unix domain socket. A socket file left behind by a server that is gone is replaced, one that still
+ * accepts connections is not; the file is deleted again when the listener closes.
+ *
+ * @author Julian Jupiter
+ */
+final class UnixSocketListener implements Closeable {
+    private final Path path;
+    private final ServerSocketChannel channel;
+
+    private UnixSocketListener(Path path, ServerSocketChannel channel) {
+        this.path = path;
+        this.channel = channel;
+    }
+
+    static UnixSocketListener bind(Path path, String permissions) throws IOException {
+        path = path.toAbsolutePath();
+        if (Files.exists(path, LinkOption.NOFOLLOW_LINKS)) {
+            if (Files.isRegularFile(path, LinkOption.NOFOLLOW_LINKS) || Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+                throw new BindException(path + " exists and is not a socket");
+            }
+
+            if (isLive(path)) {
+                throw new BindException("Unix domain socket " + path + " is in use");
+            }
+            Files.delete(path);
+        }
+
+        var channel = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        try {
+            channel.bind(UnixDomainSocketAddress.of(path));
+            // until this runs the file has the process umask; keep the socket in a private directory if that matters
+            if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+                Files.setPosixFilePermissions(path, PosixFilePermissions.fromString(permissions));
+            }
+
+            return new UnixSocketListener(path, channel);
+        } catch (IOException exception) {
+            channel.close();
+            Files.deleteIfExists(path);
+            throw exception;
+        }
+    }
+
+    private static boolean isLive(Path path) {
+        try (var channel = SocketChannel.open(UnixDomainSocketAddress.of(path))) {
+            return channel.isConnected();
+        } catch (IOException exception) {
+            return false;
+        }
+    }
+
+    Path path() {
+        return this.path;
+    }
+
+    SocketChannel accept() throws IOException {
+        return this.channel.accept();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            this.channel.close();
+        } finally {
+            Files.deleteIfExists(this.path);
+        }
+    }
+}
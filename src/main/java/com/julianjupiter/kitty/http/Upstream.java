@@ -0,0 +1,139 @@
+/*
+ * Copyright 2013-2023 Julian Jupiter.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.julianjupiter.kitty.http;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An upstream server with its idle connection pool and health. Idle connections are reused most recently released
+ * first, so a quiet pool shrinks to the connections still warm and the rest age out.
+ *
+ * @author Julian Jupiter
+ */
+final class Upstream {
+    private final String host;
+    private final int port;
+    private final String authority;
+    private final String pathPrefix;
+    private final ConcurrentLinkedDeque<UpstreamConnection> idle = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger idleCount = new AtomicInteger();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger failures = new AtomicInteger();
+    private volatile long downUntil;
+    private volatile boolean down;
+
+    Upstream(URI uri) {
+        if (!"http".equalsIgnoreCase(uri.getScheme()) || uri.getHost() == null) {
+            throw new IllegalArgumentException("Upstream must be an http URI with a host: " + uri);
+        }
+
+        this.host = uri.getHost();
+        this.port = uri.getPort() == -1 ? 80 : uri.getPort();
+        this.authority = uri.getRawAuthority();
+        var path = uri.getRawPath() == null ? "" : uri.getRawPath();
+        this.pathPrefix = path.endsWith("/") ? path.substring(0, path.length() - 1) : path;
+    }
+
+    String host() {
+        return this.host;
+    }
+
+    int port() {
+        return this.port;
+    }
+
+    String authority() {
+        return this.authority;
+    }
+
+    String pathPrefix() {
+        return this.pathPrefix;
+    }
+
+    int inFlight() {
+        return this.inFlight.get();
+    }
+
+    boolean available(long now) {
+        return !this.down || now - this.downUntil >= 0;
+    }
+
+    UpstreamConnection acquire(int connectTimeoutMillis, int readTimeoutMillis, long idleTimeoutNanos, boolean fresh) throws IOException {
+        var now = System.nanoTime();
+        UpstreamConnection connection;
+        while (!fresh && (connection = this.idle.pollFirst()) != null) {
+            this.idleCount.decrementAndGet();
+            if (!connection.expired(now, idleTimeoutNanos)) {
+                return connection;
+            }
+            connection.close();
+        }
+
+        return UpstreamConnection.open(this, connectTimeoutMillis, readTimeoutMillis);
+    }
+
+    void release(UpstreamConnection connection, boolean reusable, int maxIdle) {
+        if (reusable && this.idleCount.incrementAndGet() <= maxIdle) {
+            connection.idle(System.nanoTime());
+            this.idle.offerFirst(connection);
+            return;
+        }
+
+        if (reusable) {
+            this.idleCount.decrementAndGet();
+        }
+        connection.close();
+    }
+
+    void begin() {
+        this.inFlight.incrementAndGet();
+    }
+
+    void end() {
+        this.inFlight.decrementAndGet();
+    }
+
+    void succeeded() {
+        if (this.failures.get() != 0) {
+            this.failures.set(0);
+        }
+        this.down = false;
+    }
+
+    // once the downtime is over the next request is a trial, a failure puts the upstream straight back down
+    void failed(int threshold, long downtimeNanos) {
+        if (this.failures.incrementAndGet() >= threshold) {
+            this.downUntil = System.nanoTime() + downtimeNanos;
+            this.down = true;
+        }
+    }
+
+    void close() {
+        UpstreamConnection connection;
+        while ((connection = this.idle.pollFirst()) != null) {
+            this.idleCount.decrementAndGet();
+            connection.close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return this.authority + this.pathPrefix;
+    }
+}
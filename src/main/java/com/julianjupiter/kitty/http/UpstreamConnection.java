@@ -0,0 +1,90 @@
+/*
+ * Copyright 2013-2023 Julian Jupiter.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.julianjupiter.kitty.http;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+/**
+ * One keep-alive connection to an upstream.
+ *
+ * @author Julian Jupiter
+ */
+final class UpstreamConnection implements AutoCloseable {
+    private static final int BUFFER_SIZE = 8192;
+    private final Socket socket;
+    private final InputStream input;
+    private final OutputStream output;
+    private boolean reused;
+    private long idleSince;
+
+    private UpstreamConnection(Socket socket) throws IOException {
+        this.socket = socket;
+        this.input = new BufferedInputStream(socket.getInputStream(), BUFFER_SIZE);
+        this.output = new BufferedOutputStream(socket.getOutputStream(), BUFFER_SIZE);
+    }
+
+    static UpstreamConnection open(Upstream upstream, int connectTimeoutMillis, int readTimeoutMillis) throws IOException {
+        var socket = new Socket();
+        try {
+            socket.setTcpNoDelay(true);
+            socket.connect(new InetSocketAddress(upstream.host(), upstream.port()), connectTimeoutMillis);
+            socket.setSoTimeout(readTimeoutMillis);
+            return new UpstreamConnection(socket);
+        } catch (IOException exception) {
+            socket.close();
+            throw exception;
+        }
+    }
+
+    InputStream input() {
+        return this.input;
+    }
+
+    OutputStream output() {
+        return this.output;
+    }
+
+    /**
+     * Whether the connection served an earlier exchange, in which case the upstream may have closed it meanwhile.
+     */
+    boolean reused() {
+        return this.reused;
+    }
+
+    void idle(long now) {
+        this.reused = true;
+        this.idleSince = now;
+    }
+
+    boolean expired(long now, long idleTimeoutNanos) {
+        return now - this.idleSince > idleTimeoutNanos || this.socket.isClosed();
+    }
+
+    @Override
+    public void close() {
+        try {
+            this.socket.close();
+        } catch (IOException ignored) {
+            // nothing left to release
+        }
+    }
+}
@@ -0,0 +1,312 @@
+/*
+ * Copyright 2013-2023 Julian Jupiter.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.julianjupiter.kitty.http;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.OptionalLong;
+import java.util.Set;
+
+/**
+ * Parameters backed by the raw, still encoded query string or form body. The index is built on first access and
+ * only records where each name and value starts and ends; a value is decoded the first time it is read and numbers
+ * are parsed straight from the raw text when it holds no escapes.
+ *
+ * @author Julian Jupiter
+ */
+final class UrlEncodedParameters implements HttpParameters {
+    static final UrlEncodedParameters EMPTY = new UrlEncodedParameters("");
+
+    private static final int[] NO_RANGES = new int[0];
+
+    private final String source;
+    // nameStart, nameEnd, valueStart, valueEnd for each pair
+    private int[] ranges;
+    private int count;
+    private String[] names;
+    private String[] values;
+
+    private UrlEncodedParameters(String source) {
+        this.source = source;
+    }
+
+    static UrlEncodedParameters of(String source) {
+        return source == null || source.isEmpty() ? EMPTY : new UrlEncodedParameters(source);
+    }
+
+    @Override
+    public int size() {
+        this.index();
+        return this.count;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return this.size() == 0;
+    }
+
+    @Override
+    public boolean contains(String name) {
+        return this.indexOf(name, 0) != -1;
+    }
+
+    @Override
+    public Set<String> names() {
+        var size = this.size();
+        var names = new LinkedHashSet<String>(size * 2);
+        for (var i = 0; i < size; i++) {
+            names.add(this.name(i));
+        }
+
+        return Collections.unmodifiableSet(names);
+    }
+
+    @Override
+    public Optional<String> get(String name) {
+        var i = this.indexOf(name, 0);
+        return i == -1 ? Optional.empty() : Optional.of(this.value(i));
+    }
+
+    @Override
+    public List<String> getAll(String name) {
+        var i = this.indexOf(name, 0);
+        if (i == -1) {
+            return List.of();
+        }
+
+        var values = new ArrayList<String>(2);
+        do {
+            values.add(this.value(i));
+        } while ((i = this.indexOf(name, i + 1)) != -1);
+
+        return Collections.unmodifiableList(values);
+    }
+
+    @Override
+    public OptionalInt getInt(String name) {
+        var i = this.indexOf(name, 0);
+        if (i == -1) {
+            return OptionalInt.empty();
+        }
+
+        var start = this.ranges[i * 4 + 2];
+        var end = this.ranges[i * 4 + 3];
+        return OptionalInt.of(isPlain(this.source, start, end)
+                ? Integer.parseInt(this.source, start, end, 10)
+                : Integer.parseInt(this.value(i)));
+    }
+
+    @Override
+    public OptionalLong getLong(String name) {
+        var i = this.indexOf(name, 0);
+        if (i == -1) {
+            return OptionalLong.empty();
+        }
+
+        var start = this.ranges[i * 4 + 2];
+        var end = this.ranges[i * 4 + 3];
+        return OptionalLong.of(isPlain(this.source, start, end)
+                ? Long.parseLong(this.source, start, end, 10)
+                : Long.parseLong(this.value(i)));
+    }
+
+    @Override
+    public Optional<Boolean> getBoolean(String name) {
+        var i = this.indexOf(name, 0);
+        if (i == -1) {
+            return Optional.empty();
+        }
+
+        var value = this.source;
+        var start = this.ranges[i * 4 + 2];
+        var end = this.ranges[i * 4 + 3];
+        if (!isPlain(value, start, end)) {
+            value = this.value(i);
+            start = 0;
+            end = value.length();
+        }
+
+        if (end - start == 4 && value.regionMatches(true, start, "true", 0, 4)) {
+            return Optional.of(Boolean.TRUE);
+        }
+
+        if (end - start == 5 && value.regionMatches(true, start, "false", 0, 5)) {
+            return Optional.of(Boolean.FALSE);
+        }
+
+        throw new IllegalArgumentException("Parameter " + name + " is not a boolean");
+    }
+
+    @Override
+    public String toString() {
+        return this.source;
+    }
+
+    private void index() {
+        if (this.ranges != null) {
+            return;
+        }
+
+        var source = this.source;
+        var length = source.length();
+        var ranges = length == 0 ? NO_RANGES : new int[16];
+        var count = 0;
+        var start = 0;
+        while (start < length) {
+            var end = source.indexOf('&', start);
+            if (end == -1) {
+                end = length;
+            }
+
+            if (end > start) {
+                var equals = source.indexOf('=', start);
+                var nameEnd = equals == -1 || equals > end ? end : equals;
+                if (nameEnd > start) {
+                    if (count * 4 == ranges.length) {
+                        ranges = Arrays.copyOf(ranges, ranges.length * 2);
+                    }
+
+                    ranges[count * 4] = start;
+                    ranges[count * 4 + 1] = nameEnd;
+                    ranges[count * 4 + 2] = nameEnd == end ? end : nameEnd + 1;
+                    ranges[count * 4 + 3] = end;
+                    count++;
+                }
+            }
+
+            start = end + 1;
+        }
+
+        this.count = count;
+        this.ranges = ranges;
+    }
+
+    private int indexOf(String name, int from) {
+        this.index();
+        var nameLength = name.length();
+        for (var i = from; i < this.count; i++) {
+            var start = this.ranges[i * 4];
+            var end = this.ranges[i * 4 + 1];
+            if (isPlain(this.source, start, end)) {
+                if (end - start == nameLength && this.source.regionMatches(start, name, 0, nameLength)) {
+                    return i;
+                }
+            } else if (this.name(i).equals(name)) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    private String name(int i) {
+        if (this.names == null) {
+            this.names = new String[this.count];
+        }
+
+        var name = this.names[i];
+        if (name == null) {
+            name = decode(this.source, this.ranges[i * 4], this.ranges[i * 4 + 1]);
+            this.names[i] = name;
+        }
+
+        return name;
+    }
+
+    private String value(int i) {
+        if (this.values == null) {
+            this.values = new String[this.count];
+        }
+
+        var value = this.values[i];
+        if (value == null) {
+            value = decode(this.source, this.ranges[i * 4 + 2], this.ranges[i * 4 + 3]);
+            this.values[i] = value;
+        }
+
+        return value;
+    }
+
+    private static boolean isPlain(String source, int start, int end) {
+        for (var i = start; i < end; i++) {
+            var c = source.charAt(i);
+            if (c == '%' || c == '+') {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Decodes {@code %XX} escapes as UTF-8 bytes and {@code +} as a space. A {@code %} that does not start a valid
+     * escape is kept as is.
+     */
+    private static String decode(String source, int start, int end) {
+        if (isPlain(source, start, end)) {
+            return source.substring(start, end);
+        }
+
+        var bytes = new byte[(end - start) * 3];
+        var length = 0;
+        for (var i = start; i < end; i++) {
+            var c = source.charAt(i);
+            if (c == '+') {
+                bytes[length++] = ' ';
+            } else if (c == '%' && hex(source, i + 1, end) >= 0 && hex(source, i + 2, end) >= 0) {
+                bytes[length++] = (byte) (hex(source, i + 1, end) << 4 | hex(source, i + 2, end));
+                i += 2;
+            } else if (c < 0x80) {
+                bytes[length++] = (byte) c;
+            } else {
+                var encoded = source.substring(i, Character.isHighSurrogate(c) && i + 1 < end ? i + 2 : i + 1)
+                        .getBytes(StandardCharsets.UTF_8);
+                System.arraycopy(encoded, 0, bytes, length, encoded.length);
+                length += encoded.length;
+                i += encoded.length == 4 ? 1 : 0;
+            }
+        }
+
+        return new String(bytes, 0, length, StandardCharsets.UTF_8);
+    }
+
+    private static int hex(String source, int i, int end) {
+        if (i >= end) {
+            return -1;
+        }
+
+        var c = source.charAt(i);
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        }
+
+        if (c >= 'a' && c <= 'f') {
+            return c - 'a' + 10;
+        }
+
+        if (c >= 'A' && c <= 'F') {
+            return c - 'A' + 10;
+        }
+
+        return -1;
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright 2013-2023 Julian Jupiter.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.julianjupiter.kitty.http;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Host names mapped to handlers, looked up straight from the bytes of a Host header. Exact names and the suffixes
+ * of wildcard names ({@code *.example.com} is stored as {@code example.com}) are kept in two open-addressing tables
+ * sized to stay at most half full, so a lookup hashes the name once and usually probes a single slot; a name that is
+ * not in the exact table is then tried in the wildcard table with one label removed at a time, most specific first.
+ * Names are compared ignoring ASCII case, the port is ignored.
+ *
+ * @author Julian Jupiter
+ */
+final class VirtualHosts {
+    private final Table exact;
+    private final Table wildcard;
+
+    private VirtualHosts(Table exact, Table wildcard) {
+        this.exact = exact;
+        this.wildcard = wildcard;
+    }
+
+    /**
+     * Returns {@code null} if there are no virtual hosts.
+     */
+    static VirtualHosts of(Map<String, HttpHandler> hosts) {
+        if (hosts.isEmpty()) {
+            return null;
+        }
+
+        var exactCount = (int) hosts.keySet().stream().filter(host -> !host.startsWith("*.")).count();
+        var exact = new Table(exactCount);
+        var wildcard = new Table(hosts.size() - exactCount);
+        hosts.forEach((host, handler) -> {
+            if (host.startsWith("*.")) {
+                wildcard.put(host.substring(2), handler);
+            } else {
+                exact.put(host, handler);
+            }
+        });
+
+        return new VirtualHosts(exact, wildcard);
+    }
+
+    /**
+     * Lower-cases {@code host} and checks it is a name, optionally starting with {@code *.}, that can be matched.
+     */
+    static String normalize(String host) {
+        var name = host.strip().toLowerCase(Locale.ROOT);
+        if (name.endsWith(".")) {
+            name = name.substring(0, name.length() - 1);
+        }
+        var labels = name.startsWith("*.") ? name.substring(2) : name;
+        if (labels.isEmpty() || labels.startsWith(".") || labels.contains("..")
+                || labels.chars().anyMatch(c -> c <= ' ' || c == '*' || c == '/' || c == ':' && !labels.startsWith("["))) {
+            throw new IllegalArgumentException("Invalid virtual host: " + host);
+        }
+
+        return name;
+    }
+
+    /**
+     * Looks up the Host header value in {@code bytes} from {@code from} to {@code to}, without its port, or returns
+     * {@code null} if no virtual host matches.
+     */
+    HttpHandler find(byte[] bytes, int from, int to) {
+        to = hostEnd(bytes, from, to);
+        if (to > from && bytes[to - 1] == '.') {
+            to--;
+        }
+        if (from >= to) {
+            return null;
+        }
+
+        var handler = this.exact.get(bytes, from, to);
+        if (handler != null || this.wildcard.size == 0) {
+            return handler;
+        }
+
+        // a.b.example.com tries b.example.com, then example.com, then com
+        for (var i = from; i < to; i++) {
+            if (bytes[i] == '.') {
+                handler = this.wildcard.get(bytes, i + 1, to);
+                if (handler != null) {
+                    return handler;
+                }
+            }
+        }
+
+        return null;
+    }
+
+    // drops the port, keeping the brackets of an IPv6 literal
+    private static int hostEnd(byte[] bytes, int from, int to) {
+        if (bytes[from] == '[') {
+            for (var i = from; i < to; i++) {
+                if (bytes[i] == ']') {
+                    return i + 1;
+                }
+            }
+
+            return to;
+        }
+
+        for (var i = from; i < to; i++) {
+            if (bytes[i] == ':') {
+                return i;
+            }
+        }
+
+        return to;
+    }
+
+    private static int lower(byte b) {
+        return b >= 'A' && b <= 'Z' ? b + ('a' - 'A') : b;
+    }
+
+    private static int hash(byte[] bytes, int from, int to) {
+        var hash = 0;
+        for (var i = from; i < to; i++) {
+            hash = 31 * hash + lower(bytes[i]);
+        }
+
+        return hash ^ hash >>> 16;
+    }
+
+    private static final class Table {
+        private final byte[][] keys;
+        private final HttpHandler[] handlers;
+        private final int mask;
+        private int size;
+
+        Table(int entries) {
+            var capacity = Integer.highestOneBit(Math.max(entries, 1) * 2 - 1) << 1;
+            this.keys = new byte[capacity][];
+            this.handlers = new HttpHandler[capacity];
+            this.mask = capacity - 1;
+        }
+
+        void put(String name, HttpHandler handler) {
+            var key = name.getBytes(StandardCharsets.UTF_8);
+            var slot = hash(key, 0, key.length) & this.mask;
+            while (this.keys[slot] != null) {
+                slot = (slot + 1) & this.mask;
+            }
+            this.keys[slot] = key;
+            this.handlers[slot] = handler;
+            this.size++;
+        }
+
+        HttpHandler get(byte[] bytes, int from, int to) {
+            var slot = hash(bytes, from, to) & this.mask;
+            byte[] key;
+            while ((key = this.keys[slot]) != null) {
+                if (matches(key, bytes, from, to)) {
+                    return this.handlers[slot];
+                }
+                slot = (slot + 1) & this.mask;
+            }
+
+            return null;
+        }
+
+        private static boolean matches(byte[] key, byte[] bytes, int from, int to) {
+            if (key.length != to - from) {
+                return false;
+            }
+            for (var i = 0; i < key.length; i++) {
+                if (key[i] != lower(bytes[from + i])) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+    }
+}
@@ -0,0 +1,421 @@
+/*
+ * Copyright 2013-2023 Julian Jupiter.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.julianjupiter.kitty.http;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.DataFormatException;
+
+/**
+ * @author Julian Jupiter
+ */
+final class WebSocketConnection implements WebSocket, KeepAliveSweeper.Participant {
+    private static final long MAX_PENDING_BYTES = 16L * 1024 * 1024;
+    private final System.Logger logger = System.getLogger(WebSocketConnection.class.getName());
+    private final ClientConnection socket;
+    private final HttpRequest request;
+    private final InputStream input;
+    private final OutputStream output;
+    private final WebSocketListener listener;
+    private final ByteBufferPool bufferPool;
+    private final KeepAliveSweeper keepAlive;
+    private final Executor executor;
+    private final int maxMessageSize;
+    private final PerMessageDeflate deflate;
+    private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPORT)
+            .onUnmappableCharacter(CodingErrorAction.REPORT);
+    private final ConcurrentLinkedQueue<byte[]> outbound = new ConcurrentLinkedQueue<>();
+    private final AtomicLong pendingBytes = new AtomicLong();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final AtomicBoolean closeSent = new AtomicBoolean();
+    private final AtomicBoolean closed = new AtomicBoolean();
+    private volatile long lastReceived = System.nanoTime();
+    private int closeCode = WebSocketMessage.ABNORMAL_CLOSURE;
+    private String closeReason = "";
+
+    WebSocketConnection(ClientConnection socket, HttpRequest request, InputStream input, OutputStream output,
+                        WebSocketListener listener, WebSocketHandshake handshake, Executor executor, ServerContext context) {
+        var configuration = context.configuration();
+        this.socket = socket;
+        this.request = request;
+        this.input = input;
+        this.output = output;
+        this.listener = listener;
+        this.bufferPool = context.bufferPool();
+        this.keepAlive = context.webSocketKeepAlive();
+        this.executor = executor != null ? executor : Thread::startVirtualThread;
+        this.maxMessageSize = configuration.webSocketMaxMessageSize();
+        this.deflate = handshake.compression() ? new PerMessageDeflate(handshake.clientNoContextTakeover()) : null;
+    }
+
+    void run() {
+        this.keepAlive.register(this);
+        try {
+            this.listener.onOpen(this);
+            this.readFrames();
+        } catch (ProtocolException exception) {
+            this.fail(exception.statusCode, exception.getMessage());
+        } catch (IOException exception) {
+            if (!this.closed.get() && !this.closeSent.get()) {
+                this.notifyError(exception);
+            }
+        } catch (RuntimeException exception) {
+            this.notifyError(exception);
+            this.fail(WebSocketMessage.INTERNAL_ERROR, "");
+        } finally {
+            this.terminate();
+        }
+    }
+
+    @Override
+    public HttpRequest request() {
+        return this.request;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return !this.closed.get() && !this.closeSent.get();
+    }
+
+    @Override
+    public void sendText(String text) {
+        this.send(WebSocketMessage.text(text));
+    }
+
+    @Override
+    public void sendBinary(ByteBuffer data) {
+        this.send(WebSocketMessage.binary(data));
+    }
+
+    @Override
+    public void send(WebSocketMessage message) {
+        if (this.isOpen()) {
+            this.enqueue(message.frame(this.deflate != null));
+        }
+    }
+
+    @Override
+    public void ping(ByteBuffer data) {
+        if (data.remaining() > WebSocketFrames.MAX_CONTROL_PAYLOAD) {
+            throw new IllegalArgumentException("Ping payload cannot exceed " + WebSocketFrames.MAX_CONTROL_PAYLOAD + " bytes");
+        }
+
+        var payload = new byte[data.remaining()];
+        data.duplicate().get(payload);
+        this.enqueue(WebSocketFrames.encode(WebSocketFrames.OPCODE_PING, false, payload, 0, payload.length));
+    }
+
+    @Override
+    public void close(int statusCode, String reason) {
+        if (this.closeSent.compareAndSet(false, true)) {
+            this.enqueue(WebSocketFrames.close(statusCode, reason));
+        }
+    }
+
+    @Override
+    public void keepAlive(long now, long intervalNanos) {
+        var idle = now - this.lastReceived;
+        if (idle > intervalNanos << 1) {
+            this.abort();
+        } else if (idle >= intervalNanos) {
+            this.enqueue(WebSocketFrames.EMPTY_PING);
+        }
+    }
+
+    private void readFrames() throws IOException {
+        ByteBuffer message = null;
+        var messageOpcode = -1;
+        var messageCompressed = false;
+        try {
+            while (true) {
+                var b0 = this.input.read();
+                if (b0 == -1) {
+                    return;
+                }
+
+                var b1 = this.readByte();
+                this.lastReceived = System.nanoTime();
+                var fin = (b0 & 0x80) != 0;
+                var rsv1 = (b0 & 0x40) != 0;
+                var opcode = b0 & 0x0F;
+                if ((b0 & 0x30) != 0 || (rsv1 && (this.deflate == null || opcode == WebSocketFrames.OPCODE_CONTINUATION))) {
+                    throw new ProtocolException(WebSocketMessage.PROTOCOL_ERROR, "Unexpected reserved bits");
+                }
+
+                if ((b1 & 0x80) == 0) {
+                    throw new ProtocolException(WebSocketMessage.PROTOCOL_ERROR, "Client frames must be masked");
+                }
+
+                long length = b1 & 0x7F;
+                if (length == 126) {
+                    length = (this.readByte() << 8) | this.readByte();
+                } else if (length == 127) {
+                    length = 0;
+                    for (var i = 0; i < 8; i++) {
+                        length = (length << 8) | this.readByte();
+                    }
+
+                    if (length < 0) {
+                        throw new ProtocolException(WebSocketMessage.PROTOCOL_ERROR, "Invalid payload length");
+                    }
+                }
+
+                var mask = (this.readByte() << 24) | (this.readByte() << 16) | (this.readByte() << 8) | this.readByte();
+                if (opcode >= WebSocketFrames.OPCODE_CLOSE) {
+                    if (!fin || length > WebSocketFrames.MAX_CONTROL_PAYLOAD || rsv1) {
+                        throw new ProtocolException(WebSocketMessage.PROTOCOL_ERROR, "Invalid control frame");
+                    }
+
+                    if (this.readControlFrame(opcode, (int) length, mask)) {
+                        return;
+                    }
+                    continue;
+                }
+
+                if (opcode == WebSocketFrames.OPCODE_CONTINUATION) {
+                    if (message == null) {
+                        throw new ProtocolException(WebSocketMessage.PROTOCOL_ERROR, "Unexpected continuation frame");
+                    }
+                } else if (opcode == WebSocketFrames.OPCODE_TEXT || opcode == WebSocketFrames.OPCODE_BINARY) {
+                    if (message != null) {
+                        throw new ProtocolException(WebSocketMessage.PROTOCOL_ERROR, "Expected continuation frame");
+                    }
+
+                    messageOpcode = opcode;
+                    messageCompressed = rsv1;
+                    message = this.bufferPool.acquire((int) Math.min(length, this.maxMessageSize));
+                } else {
+                    throw new ProtocolException(WebSocketMessage.PROTOCOL_ERROR, "Unknown opcode " + opcode);
+                }
+
+                var size = message.position() + length;
+                if (size > this.maxMessageSize) {
+                    throw new ProtocolException(WebSocketMessage.MESSAGE_TOO_BIG, "Message too big");
+                }
+
+                message = this.bufferPool.grow(message, (int) size);
+                var offset = message.position();
+                this.readFully(message, offset, (int) length);
+                WebSocketFrames.unmask(message, offset, (int) length, mask);
+                message.position((int) size);
+                if (fin) {
+                    var complete = message;
+                    message = null;
+                    this.deliver(messageOpcode, messageCompressed, complete);
+                }
+            }
+        } finally {
+            this.bufferPool.release(message);
+        }
+    }
+
+    private boolean readControlFrame(int opcode, int length, int mask) throws IOException {
+        var payload = this.bufferPool.acquire(length);
+        try {
+            this.readFully(payload, 0, length);
+            WebSocketFrames.unmask(payload, 0, length, mask);
+            payload.limit(length);
+            switch (opcode) {
+                case WebSocketFrames.OPCODE_PING -> {
+                    var bytes = new byte[length];
+                    payload.get(0, bytes);
+                    this.enqueue(WebSocketFrames.encode(WebSocketFrames.OPCODE_PONG, false, bytes, 0, length));
+                }
+                case WebSocketFrames.OPCODE_PONG -> this.listener.onPong(this, payload);
+                case WebSocketFrames.OPCODE_CLOSE -> {
+                    this.receiveClose(payload, length);
+                    return true;
+                }
+                default -> throw new ProtocolException(WebSocketMessage.PROTOCOL_ERROR, "Unknown opcode " + opcode);
+            }
+
+            return false;
+        } finally {
+            this.bufferPool.release(payload);
+        }
+    }
+
+    private void receiveClose(ByteBuffer payload, int length) throws ProtocolException {
+        if (length == 1) {
+            throw new ProtocolException(WebSocketMessage.PROTOCOL_ERROR, "Invalid close payload");
+        }
+
+        var statusCode = WebSocketMessage.NO_STATUS_RECEIVED;
+        var reason = "";
+        if (length >= 2) {
+            statusCode = ((payload.get(0) & 0xFF) << 8) | (payload.get(1) & 0xFF);
+            if (!WebSocketFrames.isValidCloseCode(statusCode)) {
+                throw new ProtocolException(WebSocketMessage.PROTOCOL_ERROR, "Invalid close code " + statusCode);
+            }
+
+            reason = this.decode(payload.slice(2, length - 2));
+        }
+
+        this.closeCode = statusCode;
+        this.closeReason = reason;
+        this.close(statusCode == WebSocketMessage.NO_STATUS_RECEIVED ? WebSocketMessage.NORMAL_CLOSURE : statusCode, "");
+    }
+
+    private void deliver(int opcode, boolean compressed, ByteBuffer message) throws ProtocolException {
+        if (compressed) {
+            try {
+                message = this.deflate.decompress(message, this.bufferPool, this.maxMessageSize);
+            } catch (DataFormatException exception) {
+                throw new ProtocolException(WebSocketMessage.INVALID_PAYLOAD, "Invalid compressed data");
+            } catch (PerMessageDeflate.MessageTooBigException exception) {
+                throw new ProtocolException(WebSocketMessage.MESSAGE_TOO_BIG, exception.getMessage());
+            }
+        }
+
+        try {
+            message.flip();
+            if (opcode == WebSocketFrames.OPCODE_TEXT) {
+                this.listener.onText(this, this.decode(message));
+            } else {
+                this.listener.onBinary(this, message);
+            }
+        } finally {
+            this.bufferPool.release(message);
+        }
+    }
+
+    private String decode(ByteBuffer buffer) throws ProtocolException {
+        try {
+            return this.decoder.reset().decode(buffer).toString();
+        } catch (CharacterCodingException exception) {
+            throw new ProtocolException(WebSocketMessage.INVALID_PAYLOAD, "Invalid UTF-8");
+        }
+    }
+
+    private int readByte() throws IOException {
+        var b = this.input.read();
+        if (b == -1) {
+            throw new EOFException();
+        }
+
+        return b;
+    }
+
+    private void readFully(ByteBuffer buffer, int offset, int length) throws IOException {
+        if (this.input.readNBytes(buffer.array(), buffer.arrayOffset() + offset, length) != length) {
+            throw new EOFException();
+        }
+    }
+
+    private void enqueue(byte[] frame) {
+        if (this.closed.get()) {
+            return;
+        }
+
+        this.outbound.offer(frame);
+        if (this.pendingBytes.addAndGet(frame.length) > MAX_PENDING_BYTES) {
+            // the peer does not keep up with what we send, drop it rather than buffering without bound
+            this.abort();
+            return;
+        }
+
+        if (this.flushScheduled.compareAndSet(false, true)) {
+            this.executor.execute(() -> {
+                this.flushScheduled.set(false);
+                this.flush();
+            });
+        }
+    }
+
+    private void flush() {
+        this.writeLock.lock();
+        try {
+            byte[] frame;
+            while ((frame = this.outbound.poll()) != null) {
+                this.pendingBytes.addAndGet(-frame.length);
+                this.output.write(frame);
+            }
+
+            this.output.flush();
+        } catch (IOException exception) {
+            this.abort();
+        } finally {
+            this.writeLock.unlock();
+        }
+    }
+
+    private void fail(int statusCode, String reason) {
+        this.closeCode = statusCode;
+        this.closeReason = reason;
+        this.close(statusCode, reason);
+    }
+
+    private void abort() {
+        try {
+            this.socket.close();
+        } catch (IOException exception) {
+            this.logger.log(System.Logger.Level.DEBUG, exception.getMessage());
+        }
+    }
+
+    private void terminate() {
+        // whatever is still queued, including our close frame, goes out before the socket is closed
+        this.flush();
+        if (!this.closed.compareAndSet(false, true)) {
+            return;
+        }
+
+        this.keepAlive.unregister(this);
+        this.outbound.clear();
+        if (this.deflate != null) {
+            this.deflate.end();
+        }
+
+        this.abort();
+        try {
+            this.listener.onClose(this, this.closeCode, this.closeReason);
+        } catch (RuntimeException exception) {
+            this.logger.log(System.Logger.Level.ERROR, exception.getMessage());
+        }
+    }
+
+    private void notifyError(Throwable error) {
+        try {
+            this.listener.onError(this, error);
+        } catch (RuntimeException exception) {
+            this.logger.log(System.Logger.Level.ERROR, exception.getMessage());
+        }
+    }
+
+    private static final class ProtocolException extends IOException {
+        private static final long serialVersionUID = 1L;
+        private final int statusCode;
+
+        ProtocolException(int statusCode, String message) {
+            super(message);
+            this.statusCode = statusCode;
+        }
+    }
+}
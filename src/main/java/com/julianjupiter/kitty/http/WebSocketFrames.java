@@ -0,0 +1,88 @@
+/*
+ * Copyright 2013-2023 Julian Jupiter.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.julianjupiter.kitty.http;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * @author Julian Jupiter
+ */
+final class WebSocketFrames {
+    static final int OPCODE_CONTINUATION = 0x0;
+    static final int OPCODE_TEXT = 0x1;
+    static final int OPCODE_BINARY = 0x2;
+    static final int OPCODE_CLOSE = 0x8;
+    static final int OPCODE_PING = 0x9;
+    static final int OPCODE_PONG = 0xA;
+    static final int MAX_CONTROL_PAYLOAD = 125;
+    static final byte[] EMPTY_PING = encode(OPCODE_PING, false, new byte[0], 0, 0);
+
+    private WebSocketFrames() {
+    }
+
+    static byte[] encode(int opcode, boolean compressed, byte[] payload, int offset, int length) {
+        var headerLength = length < 126 ? 2 : length < 65536 ? 4 : 10;
+        var frame = new byte[headerLength + length];
+        frame[0] = (byte) (0x80 | (compressed ? 0x40 : 0) | opcode);
+        if (length < 126) {
+            frame[1] = (byte) length;
+        } else if (length < 65536) {
+            frame[1] = 126;
+            frame[2] = (byte) (length >>> 8);
+            frame[3] = (byte) length;
+        } else {
+            frame[1] = 127;
+            for (var i = 0; i < 8; i++) {
+                frame[2 + i] = (byte) ((long) length >>> (56 - 8 * i));
+            }
+        }
+
+        System.arraycopy(payload, offset, frame, headerLength, length);
+        return frame;
+    }
+
+    static byte[] close(int statusCode, String reason) {
+        var reasonBytes = reason == null ? new byte[0] : reason.getBytes(StandardCharsets.UTF_8);
+        var length = Math.min(reasonBytes.length, MAX_CONTROL_PAYLOAD - 2);
+        var payload = new byte[2 + length];
+        payload[0] = (byte) (statusCode >>> 8);
+        payload[1] = (byte) statusCode;
+        System.arraycopy(reasonBytes, 0, payload, 2, length);
+        return encode(OPCODE_CLOSE, false, payload, 0, payload.length);
+    }
+
+    static void unmask(ByteBuffer buffer, int offset, int length, int mask) {
+        // heap buffers are big-endian, so the 4-byte key repeated twice lines up with 8 payload bytes
+        var wideMask = (mask & 0xFFFFFFFFL) | ((long) mask << 32);
+        var end = offset + length;
+        var i = offset;
+        for (; i + 8 <= end; i += 8) {
+            buffer.putLong(i, buffer.getLong(i) ^ wideMask);
+        }
+
+        for (; i < end; i++) {
+            var shift = 24 - 8 * ((i - offset) & 3);
+            buffer.put(i, (byte) (buffer.get(i) ^ (mask >>> shift)));
+        }
+    }
+
+    static boolean isValidCloseCode(int statusCode) {
+        return (statusCode >= 1000 && statusCode <= 1003)
+                || (statusCode >= 1007 && statusCode <= 1011)
+                || (statusCode >= 3000 && statusCode <= 4999);
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2013-2023 Julian Jupiter.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.julianjupiter.kitty.http;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @author Julian Jupiter
+ */
+public final class WebSocketGroup {
+    private final Set<WebSocket> members = ConcurrentHashMap.newKeySet();
+
+    private WebSocketGroup() {
+    }
+
+    public static WebSocketGroup create() {
+        return new WebSocketGroup();
+    }
+
+    public WebSocketGroup add(WebSocket webSocket) {
+        this.members.add(webSocket);
+        return this;
+    }
+
+    public WebSocketGroup remove(WebSocket webSocket) {
+        this.members.remove(webSocket);
+        return this;
+    }
+
+    public int size() {
+        return this.members.size();
+    }
+
+    public void broadcast(String text) {
+        this.broadcast(WebSocketMessage.text(text));
+    }
+
+    public void broadcast(WebSocketMessage message) {
+        for (var webSocket : this.members) {
+            if (webSocket.isOpen()) {
+                webSocket.send(message);
+            } else {
+                this.members.remove(webSocket);
+            }
+        }
+    }
+}
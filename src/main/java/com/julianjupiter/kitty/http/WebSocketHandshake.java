@@ -0,0 +1,135 @@
+/*
+ * Copyright 2013-2023 Julian Jupiter.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.julianjupiter.kitty.http;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Locale;
+import java.util.Optional;
+
+/**
+ * @author Julian Jupiter
+ */
+record WebSocketHandshake(String accept, boolean compression, boolean clientNoContextTakeover) {
+    static final String VERSION = "13";
+    private static final String GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+
+    static Optional<HttpStatus> check(HttpRequest request) {
+        if (!HttpMethod.GET.equals(request.requestLine().method())
+                || !containsToken(request, "Upgrade", "websocket")
+                || !containsToken(request, "Connection", "upgrade")) {
+            return Optional.of(HttpStatus.BAD_REQUEST);
+        }
+
+        var version = request.header("Sec-WebSocket-Version")
+                .map(HttpHeader::value)
+                .orElse("");
+        if (!VERSION.equals(version.strip())) {
+            return Optional.of(HttpStatus.UPGRADE_REQUIRED);
+        }
+
+        var key = request.header("Sec-WebSocket-Key")
+                .map(HttpHeader::value)
+                .orElse("");
+        try {
+            if (Base64.getDecoder().decode(key.strip()).length != 16) {
+                return Optional.of(HttpStatus.BAD_REQUEST);
+            }
+        } catch (IllegalArgumentException exception) {
+            return Optional.of(HttpStatus.BAD_REQUEST);
+        }
+
+        return Optional.empty();
+    }
+
+    static WebSocketHandshake negotiate(HttpRequest request, boolean compressionEnabled) {
+        var key = request.header("Sec-WebSocket-Key")
+                .map(HttpHeader::value)
+                .orElseThrow()
+                .strip();
+        var accept = Base64.getEncoder().encodeToString(sha1(key + GUID));
+        if (!compressionEnabled) {
+            return new WebSocketHandshake(accept, false, false);
+        }
+
+        var extensions = request.header("Sec-WebSocket-Extensions")
+                .map(HttpHeader::value)
+                .orElse("");
+        for (var offer : extensions.split(",")) {
+            var parameters = offer.split(";");
+            if (!PerMessageDeflate.EXTENSION.equalsIgnoreCase(parameters[0].strip())) {
+                continue;
+            }
+
+            var acceptable = true;
+            var clientNoContextTakeover = false;
+            for (var i = 1; i < parameters.length; i++) {
+                var parameter = parameters[i].strip().toLowerCase(Locale.ROOT);
+                if (parameter.equals("client_no_context_takeover")) {
+                    clientNoContextTakeover = true;
+                } else if (parameter.startsWith("server_max_window_bits")) {
+                    // java.util.zip always compresses with a 32K window
+                    acceptable = parameter.endsWith("15") || !parameter.contains("=");
+                } else if (!parameter.equals("server_no_context_takeover") && !parameter.startsWith("client_max_window_bits")) {
+                    acceptable = false;
+                }
+            }
+
+            if (acceptable) {
+                return new WebSocketHandshake(accept, true, clientNoContextTakeover);
+            }
+        }
+
+        return new WebSocketHandshake(accept, false, false);
+    }
+
+    byte[] response() {
+        var response = new StringBuilder(160)
+                .append(HttpVersion.HTTP_1_1).append(' ').append(HttpStatus.SWITCHING_PROTOCOLS).append("\r\n")
+                .append("Upgrade: websocket\r\n")
+                .append("Connection: Upgrade\r\n")
+                .append("Sec-WebSocket-Accept: ").append(this.accept).append("\r\n");
+        if (this.compression) {
+            response.append("Sec-WebSocket-Extensions: ").append(PerMessageDeflate.EXTENSION)
+                    .append("; server_no_context_takeover");
+            if (this.clientNoContextTakeover) {
+                response.append("; client_no_context_takeover");
+            }
+            response.append("\r\n");
+        }
+
+        return response.append("\r\n").toString().getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    private static boolean containsToken(HttpRequest request, String name, String token) {
+        return request.header(name)
+                .map(header -> header.values().stream()
+                        .flatMap(value -> Arrays.stream(value.split(",")))
+                        .anyMatch(value -> value.strip().equalsIgnoreCase(token)))
+                .orElse(false);
+    }
+
+    private static byte[] sha1(String value) {
+        try {
+            return MessageDigest.getInstance("SHA-1").digest(value.getBytes(StandardCharsets.ISO_8859_1));
+        } catch (NoSuchAlgorithmException exception) {
+            throw new IllegalStateException(exception);
+        }
+    }
+}
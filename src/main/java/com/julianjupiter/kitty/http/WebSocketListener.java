@@ -0,0 +1,44 @@
+/*
+ * Copyright 2013-2023 Julian Jupiter.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.julianjupiter.kitty.http;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Callbacks are invoked on the thread reading the connection. The buffer passed to
+ * {@link #onBinary(WebSocket, ByteBuffer)} is pooled and only valid until the callback returns.
+ *
+ * @author Julian Jupiter
+ */
+public interface WebSocketListener {
+    default void onOpen(WebSocket webSocket) {
+    }
+
+    default void onText(WebSocket webSocket, String text) {
+    }
+
+    default void onBinary(WebSocket webSocket, ByteBuffer data) {
+    }
+
+    default void onPong(WebSocket webSocket, ByteBuffer data) {
+    }
+
+    default void onClose(WebSocket webSocket, int statusCode, String reason) {
+    }
+
+    default void onError(WebSocket webSocket, Throwable error) {
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2013-2023 Julian Jupiter.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.julianjupiter.kitty.http;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+/**
+ * A message that is serialized once and can be sent to any number of connections.
+ *
+ * @author Julian Jupiter
+ */
+public final class WebSocketMessage {
+    public static final int NORMAL_CLOSURE = 1000;
+    public static final int GOING_AWAY = 1001;
+    public static final int PROTOCOL_ERROR = 1002;
+    public static final int UNSUPPORTED_DATA = 1003;
+    public static final int NO_STATUS_RECEIVED = 1005;
+    public static final int ABNORMAL_CLOSURE = 1006;
+    public static final int INVALID_PAYLOAD = 1007;
+    public static final int POLICY_VIOLATION = 1008;
+    public static final int MESSAGE_TOO_BIG = 1009;
+    public static final int INTERNAL_ERROR = 1011;
+
+    private final int opcode;
+    private final byte[] payload;
+    private volatile byte[] frame;
+    private volatile byte[] compressedFrame;
+
+    private WebSocketMessage(int opcode, byte[] payload) {
+        this.opcode = opcode;
+        this.payload = payload;
+    }
+
+    public static WebSocketMessage text(String text) {
+        Objects.requireNonNull(text);
+        return new WebSocketMessage(WebSocketFrames.OPCODE_TEXT, text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static WebSocketMessage binary(byte[] data) {
+        Objects.requireNonNull(data);
+        return new WebSocketMessage(WebSocketFrames.OPCODE_BINARY, data.clone());
+    }
+
+    public static WebSocketMessage binary(ByteBuffer data) {
+        var bytes = new byte[data.remaining()];
+        data.duplicate().get(bytes);
+        return new WebSocketMessage(WebSocketFrames.OPCODE_BINARY, bytes);
+    }
+
+    public boolean isText() {
+        return this.opcode == WebSocketFrames.OPCODE_TEXT;
+    }
+
+    public int length() {
+        return this.payload.length;
+    }
+
+    byte[] frame(boolean compression) {
+        if (compression) {
+            var compressed = this.compressedFrame;
+            if (compressed == null) {
+                var deflated = PerMessageDeflate.compress(this.payload);
+                compressed = deflated == null
+                        ? this.frame(false)
+                        : WebSocketFrames.encode(this.opcode, true, deflated, 0, deflated.length);
+                this.compressedFrame = compressed;
+            }
+
+            return compressed;
+        }
+
+        var plain = this.frame;
+        if (plain == null) {
+            plain = WebSocketFrames.encode(this.opcode, false, this.payload, 0, this.payload.length);
+            this.frame = plain;
+        }
+
+        return plain;
+    }
+}
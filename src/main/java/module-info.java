@@ -1,3 +1,6 @@
 module com.julianjupiter.kitty.http {
+    requires jdk.jfr;
+    requires jdk.management;
+
     exports com.julianjupiter.kitty.http;
-}
\ No newline at end of file
+}
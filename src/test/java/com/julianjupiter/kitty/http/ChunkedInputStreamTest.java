@@ -0,0 +1,72 @@
+/*
+ * Copyright 2013-2023 Julian Jupiter.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.julianjupiter.kitty.http;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * @author Julian Jupiter
+ */
+class ChunkedInputStreamTest {
+    private static final int MAX_SIZE = 1024;
+
+    @Test
+    void decodesChunksAndDropsTrailers() throws IOException {
+        var body = decode("5;name=value\r\nhello\r\n6\r\n world\r\n0\r\nExpires: never\r\n\r\n");
+
+        assertArrayEquals("hello world".getBytes(StandardCharsets.US_ASCII), body);
+    }
+
+    @Test
+    void rejectsBodyPastTheLimit() {
+        assertStatus(HttpStatus.CONTENT_TOO_LARGE, "400\r\n" + "a".repeat(1024) + "\r\n1\r\na\r\n0\r\n\r\n");
+    }
+
+    @Test
+    void rejectsSizeThatWouldOverflowTheTotal() {
+        assertStatus(HttpStatus.CONTENT_TOO_LARGE, "1\r\na\r\n7fffffffffffffff\r\n");
+        assertStatus(HttpStatus.CONTENT_TOO_LARGE, "1\r\na\r\nffffffffffffffffffff\r\n");
+    }
+
+    @Test
+    void rejectsSizeThatIsNotPlainHex() {
+        assertStatus(HttpStatus.BAD_REQUEST, "+5\r\nhello\r\n0\r\n\r\n");
+        assertStatus(HttpStatus.BAD_REQUEST, "-1\r\n");
+        assertStatus(HttpStatus.BAD_REQUEST, "0x5\r\nhello\r\n0\r\n\r\n");
+        assertStatus(HttpStatus.BAD_REQUEST, "٥\r\nhello\r\n0\r\n\r\n");
+        assertStatus(HttpStatus.BAD_REQUEST, ";name=value\r\n");
+    }
+
+    private static byte[] decode(String chunked) throws IOException {
+        var input = new ByteArrayInputStream(chunked.getBytes(StandardCharsets.UTF_8));
+        try (var chunks = new ChunkedInputStream(input, MAX_SIZE, 1024)) {
+            return chunks.readAllBytes();
+        }
+    }
+
+    private static void assertStatus(HttpStatus status, String chunked) {
+        var exception = assertThrows(RequestRejectedException.class, () -> decode(chunked));
+        assertEquals(status, exception.status());
+    }
+}
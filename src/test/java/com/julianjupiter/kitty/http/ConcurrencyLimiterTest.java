@@ -0,0 +1,198 @@
+/*
+ * Copyright 2013-2023 Julian Jupiter.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.julianjupiter.kitty.http;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Drives {@link ConcurrencyLimiter} with a simulated server, in simulated time: 16 workers taking requests from a FIFO
+ * queue, exponential service times, Poisson arrivals. The load goes from 60% of capacity to 150%, then the service
+ * time triples (a downstream brownout) and finally everything goes back to normal.
+ *
+ * @author Julian Jupiter
+ */
+class ConcurrencyLimiterTest {
+    private static final int WORKERS = 16;
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+    private static final Phase NORMAL = new Phase(10, 2_000, 5);
+    private static final Phase OVERLOAD = new Phase(10, 5_000, 5);
+    private static final Phase BROWNOUT = new Phase(10, 2_000, 15);
+
+    @Test
+    void limitSettlesAboveTheWorkersUnderNormalLoad() {
+        var seconds = new SimulatedServer(true).run(NORMAL);
+
+        var last = seconds.subList(seconds.size() - 3, seconds.size());
+        for (var second : last) {
+            assertTrue(second.limit() >= WORKERS && second.limit() <= 4 * WORKERS, "limit " + second.limit());
+            assertEquals(0, second.shed());
+        }
+        var spread = last.stream().mapToInt(Second::limit).max().orElseThrow()
+                - last.stream().mapToInt(Second::limit).min().orElseThrow();
+        assertTrue(spread <= last.getFirst().limit() / 10, "limit still moving by " + spread);
+    }
+
+    @Test
+    void excessIsShedUnderOverloadWhileLatencyStaysLow() {
+        var limited = new SimulatedServer(true);
+        var unlimited = new SimulatedServer(false);
+        limited.run(NORMAL);
+        unlimited.run(NORMAL);
+
+        var withLimit = limited.run(OVERLOAD);
+        var withoutLimit = unlimited.run(OVERLOAD);
+        for (var second : withLimit) {
+            assertTrue(second.shed() > 0);
+            assertTrue(second.limit() >= WORKERS && second.limit() <= 3 * WORKERS, "limit " + second.limit());
+            assertTrue(second.p99Millis() < 100, "p99 " + second.p99Millis() + " ms");
+        }
+        assertTrue(withoutLimit.getLast().p99Millis() > 1000, "p99 without a limit " + withoutLimit.getLast().p99Millis() + " ms");
+    }
+
+    @Test
+    void limitBacksOffWhenLatencyRisesAndRecoversAfterwards() {
+        var server = new SimulatedServer(true);
+        server.run(NORMAL);
+        var overloaded = server.run(OVERLOAD).getLast().limit();
+
+        var brownout = server.run(BROWNOUT);
+        for (var second : brownout.subList(1, brownout.size())) {
+            assertTrue(second.limit() <= overloaded * 3 / 4, "limit " + second.limit() + " after " + overloaded);
+            assertTrue(second.p99Millis() < 200, "p99 " + second.p99Millis() + " ms");
+        }
+
+        var brownoutLimit = brownout.stream().mapToInt(Second::limit).max().orElseThrow();
+        var recovered = server.run(NORMAL);
+        assertTrue(recovered.getLast().limit() > brownoutLimit, "limit " + recovered.getLast().limit() + " after " + brownoutLimit);
+        assertEquals(0, recovered.getLast().shed());
+    }
+
+    private record Phase(int seconds, int rate, double serviceMillis) {
+    }
+
+    private record Second(int limit, long shed, double p99Millis) {
+    }
+
+    private record Event(long time, long arrival) implements Comparable<Event> {
+        @Override
+        public int compareTo(Event other) {
+            return Long.compare(this.time, other.time);
+        }
+    }
+
+    private static final class SimulatedServer {
+        private final ConcurrencyLimiter limiter;
+        private final SplittableRandom random = new SplittableRandom(42);
+        private final PriorityQueue<Event> events = new PriorityQueue<>();
+        private final ArrayDeque<Long> queue = new ArrayDeque<>();
+        private final LongAdder shed = new LongAdder();
+        private int busy;
+        private long now;
+        private int second;
+        private double serviceMillis;
+        private LogLinearHistogram latency;
+
+        private SimulatedServer(boolean limited) {
+            this.limiter = limited ? new ConcurrencyLimiter(1, 1000, 20, this.shed) : null;
+        }
+
+        List<Second> run(Phase phase) {
+            var seconds = new ArrayList<Second>(phase.seconds());
+            for (var i = 0; i < phase.seconds(); i++) {
+                var shedBefore = this.shed.sum();
+                var latency = this.second(phase);
+                seconds.add(new Second(this.limiter == null ? 0 : this.limiter.limit(), this.shed.sum() - shedBefore,
+                        latency.total() == 0 ? 0 : latency.valueAtPercentile(99) / 1e6));
+            }
+
+            return seconds;
+        }
+
+        // simulates one second and returns the latency of the requests that completed in it
+        private LogLinearHistogram.Snapshot second(Phase phase) {
+            this.latency = new LogLinearHistogram();
+            this.serviceMillis = phase.serviceMillis();
+            var end = ++this.second * SECOND;
+            var next = this.now + this.interarrival(phase.rate());
+            while (true) {
+                var completion = this.events.peek();
+                var arrival = next;
+                if (completion != null && completion.time() <= arrival) {
+                    if (completion.time() >= end) {
+                        break;
+                    }
+                    this.events.poll();
+                    this.now = completion.time();
+                    this.complete(completion.arrival());
+                } else {
+                    if (arrival >= end) {
+                        break;
+                    }
+                    this.now = arrival;
+                    this.arrive();
+                    next = this.now + this.interarrival(phase.rate());
+                }
+            }
+            this.now = end;
+            return this.latency.snapshot();
+        }
+
+        private void arrive() {
+            if (this.limiter != null && !this.limiter.tryAcquire()) {
+                return;
+            }
+
+            if (this.busy < WORKERS) {
+                this.start(this.now);
+            } else {
+                this.queue.add(this.now);
+            }
+        }
+
+        private void start(long arrival) {
+            this.busy++;
+            var service = (long) (-Math.log(1 - this.random.nextDouble()) * this.serviceMillis * 1e6);
+            this.events.add(new Event(this.now + service, arrival));
+        }
+
+        private void complete(long arrival) {
+            this.busy--;
+            this.latency.record(this.now - arrival);
+            if (this.limiter != null) {
+                this.limiter.release(arrival, this.now);
+            }
+            var queued = this.queue.poll();
+            if (queued != null) {
+                this.start(queued);
+            }
+        }
+
+        private long interarrival(int rate) {
+            return (long) (-Math.log(1 - this.random.nextDouble()) * SECOND / rate);
+        }
+    }
+}
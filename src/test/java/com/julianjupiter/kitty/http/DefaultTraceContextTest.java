@@ -0,0 +1,97 @@
+/*
+ * Copyright 2013-2023 Julian Jupiter.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.julianjupiter.kitty.http;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Julian Jupiter
+ */
+class DefaultTraceContextTest {
+    private static final String TRACE_ID = "4bf92f3577b34da6a3ce929d0e0e4736";
+    private static final String PARENT_ID = "00f067aa0ba902b7";
+
+    @Test
+    void validTraceparentIsContinued() {
+        var context = DefaultTraceContext.of(request("traceparent: 00-" + TRACE_ID + "-" + PARENT_ID + "-01",
+                "tracestate: vendor=abc"), 0);
+
+        assertEquals(TRACE_ID, context.traceId());
+        assertEquals(Optional.of(PARENT_ID), context.parentSpanId());
+        assertNotEquals(PARENT_ID, context.spanId());
+        assertEquals(16, context.spanId().length());
+        assertTrue(context.isSampled());
+        assertEquals(Optional.of("vendor=abc"), context.traceState());
+        assertEquals("00-" + TRACE_ID + "-" + context.spanId() + "-01", context.traceparent());
+    }
+
+    @Test
+    void callersSamplingDecisionIsKept() {
+        var context = DefaultTraceContext.of(request("traceparent: 00-" + TRACE_ID + "-" + PARENT_ID + "-00"),
+                DefaultTraceContext.sampleThreshold(1));
+
+        assertFalse(context.isSampled());
+        assertEquals(TRACE_ID, context.traceId());
+    }
+
+    @Test
+    void laterVersionIsReadAsFarAsVersion00Goes() {
+        var context = DefaultTraceContext.of(request("traceparent: 01-" + TRACE_ID + "-" + PARENT_ID + "-01-extra"), 0);
+
+        assertEquals(TRACE_ID, context.traceId());
+        assertEquals(Optional.of(PARENT_ID), context.parentSpanId());
+    }
+
+    @Test
+    void invalidTraceparentStartsANewTraceAndDropsTracestate() {
+        for (var traceparent : List.of(
+                "00-" + TRACE_ID + "-" + PARENT_ID + "-01-extra",
+                "00-" + TRACE_ID.toUpperCase() + "-" + PARENT_ID + "-01",
+                "00-" + "0".repeat(32) + "-" + PARENT_ID + "-01",
+                "00-" + TRACE_ID + "-" + "0".repeat(16) + "-01",
+                "ff-" + TRACE_ID + "-" + PARENT_ID + "-01",
+                "01-" + TRACE_ID + "-" + PARENT_ID + "-01extra",
+                "00-" + TRACE_ID + "-" + PARENT_ID,
+                "00_" + TRACE_ID + "-" + PARENT_ID + "-01")) {
+            var context = DefaultTraceContext.of(request("traceparent: " + traceparent, "tracestate: vendor=abc"), 0);
+
+            assertNotEquals(TRACE_ID, context.traceId(), traceparent);
+            assertEquals(32, context.traceId().length());
+            assertEquals(Optional.empty(), context.parentSpanId(), traceparent);
+            assertEquals(Optional.empty(), context.traceState(), traceparent);
+        }
+    }
+
+    @Test
+    void newTraceIsSampledAtTheRate() {
+        assertTrue(DefaultTraceContext.of(request(), DefaultTraceContext.sampleThreshold(1)).isSampled());
+        assertFalse(DefaultTraceContext.of(request(), DefaultTraceContext.sampleThreshold(0)).isSampled());
+    }
+
+    private static HttpRequest request(String... headers) {
+        var head = "GET / HTTP/1.1\n" + String.join("\n", headers) + "\n";
+        return new DefaultHttpRequest(HttpRequestLineFactory.create(head), HttpHeadersFactory.create(head), List.of(),
+                new NoContentHttpBody());
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright 2013-2023 Julian Jupiter.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.julianjupiter.kitty.http;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Julian Jupiter
+ */
+class MultipartParserTest {
+    private static final String BOUNDARY = "----kitty42";
+    private static final RequestLimits LIMITS = new RequestLimits(8192, 8192, 100, 1 << 20, 1024, 64 * 1024, 128 * 1024);
+
+    @Test
+    void partsAreSplitAtTheBoundary() throws IOException {
+        var body = "preamble\r\n"
+                + "--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"title\"\r\n"
+                + "\r\n"
+                + "Hello\r\n"
+                + "--" + BOUNDARY + "  \r\n"
+                + "Content-Disposition: form-data; name=\"file\"; filename=\"a.txt\"\r\n"
+                + "Content-Type: text/csv\r\n"
+                + "\r\n"
+                + "a,b\r\n1,2\r\n"
+                + "--" + BOUNDARY + "--\r\n"
+                + "epilogue";
+
+        var parts = parse(new ByteArrayInputStream(bytes(body)), LIMITS);
+
+        assertEquals(2, parts.size());
+        assertEquals("title", parts.get(0).name());
+        assertEquals(Optional.empty(), parts.get(0).filename());
+        assertEquals("text/plain", parts.get(0).contentType());
+        assertEquals("Hello", parts.get(0).text());
+        assertEquals("file", parts.get(1).name());
+        assertEquals(Optional.of("a.txt"), parts.get(1).filename());
+        assertEquals("text/csv", parts.get(1).contentType());
+        assertEquals("a,b\r\n1,2", parts.get(1).text());
+    }
+
+    @Test
+    void delimiterIsFoundAcrossReadsAndNearMissesAreKept() throws IOException {
+        var content = new ByteArrayOutputStream();
+        while (content.size() < 20_000) {
+            content.writeBytes(bytes("\r\n--" + BOUNDARY.substring(0, BOUNDARY.length() - 1) + "x"));
+        }
+        var expected = content.toByteArray();
+
+        var parts = parse(new TrickleInputStream(multipart("file", expected), 7), LIMITS);
+
+        try {
+            assertEquals(1, parts.size());
+            assertFalse(parts.getFirst().inMemory());
+            assertArrayEquals(expected, parts.getFirst().bytes());
+        } finally {
+            parts.forEach(MultipartPart::delete);
+        }
+    }
+
+    @Test
+    void partUnderTheThresholdStaysInMemory() throws IOException {
+        var content = new byte[1024];
+
+        var parts = parse(new ByteArrayInputStream(multipart("small", content)), LIMITS);
+
+        assertTrue(parts.getFirst().inMemory());
+        assertEquals(1024, parts.getFirst().size());
+    }
+
+    @Test
+    void partPastItsLimitIsTooLarge() {
+        var body = multipart("file", new byte[64 * 1024 + 1]);
+
+        var exception = assertThrows(RequestRejectedException.class,
+                () -> parse(new ByteArrayInputStream(body), LIMITS));
+        assertEquals(HttpStatus.CONTENT_TOO_LARGE, exception.status());
+    }
+
+    @Test
+    void bodyWithoutAClosingBoundaryIsRejected() {
+        var body = "--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"title\"\r\n"
+                + "\r\n"
+                + "Hello";
+
+        var exception = assertThrows(RequestRejectedException.class,
+                () -> parse(new ByteArrayInputStream(bytes(body)), LIMITS));
+        assertEquals(HttpStatus.BAD_REQUEST, exception.status());
+    }
+
+    @Test
+    void partWithoutANameIsRejected() {
+        var body = "--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data\r\n"
+                + "\r\n"
+                + "Hello\r\n"
+                + "--" + BOUNDARY + "--";
+
+        var exception = assertThrows(RequestRejectedException.class,
+                () -> parse(new ByteArrayInputStream(bytes(body)), LIMITS));
+        assertEquals(HttpStatus.BAD_REQUEST, exception.status());
+    }
+
+    @Test
+    void quotedParametersMayHoldSeparatorsAndEscapes() {
+        var disposition = "form-data; name=\"file\"; filename=\"a;b \\\"c\\\".txt\"; size=3";
+
+        assertEquals("file", MultipartParser.parameter(disposition, "name"));
+        assertEquals("a;b \"c\".txt", MultipartParser.parameter(disposition, "filename"));
+        assertEquals("3", MultipartParser.parameter(disposition, "size"));
+        assertNull(MultipartParser.parameter(disposition, "missing"));
+    }
+
+    private static List<MultipartPart> parse(InputStream input, RequestLimits limits) throws IOException {
+        var lease = new MemoryBudget(1 << 20).lease(Long.MAX_VALUE);
+        try {
+            return MultipartParser.parse(input, BOUNDARY, limits, lease);
+        } finally {
+            lease.release();
+        }
+    }
+
+    private static byte[] multipart(String name, byte[] content) {
+        var body = new ByteArrayOutputStream();
+        body.writeBytes(bytes("--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"" + name + "\"; filename=\"" + name + ".bin\"\r\n"
+                + "\r\n"));
+        body.writeBytes(content);
+        body.writeBytes(bytes("\r\n--" + BOUNDARY + "--\r\n"));
+        return body.toByteArray();
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    // hands out at most a few bytes per read, as a slow client would
+    private static final class TrickleInputStream extends InputStream {
+        private final ByteArrayInputStream input;
+        private final int chunk;
+
+        private TrickleInputStream(byte[] bytes, int chunk) {
+            this.input = new ByteArrayInputStream(bytes);
+            this.chunk = chunk;
+        }
+
+        @Override
+        public int read() {
+            return this.input.read();
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) {
+            return this.input.read(buffer, offset, Math.min(length, this.chunk));
+        }
+    }
+}
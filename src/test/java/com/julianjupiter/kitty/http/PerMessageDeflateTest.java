@@ -0,0 +1,113 @@
+/*
+ * Copyright 2013-2023 Julian Jupiter.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.julianjupiter.kitty.http;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.zip.DataFormatException;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * @author Julian Jupiter
+ */
+class PerMessageDeflateTest {
+    private final ByteBufferPool pool = new ByteBufferPool();
+
+    @Test
+    void highlyCompressedMessageIsInflatedWhole() throws DataFormatException {
+        var message = new byte[100_000];
+        Arrays.fill(message, (byte) 'a');
+
+        assertArrayEquals(message, this.roundTrip(message, 1 << 20));
+    }
+
+    @Test
+    void mixedMessageIsInflatedWhole() throws DataFormatException {
+        var message = new byte[50_000];
+        var random = new SplittableRandom(42);
+        for (var i = 0; i < message.length; i++) {
+            message[i] = (byte) ('a' + random.nextInt(4));
+        }
+
+        assertArrayEquals(message, this.roundTrip(message, 1 << 20));
+    }
+
+    @Test
+    void messageOfExactlyTheLimitFits() throws DataFormatException {
+        var message = new byte[4096];
+        Arrays.fill(message, (byte) 'a');
+
+        assertEquals(4096, this.roundTrip(message, 4096).length);
+    }
+
+    @Test
+    void messagePastTheLimitIsTooBig() {
+        var message = new byte[4097];
+        Arrays.fill(message, (byte) 'a');
+
+        assertThrows(PerMessageDeflate.MessageTooBigException.class, () -> this.roundTrip(message, 4096));
+    }
+
+    @Test
+    void inflaterIsReusedAcrossMessages() throws DataFormatException {
+        var message = new byte[1000];
+        Arrays.fill(message, (byte) 'z');
+        for (var clientNoContextTakeover : new boolean[]{true, false}) {
+            var deflate = new PerMessageDeflate(clientNoContextTakeover);
+            try {
+                for (var i = 0; i < 3; i++) {
+                    assertArrayEquals(message, this.inflate(deflate, PerMessageDeflate.compress(message), 1 << 20));
+                }
+            } finally {
+                deflate.end();
+            }
+        }
+    }
+
+    @Test
+    void shortMessageIsNotCompressed() {
+        assertNull(PerMessageDeflate.compress(new byte[100]));
+        assertNotNull(PerMessageDeflate.compress(new byte[1000]));
+    }
+
+    private byte[] roundTrip(byte[] message, int maxSize) throws DataFormatException {
+        var compressed = PerMessageDeflate.compress(message);
+        assertNotNull(compressed);
+        var deflate = new PerMessageDeflate(true);
+        try {
+            return this.inflate(deflate, compressed, maxSize);
+        } finally {
+            deflate.end();
+        }
+    }
+
+    private byte[] inflate(PerMessageDeflate deflate, byte[] compressed, int maxSize) throws DataFormatException {
+        var buffer = this.pool.acquire(compressed.length).put(compressed);
+        var output = deflate.decompress(buffer, this.pool, maxSize);
+        var inflated = new byte[output.position()];
+        output.get(0, inflated);
+        this.pool.release(output);
+        return inflated;
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2013-2023 Julian Jupiter.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.julianjupiter.kitty.http;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.OptionalLong;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Julian Jupiter
+ */
+class UrlEncodedParametersTest {
+
+    @Test
+    void pairsAreSplitOnAmpersandAndEquals() {
+        var parameters = UrlEncodedParameters.of("a=1&b=&c&&=x&a=2");
+
+        assertEquals(4, parameters.size());
+        assertEquals(Set.of("a", "b", "c"), parameters.names());
+        assertEquals(List.of("1", "2"), parameters.getAll("a"));
+        assertEquals(Optional.of(""), parameters.get("b"));
+        assertEquals(Optional.of(""), parameters.get("c"));
+        assertEquals(Optional.empty(), parameters.get("x"));
+        assertFalse(parameters.contains(""));
+    }
+
+    @Test
+    void namesAndValuesAreDecodedAsUtf8() {
+        var parameters = UrlEncodedParameters.of("first+name=J%C3%BAlian&%F0%9F%90%B1=cat&raw=café+%E2%82%AC");
+
+        assertEquals(Optional.of("Júlian"), parameters.get("first name"));
+        assertEquals(Optional.of("cat"), parameters.get("🐱"));
+        assertEquals(Optional.of("café €"), parameters.get("raw"));
+    }
+
+    @Test
+    void invalidEscapesAreKeptAsIs() {
+        var parameters = UrlEncodedParameters.of("a=100%&b=%zz&c=%4");
+
+        assertEquals(Optional.of("100%"), parameters.get("a"));
+        assertEquals(Optional.of("%zz"), parameters.get("b"));
+        assertEquals(Optional.of("%4"), parameters.get("c"));
+    }
+
+    @Test
+    void numbersAndBooleansAreParsedWithOrWithoutEscapes() {
+        var parameters = UrlEncodedParameters.of("page=2&offset=%2D10&big=9000000000&on=TRUE&off=f%61lse&name=kitty");
+
+        assertEquals(OptionalInt.of(2), parameters.getInt("page"));
+        assertEquals(OptionalInt.of(-10), parameters.getInt("offset"));
+        assertEquals(OptionalLong.of(9_000_000_000L), parameters.getLong("big"));
+        assertEquals(Optional.of(Boolean.TRUE), parameters.getBoolean("on"));
+        assertEquals(Optional.of(Boolean.FALSE), parameters.getBoolean("off"));
+        assertEquals(OptionalInt.empty(), parameters.getInt("missing"));
+        assertThrows(NumberFormatException.class, () -> parameters.getInt("name"));
+        assertThrows(IllegalArgumentException.class, () -> parameters.getBoolean("name"));
+    }
+
+    @Test
+    void emptySourceIsShared() {
+        assertSame(UrlEncodedParameters.EMPTY, UrlEncodedParameters.of(null));
+        assertSame(UrlEncodedParameters.EMPTY, UrlEncodedParameters.of(""));
+        assertTrue(UrlEncodedParameters.of("&&").isEmpty());
+    }
+}
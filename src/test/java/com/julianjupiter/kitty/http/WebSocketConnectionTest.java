@@ -0,0 +1,264 @@
+/*
+ * Copyright 2013-2023 Julian Jupiter.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.julianjupiter.kitty.http;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Feeds client frames to a {@link WebSocketConnection} and reads back the frames it answers with.
+ *
+ * @author Julian Jupiter
+ */
+class WebSocketConnectionTest {
+    private static final int FIN = 0x80;
+    private static final int MASK = 0x11223344;
+
+    @Test
+    void fragmentedMessageIsDeliveredWholeAroundControlFrames() throws IOException {
+        var session = run(1024,
+                frame(WebSocketFrames.OPCODE_TEXT, "Hel"),
+                frame(FIN | WebSocketFrames.OPCODE_PING, "ping"),
+                frame(FIN | WebSocketFrames.OPCODE_CONTINUATION, "lo"),
+                closeFrame(WebSocketMessage.NORMAL_CLOSURE));
+
+        assertEquals(List.of("Hello"), session.listener.texts);
+        assertEquals(WebSocketMessage.NORMAL_CLOSURE, session.listener.closeCode);
+        var frames = session.frames();
+        assertEquals(2, frames.size());
+        assertEquals(FIN | WebSocketFrames.OPCODE_PONG, frames.get(0)[0] & 0xFF);
+        assertArrayEquals("ping".getBytes(StandardCharsets.UTF_8), Arrays.copyOfRange(frames.get(0), 1, frames.get(0).length));
+        assertEquals(WebSocketMessage.NORMAL_CLOSURE, closeCode(frames.get(1)));
+    }
+
+    @Test
+    void extendedPayloadLengthsAreDecoded() throws IOException {
+        var medium = "a".repeat(300);
+        var large = "b".repeat(70_000);
+        var session = run(100_000,
+                frame(FIN | WebSocketFrames.OPCODE_TEXT, medium),
+                frame(FIN | WebSocketFrames.OPCODE_TEXT, large),
+                closeFrame(WebSocketMessage.NORMAL_CLOSURE));
+
+        assertEquals(List.of(medium, large), session.listener.texts);
+    }
+
+    @Test
+    void unmaskedFrameIsAProtocolError() throws IOException {
+        var frame = frame(FIN | WebSocketFrames.OPCODE_TEXT, "hi");
+        frame[1] &= 0x7F;
+        var session = run(1024, Arrays.copyOf(frame, 2));
+
+        assertEquals(WebSocketMessage.PROTOCOL_ERROR, closeCode(session.frames().getLast()));
+    }
+
+    @Test
+    void payloadLengthWithTheHighBitSetIsAProtocolError() throws IOException {
+        var session = run(1024, new byte[]{(byte) (FIN | WebSocketFrames.OPCODE_BINARY), (byte) 0xFF,
+                (byte) 0x80, 0, 0, 0, 0, 0, 0, 0});
+
+        assertEquals(WebSocketMessage.PROTOCOL_ERROR, closeCode(session.frames().getLast()));
+    }
+
+    @Test
+    void continuationWithoutAMessageIsAProtocolError() throws IOException {
+        var session = run(1024, frame(FIN | WebSocketFrames.OPCODE_CONTINUATION, "x"));
+
+        assertEquals(WebSocketMessage.PROTOCOL_ERROR, closeCode(session.frames().getLast()));
+    }
+
+    @Test
+    void fragmentedControlFrameIsAProtocolError() throws IOException {
+        var session = run(1024, frame(WebSocketFrames.OPCODE_PING, "x"));
+
+        assertEquals(WebSocketMessage.PROTOCOL_ERROR, closeCode(session.frames().getLast()));
+    }
+
+    @Test
+    void messagePastTheLimitIsTooBig() throws IOException {
+        var session = run(16,
+                frame(WebSocketFrames.OPCODE_BINARY, "0123456789"),
+                frame(FIN | WebSocketFrames.OPCODE_CONTINUATION, "0123456789"));
+
+        assertEquals(WebSocketMessage.MESSAGE_TOO_BIG, closeCode(session.frames().getLast()));
+        assertEquals(0, session.listener.binaries);
+    }
+
+    @Test
+    void invalidUtf8IsAnInvalidPayload() throws IOException {
+        var session = run(1024, frame(FIN | WebSocketFrames.OPCODE_TEXT, new byte[]{(byte) 0xC3, 0x28}));
+
+        assertEquals(WebSocketMessage.INVALID_PAYLOAD, closeCode(session.frames().getLast()));
+    }
+
+    @Test
+    void reservedCloseCodeIsAProtocolError() throws IOException {
+        var session = run(1024, closeFrame(WebSocketMessage.NO_STATUS_RECEIVED));
+
+        assertEquals(WebSocketMessage.PROTOCOL_ERROR, closeCode(session.frames().getLast()));
+    }
+
+    private static Session run(int maxMessageSize, byte[]... frames) throws IOException {
+        var input = new ByteArrayOutputStream();
+        for (var frame : frames) {
+            input.write(frame);
+        }
+
+        var configuration = new KittyServerConfiguration((request, response) -> response, "test")
+                .webSocketMaxMessageSize(maxMessageSize);
+        var connection = new InMemoryConnection(input.toByteArray());
+        var listener = new RecordingListener();
+        try (var context = new ServerContext(configuration)) {
+            new WebSocketConnection(connection, null, connection.input, connection.output, listener,
+                    new WebSocketHandshake("", false, false), Runnable::run, context).run();
+        }
+
+        return new Session(listener, connection.output.toByteArray());
+    }
+
+    private static byte[] frame(int b0, String payload) {
+        return frame(b0, payload.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static byte[] frame(int b0, byte[] payload) {
+        var frame = new ByteArrayOutputStream();
+        frame.write(b0);
+        if (payload.length < 126) {
+            frame.write(0x80 | payload.length);
+        } else if (payload.length < 65536) {
+            frame.write(0x80 | 126);
+            frame.write(payload.length >>> 8);
+            frame.write(payload.length);
+        } else {
+            frame.write(0x80 | 127);
+            for (var i = 0; i < 8; i++) {
+                frame.write((int) ((long) payload.length >>> (56 - 8 * i)));
+            }
+        }
+        for (var i = 0; i < 4; i++) {
+            frame.write(MASK >>> (24 - 8 * i));
+        }
+        for (var i = 0; i < payload.length; i++) {
+            frame.write(payload[i] ^ (MASK >>> (24 - 8 * (i & 3))));
+        }
+
+        return frame.toByteArray();
+    }
+
+    private static byte[] closeFrame(int statusCode) {
+        return frame(FIN | WebSocketFrames.OPCODE_CLOSE, new byte[]{(byte) (statusCode >>> 8), (byte) statusCode});
+    }
+
+    private static int closeCode(byte[] frame) {
+        assertEquals(FIN | WebSocketFrames.OPCODE_CLOSE, frame[0] & 0xFF);
+        return ((frame[1] & 0xFF) << 8) | (frame[2] & 0xFF);
+    }
+
+    private record Session(RecordingListener listener, byte[] output) {
+        // each frame as its first byte followed by its payload; server frames are unmasked and short here
+        List<byte[]> frames() {
+            var frames = new ArrayList<byte[]>();
+            var i = 0;
+            while (i < this.output.length) {
+                var length = this.output[i + 1] & 0x7F;
+                var frame = new byte[1 + length];
+                frame[0] = this.output[i];
+                System.arraycopy(this.output, i + 2, frame, 1, length);
+                frames.add(frame);
+                i += 2 + length;
+            }
+
+            return frames;
+        }
+    }
+
+    private static final class RecordingListener implements WebSocketListener {
+        private final List<String> texts = new ArrayList<>();
+        private int binaries;
+        private int closeCode;
+
+        @Override
+        public void onText(WebSocket webSocket, String text) {
+            this.texts.add(text);
+        }
+
+        @Override
+        public void onBinary(WebSocket webSocket, ByteBuffer data) {
+            this.binaries++;
+        }
+
+        @Override
+        public void onClose(WebSocket webSocket, int statusCode, String reason) {
+            this.closeCode = statusCode;
+        }
+    }
+
+    private static final class InMemoryConnection implements ClientConnection {
+        private final InputStream input;
+        private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        private InMemoryConnection(byte[] input) {
+            this.input = new ByteArrayInputStream(input);
+        }
+
+        @Override
+        public InputStream inputStream() {
+            return this.input;
+        }
+
+        @Override
+        public OutputStream outputStream() {
+            return this.output;
+        }
+
+        @Override
+        public void shutdownInput() {
+        }
+
+        @Override
+        public InetAddress remoteAddress() {
+            return InetAddress.getLoopbackAddress();
+        }
+
+        @Override
+        public String remoteName() {
+            return "test";
+        }
+
+        @Override
+        public int localPort() {
+            return 0;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}